@@ -83,6 +83,8 @@ class HttpBuildCacheConfigurationBuildOperationIntegrationTest extends AbstractI
         }
 
         result.remote.config.useExpectContinue == "false"
+        result.remote.config.maxConnections == "20"
+        result.remote.config.warmUpConnections == "0"
 
         result.remote.type == 'HTTP'
         result.remote.push == push
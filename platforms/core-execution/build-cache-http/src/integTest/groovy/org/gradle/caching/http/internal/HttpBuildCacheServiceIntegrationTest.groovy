@@ -18,6 +18,7 @@ package org.gradle.caching.http.internal
 
 import org.gradle.api.internal.tasks.execution.ExecuteTaskBuildOperationType
 import org.gradle.caching.http.HttpBuildCache
+import org.gradle.caching.internal.operations.BuildCacheRemoteCloseBuildOperationType
 import org.gradle.caching.internal.operations.BuildCacheRemoteStoreBuildOperationType
 import org.gradle.integtests.fixtures.BuildOperationsFixture
 import org.gradle.integtests.fixtures.timeout.IntegrationTestTimeout
@@ -73,6 +74,28 @@ class HttpBuildCacheServiceIntegrationTest extends HttpBuildCacheFixture {
         skipped ":compileJava"
     }
 
+    def "reports request statistics when the cache is closed"() {
+        when:
+        withBuildCache().run "jar"
+
+        then:
+        def close = buildOperations.only(BuildCacheRemoteCloseBuildOperationType)
+        close.details.buildPath == ":"
+        def statistics = close.result.statistics as Map<String, Long>
+        statistics.requests > 0
+        statistics.connectionsOpened > 0
+        statistics.connectionsOpened <= statistics.requests
+        statistics.warmUpResponses == 0
+    }
+
+    def "does not report statistics when the cache is not used"() {
+        when:
+        withBuildCache().run "help"
+
+        then:
+        buildOperations.none(BuildCacheRemoteCloseBuildOperationType)
+    }
+
     def "outputs are correctly loaded from cache"() {
         buildFile << """
             apply plugin: "application"
@@ -18,6 +18,7 @@ package org.gradle.caching.http.internal
 
 import org.apache.http.HttpHeaders
 import org.apache.http.HttpStatus
+import org.eclipse.jetty.server.ServerConnector
 import org.gradle.api.UncheckedIOException
 import org.gradle.api.internal.DocumentationRegistry
 import org.gradle.caching.BuildCacheEntryWriter
@@ -25,6 +26,7 @@ import org.gradle.caching.BuildCacheException
 import org.gradle.caching.BuildCacheServiceFactory
 import org.gradle.caching.http.HttpBuildCache
 import org.gradle.caching.internal.DefaultBuildCacheKey
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.resource.transport.http.DefaultSslContextFactory
 import org.gradle.internal.resource.transport.http.HttpClientHelper
@@ -67,7 +69,7 @@ class HttpBuildCacheServiceTest extends Specification {
     HttpBuildCacheService getCache() {
         if (cacheRef == null) {
             buildCacheDescriber = new NoopBuildCacheDescriber()
-            cacheRef = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), { it.addHeader("X-Gradle-Version", "3.0") }, httpClientHelperFactory)
+            cacheRef = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), { it.addHeader("X-Gradle-Version", "3.0") }, httpClientHelperFactory, new DefaultExecutorFactory())
                 .createBuildCacheService(this.config, buildCacheDescriber) as HttpBuildCacheService
         }
         cacheRef
@@ -336,6 +338,46 @@ class HttpBuildCacheServiceTest extends Specification {
         server.authenticationAttempts == ['Basic'] as Set
     }
 
+    def "warms up connections with HEAD request for cache root"() {
+        server.expectHeadMissing("/cache/")
+        server.expectGetMissing("/cache/${key.hashCode}")
+        def executor = new DefaultExecutorFactory().create("warm-up", 1)
+
+        when:
+        cache.warmUp(executor, 1)
+        executor.stop()
+
+        then:
+        openConnections() == 1
+
+        when:
+        def found = cache.load(key) { input -> }
+
+        then:
+        !found
+        openConnections() == 1
+        cache.statistics == [connectionsOpened: 1L, maxConcurrentRequests: 1L, requests: 1L, warmUpResponses: 1L]
+
+        cleanup:
+        cache.close()
+    }
+
+    def "reports statistics"() {
+        server.expectGetMissing("/cache/${key.hashCode}")
+        server.expectGetMissing("/cache/${key.hashCode}")
+
+        when:
+        cache.load(key) { input -> }
+        cache.load(key) { input -> }
+
+        then:
+        cache.statistics == [connectionsOpened: 1L, maxConcurrentRequests: 1L, requests: 2L, warmUpResponses: 0L]
+    }
+
+    private int openConnections() {
+        server.server.connectors.sum { (it as ServerConnector).connectedEndPoints.size() } as int
+    }
+
     private HttpResourceInteraction expectError(int httpCode, String method) {
         server.expect("/cache/${key.hashCode}", false, [method], new HttpServer.ActionSupport("return ${httpCode} broken") {
             @Override
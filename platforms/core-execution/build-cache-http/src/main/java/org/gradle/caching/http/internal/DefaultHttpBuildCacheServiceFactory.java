@@ -24,6 +24,7 @@
 import org.gradle.caching.http.HttpBuildCache;
 import org.gradle.caching.http.HttpBuildCacheCredentials;
 import org.gradle.internal.authentication.DefaultBasicAuthentication;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.deprecation.Documentation;
 import org.gradle.internal.resource.transport.http.DefaultHttpSettings;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
@@ -44,16 +45,20 @@
 public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFactory<HttpBuildCache> {
 
     private static final int MAX_REDIRECTS = Integer.getInteger("org.gradle.cache.http.max-redirects", 10);
+    private static final int MAX_CONNECTIONS = Integer.getInteger("org.gradle.cache.http.max-connections", 20);
+    private static final int WARM_UP_CONNECTIONS = Integer.getInteger("org.gradle.cache.http.warm-up-connections", 0);
 
     private final SslContextFactory sslContextFactory;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
     private final HttpClientHelper.Factory httpClientHelperFactory;
+    private final ExecutorFactory executorFactory;
 
     @Inject
-    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, HttpBuildCacheRequestCustomizer requestCustomizer, HttpClientHelper.Factory httpClientHelperFactory) {
+    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, HttpBuildCacheRequestCustomizer requestCustomizer, HttpClientHelper.Factory httpClientHelperFactory, ExecutorFactory executorFactory) {
         this.sslContextFactory = sslContextFactory;
         this.requestCustomizer = requestCustomizer;
         this.httpClientHelperFactory = httpClientHelperFactory;
+        this.executorFactory = executorFactory;
     }
 
     @Override
@@ -88,6 +93,8 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
         DefaultHttpSettings.Builder builder = DefaultHttpSettings.builder()
             .withAuthenticationSettings(authentications)
             .maxRedirects(MAX_REDIRECTS)
+            .maxConnTotal(MAX_CONNECTIONS)
+            .maxConnPerRoute(MAX_CONNECTIONS)
             .withRedirectMethodHandlingStrategy(HttpSettings.RedirectMethodHandlingStrategy.ALLOW_FOLLOW_FOR_MUTATIONS)
             .withRedirectVerifier(redirectVerifier);
         if (allowUntrustedServer) {
@@ -103,9 +110,16 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
             .config("authenticated", Boolean.toString(authenticated))
             .config("allowUntrustedServer", Boolean.toString(allowUntrustedServer))
             .config("allowInsecureProtocol", Boolean.toString(allowInsecureProtocol))
-            .config("useExpectContinue", Boolean.toString(useExpectContinue));
-
-        return new HttpBuildCacheService(httpClientHelper, noUserInfoUrl, requestCustomizer, useExpectContinue);
+            .config("useExpectContinue", Boolean.toString(useExpectContinue))
+            .config("maxConnections", Integer.toString(MAX_CONNECTIONS))
+            .config("warmUpConnections", Integer.toString(WARM_UP_CONNECTIONS));
+
+        HttpBuildCacheService service = new HttpBuildCacheService(httpClientHelper, noUserInfoUrl, requestCustomizer, useExpectContinue);
+        if (WARM_UP_CONNECTIONS > 0) {
+            int connections = Math.min(WARM_UP_CONNECTIONS, MAX_CONNECTIONS);
+            service.warmUp(executorFactory.create("HTTP build cache connection warm-up", connections), connections);
+        }
+        return service;
     }
 
     private HttpRedirectVerifier createRedirectVerifier(URI url, boolean allowInsecureProtocol) {
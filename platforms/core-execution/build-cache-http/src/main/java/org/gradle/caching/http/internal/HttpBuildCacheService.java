@@ -17,11 +17,13 @@
 package org.gradle.caching.http.internal;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.AbstractHttpEntity;
@@ -32,23 +34,28 @@
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.StatisticsReportingBuildCacheService;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
 import org.gradle.internal.resource.transport.http.HttpClientResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Build cache implementation that delegates to a service accessible via HTTP.
  */
-public class HttpBuildCacheService implements BuildCacheService {
+public class HttpBuildCacheService implements BuildCacheService, StatisticsReportingBuildCacheService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCacheService.class);
     static final String BUILD_CACHE_CONTENT_TYPE = "application/vnd.gradle.build-cache-artifact.v1";
 
@@ -67,6 +74,12 @@ public class HttpBuildCacheService implements BuildCacheService {
     private final HttpClientHelper httpClientHelper;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
     private final boolean useExpectContinue;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private final AtomicInteger maxRequestsInFlight = new AtomicInteger();
+    private final AtomicInteger warmUpResponses = new AtomicInteger();
+    @Nullable
+    private ManagedExecutor warmUpExecutor;
 
     public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, HttpBuildCacheRequestCustomizer requestCustomizer, boolean useExpectContinue) {
         this.requestCustomizer = requestCustomizer;
@@ -75,6 +88,29 @@ public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, HttpBui
         this.httpClientHelper = httpClientHelper;
     }
 
+    /**
+     * Opens connections to the cache in the background by sending concurrent {@code HEAD} requests for its root.
+     *
+     * The connections, including their TLS sessions, stay in the connection pool, so the first loads of the build do not have to wait for them to be established.
+     * Any response, including an error status, counts as a successful warm-up.
+     */
+    void warmUp(ManagedExecutor executor, int connections) {
+        this.warmUpExecutor = executor;
+        for (int i = 0; i < connections; i++) {
+            executor.execute(() -> {
+                HttpHead httpHead = new HttpHead(root);
+                requestCustomizer.customize(httpHead);
+                try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpHead)) {
+                    LOGGER.debug("Response for warm-up HEAD {}: {}", safeUri(root), response.getStatusLine());
+                    warmUpResponses.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.debug("Could not warm up connection to {}", safeUri(root), e);
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
     @Override
     public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
         final URI uri = root.resolve("./" + key.getHashCode());
@@ -82,6 +118,7 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
         httpGet.addHeader(HttpHeaders.ACCEPT, BUILD_CACHE_CONTENT_TYPE + ", */*");
         requestCustomizer.customize(httpGet);
 
+        requestStarted();
         try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpGet)) {
             StatusLine statusLine = response.getStatusLine();
             if (LOGGER.isDebugEnabled()) {
@@ -99,6 +136,8 @@ public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws Buil
             }
         } catch (IOException e) {
             throw wrap(e);
+        } finally {
+            requestFinished();
         }
     }
 
@@ -138,6 +177,7 @@ public boolean isStreaming() {
                 return false;
             }
         });
+        requestStarted();
         try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpPut)) {
             StatusLine statusLine = response.getStatusLine();
             if (LOGGER.isDebugEnabled()) {
@@ -152,9 +192,21 @@ public boolean isStreaming() {
             throw wrap(e.getCause());
         } catch (IOException e) {
             throw wrap(e);
+        } finally {
+            requestFinished();
         }
     }
 
+    private void requestStarted() {
+        requests.incrementAndGet();
+        int inFlight = requestsInFlight.incrementAndGet();
+        maxRequestsInFlight.accumulateAndGet(inFlight, Math::max);
+    }
+
+    private void requestFinished() {
+        requestsInFlight.decrementAndGet();
+    }
+
     private static BuildCacheException wrap(Throwable e) {
         if (e instanceof Error) {
             throw (Error) e;
@@ -175,8 +227,21 @@ private boolean throwHttpStatusCodeException(int statusCode, String message) {
         }
     }
 
+    @Override
+    public Map<String, Long> getStatistics() {
+        return ImmutableSortedMap.of(
+            "requests", (long) requests.get(),
+            "maxConcurrentRequests", (long) maxRequestsInFlight.get(),
+            "connectionsOpened", httpClientHelper.getOpenedConnectionCount(),
+            "warmUpResponses", (long) warmUpResponses.get()
+        );
+    }
+
     @Override
     public void close() throws IOException {
+        if (warmUpExecutor != null) {
+            warmUpExecutor.stop();
+        }
         httpClientHelper.close();
     }
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression codec used for build cache entries, together with its level where applicable.
+ *
+ * <p>Specifications are written as {@code <codec>[:<level>]}, e.g. {@code gzip}, {@code gzip:1}, {@code lz4} or {@code none}.</p>
+ */
+public final class BuildCacheEntryCompression {
+    public static final BuildCacheEntryCompression DEFAULT = new BuildCacheEntryCompression(Codec.GZIP, Deflater.DEFAULT_COMPRESSION);
+    public static final BuildCacheEntryCompression NONE = new BuildCacheEntryCompression(Codec.NONE, 0);
+
+    public enum Codec {
+        NONE(0),
+        GZIP(1),
+        LZ4(2);
+
+        private final byte id;
+
+        Codec(int id) {
+            this.id = (byte) id;
+        }
+
+        public byte getId() {
+            return id;
+        }
+
+        public static Codec forId(int id) throws IOException {
+            for (Codec codec : values()) {
+                if (codec.id == id) {
+                    return codec;
+                }
+            }
+            throw new IOException("Unknown build cache entry compression codec: " + id);
+        }
+    }
+
+    private final Codec codec;
+    private final int level;
+
+    private BuildCacheEntryCompression(Codec codec, int level) {
+        this.codec = codec;
+        this.level = level;
+    }
+
+    public static BuildCacheEntryCompression parse(String spec) {
+        String trimmed = spec.trim().toLowerCase(Locale.ROOT);
+        int separator = trimmed.indexOf(':');
+        String codecName = separator < 0 ? trimmed : trimmed.substring(0, separator);
+        Codec codec;
+        try {
+            codec = Codec.valueOf(codecName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown build cache entry compression '" + spec + "', supported values are 'none', 'gzip[:<level>]' and 'lz4'.");
+        }
+        if (separator < 0) {
+            switch (codec) {
+                case NONE:
+                    return NONE;
+                case GZIP:
+                    return DEFAULT;
+                default:
+                    return new BuildCacheEntryCompression(codec, 0);
+            }
+        }
+        if (codec != Codec.GZIP) {
+            throw new IllegalArgumentException("Build cache entry compression '" + codecName + "' does not support a compression level.");
+        }
+        int level;
+        try {
+            level = Integer.parseInt(trimmed.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid build cache entry compression level in '" + spec + "'.");
+        }
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Build cache entry compression level for gzip must be between " + Deflater.BEST_SPEED + " and " + Deflater.BEST_COMPRESSION + ", but was " + level + ".");
+        }
+        return new BuildCacheEntryCompression(codec, level);
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    OutputStream compress(OutputStream output) throws IOException {
+        switch (codec) {
+            case NONE:
+                return output;
+            case GZIP:
+                return new LeveledGZIPOutputStream(output, level);
+            case LZ4:
+                return new FramedLZ4CompressorOutputStream(output);
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    static InputStream decompress(Codec codec, InputStream input) throws IOException {
+        switch (codec) {
+            case NONE:
+                return input;
+            case GZIP:
+                return new GZIPInputStream(input);
+            case LZ4:
+                return new FramedLZ4CompressorInputStream(input);
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    @Override
+    public String toString() {
+        String name = codec.name().toLowerCase(Locale.ROOT);
+        return codec == Codec.GZIP && level != Deflater.DEFAULT_COMPRESSION ? name + ":" + level : name;
+    }
+
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+        public LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+}
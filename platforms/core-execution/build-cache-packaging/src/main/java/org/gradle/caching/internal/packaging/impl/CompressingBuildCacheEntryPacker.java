@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Map;
+
+/**
+ * Compresses build cache entries with a configurable {@link BuildCacheEntryCompression}.
+ *
+ * <p>Gzip compressed entries are written as plain gzip streams, so they are identical to what {@link GZipBuildCacheEntryPacker} produces.
+ * Entries using any other codec are prefixed with a small header:</p>
+ *
+ * <pre>
+ *     magic (4 bytes) | format version (1 byte) | codec id (1 byte) | compressed payload
+ * </pre>
+ *
+ * <p>The magic never starts with the gzip magic number, so unpacking detects the format of an entry regardless of the configured codec.</p>
+ */
+public class CompressingBuildCacheEntryPacker implements BuildCacheEntryPacker {
+    private static final byte[] MAGIC = {'G', 'B', 'C', 'E'};
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = MAGIC.length + 2;
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    private final BuildCacheEntryPacker delegate;
+    private final BuildCacheEntryCompression compression;
+
+    public CompressingBuildCacheEntryPacker(BuildCacheEntryPacker delegate, BuildCacheEntryCompression compression) {
+        this.delegate = delegate;
+        this.compression = compression;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        try (OutputStream compressedOutput = compress(compression, output)) {
+            return delegate.pack(entity, snapshots, compressedOutput, writeOrigin);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        try (InputStream decompressedInput = decompress(input)) {
+            return delegate.unpack(entity, decompressedInput, readOrigin);
+        }
+    }
+
+    /**
+     * Writes the header for the given compression, if required, and returns a stream compressing the entry contents.
+     */
+    public static OutputStream compress(BuildCacheEntryCompression compression, OutputStream output) throws IOException {
+        if (compression.getCodec() != BuildCacheEntryCompression.Codec.GZIP) {
+            output.write(MAGIC);
+            output.write(FORMAT_VERSION);
+            output.write(compression.getCodec().getId());
+        }
+        return compression.compress(output);
+    }
+
+    /**
+     * Detects the compression of an entry and returns a stream of its decompressed contents.
+     */
+    public static InputStream decompress(InputStream input) throws IOException {
+        PushbackInputStream pushbackInput = new PushbackInputStream(input, HEADER_LENGTH);
+        BuildCacheEntryCompression.Codec codec = readCodec(pushbackInput);
+        return BuildCacheEntryCompression.decompress(codec, pushbackInput);
+    }
+
+    private static BuildCacheEntryCompression.Codec readCodec(PushbackInputStream input) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        int read = readFully(input, header);
+        if (read >= 2 && (header[0] & 0xff) == GZIP_MAGIC_1 && (header[1] & 0xff) == GZIP_MAGIC_2) {
+            input.unread(header, 0, read);
+            return BuildCacheEntryCompression.Codec.GZIP;
+        }
+        if (read < HEADER_LENGTH || !hasMagic(header)) {
+            throw new IOException("Build cache entry is neither gzip compressed nor has a recognized header.");
+        }
+        int version = header[MAGIC.length] & 0xff;
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported build cache entry format version: " + version);
+        }
+        return BuildCacheEntryCompression.Codec.forId(header[MAGIC.length + 1]);
+    }
+
+    private static boolean hasMagic(byte[] header) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readFully(InputStream input, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = input.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes the files of unpacked build cache entries on a pool of threads while the entry is still being read.
+ *
+ * <p>The content of each file is buffered in memory before it is handed to the pool.
+ * The total size of buffered content is limited by a memory budget: reading blocks when the budget is exhausted,
+ * and files that are too large to be buffered should be written by the reading thread directly.</p>
+ */
+public class ParallelUnpackExecutor implements Closeable {
+    private static final int MAX_BUFFERED_FILE_SIZE = 1024 * 1024;
+
+    private final ExecutorService executor;
+    private final Semaphore memoryBudget;
+    private final int maxBufferedFileSize;
+
+    public ParallelUnpackExecutor(ExecutorService executor, int memoryBudgetInBytes) {
+        if (memoryBudgetInBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget for unpacking build cache entries must be positive, but was " + memoryBudgetInBytes);
+        }
+        this.executor = executor;
+        this.memoryBudget = new Semaphore(memoryBudgetInBytes);
+        this.maxBufferedFileSize = Math.min(MAX_BUFFERED_FILE_SIZE, memoryBudgetInBytes);
+    }
+
+    /**
+     * Whether a file of the given size can be buffered and written asynchronously.
+     */
+    public boolean canBuffer(long size) {
+        return size <= maxBufferedFileSize;
+    }
+
+    /**
+     * Reads {@code size} bytes from the input and writes them asynchronously using the given action.
+     *
+     * Blocks until enough of the memory budget is available to buffer the content.
+     */
+    public <T> CompletableFuture<T> submit(InputStream input, int size, BufferedContentAction<T> action) throws IOException {
+        if (!canBuffer(size)) {
+            throw new IllegalArgumentException("Cannot buffer " + size + " bytes, maximum is " + maxBufferedFileSize);
+        }
+        try {
+            memoryBudget.acquire(size);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for memory to unpack build cache entry");
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            byte[] content = new byte[size];
+            IOUtils.readFully(input, content);
+            executor.execute(() -> {
+                try {
+                    result.complete(action.execute(content));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                } finally {
+                    memoryBudget.release(size);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            memoryBudget.release(size);
+            throw e;
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Awaits the given result, rethrowing its failure, if any.
+     */
+    @Nullable
+    public static <T> T await(CompletableFuture<T> result) throws IOException {
+        try {
+            return result.join();
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    public interface BufferedContentAction<T> {
+        T execute(byte[] content) throws IOException;
+    }
+}
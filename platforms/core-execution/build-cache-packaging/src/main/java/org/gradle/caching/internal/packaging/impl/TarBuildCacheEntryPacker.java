@@ -53,6 +53,7 @@
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -66,9 +67,13 @@
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -98,6 +103,8 @@ private interface UnixPermissions {
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
     private final BufferProvider bufferProvider;
+    @Nullable
+    private final ParallelUnpackExecutor parallelUnpackExecutor;
 
     public TarBuildCacheEntryPacker(
         TarPackerFileSystemSupport fileSystemSupport,
@@ -105,12 +112,27 @@ public TarBuildCacheEntryPacker(
         StreamHasher streamHasher,
         Interner<String> stringInterner,
         BufferProvider bufferProvider
+    ) {
+        this(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, bufferProvider, null);
+    }
+
+    /**
+     * Creates a packer that writes and hashes the files of unpacked directory trees on the given executor when it is not {@code null}.
+     */
+    public TarBuildCacheEntryPacker(
+        TarPackerFileSystemSupport fileSystemSupport,
+        FilePermissionAccess filePermissionAccess,
+        StreamHasher streamHasher,
+        Interner<String> stringInterner,
+        BufferProvider bufferProvider,
+        @Nullable ParallelUnpackExecutor parallelUnpackExecutor
     ) {
         this.fileSystemSupport = fileSystemSupport;
         this.filePermissionAccess = filePermissionAccess;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
         this.bufferProvider = bufferProvider;
+        this.parallelUnpackExecutor = parallelUnpackExecutor;
     }
 
     @Override
@@ -263,13 +285,20 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
         }
         chmodUnpackedFile(rootEntry, treeRoot);
 
+        if (parallelUnpackExecutor != null) {
+            return unpackDirectoryTreeInParallel(parallelUnpackExecutor, input, rootEntry, snapshots, entries, treeRoot, treeName);
+        }
         return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private RegularFileSnapshot unpackFile(InputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+        return unpackFile(input, entry.getMode(), file, fileName);
+    }
+
+    private RegularFileSnapshot unpackFile(InputStream input, int mode, File file, String fileName) throws IOException {
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
             HashCode hash = streamHasher.hashCopy(input, output);
-            chmodUnpackedFile(entry, file);
+            chmodUnpackedFile(mode, file);
             String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
             String internedFileName = stringInterner.intern(fileName);
             return new RegularFileSnapshot(internedAbsolutePath, internedFileName, hash, DefaultFileMetadata.file(output.getCount(), file.lastModified(), DIRECT));
@@ -313,6 +342,109 @@ private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArch
         return entry;
     }
 
+    /**
+     * Unpacks a directory tree while writing and hashing small files on the {@link ParallelUnpackExecutor}.
+     *
+     * The structure of the tree is recorded as it is read, and the snapshot is assembled in tar order once all files have been written.
+     */
+    @Nullable
+    private TarArchiveEntry unpackDirectoryTreeInParallel(ParallelUnpackExecutor executor, TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName) throws IOException {
+        RelativePathParser parser = new RelativePathParser(safeEntryName(rootEntry));
+
+        PendingDirectoryTree tree = new PendingDirectoryTree();
+        tree.enterDirectory(stringInterner.intern(treeRoot.getAbsolutePath()), stringInterner.intern(treeRoot.getName()));
+
+        TarArchiveEntry entry;
+        try {
+            while ((entry = input.getNextTarEntry()) != null) {
+                boolean isDir = entry.isDirectory();
+                boolean outsideOfRoot = parser.nextPath(safeEntryName(entry), isDir, tree::leaveDirectory);
+                if (outsideOfRoot) {
+                    break;
+                }
+                entries.incrementAndGet();
+
+                File file = new File(treeRoot, parser.getRelativePath());
+                if (isDir) {
+                    FileUtils.forceMkdir(file);
+                    chmodUnpackedFile(entry, file);
+                    String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+                    String internedName = stringInterner.intern(parser.getName());
+                    tree.enterDirectory(internedAbsolutePath, internedName);
+                } else if (executor.canBuffer(entry.getSize())) {
+                    int mode = entry.getMode();
+                    String fileName = parser.getName();
+                    tree.visitFile(executor.submit(input, (int) entry.getSize(), content -> unpackFile(new ByteArrayInputStream(content), mode, file, fileName)));
+                } else {
+                    tree.visitFile(CompletableFuture.completedFuture(unpackFile(input, entry, file, parser.getName())));
+                }
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            tree.awaitFilesQuietly();
+            throw e;
+        }
+
+        parser.exitToRoot(tree::leaveDirectory);
+        tree.leaveDirectory();
+
+        snapshots.put(treeName, tree.build());
+        return entry;
+    }
+
+    /**
+     * The structure of a directory tree, recorded in depth-first order while its files are still being written.
+     */
+    private static class PendingDirectoryTree {
+        private final List<Consumer<DirectorySnapshotBuilder>> steps = new ArrayList<>();
+        private final List<CompletableFuture<RegularFileSnapshot>> pendingFiles = new ArrayList<>();
+
+        public void enterDirectory(String absolutePath, String name) {
+            steps.add(builder -> builder.enterDirectory(DIRECT, absolutePath, name, INCLUDE_EMPTY_DIRS));
+        }
+
+        public void visitFile(CompletableFuture<RegularFileSnapshot> fileSnapshot) {
+            pendingFiles.add(fileSnapshot);
+            steps.add(builder -> builder.visitLeafElement(fileSnapshot.join()));
+        }
+
+        public void leaveDirectory() {
+            steps.add(DirectorySnapshotBuilder::leaveDirectory);
+        }
+
+        public void awaitFilesQuietly() {
+            for (CompletableFuture<RegularFileSnapshot> pendingFile : pendingFiles) {
+                try {
+                    pendingFile.join();
+                } catch (RuntimeException ignored) {
+                    // The original failure is more relevant
+                }
+            }
+        }
+
+        @Nullable
+        public FileSystemLocationSnapshot build() throws IOException {
+            IOException failure = null;
+            for (CompletableFuture<RegularFileSnapshot> pendingFile : pendingFiles) {
+                try {
+                    ParallelUnpackExecutor.await(pendingFile);
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                } catch (RuntimeException e) {
+                    awaitFilesQuietly();
+                    throw e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+            steps.forEach(step -> step.accept(builder));
+            return builder.getResult();
+        }
+    }
+
     /**
      * Returns a safe name for the name of a tar archive entry.
      *
@@ -323,7 +455,11 @@ private static String safeEntryName(TarArchiveEntry tarEntry) {
     }
 
     private void chmodUnpackedFile(TarArchiveEntry entry, File file) {
-        filePermissionAccess.chmod(file, entry.getMode() & UnixPermissions.PERM_MASK);
+        chmodUnpackedFile(entry.getMode(), file);
+    }
+
+    private void chmodUnpackedFile(int mode, File file) {
+        filePermissionAccess.chmod(file, mode & UnixPermissions.PERM_MASK);
     }
 
     private static String escape(String name) {
@@ -44,14 +44,23 @@ abstract class AbstractTarBuildCacheEntryPackerSpec extends Specification {
     def fileSystemSupport = new DefaultTarPackerFileSystemSupport(deleter)
     def streamHasher = new DefaultStreamHasher()
     def stringInterner = new StringInterner()
+    def parallelUnpackExecutor = createParallelUnpackExecutor()
     def packer = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, Stub(BufferProvider) {
         getBuffer() >> new byte[4096]
-    })
+    }, parallelUnpackExecutor)
     def fileSystemAccess = TestFiles.fileSystemAccess()
 
     abstract protected FilePermissionAccess createFilePermissionAccess()
     abstract protected Deleter createDeleter()
 
+    protected ParallelUnpackExecutor createParallelUnpackExecutor() {
+        null
+    }
+
+    def cleanup() {
+        parallelUnpackExecutor?.close()
+    }
+
     def pack(OutputStream output, OriginWriter writeOrigin = this.writeOrigin, TreeDefinition... treeDefs) {
         Map<String, FileSystemSnapshot> snapshots = treeDefs.collectEntries { treeDef ->
             FileSystemSnapshot result = FileSystemSnapshot.EMPTY
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.origin.OriginReader
+import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import spock.lang.Specification
+
+import java.util.zip.GZIPOutputStream
+
+class CompressingBuildCacheEntryPackerTest extends Specification {
+    def entity = Stub(CacheableEntity)
+    def payload = ("payload " * 1000).bytes
+    def unpacked = new ByteArrayOutputStream()
+    def delegate = new BuildCacheEntryPacker() {
+        @Override
+        BuildCacheEntryPacker.PackResult pack(CacheableEntity entity, Map snapshots, OutputStream output, OriginWriter writeOrigin) {
+            output.write(payload)
+            return new BuildCacheEntryPacker.PackResult(1)
+        }
+
+        @Override
+        BuildCacheEntryPacker.UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) {
+            unpacked << input
+            return new BuildCacheEntryPacker.UnpackResult(null, 1, [:])
+        }
+    }
+
+    def "can round-trip entry compressed with #spec"() {
+        def packer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.parse(spec))
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(entity, [:], output, Stub(OriginWriter))
+        packer.unpack(entity, new ByteArrayInputStream(output.toByteArray()), Stub(OriginReader))
+
+        then:
+        unpacked.toByteArray() == payload
+
+        where:
+        spec << ["gzip", "gzip:1", "gzip:9", "lz4", "none"]
+    }
+
+    def "detects codec regardless of configured compression"() {
+        def writer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.parse(written))
+        def reader = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.parse(configured))
+        def output = new ByteArrayOutputStream()
+
+        when:
+        writer.pack(entity, [:], output, Stub(OriginWriter))
+        reader.unpack(entity, new ByteArrayInputStream(output.toByteArray()), Stub(OriginReader))
+
+        then:
+        unpacked.toByteArray() == payload
+
+        where:
+        written | configured
+        "lz4"   | "gzip"
+        "none"  | "lz4"
+        "gzip"  | "none"
+    }
+
+    def "writes plain gzip stream for gzip compression"() {
+        def packer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.DEFAULT)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(entity, [:], output, Stub(OriginWriter))
+
+        then:
+        def bytes = output.toByteArray()
+        (bytes[0] & 0xff) == 0x1f
+        (bytes[1] & 0xff) == 0x8b
+    }
+
+    def "can unpack entry created by gzip packer"() {
+        def output = new ByteArrayOutputStream()
+        new GZIPOutputStream(output).withStream { it.write(payload) }
+        def packer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.parse("lz4"))
+
+        when:
+        packer.unpack(entity, new ByteArrayInputStream(output.toByteArray()), Stub(OriginReader))
+
+        then:
+        unpacked.toByteArray() == payload
+    }
+
+    def "fails on unrecognized entry"() {
+        def packer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.DEFAULT)
+
+        when:
+        packer.unpack(entity, new ByteArrayInputStream("garbage".bytes), Stub(OriginReader))
+
+        then:
+        def ex = thrown(IOException)
+        ex.message == "Build cache entry is neither gzip compressed nor has a recognized header."
+    }
+
+    def "rejects invalid compression #spec"() {
+        when:
+        BuildCacheEntryCompression.parse(spec)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        spec << ["zip", "gzip:0", "gzip:10", "gzip:fast", "lz4:3"]
+    }
+}
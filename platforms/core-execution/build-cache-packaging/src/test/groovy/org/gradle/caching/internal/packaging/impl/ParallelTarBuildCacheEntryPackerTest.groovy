@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemSnapshot
+import org.gradle.internal.snapshot.SnapshotUtil
+
+import java.util.concurrent.Executors
+
+import static org.gradle.internal.file.TreeType.DIRECTORY
+
+class ParallelTarBuildCacheEntryPackerTest extends TarBuildCacheEntryPackerTest {
+    @Override
+    protected ParallelUnpackExecutor createParallelUnpackExecutor() {
+        // Use a small budget so that unpacking has to wait for buffered content to be written
+        new ParallelUnpackExecutor(Executors.newFixedThreadPool(4), 16 * 1024)
+    }
+
+    def "unpacks the same snapshot as when unpacking sequentially"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        100.times { dirIndex ->
+            def dir = sourceOutputDir.file("dir-$dirIndex").createDir()
+            10.times { fileIndex ->
+                dir.file("file-${fileIndex}.txt") << ("content-$dirIndex-$fileIndex\n" * (fileIndex * 100))
+            }
+        }
+        sourceOutputDir.file("large.bin").bytes = new byte[64 * 1024]
+        def sourceSnapshot = fileSystemAccess.read(sourceOutputDir.absolutePath)
+        def targetOutputDir = temporaryFolder.file("target")
+        def output = new ByteArrayOutputStream()
+
+        when:
+        pack output, prop(DIRECTORY, sourceOutputDir)
+        def result = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, targetOutputDir)
+
+        then:
+        def unpackedSnapshot = result.snapshots["test"] as DirectorySnapshot
+        unpackedSnapshot.hash == (sourceSnapshot as DirectorySnapshot).hash
+        relativePathsAndHashes(unpackedSnapshot) == relativePathsAndHashes(sourceSnapshot)
+        targetOutputDir.file("dir-42/file-7.txt").text == sourceOutputDir.file("dir-42/file-7.txt").text
+    }
+
+    private static Map<String, String> relativePathsAndHashes(FileSystemSnapshot snapshot) {
+        SnapshotUtil.indexByRelativePath(snapshot).collectEntries { path, location -> [(path): location.hash.toString()] }
+    }
+}
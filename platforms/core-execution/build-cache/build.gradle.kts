@@ -10,6 +10,7 @@ dependencies {
     api(project(":base-services"))
     api(project(":build-cache-base"))
     api(project(":build-cache-packaging"))
+    api(project(":build-option"))
     api(project(":build-operations"))
     api(project(":core-api"))
     api(project(":enterprise-operations"))
@@ -23,6 +24,7 @@ dependencies {
 
     api(libs.jsr305)
 
+    implementation(libs.commonsCompress)
     implementation(libs.commonsIo)
     api(libs.guava)
     implementation(libs.h2Database) {
@@ -17,6 +17,11 @@
 package org.gradle.caching.internal.tasks;
 
 import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
@@ -33,6 +38,9 @@
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 @Fork(1)
 @Warmup(iterations = 5)
@@ -108,4 +116,60 @@ public void java7exists(Blackhole blackhole) {
         Path path = missing ? missingPath : existingPath;
         blackhole.consume(Files.exists(path));
     }
+
+    @Benchmark
+    public void snapshotLargeTree(LargeTree tree, Blackhole blackhole) {
+        blackhole.consume(tree.snapshotter.snapshot(tree.rootPath.toString(), null, Collections.emptyMap(), blackhole::consume));
+    }
+
+    @State(Scope.Benchmark)
+    public static class LargeTree {
+        private static final int DIRECTORIES_PER_LEVEL = 10;
+        private static final int DEPTH = 3;
+        private static final int FILES_PER_DIRECTORY = 10;
+        private static final int FILE_SIZE = 4096;
+
+        Path rootPath;
+        ForkJoinPool forkJoinPool;
+        DirectorySnapshotter snapshotter;
+
+        @Param({"true", "false"})
+        boolean parallel;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            this.rootPath = Files.createTempDirectory("snapshot-walking");
+            createTree(rootPath, DEPTH, new Random(1234L));
+            this.forkJoinPool = parallel ? new ForkJoinPool() : null;
+            this.snapshotter = new DirectorySnapshotter(
+                new DefaultFileHasher(new DefaultStreamHasher()),
+                new StringInterner(),
+                Collections.emptyList(),
+                new DirectorySnapshotterStatistics.Collector(),
+                forkJoinPool
+            );
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            if (forkJoinPool != null) {
+                forkJoinPool.shutdown();
+            }
+            FileUtils.forceDelete(rootPath.toFile());
+        }
+
+        private static void createTree(Path dir, int depth, Random random) throws IOException {
+            Files.createDirectories(dir);
+            byte[] content = new byte[FILE_SIZE];
+            for (int i = 0; i < FILES_PER_DIRECTORY; i++) {
+                random.nextBytes(content);
+                Files.write(dir.resolve("file" + i + ".bin"), content);
+            }
+            if (depth > 0) {
+                for (int i = 0; i < DIRECTORIES_PER_LEVEL; i++) {
+                    createTree(dir.resolve("dir" + i), depth - 1, random);
+                }
+            }
+        }
+    }
 }
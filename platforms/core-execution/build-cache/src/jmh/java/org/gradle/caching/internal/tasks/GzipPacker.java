@@ -20,14 +20,21 @@
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 public class GzipPacker implements Packer {
     private final Packer delegate;
+    private final int level;
 
     public GzipPacker(Packer delegate) {
+        this(delegate, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public GzipPacker(Packer delegate, int level) {
         this.delegate = delegate;
+        this.level = level;
     }
 
     @Override
@@ -35,7 +42,11 @@ public void pack(List<DataSource> inputs, DataTarget output) throws IOException
         delegate.pack(inputs, new DelegatingDataTarget(output) {
             @Override
             public OutputStream openOutput() throws IOException {
-                return new GZIPOutputStream(super.openOutput());
+                return new GZIPOutputStream(super.openOutput()) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
             }
         });
     }
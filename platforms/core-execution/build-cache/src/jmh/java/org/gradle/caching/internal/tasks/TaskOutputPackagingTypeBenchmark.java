@@ -19,7 +19,7 @@
 import org.openjdk.jmh.annotations.Param;
 
 public class TaskOutputPackagingTypeBenchmark extends AbstractTaskOutputPackagingBenchmark {
-    @Param({"tar.snappy", "tar.snappy.commons", "tar.snappy.dain"})
+    @Param({"tar.snappy", "tar.snappy.commons", "tar.snappy.dain", "tar.gz", "tar.gz.fast", "tar.lz4", "tar"})
     String packer;
 
     @Param({"direct", "buffered"})
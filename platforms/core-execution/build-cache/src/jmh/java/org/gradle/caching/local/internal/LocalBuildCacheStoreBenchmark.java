@@ -0,0 +1,198 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.StatefulNextGenBuildCacheService;
+import org.gradle.caching.internal.controller.service.StoreTarget;
+import org.gradle.internal.time.Time;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the local build cache stores: the H2 based store, the log-structured store, and a file per entry like the directory build cache.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LocalBuildCacheStoreBenchmark {
+    private static final int PRELOADED_ENTRIES = 1000;
+
+    @Param({"h2", "log", "directory"})
+    String store;
+
+    @Param({"1024", "65536", "1048576"})
+    int entrySize;
+
+    Path tempDir;
+    File content;
+    StatefulNextGenBuildCacheService service;
+    AtomicInteger counter;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        tempDir = Files.createTempDirectory("local-build-cache-store-benchmark");
+        content = tempDir.resolve("content").toFile();
+        byte[] bytes = new byte[entrySize];
+        new Random(1234).nextBytes(bytes);
+        FileUtils.writeByteArrayToFile(content, bytes);
+
+        Path storeDir = Files.createDirectory(tempDir.resolve("store"));
+        switch (store) {
+            case "h2":
+                service = new H2BuildCacheService(storeDir, 20, 7, Time.clock());
+                break;
+            case "log":
+                service = new LogStructuredBuildCacheService(storeDir, 7, Time.clock());
+                break;
+            case "directory":
+                service = new FilePerEntryService(storeDir);
+                break;
+            default:
+                throw new IllegalArgumentException(store);
+        }
+        service.open();
+        for (int i = 0; i < PRELOADED_ENTRIES; i++) {
+            service.store(key("preloaded-" + i), new StoreTarget(content));
+        }
+        counter = new AtomicInteger();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        service.close();
+        FileUtils.forceDelete(tempDir.toFile());
+    }
+
+    @Benchmark
+    public void store() {
+        service.store(key("stored-" + counter.incrementAndGet()), new StoreTarget(content));
+    }
+
+    @Benchmark
+    public void load(Blackhole blackhole) {
+        BuildCacheKey key = key("preloaded-" + ThreadLocalRandom.current().nextInt(PRELOADED_ENTRIES));
+        service.load(key, input -> blackhole.consume(IOUtils.consume(input)));
+    }
+
+    @Benchmark
+    public void loadMissing(Blackhole blackhole) {
+        blackhole.consume(service.load(key("missing-" + counter.incrementAndGet()), input -> {
+            throw new AssertionError();
+        }));
+    }
+
+    private static BuildCacheKey key(String name) {
+        String hashCode = UUID.nameUUIDFromBytes(name.getBytes()).toString().replace("-", "");
+        return new BuildCacheKey() {
+            @Override
+            public String getHashCode() {
+                return hashCode;
+            }
+
+            @Override
+            public byte[] toByteArray() {
+                return hashCode.getBytes();
+            }
+
+            @Override
+            public String getDisplayName() {
+                return hashCode;
+            }
+        };
+    }
+
+    /**
+     * Stores each entry in its own file, written to a temporary file first and then moved in place, like {@link DirectoryBuildCache}.
+     */
+    private static class FilePerEntryService implements StatefulNextGenBuildCacheService {
+        private final Path dir;
+
+        FilePerEntryService(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public boolean contains(BuildCacheKey key) {
+            return Files.exists(dir.resolve(key.getHashCode()));
+        }
+
+        @Override
+        public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) {
+            File file = dir.resolve(key.getHashCode()).toFile();
+            if (!file.isFile()) {
+                return false;
+            }
+            try (InputStream input = new FileInputStream(file)) {
+                reader.readFrom(input);
+                return true;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void store(BuildCacheKey key, NextGenWriter writer) {
+            Path tempFile = dir.resolve(key.getHashCode() + BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX);
+            try (InputStream input = writer.openStream()) {
+                Files.copy(input, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tempFile, dir.resolve(key.getHashCode()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void cleanup() {
+        }
+    }
+}
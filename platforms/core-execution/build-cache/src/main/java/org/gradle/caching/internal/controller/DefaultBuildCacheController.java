@@ -46,6 +46,7 @@
 import org.gradle.caching.local.internal.BuildCacheTempFileStore;
 import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.file.TreeType;
@@ -58,8 +59,12 @@
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.util.internal.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -68,10 +73,18 @@
 import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultBuildCacheController.class);
+
+    private static final int MAX_PENDING_ASYNC_STORES = 32;
+    private static final int MAX_ASYNC_STORE_ATTEMPTS = 3;
+    private static final long ASYNC_STORE_RETRY_DELAY_MILLIS = 500;
+
     @VisibleForTesting
     final RemoteBuildCacheServiceHandle remote;
 
@@ -81,6 +94,9 @@ public class DefaultBuildCacheController implements BuildCacheController {
     private final BuildCacheTempFileStore tmp;
     private final boolean emitDebugLogging;
     private final PackOperationExecutor packExecutor;
+    @Nullable
+    private final ManagedExecutor asyncStoreExecutor;
+    private final Semaphore pendingAsyncStores = new Semaphore(MAX_PENDING_ASYNC_STORES);
 
     private boolean closed;
 
@@ -95,6 +111,22 @@ public DefaultBuildCacheController(
         BuildCacheEntryPacker packer,
         OriginMetadataFactory originMetadataFactory,
         StringInterner stringInterner
+    ) {
+        this(config, buildOperationExecutor, buildOperationProgressEventEmitter, temporaryFileProvider, logStackTraces, emitDebugLogging, disableRemoteOnError, packer, originMetadataFactory, stringInterner, null);
+    }
+
+    public DefaultBuildCacheController(
+        BuildCacheServicesConfiguration config,
+        BuildOperationExecutor buildOperationExecutor,
+        BuildOperationProgressEventEmitter buildOperationProgressEventEmitter,
+        TemporaryFileProvider temporaryFileProvider,
+        boolean logStackTraces,
+        boolean emitDebugLogging,
+        boolean disableRemoteOnError,
+        BuildCacheEntryPacker packer,
+        OriginMetadataFactory originMetadataFactory,
+        StringInterner stringInterner,
+        @Nullable ManagedExecutor asyncStoreExecutor
     ) {
         this.emitDebugLogging = emitDebugLogging;
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush(), buildOperationExecutor);
@@ -106,6 +138,7 @@ public DefaultBuildCacheController(
             originMetadataFactory,
             stringInterner
         );
+        this.asyncStoreExecutor = asyncStoreExecutor;
     }
 
     @Override
@@ -160,6 +193,10 @@ public void store(BuildCacheKey key, CacheableEntity entity, Map<String, FileSys
         if (!local.canStore() && !remote.canStore()) {
             return;
         }
+        if (asyncStoreExecutor != null && remote.canStore()) {
+            storeAsync(key, entity, snapshots, executionTime, asyncStoreExecutor);
+            return;
+        }
         tmp.withTempFile(((DefaultBuildCacheKey) key).getHashCodeInternal(), file -> {
             packExecutor.pack(file, key, entity, snapshots, executionTime);
             remote.maybeStore(key, file);
@@ -167,6 +204,60 @@ public void store(BuildCacheKey key, CacheableEntity entity, Map<String, FileSys
         });
     }
 
+    /**
+     * Packs the entry on the calling thread, and stores it in the remote and then the local cache in the background.
+     *
+     * Blocks while the maximum number of stores is pending, so that slow uploads cannot pile up an unbounded number of packed entries.
+     */
+    private void storeAsync(BuildCacheKey key, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime, ManagedExecutor executor) {
+        pendingAsyncStores.acquireUninterruptibly();
+        File pendingFile;
+        try {
+            pendingFile = packForAsyncStore(key, entity, snapshots, executionTime);
+        } catch (RuntimeException e) {
+            pendingAsyncStores.release();
+            throw e;
+        }
+        try {
+            // Runs without a parent operation, as the operation requesting the store usually completes before the store does
+            executor.execute(() -> completeAsyncStore(key, pendingFile));
+        } catch (RejectedExecutionException e) {
+            // The build is finishing, store on the calling thread instead
+            completeAsyncStore(key, pendingFile);
+        }
+    }
+
+    private File packForAsyncStore(BuildCacheKey key, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
+        AtomicReference<File> pendingFile = new AtomicReference<>();
+        tmp.withTempFile(((DefaultBuildCacheKey) key).getHashCodeInternal(), file -> {
+            packExecutor.pack(file, key, entity, snapshots, executionTime);
+            // The temp file is deleted when this action completes, keep the packed entry next to it until it is stored
+            File pending = new File(file.getParentFile(), "pending-" + file.getName());
+            GFileUtils.moveExistingFile(file, pending);
+            pendingFile.set(pending);
+        });
+        return pendingFile.get();
+    }
+
+    private void completeAsyncStore(BuildCacheKey key, File file) {
+        try {
+            int attempt = 1;
+            while (!remote.maybeStore(key, file) && remote.canStore() && attempt < MAX_ASYNC_STORE_ATTEMPTS) {
+                Thread.sleep(ASYNC_STORE_RETRY_DELAY_MILLIS * attempt);
+                attempt++;
+            }
+            local.maybeStore(key, file);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Nothing is waiting for the result, so report the failure here
+            LOGGER.warn("Could not store entry {} in the build cache: {}", key.getDisplayName(), e.getMessage(), e);
+        } finally {
+            GFileUtils.deleteQuietly(file);
+            pendingAsyncStores.release();
+        }
+    }
+
     @Override
     public void close() throws IOException {
         if (!closed) {
@@ -174,6 +265,14 @@ public void close() throws IOException {
             Closer closer = Closer.create();
             closer.register(local);
             closer.register(remote);
+            // Registered last, so that background work is finished before the caches it uses are closed
+            Closeable finishBackgroundWork = () -> {
+                if (asyncStoreExecutor != null) {
+                    // Drains the pending stores
+                    asyncStoreExecutor.stop();
+                }
+            };
+            closer.register(finishBackgroundWork);
             closer.close();
         }
     }
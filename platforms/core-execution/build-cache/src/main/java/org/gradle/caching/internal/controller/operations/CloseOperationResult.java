@@ -0,0 +1,37 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.internal.controller.operations;
+
+import com.google.common.collect.ImmutableSortedMap;
+import org.gradle.caching.internal.operations.BuildCacheRemoteCloseBuildOperationType;
+
+import java.util.Map;
+
+public class CloseOperationResult implements BuildCacheRemoteCloseBuildOperationType.Result {
+
+    private final Map<String, Long> statistics;
+
+    public CloseOperationResult(Map<String, Long> statistics) {
+        this.statistics = ImmutableSortedMap.copyOf(statistics);
+    }
+
+    @Override
+    public Map<String, Long> getStatistics() {
+        return statistics;
+    }
+}
@@ -62,7 +62,7 @@ public String describeFailure(BuildCacheKey key, BuildCacheServiceRole role) {
     private final boolean logStackTraces;
     private final boolean disableOnError;
 
-    private boolean disabled;
+    private volatile boolean disabled;
 
     public BaseRemoteBuildCacheServiceHandle(
         BuildCacheService service,
@@ -19,6 +19,9 @@
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.StatisticsReportingBuildCacheService;
+import org.gradle.caching.internal.controller.operations.CloseOperationDetails;
+import org.gradle.caching.internal.controller.operations.CloseOperationResult;
 import org.gradle.caching.internal.controller.operations.LoadOperationDetails;
 import org.gradle.caching.internal.controller.operations.LoadOperationHitResult;
 import org.gradle.caching.internal.controller.operations.LoadOperationMissResult;
@@ -33,12 +36,14 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 
 public class OpFiringRemoteBuildCacheServiceHandle extends BaseRemoteBuildCacheServiceHandle {
 
     private final String buildPath;
     private final BuildOperationExecutor buildOperationExecutor;
     private final BuildOperationProgressEventEmitter buildOperationProgressEventEmitter;
+    private volatile boolean used;
 
     public OpFiringRemoteBuildCacheServiceHandle(
         String buildPath,
@@ -58,6 +63,7 @@ public OpFiringRemoteBuildCacheServiceHandle(
 
     @Override
     protected void loadInner(final String description, final BuildCacheKey key, final LoadTarget loadTarget) {
+        used = true;
         buildOperationExecutor.run(new RunnableBuildOperation() {
             @Override
             public void run(BuildOperationContext context) {
@@ -80,6 +86,7 @@ public BuildOperationDescriptor.Builder description() {
 
     @Override
     protected void storeInner(final String description, final BuildCacheKey key, final StoreTarget storeTarget) {
+        used = true;
         buildOperationExecutor.run(new RunnableBuildOperation() {
             @Override
             public void run(BuildOperationContext context) {
@@ -96,6 +103,30 @@ public BuildOperationDescriptor.Builder description() {
         });
     }
 
+    @Override
+    public void close() {
+        if (!used) {
+            // Nothing to report for a remote cache that was not used during the build
+            super.close();
+            return;
+        }
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                OpFiringRemoteBuildCacheServiceHandle.super.close();
+                context.setResult(new CloseOperationResult(service instanceof StatisticsReportingBuildCacheService
+                    ? ((StatisticsReportingBuildCacheService) service).getStatistics()
+                    : Collections.emptyMap()));
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Close remote build cache")
+                    .details(new CloseOperationDetails(buildPath));
+            }
+        });
+    }
+
     @Override
     protected void onCacheDisabledDueToFailure(BuildCacheKey key, Operation operation, Throwable failure) {
         BuildCacheRemoteDisabledDueToFailureProgressDetails.BuildCacheOperationType operationType = convertToBuildOperationType(operation);
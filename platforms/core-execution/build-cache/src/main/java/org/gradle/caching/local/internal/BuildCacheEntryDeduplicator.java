@@ -0,0 +1,350 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.PrimitiveHasher;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Splits build cache entries into a manifest and content-addressed blobs, and assembles them again.
+ *
+ * <p>A manifest is a copy of the entry's tar archive in which the content of every file larger than
+ * {@value #INLINE_CONTENT_LIMIT} bytes is replaced by a reference to a blob named by the SHA-256 hash of the content.
+ * Identical file contents stored by different entries are kept on disk only once.</p>
+ */
+public class BuildCacheEntryDeduplicator {
+    static final int INLINE_CONTENT_LIMIT = 4096;
+    private static final String BLOB_HASH_HEADER = "GRADLE.blob.hash";
+    private static final String BLOB_SIZE_HEADER = "GRADLE.blob.size";
+    private static final String ENCODING = StandardCharsets.UTF_8.name();
+
+    private final File blobsDir;
+
+    public BuildCacheEntryDeduplicator(File blobsDir) {
+        this.blobsDir = blobsDir;
+    }
+
+    public File getBlobsDir() {
+        return blobsDir;
+    }
+
+    /**
+     * Writes the manifest for the given entry, writing the contents of large files to temporary blob files.
+     *
+     * The blobs are only added to the cache by {@link SplitEntry#commit()}, so that they cannot be removed by a cleanup before the manifest referencing them is stored.
+     */
+    public SplitEntry split(File entry, File manifest) throws IOException {
+        SplitEntry splitEntry = new SplitEntry();
+        byte[] buffer = new byte[64 * 1024];
+        try (
+            TarArchiveInputStream input = new TarArchiveInputStream(CompressingBuildCacheEntryPacker.decompress(new BufferedInputStream(new FileInputStream(entry))), ENCODING);
+            TarArchiveOutputStream output = createTarOutput(CompressingBuildCacheEntryPacker.compress(BuildCacheEntryCompression.DEFAULT, new FileOutputStream(manifest)))
+        ) {
+            TarArchiveEntry tarEntry;
+            while ((tarEntry = input.getNextTarEntry()) != null) {
+                TarArchiveEntry manifestEntry = copyOf(tarEntry);
+                if (tarEntry.isDirectory() || tarEntry.getSize() <= INLINE_CONTENT_LIMIT) {
+                    manifestEntry.setSize(tarEntry.getSize());
+                    output.putArchiveEntry(manifestEntry);
+                    IOUtils.copyLarge(input, output, buffer);
+                } else {
+                    HashCode blobHash = splitEntry.writeBlob(input, buffer);
+                    manifestEntry.setSize(0);
+                    manifestEntry.addPaxHeader(BLOB_HASH_HEADER, blobHash.toString());
+                    manifestEntry.addPaxHeader(BLOB_SIZE_HEADER, String.valueOf(tarEntry.getSize()));
+                    output.putArchiveEntry(manifestEntry);
+                }
+                output.closeArchiveEntry();
+            }
+        } catch (IOException | RuntimeException e) {
+            splitEntry.discard();
+            throw e;
+        }
+        return splitEntry;
+    }
+
+    /**
+     * Opens the entry described by the given manifest as an uncompressed archive.
+     *
+     * The archive is assembled while it is read, so neither the manifest nor the blobs are read before they are needed.
+     * The blobs must not be removed until the returned stream is closed.
+     */
+    public InputStream openEntry(File manifest) throws IOException {
+        TarArchiveInputStream manifestInput = openManifest(manifest);
+        try {
+            return new AssemblingInputStream(manifestInput);
+        } catch (IOException | RuntimeException e) {
+            manifestInput.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of references to each blob from the given manifests.
+     */
+    public Map<String, Integer> countBlobReferences(Iterable<File> manifests) throws IOException {
+        Map<String, Integer> referenceCounts = new HashMap<>();
+        for (File manifest : manifests) {
+            countBlobReferences(manifest, referenceCounts);
+        }
+        return referenceCounts;
+    }
+
+    private static void countBlobReferences(File manifest, Map<String, Integer> referenceCounts) throws IOException {
+        try (TarArchiveInputStream input = openManifest(manifest)) {
+            TarArchiveEntry manifestEntry;
+            while ((manifestEntry = input.getNextTarEntry()) != null) {
+                String blobHash = manifestEntry.getExtraPaxHeader(BLOB_HASH_HEADER);
+                if (blobHash != null) {
+                    referenceCounts.merge(blobHash, 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the hash of the content stored in the given blob file, or {@code null} if the file is not a blob.
+     */
+    @Nullable
+    public static String getBlobHash(File blobFile) {
+        String name = blobFile.getName();
+        File parent = blobFile.getParentFile();
+        if (parent == null || !name.startsWith(parent.getName()) || name.endsWith(BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX)) {
+            return null;
+        }
+        return name;
+    }
+
+    private File getBlobFile(String hash) {
+        return new File(new File(blobsDir, hash.substring(0, 2)), hash);
+    }
+
+    private static TarArchiveInputStream openManifest(File manifest) throws IOException {
+        return new TarArchiveInputStream(CompressingBuildCacheEntryPacker.decompress(new BufferedInputStream(new FileInputStream(manifest))), ENCODING);
+    }
+
+    private static TarArchiveOutputStream createTarOutput(OutputStream output) {
+        return configure(new TarArchiveOutputStream(new BufferedOutputStream(output), ENCODING));
+    }
+
+    private static TarArchiveOutputStream configure(TarArchiveOutputStream tarOutput) {
+        tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tarOutput.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        tarOutput.setAddPaxHeadersForNonAsciiNames(true);
+        return tarOutput;
+    }
+
+    private static TarArchiveEntry copyOf(TarArchiveEntry entry) {
+        TarArchiveEntry copy = new TarArchiveEntry(entry.getName(), true);
+        copy.setMode(entry.getMode());
+        return copy;
+    }
+
+    /**
+     * The blobs of an entry which has been split, but not been added to the cache yet.
+     */
+    public class SplitEntry {
+        private final Map<String, File> pendingBlobs = new LinkedHashMap<>();
+
+        private HashCode writeBlob(InputStream input, byte[] buffer) throws IOException {
+            FileUtils.forceMkdir(blobsDir);
+            File tempFile = new File(blobsDir, UUID.randomUUID() + BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX);
+            try {
+                PrimitiveHasher hasher = Hashing.sha256().newPrimitiveHasher();
+                try (OutputStream output = new FileOutputStream(tempFile)) {
+                    int read;
+                    while ((read = input.read(buffer)) >= 0) {
+                        hasher.putBytes(buffer, 0, read);
+                        output.write(buffer, 0, read);
+                    }
+                }
+                HashCode hash = hasher.hash();
+                if (pendingBlobs.putIfAbsent(hash.toString(), tempFile) != null) {
+                    FileUtils.deleteQuietly(tempFile);
+                }
+                return hash;
+            } catch (IOException | RuntimeException e) {
+                FileUtils.deleteQuietly(tempFile);
+                throw e;
+            }
+        }
+
+        /**
+         * Moves the blobs which are not in the cache yet into place. Needs to be called while holding the cache lock.
+         */
+        public void commit() throws IOException {
+            for (Iterator<Map.Entry<String, File>> iterator = pendingBlobs.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<String, File> pendingBlob = iterator.next();
+                File blob = getBlobFile(pendingBlob.getKey());
+                if (!blob.isFile()) {
+                    FileUtils.forceMkdirParent(blob);
+                    Files.move(pendingBlob.getValue().toPath(), blob.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    iterator.remove();
+                }
+            }
+            discard();
+        }
+
+        /**
+         * Deletes the blobs which have not been moved into the cache.
+         */
+        public void discard() {
+            pendingBlobs.values().forEach(FileUtils::deleteQuietly);
+            pendingBlobs.clear();
+        }
+    }
+
+    /**
+     * Produces the archive described by a manifest one chunk at a time.
+     */
+    private class AssemblingInputStream extends InputStream {
+        private final TarArchiveInputStream manifestInput;
+        private final ChunkBuffer chunk = new ChunkBuffer();
+        private final TarArchiveOutputStream output;
+        private final byte[] buffer = new byte[64 * 1024];
+        private final byte[] singleByte = new byte[1];
+        @Nullable
+        private InputStream currentContent;
+        private boolean currentContentIsBlob;
+        private boolean finished;
+        private int position;
+
+        AssemblingInputStream(TarArchiveInputStream manifestInput) throws IOException {
+            this.manifestInput = manifestInput;
+            // The header of the uncompressed entry is the first chunk
+            this.output = configure(new TarArchiveOutputStream(CompressingBuildCacheEntryPacker.compress(BuildCacheEntryCompression.NONE, chunk), ENCODING));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = read(singleByte, 0, 1);
+            return read < 0 ? -1 : singleByte[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (position == chunk.size()) {
+                chunk.reset();
+                position = 0;
+                if (!writeNextChunk()) {
+                    return -1;
+                }
+            }
+            int read = Math.min(length, chunk.size() - position);
+            System.arraycopy(chunk.bytes(), position, bytes, offset, read);
+            position += read;
+            return read;
+        }
+
+        /**
+         * Writes the next part of the archive to the chunk buffer, returns {@code false} when the archive is complete.
+         */
+        private boolean writeNextChunk() throws IOException {
+            if (finished) {
+                return false;
+            }
+            if (currentContent != null) {
+                int read = currentContent.read(buffer);
+                if (read >= 0) {
+                    output.write(buffer, 0, read);
+                } else {
+                    closeCurrentContent();
+                    output.closeArchiveEntry();
+                }
+                return true;
+            }
+            TarArchiveEntry manifestEntry = manifestInput.getNextTarEntry();
+            if (manifestEntry == null) {
+                output.finish();
+                finished = true;
+                return true;
+            }
+            TarArchiveEntry tarEntry = copyOf(manifestEntry);
+            String blobHash = manifestEntry.getExtraPaxHeader(BLOB_HASH_HEADER);
+            if (blobHash == null) {
+                tarEntry.setSize(manifestEntry.getSize());
+                output.putArchiveEntry(tarEntry);
+                currentContent = manifestInput;
+                currentContentIsBlob = false;
+            } else {
+                File blob = getBlobFile(blobHash);
+                long size = Long.parseLong(manifestEntry.getExtraPaxHeader(BLOB_SIZE_HEADER));
+                if (blob.length() != size) {
+                    throw new IOException(String.format("Build cache blob %s for '%s' is missing or corrupt.", blobHash, manifestEntry.getName()));
+                }
+                tarEntry.setSize(size);
+                output.putArchiveEntry(tarEntry);
+                currentContent = new FileInputStream(blob);
+                currentContentIsBlob = true;
+            }
+            return true;
+        }
+
+        private void closeCurrentContent() throws IOException {
+            InputStream content = currentContent;
+            currentContent = null;
+            if (content != null && currentContentIsBlob) {
+                content.close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                closeCurrentContent();
+            } finally {
+                manifestInput.close();
+            }
+        }
+    }
+
+    private static class ChunkBuffer extends ByteArrayOutputStream {
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
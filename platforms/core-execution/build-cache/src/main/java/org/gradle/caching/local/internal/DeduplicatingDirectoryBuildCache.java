@@ -0,0 +1,109 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.api.NonNullApi;
+import org.gradle.cache.PersistentCache;
+import org.gradle.internal.file.FileAccessTracker;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.io.IoConsumer;
+import org.gradle.internal.resource.local.PathKeyFileStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A {@link DirectoryBuildCache} that stores entries as manifests referencing content-addressed blobs,
+ * so that file contents shared between entries are stored only once.
+ *
+ * <p>The manifests take the place of the entries in the underlying file store, so access tracking and
+ * least-recently-used cleanup work on them as before. Blobs no longer referenced by any manifest are
+ * removed by {@link UnreferencedBlobCleanup}.</p>
+ */
+@NonNullApi
+public class DeduplicatingDirectoryBuildCache extends DirectoryBuildCache {
+
+    private final PersistentCache persistentCache;
+    private final BuildCacheTempFileStore tempFileStore;
+    private final BuildCacheEntryDeduplicator deduplicator;
+
+    public DeduplicatingDirectoryBuildCache(PathKeyFileStore manifestStore, BuildCacheEntryDeduplicator deduplicator, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+        super(manifestStore, persistentCache, tempFileStore, fileAccessTracker, failedFileSuffix);
+        this.persistentCache = persistentCache;
+        this.tempFileStore = tempFileStore;
+        this.deduplicator = deduplicator;
+    }
+
+    @Override
+    public boolean load(HashCode key, IoConsumer<InputStream> reader) {
+        AtomicBoolean loaded = new AtomicBoolean(false);
+        // Blobs are only removed while holding the cache lock, which the manifest is read under
+        super.loadLocally(key, manifest -> {
+            try (InputStream entry = deduplicator.openEntry(manifest)) {
+                reader.accept(entry);
+                loaded.set(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return loaded.get();
+    }
+
+    @Override
+    public void loadLocally(HashCode key, Consumer<? super File> reader) {
+        // The reader needs a file, so the assembled entry is written to a temporary one
+        super.loadLocally(key, manifest -> tempFileStore.withTempFile(key, entry -> {
+            try (InputStream input = deduplicator.openEntry(manifest)) {
+                Files.copy(input, entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            reader.accept(entry);
+        }));
+    }
+
+    @Override
+    public void storeLocally(HashCode key, File file) {
+        tempFileStore.withTempFile(key, manifest -> {
+            // Split and hash the entry before taking the cache lock, only the new blobs and the manifest are moved into place while holding it
+            BuildCacheEntryDeduplicator.SplitEntry splitEntry;
+            try {
+                splitEntry = deduplicator.split(file, manifest);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try {
+                persistentCache.withFileLock(() -> {
+                    try {
+                        splitEntry.commit();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    super.storeLocally(key, manifest);
+                });
+            } finally {
+                splitEntry.discard();
+            }
+        });
+    }
+}
@@ -39,7 +39,11 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final DirectoryBuildCache cache;
 
     public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
-        this.cache = new DirectoryBuildCache(fileStore, persistentCache, tempFileStore, fileAccessTracker, failedFileSuffix);
+        this(new DirectoryBuildCache(fileStore, persistentCache, tempFileStore, fileAccessTracker, failedFileSuffix));
+    }
+
+    public DirectoryBuildCacheService(DirectoryBuildCache cache) {
+        this.cache = cache;
     }
 
     @Override
@@ -19,16 +19,20 @@
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
 import org.gradle.cache.CacheCleanupStrategy;
+import org.gradle.cache.CleanupAction;
 import org.gradle.cache.DefaultCacheCleanupStrategy;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.UnscopedCacheBuilderFactory;
 import org.gradle.cache.internal.CleanupActionDecorator;
+import org.gradle.cache.internal.CompositeCleanupAction;
 import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
 import org.gradle.cache.internal.SingleDepthFilesFinder;
 import org.gradle.cache.scopes.GlobalScopedCacheBuilderFactory;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.caching.local.DirectoryBuildCache;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.file.FileAccessTimeJournal;
 import org.gradle.internal.file.FileAccessTracker;
 import org.gradle.internal.file.PathToFileResolver;
@@ -45,8 +49,18 @@
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     public static final String FAILED_READ_SUFFIX = ".failed";
 
+    /**
+     * When enabled, the local directory cache stores the contents of large files shared between entries only once.
+     *
+     * @see DeduplicatingDirectoryBuildCache
+     */
+    public static final InternalFlag DEDUPLICATE = new InternalFlag("org.gradle.caching.local.deduplicate");
+
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
+    private static final String DEDUPLICATING_BUILD_CACHE_KEY = "build-cache-dedup-" + BUILD_CACHE_VERSION;
+    private static final String MANIFESTS_DIR = "manifests";
+    private static final String BLOBS_DIR = "blobs";
     private static final String DIRECTORY_BUILD_CACHE_TYPE = "directory";
     private static final int FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP = 1;
 
@@ -57,11 +71,12 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
     private final CleanupActionDecorator cleanupActionDecorator;
     private final FileAccessTimeJournal fileAccessTimeJournal;
     private final TemporaryFileProvider temporaryFileProvider;
+    private final InternalOptions internalOptions;
 
     @Inject
     public DirectoryBuildCacheServiceFactory(
             UnscopedCacheBuilderFactory unscopedCacheBuilderFactory, GlobalScopedCacheBuilderFactory cacheBuilderFactory, PathToFileResolver resolver, DirectoryBuildCacheFileStoreFactory fileStoreFactory,
-            CleanupActionDecorator cleanupActionDecorator, FileAccessTimeJournal fileAccessTimeJournal, TemporaryFileProvider temporaryFileProvider) {
+            CleanupActionDecorator cleanupActionDecorator, FileAccessTimeJournal fileAccessTimeJournal, TemporaryFileProvider temporaryFileProvider, InternalOptions internalOptions) {
         this.unscopedCacheBuilderFactory = unscopedCacheBuilderFactory;
         this.cacheBuilderFactory = cacheBuilderFactory;
         this.resolver = resolver;
@@ -69,16 +84,18 @@ public DirectoryBuildCacheServiceFactory(
         this.cleanupActionDecorator = cleanupActionDecorator;
         this.fileAccessTimeJournal = fileAccessTimeJournal;
         this.temporaryFileProvider = temporaryFileProvider;
+        this.internalOptions = internalOptions;
     }
 
     @Override
     public BuildCacheService createBuildCacheService(DirectoryBuildCache configuration, Describer describer) {
+        boolean deduplicate = internalOptions.getOption(DEDUPLICATE).get();
         Object cacheDirectory = configuration.getDirectory();
         File target;
         if (cacheDirectory != null) {
             target = resolver.resolve(cacheDirectory);
         } else {
-            target = cacheBuilderFactory.baseDirForCrossVersionCache(BUILD_CACHE_KEY);
+            target = cacheBuilderFactory.baseDirForCrossVersionCache(deduplicate ? DEDUPLICATING_BUILD_CACHE_KEY : BUILD_CACHE_KEY);
         }
         checkDirectory(target);
 
@@ -88,6 +105,11 @@ public BuildCacheService createBuildCacheService(DirectoryBuildCache configurati
             config("location", target.getAbsolutePath()).
             config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days");
 
+        if (deduplicate) {
+            describer.config("deduplicate", "true");
+            return createDeduplicatingBuildCacheService(target, removeUnusedEntriesOlderThan);
+        }
+
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
         PersistentCache persistentCache = unscopedCacheBuilderFactory
             .cache(target)
@@ -101,6 +123,36 @@ public BuildCacheService createBuildCacheService(DirectoryBuildCache configurati
         return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
     }
 
+    /**
+     * Creates a cache that keeps manifests in the {@value #MANIFESTS_DIR} directory and the deduplicated file contents in the {@value #BLOBS_DIR} directory.
+     * Manifests are tracked and cleaned up like regular entries, unreferenced blobs are removed after that.
+     */
+    private BuildCacheService createDeduplicatingBuildCacheService(File target, Supplier<Long> removeUnusedEntriesOlderThan) {
+        File manifestsDir = new File(target, MANIFESTS_DIR);
+        checkDirectory(manifestsDir);
+        BuildCacheEntryDeduplicator deduplicator = new BuildCacheEntryDeduplicator(new File(target, BLOBS_DIR));
+
+        SingleDepthFilesFinder manifestsFinder = new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+        CleanupAction cleanupAction = CompositeCleanupAction.builder()
+            .add(manifestsDir, new LeastRecentlyUsedCacheCleanup(manifestsFinder, fileAccessTimeJournal, removeUnusedEntriesOlderThan))
+            .add(new UnreferencedBlobCleanup(manifestsDir, manifestsFinder, deduplicator))
+            .build();
+
+        PathKeyFileStore manifestStore = fileStoreFactory.createFileStore(manifestsDir);
+        PersistentCache persistentCache = unscopedCacheBuilderFactory
+            .cache(target)
+            .withCleanupStrategy(DefaultCacheCleanupStrategy.from(cleanupActionDecorator.decorate(cleanupAction)))
+            .withDisplayName("Build cache")
+            .withInitialLockMode(OnDemand)
+            .open();
+        BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(temporaryFileProvider);
+        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, manifestsDir, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+
+        return new DirectoryBuildCacheService(
+            new DeduplicatingDirectoryBuildCache(manifestStore, deduplicator, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX)
+        );
+    }
+
     private CacheCleanupStrategy createCacheCleanupStrategy(Supplier<Long> removeUnusedEntriesTimestamp) {
         return DefaultCacheCleanupStrategy.from(cleanupActionDecorator.decorate(createCleanupAction(removeUnusedEntriesTimestamp)));
     }
@@ -0,0 +1,625 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.StatefulNextGenBuildCacheService;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.time.Clock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
+
+/**
+ * A build cache that appends entries to segment files, and keeps the location of each entry in an in-memory index.
+ *
+ * <p>Each segment is a sequence of records:</p>
+ *
+ * <pre>
+ *     magic (4 bytes) | key length (2 bytes) | key (UTF-8) | content length (8 bytes) | content | CRC32 of content (4 bytes)
+ * </pre>
+ *
+ * <p>The index, including the last access time of each entry, is written to disk when the service is closed.
+ * Records appended after the index was written, e.g. by a process that crashed, are recovered by scanning the segments when the service is opened.
+ * Cleanup removes entries that were not accessed recently and rewrites segments in which most of the content belongs to removed entries.</p>
+ *
+ * <p>While open, the service holds an exclusive lock on the cache directory, so only one process uses the cache at a time.
+ * The checksum of an entry is verified before it is passed to the reader, and an entry that does not match is removed.</p>
+ */
+public class LogStructuredBuildCacheService implements StatefulNextGenBuildCacheService {
+
+    private static final int RECORD_MAGIC = 0x47424352;
+    private static final int RECORD_HEADER_LENGTH = 4 + 2;
+    private static final int INDEX_VERSION = 1;
+    private static final int RECORD_TRAILER_LENGTH = 4;
+    private static final String INDEX_FILE_NAME = "index.bin";
+    private static final String LOCK_FILE_NAME = "cache.lock";
+    private static final long DEFAULT_LOCK_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final long LOCK_RETRY_INTERVAL_MILLIS = 50;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long DEFAULT_MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final double MIN_LIVE_CONTENT_RATIO = 0.5;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path dir;
+    private final long maxSegmentSize;
+    private final long lockTimeoutMillis;
+    private final int removeUnusedEntriesAfterDays;
+    private final Clock clock;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    /**
+     * Held shared while loading and storing, and exclusively while segments are closed or deleted.
+     */
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private Segment activeSegment;
+    private FileChannel lockChannel;
+    private FileLock directoryLock;
+    private volatile boolean open;
+
+    public LogStructuredBuildCacheService(Path dir, int removeUnusedEntriesAfterDays, Clock clock) {
+        this(dir, DEFAULT_MAX_SEGMENT_SIZE, DEFAULT_LOCK_TIMEOUT_MILLIS, removeUnusedEntriesAfterDays, clock);
+    }
+
+    @VisibleForTesting
+    LogStructuredBuildCacheService(Path dir, long maxSegmentSize, long lockTimeoutMillis, int removeUnusedEntriesAfterDays, Clock clock) {
+        this.dir = dir;
+        this.maxSegmentSize = maxSegmentSize;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+        this.removeUnusedEntriesAfterDays = removeUnusedEntriesAfterDays;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void open() {
+        if (open) {
+            return;
+        }
+        try {
+            Files.createDirectories(dir);
+            lockDirectory();
+            Map<Integer, Long> indexedSegmentSizes = readIndex();
+            for (int id : listSegmentIds()) {
+                Segment segment = openSegment(id);
+                long indexedSize = indexedSegmentSizes.getOrDefault(id, 0L);
+                recover(segment, indexedSize <= segment.channel.size() ? indexedSize : 0);
+            }
+            index.values().removeIf(entry -> {
+                Segment segment = segments.get(entry.segmentId);
+                return segment == null || entry.offset + entry.length > segment.size;
+            });
+            activeSegment = segments.isEmpty() ? openSegment(0) : segments.get(maxSegmentId());
+            open = true;
+        } catch (IOException e) {
+            closeSegments();
+            index.clear();
+            unlockDirectory();
+            throw new BuildCacheException("opening build cache in " + dir, e);
+        }
+    }
+
+    private void lockDirectory() throws IOException {
+        lockChannel = FileChannel.open(dir.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long deadline = clock.getCurrentTime() + lockTimeoutMillis;
+        while (true) {
+            try {
+                directoryLock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Held by another service in this process
+                directoryLock = null;
+            }
+            if (directoryLock != null) {
+                return;
+            }
+            if (clock.getCurrentTime() >= deadline) {
+                throw new IOException("Timeout waiting to lock build cache in " + dir + ". It is currently in use by another process.");
+            }
+            try {
+                Thread.sleep(LOCK_RETRY_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting to lock build cache in " + dir, e);
+            }
+        }
+    }
+
+    private void unlockDirectory() {
+        try {
+            if (lockChannel != null) {
+                // Closing the channel releases the lock
+                lockChannel.close();
+            }
+        } catch (IOException e) {
+            // Ignore, the lock is released when the process exits
+        } finally {
+            lockChannel = null;
+            directoryLock = null;
+        }
+    }
+
+    @Override
+    public boolean contains(BuildCacheKey key) {
+        return index.containsKey(key.getHashCode());
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        String hashCode = key.getHashCode();
+        segmentsLock.readLock().lock();
+        try {
+            Entry entry = index.get(hashCode);
+            if (entry == null) {
+                return false;
+            }
+            Segment segment = segments.get(entry.segmentId);
+            if (segment == null) {
+                return false;
+            }
+            entry.accessed = clock.getCurrentTime();
+            try {
+                // Verify the entry before the reader unpacks any of it, the second read is usually served from the page cache
+                if (!isIntact(segment, entry)) {
+                    index.remove(hashCode, entry);
+                    throw new BuildCacheException("Build cache entry " + hashCode + " in " + dir + " is corrupt");
+                }
+                try (InputStream input = new SegmentInputStream(segment.channel, entry.offset, entry.length)) {
+                    reader.readFrom(input);
+                }
+                return true;
+            } catch (IOException e) {
+                throw new BuildCacheException("loading " + key, e);
+            }
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void store(BuildCacheKey key, NextGenWriter writer) throws BuildCacheException {
+        String hashCode = key.getHashCode();
+        if (index.containsKey(hashCode)) {
+            return;
+        }
+        segmentsLock.readLock().lock();
+        try {
+            synchronized (writeLock) {
+                if (!open || index.containsKey(hashCode)) {
+                    return;
+                }
+                try (InputStream input = writer.openStream()) {
+                    index.put(hashCode, append(hashCode, input, writer.getSize(), clock.getCurrentTime()));
+                } catch (IOException e) {
+                    throw new BuildCacheException("storing " + key, e);
+                }
+            }
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    @VisibleForTesting
+    boolean remove(BuildCacheKey key) {
+        return index.remove(key.getHashCode()) != null;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!open) {
+            return;
+        }
+        segmentsLock.writeLock().lock();
+        try {
+            open = false;
+            writeIndex();
+        } catch (IOException e) {
+            throw new BuildCacheException("writing index of build cache in " + dir, e);
+        } finally {
+            closeSegments();
+            index.clear();
+            segmentsLock.writeLock().unlock();
+            unlockDirectory();
+        }
+    }
+
+    /**
+     * Removes entries that were not accessed recently and compacts segments with little live content.
+     * Note: Cleanup will also close the service.
+     */
+    @Override
+    public synchronized void cleanup() {
+        open();
+        try {
+            long deleteThresholdMillis = clock.getCurrentTime() - TimeUnit.DAYS.toMillis(removeUnusedEntriesAfterDays);
+            index.values().removeIf(entry -> entry.accessed < deleteThresholdMillis);
+            segmentsLock.writeLock().lock();
+            try {
+                compact();
+            } finally {
+                segmentsLock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            close();
+        }
+    }
+
+    private void compact() throws IOException {
+        Map<Integer, Long> liveContent = new HashMap<>();
+        for (Entry entry : index.values()) {
+            liveContent.merge(entry.segmentId, entry.length, Long::sum);
+        }
+        List<Segment> segmentsToCompact = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            long live = liveContent.getOrDefault(segment.id, 0L);
+            if (live < segment.size * MIN_LIVE_CONTENT_RATIO) {
+                segmentsToCompact.add(segment);
+            }
+        }
+        if (segmentsToCompact.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (segmentsToCompact.contains(activeSegment)) {
+                activeSegment = openSegment(maxSegmentId() + 1);
+            }
+            List<String> corruptKeys = new ArrayList<>();
+            for (Map.Entry<String, Entry> indexEntry : index.entrySet()) {
+                Entry entry = indexEntry.getValue();
+                Segment segment = segments.get(entry.segmentId);
+                if (segmentsToCompact.contains(segment)) {
+                    try (CheckedInputStream input = new CheckedInputStream(new SegmentInputStream(segment.channel, entry.offset, entry.length), new CRC32())) {
+                        Entry copy = append(indexEntry.getKey(), input, entry.length, entry.accessed);
+                        if (hasExpectedChecksum(segment, entry, input.getChecksum())) {
+                            indexEntry.setValue(copy);
+                        } else {
+                            // Drop corrupt entries instead of carrying them over with a new checksum
+                            corruptKeys.add(indexEntry.getKey());
+                        }
+                    }
+                }
+            }
+            index.keySet().removeAll(corruptKeys);
+        }
+        // Make sure the index does not reference the compacted segments before deleting them
+        writeIndex();
+        for (Segment segment : segmentsToCompact) {
+            segments.remove(segment.id);
+            segment.channel.close();
+            Files.deleteIfExists(segment.file);
+        }
+    }
+
+    private Entry append(String key, InputStream input, long length, long accessed) throws IOException {
+        Segment segment = activeSegment;
+        if (segment.size >= maxSegmentSize) {
+            segment = openSegment(maxSegmentId() + 1);
+            activeSegment = segment;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH + keyBytes.length + 8);
+        header.putInt(RECORD_MAGIC);
+        header.putShort((short) keyBytes.length);
+        header.put(keyBytes);
+        header.putLong(length);
+        header.flip();
+        CRC32 checksum = new CRC32();
+
+        long start = segment.size;
+        long position = start;
+        try {
+            position += writeFully(segment.channel, header, position);
+            long contentOffset = position;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("Expected " + length + " bytes of content for entry " + key + ", but got " + (length - remaining));
+                }
+                checksum.update(buffer, 0, read);
+                position += writeFully(segment.channel, ByteBuffer.wrap(buffer, 0, read), position);
+                remaining -= read;
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(RECORD_TRAILER_LENGTH);
+            trailer.putInt((int) checksum.getValue());
+            trailer.flip();
+            position += writeFully(segment.channel, trailer, position);
+            segment.size = position;
+            return new Entry(segment.id, contentOffset, length, accessed);
+        } catch (IOException | RuntimeException e) {
+            segment.channel.truncate(start);
+            throw e;
+        }
+    }
+
+    private static boolean isIntact(Segment segment, Entry entry) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (InputStream input = new CheckedInputStream(new SegmentInputStream(segment.channel, entry.offset, entry.length), checksum)) {
+            ByteStreams.exhaust(input);
+        }
+        return hasExpectedChecksum(segment, entry, checksum);
+    }
+
+    private static boolean hasExpectedChecksum(Segment segment, Entry entry, Checksum actual) throws IOException {
+        ByteBuffer trailer = ByteBuffer.allocate(RECORD_TRAILER_LENGTH);
+        return readFully(segment.channel, trailer, entry.offset + entry.length)
+            && trailer.getInt(0) == (int) actual.getValue();
+    }
+
+    /**
+     * Adds the records found in the segment after the given position to the index, and truncates any incomplete record at the end of the segment.
+     * Records with a checksum that does not match their content are skipped.
+     */
+    private void recover(Segment segment, long from) throws IOException {
+        FileChannel channel = segment.channel;
+        long fileSize = channel.size();
+        long position = from;
+        long now = clock.getCurrentTime();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        while (position < fileSize) {
+            header.clear();
+            if (!readFully(channel, header, position) || header.getInt(0) != RECORD_MAGIC) {
+                break;
+            }
+            int keyLength = header.getShort(4) & 0xffff;
+            ByteBuffer keyAndLength = ByteBuffer.allocate(keyLength + 8);
+            if (!readFully(channel, keyAndLength, position + RECORD_HEADER_LENGTH)) {
+                break;
+            }
+            long length = keyAndLength.getLong(keyLength);
+            long contentOffset = position + RECORD_HEADER_LENGTH + keyLength + 8;
+            if (length < 0 || contentOffset + length + RECORD_TRAILER_LENGTH > fileSize) {
+                break;
+            }
+            Entry entry = new Entry(segment.id, contentOffset, length, now);
+            if (isIntact(segment, entry)) {
+                String key = new String(keyAndLength.array(), 0, keyLength, StandardCharsets.UTF_8);
+                index.putIfAbsent(key, entry);
+            }
+            position = contentOffset + length + RECORD_TRAILER_LENGTH;
+        }
+        if (position < fileSize) {
+            channel.truncate(position);
+        }
+        segment.size = position;
+    }
+
+    private Map<Integer, Long> readIndex() {
+        Path indexFile = dir.resolve(INDEX_FILE_NAME);
+        Map<Integer, Long> segmentSizes = new HashMap<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (input.readInt() != INDEX_VERSION) {
+                return segmentSizes;
+            }
+            int segmentCount = input.readInt();
+            for (int i = 0; i < segmentCount; i++) {
+                segmentSizes.put(input.readInt(), input.readLong());
+            }
+            int entryCount = input.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String key = input.readUTF();
+                index.put(key, new Entry(input.readInt(), input.readLong(), input.readLong(), input.readLong()));
+            }
+        } catch (NoSuchFileException e) {
+            // No index yet, all segments are scanned
+        } catch (IOException e) {
+            // Ignore a corrupt index, all segments are scanned
+            index.clear();
+            segmentSizes.clear();
+        }
+        return segmentSizes;
+    }
+
+    private void writeIndex() throws IOException {
+        Path indexFile = dir.resolve(INDEX_FILE_NAME);
+        Path tempFile = dir.resolve(INDEX_FILE_NAME + BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            output.writeInt(INDEX_VERSION);
+            output.writeInt(segments.size());
+            for (Segment segment : segments.values()) {
+                output.writeInt(segment.id);
+                output.writeLong(segment.size);
+            }
+            output.writeInt(index.size());
+            for (Map.Entry<String, Entry> indexEntry : index.entrySet()) {
+                Entry entry = indexEntry.getValue();
+                output.writeUTF(indexEntry.getKey());
+                output.writeInt(entry.segmentId);
+                output.writeLong(entry.offset);
+                output.writeLong(entry.length);
+                output.writeLong(entry.accessed);
+            }
+        }
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<Integer> listSegmentIds() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        // Not a segment
+                    }
+                }
+            });
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private int maxSegmentId() {
+        return segments.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path file = dir.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, file, channel);
+        segment.size = channel.size();
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                // Ignore, the segment is not written to anymore
+            }
+        }
+        segments.clear();
+        activeSegment = null;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                return false;
+            }
+            offset += read;
+        }
+        return true;
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path file;
+        final FileChannel channel;
+        volatile long size;
+
+        Segment(int id, Path file, FileChannel channel) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+        }
+    }
+
+    private static final class Entry {
+        final int segmentId;
+        final long offset;
+        final long length;
+        volatile long accessed;
+
+        Entry(int segmentId, long offset, long length, long accessed) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+            this.accessed = accessed;
+        }
+    }
+
+    /**
+     * Reads a range of a segment with positional reads, so concurrent loads can share the channel.
+     */
+    private static final class SegmentInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        SegmentInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(bytes, off, (int) Math.min(len, remaining)), position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of build cache segment");
+            }
+            position += read;
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, remaining));
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+    }
+}
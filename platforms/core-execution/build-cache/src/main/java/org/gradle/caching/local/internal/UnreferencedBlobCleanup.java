@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.CleanableStore;
+import org.gradle.cache.CleanupAction;
+import org.gradle.cache.CleanupProgressMonitor;
+import org.gradle.cache.internal.FilesFinder;
+import org.gradle.cache.internal.NonReservedFileFilter;
+import org.gradle.cache.internal.SingleDepthFilesFinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Deletes blobs of a {@link DeduplicatingDirectoryBuildCache} that are no longer referenced by any manifest.
+ *
+ * <p>Reference counts are recomputed from the remaining manifests on every cleanup, so they cannot get out of sync
+ * with the manifests when a build is interrupted. This action needs to run after the manifests have been cleaned up.</p>
+ */
+public class UnreferencedBlobCleanup implements CleanupAction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnreferencedBlobCleanup.class);
+
+    private final File manifestsDir;
+    private final BuildCacheEntryDeduplicator deduplicator;
+    private final FilesFinder manifestsFinder;
+    private final FilesFinder blobsFinder = new SingleDepthFilesFinder(2);
+
+    public UnreferencedBlobCleanup(File manifestsDir, FilesFinder manifestsFinder, BuildCacheEntryDeduplicator deduplicator) {
+        this.manifestsDir = manifestsDir;
+        this.manifestsFinder = manifestsFinder;
+        this.deduplicator = deduplicator;
+    }
+
+    @Override
+    public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
+        NonReservedFileFilter filter = new NonReservedFileFilter(cleanableStore.getReservedCacheFiles());
+        Map<String, Integer> referenceCounts;
+        try {
+            referenceCounts = deduplicator.countBlobReferences(manifestsFinder.find(manifestsDir, filter));
+        } catch (IOException | UncheckedIOException e) {
+            // Never delete blobs based on incomplete information
+            LOGGER.warn("{} could not read all manifests, skipping cleanup of blobs.", cleanableStore.getDisplayName(), e);
+            return;
+        }
+
+        int blobsDeleted = 0;
+        for (File blob : blobsFinder.find(deduplicator.getBlobsDir(), filter)) {
+            String hash = BuildCacheEntryDeduplicator.getBlobHash(blob);
+            if (hash == null || referenceCounts.containsKey(hash)) {
+                progressMonitor.incrementSkipped();
+                continue;
+            }
+            progressMonitor.incrementDeleted();
+            if (FileUtils.deleteQuietly(blob)) {
+                blobsDeleted++;
+            }
+        }
+        LOGGER.info("{} cleanup deleted {} unreferenced blobs, {} blobs remain referenced.", cleanableStore.getDisplayName(), blobsDeleted, referenceCounts.size());
+    }
+}
@@ -29,17 +29,31 @@ import org.gradle.caching.internal.controller.service.BuildCacheServicesConfigur
 import org.gradle.caching.internal.origin.OriginMetadataFactory
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.TestHashCodes
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationDescriptor
+import org.gradle.internal.operations.BuildOperationListener
+import org.gradle.internal.operations.BuildOperationQueueFactory
+import org.gradle.internal.operations.DefaultBuildOperationExecutor
+import org.gradle.internal.operations.DefaultBuildOperationIdFactory
 import org.gradle.internal.operations.NoOpBuildOperationProgressEventEmitter
+import org.gradle.internal.operations.RunnableBuildOperation
 import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.progress.NoOpProgressLoggerFactory
 import org.gradle.internal.snapshot.FileSystemSnapshot
+import org.gradle.internal.time.Time
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.Path
 import org.junit.Rule
 import spock.lang.Specification
 
 import java.time.Duration
+import java.util.concurrent.CountDownLatch
 import java.util.function.Consumer
 
 class DefaultBuildCacheControllerTest extends Specification {
@@ -64,6 +78,7 @@ class DefaultBuildCacheControllerTest extends Specification {
     BuildCacheEntryPacker packer = Stub(BuildCacheEntryPacker)
     OriginMetadataFactory originMetadataFactory = Stub(OriginMetadataFactory)
     StringInterner stringInterner = Stub(StringInterner)
+    ManagedExecutor asyncStoreExecutor = null
 
     def operations = new TestBuildOperationExecutor()
     def buildOperationProgressEmitter = new NoOpBuildOperationProgressEventEmitter()
@@ -90,7 +105,8 @@ class DefaultBuildCacheControllerTest extends Specification {
             disableRemoteOnError,
             packer,
             originMetadataFactory,
-            stringInterner
+            stringInterner,
+            asyncStoreExecutor
         )
     }
 
@@ -278,4 +294,75 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.close()
         1 * remote.close()
     }
+
+    def "async store uploads and stores locally before close returns"() {
+        given:
+        asyncStoreExecutor = new DefaultExecutorFactory().create("store", 2)
+        def controller = getController()
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _)
+        1 * local.storeLocally(key, _)
+        !tmpDir.file("pending-file").exists()
+    }
+
+    def "async store retries failed uploads"() {
+        given:
+        asyncStoreExecutor = new DefaultExecutorFactory().create("store", 1)
+        def controller = getController(false)
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        2 * remote.store(key, _) >> { throw new RuntimeException() }
+        1 * remote.store(key, _)
+        1 * local.storeLocally(key, _)
+    }
+
+    def "async store does not retry when remote is disabled after error"() {
+        given:
+        asyncStoreExecutor = new DefaultExecutorFactory().create("store", 1)
+        def controller = getController()
+
+        when:
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> { throw new RuntimeException() }
+        1 * local.storeLocally(key, _)
+    }
+
+    def "async store completes after the operation that requested it"() {
+        given:
+        operations = new DefaultBuildOperationExecutor(Stub(BuildOperationListener), Time.clock(), new NoOpProgressLoggerFactory(), Stub(BuildOperationQueueFactory), Stub(ExecutorFactory), new DefaultParallelismConfiguration(false, 1), new DefaultBuildOperationIdFactory())
+        asyncStoreExecutor = new DefaultExecutorFactory().create("store", 1)
+        def controller = getController()
+        def requestingOperationCompleted = new CountDownLatch(1)
+
+        when:
+        operations.run(new RunnableBuildOperation() {
+            @Override
+            void run(BuildOperationContext context) {
+                controller.store(key, cacheableEntity, snapshots, executionTime)
+            }
+
+            @Override
+            BuildOperationDescriptor.Builder description() {
+                BuildOperationDescriptor.displayName("Execute task")
+            }
+        })
+        requestingOperationCompleted.countDown()
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> { requestingOperationCompleted.await() }
+        1 * local.storeLocally(key, _)
+    }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.gradle.api.internal.file.temp.DefaultTemporaryFileProvider
+import org.gradle.cache.CleanableStore
+import org.gradle.cache.CleanupProgressMonitor
+import org.gradle.cache.PersistentCache
+import org.gradle.cache.internal.SingleDepthFilesFinder
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker
+import org.gradle.internal.file.FileAccessTracker
+import org.gradle.internal.hash.TestHashCodes
+import org.gradle.internal.resource.local.DefaultPathKeyFileStore
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.TestUtil
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.GZIPOutputStream
+
+@UsesNativeServices
+@CleanupTestDirectory
+class DeduplicatingDirectoryBuildCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def cacheDir = temporaryFolder.createDir("cache")
+    def manifestsDir = cacheDir.createDir("manifests")
+    def deduplicator = new BuildCacheEntryDeduplicator(cacheDir.file("blobs"))
+    def persistentCache = Mock(PersistentCache) {
+        getBaseDir() >> cacheDir
+        withFileLock(_) >> { Runnable r -> r.run() }
+    }
+    def tempFileStore = new DefaultBuildCacheTempFileStore(new DefaultTemporaryFileProvider(() -> cacheDir))
+    def cache = new DeduplicatingDirectoryBuildCache(new DefaultPathKeyFileStore(TestUtil.checksumService, manifestsDir), deduplicator, persistentCache, tempFileStore, Stub(FileAccessTracker), ".failed")
+    def cleanup = new UnreferencedBlobCleanup(manifestsDir, new SingleDepthFilesFinder(1), deduplicator)
+    def key1 = TestHashCodes.hashCodeFrom(1)
+    def key2 = TestHashCodes.hashCodeFrom(2)
+    def sharedContent = new byte[BuildCacheEntryDeduplicator.INLINE_CONTENT_LIMIT * 4]
+
+    def setup() {
+        new Random(1234).nextBytes(sharedContent)
+    }
+
+    def "stores shared file contents once"() {
+        when:
+        cache.storeLocally(key1, entry("one", ["tree-a/shared.bin": sharedContent, "tree-a/small.txt": "one".bytes]))
+        cache.storeLocally(key2, entry("two", ["tree-b/copy.bin": sharedContent, "tree-b/small.txt": "two".bytes]))
+
+        then:
+        blobs().size() == 1
+
+        when:
+        def loaded1 = load(key1)
+        def loaded2 = load(key2)
+
+        then:
+        loaded1.keySet() == ["METADATA", "tree-a/shared.bin", "tree-a/small.txt"] as Set
+        loaded1["tree-a/shared.bin"] == sharedContent
+        new String(loaded1["tree-a/small.txt"]) == "one"
+        new String(loaded1["METADATA"]) == "one"
+        loaded2["tree-b/copy.bin"] == sharedContent
+        new String(loaded2["tree-b/small.txt"]) == "two"
+    }
+
+    def "can load gzip compressed entry"() {
+        def entryFile = temporaryFolder.file("gzip-entry")
+        entryFile.withOutputStream { output ->
+            writeTar(new GZIPOutputStream(output), "gzip", ["tree-a/shared.bin": sharedContent])
+        }
+
+        when:
+        cache.storeLocally(key1, entryFile)
+
+        then:
+        load(key1)["tree-a/shared.bin"] == sharedContent
+    }
+
+    def "streams the assembled entry"() {
+        cache.storeLocally(key1, entry("one", ["tree-a/shared.bin": sharedContent, "tree-a/small.txt": "one".bytes]))
+
+        when:
+        Map<String, byte[]> contents = [:]
+        def loaded = cache.load(key1) { InputStream input -> contents = readTar(input) }
+
+        then:
+        loaded
+        contents["tree-a/shared.bin"] == sharedContent
+        new String(contents["tree-a/small.txt"]) == "one"
+        !cache.load(key2) { throw new IllegalStateException() }
+    }
+
+    def "does not leave blobs behind when storing fails"() {
+        def corruptEntry = temporaryFolder.file("corrupt")
+        // Header, metadata entry, and the first part of the shared file
+        corruptEntry.bytes = Arrays.copyOf(entry("one", ["tree-a/shared.bin": sharedContent]).bytes, 6 + 3 * 512 + 4096)
+
+        when:
+        cache.storeLocally(key1, corruptEntry)
+
+        then:
+        thrown(Exception)
+        !manifestsDir.file(key1.toString()).exists()
+        blobs().empty
+        (deduplicator.blobsDir.listFiles() ?: []).findAll { it.file }.empty
+    }
+
+    def "cleanup removes blobs only when no manifest references them"() {
+        cache.storeLocally(key1, entry("one", ["tree-a/shared.bin": sharedContent]))
+        cache.storeLocally(key2, entry("two", ["tree-b/copy.bin": sharedContent]))
+
+        when:
+        manifestsDir.file(key1.toString()).delete()
+        cleanup.clean(cleanableStore(), Stub(CleanupProgressMonitor))
+
+        then:
+        blobs().size() == 1
+        load(key2)["tree-b/copy.bin"] == sharedContent
+
+        when:
+        manifestsDir.file(key2.toString()).delete()
+        cleanup.clean(cleanableStore(), Stub(CleanupProgressMonitor))
+
+        then:
+        blobs().empty
+    }
+
+    private File entry(String metadata, Map<String, byte[]> files) {
+        def entryFile = temporaryFolder.file("entry-${metadata}")
+        entryFile.withOutputStream { output -> writeTar(CompressingBuildCacheEntryPacker.compress(BuildCacheEntryCompression.NONE, output), metadata, files) }
+        return entryFile
+    }
+
+    private static void writeTar(OutputStream output, String metadata, Map<String, byte[]> files) {
+        new TarArchiveOutputStream(output, "UTF-8").withCloseable { tar ->
+            def contents = ["METADATA": metadata.bytes] + files
+            contents.each { name, content ->
+                def entry = new TarArchiveEntry(name, true)
+                entry.size = content.length
+                tar.putArchiveEntry(entry)
+                tar.write(content)
+                tar.closeArchiveEntry()
+            }
+        }
+    }
+
+    private Map<String, byte[]> load(key) {
+        Map<String, byte[]> contents = [:]
+        cache.loadLocally(key) { File file ->
+            file.withInputStream { input -> contents = readTar(input) }
+        }
+        return contents
+    }
+
+    private static Map<String, byte[]> readTar(InputStream input) {
+        Map<String, byte[]> contents = [:]
+        new TarArchiveInputStream(CompressingBuildCacheEntryPacker.decompress(input), "UTF-8").withCloseable { tar ->
+            TarArchiveEntry entry
+            while ((entry = tar.nextTarEntry) != null) {
+                contents[entry.name] = tar.bytes
+            }
+        }
+        return contents
+    }
+
+    private List<File> blobs() {
+        new SingleDepthFilesFinder(2).find(deduplicator.blobsDir, { true } as FileFilter).toList()
+    }
+
+    private CleanableStore cleanableStore() {
+        Stub(CleanableStore) {
+            getBaseDir() >> cacheDir
+            getReservedCacheFiles() >> []
+            getDisplayName() >> "test cache"
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.caching.BuildCacheEntryReader
+import org.gradle.caching.BuildCacheException
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.internal.controller.service.StoreTarget
+import org.gradle.internal.time.Clock
+import org.gradle.internal.time.Time
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class LogStructuredBuildCacheServiceTest extends Specification {
+
+    private static final int REMOVE_UNUSED_ENTRIES_AFTER_7_DAYS = 7
+
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def cacheDir = temporaryFolder.createDir("cache")
+    LogStructuredBuildCacheService service
+
+    def setup() {
+        openServiceWithClock(Time.clock())
+    }
+
+    def cleanup() {
+        service.close()
+    }
+
+    BuildCacheKey key = Mock(BuildCacheKey) {
+        getHashCode() >> "1234abcd"
+    }
+    BuildCacheKey otherKey = Mock(BuildCacheKey) {
+        getHashCode() >> "12345abcde"
+    }
+
+    def "can write and read entries"() {
+        given:
+        service.store(key, new StoreTarget(file("first", "Hello world")))
+        service.store(otherKey, new StoreTarget(file("second", "Hello Bob")))
+
+        expect:
+        load(key) == "Hello world"
+        load(otherKey) == "Hello Bob"
+    }
+
+    def "does not find missing entries"() {
+        expect:
+        !service.contains(key)
+        !service.load(key, { assert false } as BuildCacheEntryReader)
+    }
+
+    def "can read entries with a new service after closing"() {
+        given:
+        service.store(key, new StoreTarget(file("first", "Hello world")))
+        service.close()
+
+        when:
+        openServiceWithClock(Time.clock())
+
+        then:
+        service.contains(key)
+        load(key) == "Hello world"
+    }
+
+    def "recovers entries that are not in the index"() {
+        given:
+        service.store(key, new StoreTarget(file("first", "Hello world")))
+        service.close()
+        def indexWithFirstEntry = cacheDir.file("index.bin").bytes
+        openServiceWithClock(Time.clock())
+        service.store(otherKey, new StoreTarget(file("second", "Hello Bob")))
+        service.close()
+
+        when:
+        // Simulate a crash by restoring the index from before the second entry was stored, and leave an incomplete record at the end of the segment
+        cacheDir.file("index.bin").bytes = indexWithFirstEntry
+        segments()[0] << "partial"
+        openServiceWithClock(Time.clock())
+
+        then:
+        load(key) == "Hello world"
+        load(otherKey) == "Hello Bob"
+    }
+
+    def "does not recover a record with a checksum mismatch"() {
+        given:
+        service.store(key, new StoreTarget(file("first", "Hello world")))
+        service.store(otherKey, new StoreTarget(file("second", "Hello Bob")))
+        service.close()
+        cacheDir.file("index.bin").delete()
+        corrupt("Hello world")
+
+        when:
+        openServiceWithClock(Time.clock())
+
+        then:
+        !service.contains(key)
+        load(otherKey) == "Hello Bob"
+    }
+
+    def "detects a corrupt entry when loading it"() {
+        given:
+        service.store(key, new StoreTarget(file("first", "Hello world")))
+        service.close()
+        corrupt("Hello world")
+        openServiceWithClock(Time.clock())
+
+        when:
+        load(key)
+
+        then:
+        thrown(BuildCacheException)
+        !service.contains(key)
+    }
+
+    def "does not pass a corrupt entry to the reader"() {
+        given:
+        service.store(key, new StoreTarget(file("first", "Hello world")))
+        service.close()
+        corrupt("world")
+        openServiceWithClock(Time.clock())
+        def readerCalled = false
+
+        when:
+        service.load(key, { InputStream input -> readerCalled = true } as BuildCacheEntryReader)
+
+        then:
+        thrown(BuildCacheException)
+        !readerCalled
+    }
+
+    def "cannot be opened while another service uses the directory"() {
+        given:
+        def other = new LogStructuredBuildCacheService(cacheDir.toPath(), 1024, 0, REMOVE_UNUSED_ENTRIES_AFTER_7_DAYS, Time.clock())
+
+        when:
+        other.open()
+
+        then:
+        def e = thrown(BuildCacheException)
+        e.cause.message.contains("in use by another process")
+
+        when:
+        service.close()
+        other.open()
+        other.store(key, new StoreTarget(file("first", "Hello world")))
+        other.close()
+        openServiceWithClock(Time.clock())
+
+        then:
+        load(key) == "Hello world"
+    }
+
+    def "doesn't overwrite an entry with the same key"() {
+        when:
+        service.store(key, new StoreTarget(file("first", "Hello world")))
+        service.store(key, new StoreTarget(file("second", "Hello Bob")))
+
+        then:
+        load(key) == "Hello world"
+    }
+
+    def "rolls over to new segments"() {
+        given:
+        service.close()
+        service = new LogStructuredBuildCacheService(cacheDir.toPath(), 16, 0, REMOVE_UNUSED_ENTRIES_AFTER_7_DAYS, Time.clock())
+        service.open()
+
+        when:
+        service.store(key, new StoreTarget(file("first", "Hello world")))
+        service.store(otherKey, new StoreTarget(file("second", "Hello Bob")))
+
+        then:
+        segments().size() == 2
+        load(key) == "Hello world"
+        load(otherKey) == "Hello Bob"
+    }
+
+    def "does a cleanup of old entries over a moving period of time"() {
+        given:
+        def now = Time.currentTimeMillis()
+        openServiceWithClock({ now - TimeUnit.DAYS.toMillis(6) })
+        service.store(key, new StoreTarget(file("second", "Hello Bob")))
+        openServiceWithClock({ now })
+        service.store(otherKey, new StoreTarget(file("first", "Hello world")))
+
+        when:
+        service.cleanup()
+
+        then:
+        service.open()
+        service.contains(key)
+        service.contains(otherKey)
+
+        when:
+        openServiceWithClock({ now + TimeUnit.DAYS.toMillis(6) })
+        service.cleanup()
+
+        then:
+        service.open()
+        !service.contains(key)
+        service.contains(otherKey)
+
+        when:
+        openServiceWithClock({ now + TimeUnit.DAYS.toMillis(8) })
+        service.cleanup()
+
+        then:
+        service.open()
+        !service.contains(key)
+        !service.contains(otherKey)
+    }
+
+    def "cleanup compacts segments with little live content"() {
+        given:
+        service.close()
+        service = new LogStructuredBuildCacheService(cacheDir.toPath(), 1024, 0, REMOVE_UNUSED_ENTRIES_AFTER_7_DAYS, Time.clock())
+        service.open()
+        service.store(key, new StoreTarget(file("first", "x" * 1000)))
+        service.store(otherKey, new StoreTarget(file("second", "Hello Bob")))
+        def originalSegments = segments()
+
+        when:
+        service.remove(key)
+        service.cleanup()
+        service.open()
+
+        then:
+        !service.contains(key)
+        load(otherKey) == "Hello Bob"
+        segments().size() == 1
+        segments() != originalSegments
+        segments()[0].length() < 1000
+    }
+
+    private String load(BuildCacheKey key) {
+        String content = null
+        assert service.load(key, { InputStream input -> content = input.text } as BuildCacheEntryReader)
+        return content
+    }
+
+    private File file(String name, String content) {
+        def file = temporaryFolder.createFile(name)
+        file.text = content
+        return file
+    }
+
+    private void corrupt(String content) {
+        def segment = segments()[0]
+        def bytes = segment.bytes
+        int offset = new String(bytes, "ISO-8859-1").indexOf(content)
+        assert offset >= 0
+        bytes[offset] = (byte) (bytes[offset] ^ 0xff)
+        segment.bytes = bytes
+    }
+
+    private List<File> segments() {
+        cacheDir.listFiles().findAll { it.name.startsWith("segment-") }.sort { it.name }
+    }
+
+    private void openServiceWithClock(Clock clock) {
+        if (service != null) {
+            service.close()
+        }
+        service = new LogStructuredBuildCacheService(cacheDir.toPath(), REMOVE_UNUSED_ENTRIES_AFTER_7_DAYS, clock)
+        service.open()
+    }
+}
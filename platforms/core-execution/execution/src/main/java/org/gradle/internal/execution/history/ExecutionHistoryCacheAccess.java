@@ -17,10 +17,18 @@
 
 import org.gradle.cache.PersistentCache;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Supplier;
 
 /**
  * Provides access to the persistent execution history store.
  */
 public interface ExecutionHistoryCacheAccess extends Supplier<PersistentCache> {
+    /**
+     * Returns the caches the execution history is sharded across. The first shard is the cache returned by {@link #get()}.
+     */
+    default List<PersistentCache> getShards() {
+        return Collections.singletonList(get());
+    }
 }
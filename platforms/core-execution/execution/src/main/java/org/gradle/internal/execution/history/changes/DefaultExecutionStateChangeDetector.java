@@ -16,6 +16,7 @@
 
 package org.gradle.internal.execution.history.changes;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
@@ -27,6 +28,8 @@
 import org.gradle.internal.snapshot.impl.ClassImplementationSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 
+import java.util.function.Supplier;
+
 import static org.gradle.internal.execution.history.impl.OutputSnapshotUtil.findOutputsStillPresentSincePreviousExecution;
 
 public class DefaultExecutionStateChangeDetector implements ExecutionStateChangeDetector {
@@ -65,15 +68,16 @@ public ExecutionStateChanges detectChanges(
             executable);
 
         // Capture input files state
-        ChangeContainer inputFilePropertyChanges = new PropertyChanges(
+        // The previous input file fingerprints are only decoded when no other change has been detected
+        ChangeContainer inputFilePropertyChanges = lazy(() -> new PropertyChanges(
             lastExecution.getInputFileProperties().keySet(),
             thisExecution.getInputFileProperties().keySet(),
             "Input file",
-            executable);
-        InputFileChanges nonIncrementalInputFileChanges = incrementalInputProperties.nonIncrementalChanges(
+            executable));
+        ChangeContainer nonIncrementalInputFileChanges = lazy(() -> incrementalInputProperties.nonIncrementalChanges(
             lastExecution.getInputFileProperties(),
             thisExecution.getInputFileProperties()
-        );
+        ));
 
         // Capture output files state
         ChangeContainer outputFilePropertyChanges = new PropertyChanges(
@@ -125,6 +129,11 @@ public ExecutionStateChanges detectChanges(
         }
     }
 
+    private static ChangeContainer lazy(Supplier<ChangeContainer> factory) {
+        Supplier<ChangeContainer> changes = Suppliers.memoize(factory::get);
+        return visitor -> changes.get().accept(visitor);
+    }
+
     private static ImmutableList<String> collectChanges(ChangeContainer changes) {
         ImmutableList.Builder<String> builder = ImmutableList.builder();
         MessageCollectingChangeVisitor visitor = new MessageCollectingChangeVisitor(builder, ExecutionStateChangeDetector.MAX_OUT_OF_DATE_MESSAGES);
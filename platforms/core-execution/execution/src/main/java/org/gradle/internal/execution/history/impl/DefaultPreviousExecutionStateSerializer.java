@@ -16,10 +16,12 @@
 
 package org.gradle.internal.execution.history.impl;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
 import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.execution.history.PreviousExecutionState;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
@@ -27,16 +29,23 @@
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshotSerializer;
 import org.gradle.internal.snapshot.impl.SnapshotSerializer;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.time.Duration;
 import java.util.Map;
 
 public class DefaultPreviousExecutionStateSerializer extends AbstractSerializer<PreviousExecutionState> {
+    // The serializer is shared by all shards of the execution history, so each writing thread gets its own encoder
+    private static final ThreadLocal<SectionEncoder> SECTION_ENCODER = ThreadLocal.withInitial(SectionEncoder::new);
+
     private final Serializer<FileCollectionFingerprint> fileCollectionFingerprintSerializer;
     private final Serializer<FileSystemSnapshot> fileSystemSnapshotSerializer;
     private final Serializer<ImplementationSnapshot> implementationSnapshotSerializer;
@@ -72,18 +81,20 @@ public PreviousExecutionState read(Decoder decoder) throws Exception {
         ImmutableList<ImplementationSnapshot> taskActionImplementations = taskActionImplementationsBuilder.build();
 
         ImmutableSortedMap<String, ValueSnapshot> inputProperties = readInputProperties(decoder);
-        ImmutableSortedMap<String, FileCollectionFingerprint> inputFilesFingerprints = readFingerprints(decoder);
-        ImmutableSortedMap<String, FileSystemSnapshot> outputFilesSnapshots = readSnapshots(decoder);
-
         boolean successful = decoder.readBoolean();
 
-        return new DefaultPreviousExecutionState(
+        ImmutableSortedMap<String, FileSystemSnapshot> outputFilesProducedByWork = readSnapshots(decoder);
+
+        // The fingerprints are only needed when no other change has been detected, so they are only decoded when they are used
+        byte[] inputFilesFingerprints = decoder.readBinary();
+
+        return new LazyPreviousExecutionState(
             originMetadata,
             taskImplementation,
             taskActionImplementations,
             inputProperties,
-            inputFilesFingerprints,
-            outputFilesSnapshots,
+            Suppliers.memoize(() -> decodeSection(inputFilesFingerprints, this::readFingerprints)),
+            outputFilesProducedByWork,
             successful
         );
     }
@@ -102,10 +113,22 @@ public void write(Encoder encoder, PreviousExecutionState execution) throws Exce
         }
 
         writeInputProperties(encoder, execution.getInputProperties());
-        writeFingerprints(encoder, execution.getInputFileProperties());
+        encoder.writeBoolean(execution.isSuccessful());
+
         writeSnapshots(encoder, execution.getOutputFilesProducedByWork());
+        encoder.writeBinary(encodeSection(sectionEncoder -> writeFingerprints(sectionEncoder, execution.getInputFileProperties())));
+    }
 
-        encoder.writeBoolean(execution.isSuccessful());
+    private static byte[] encodeSection(Encoder.EncodeAction<Encoder> action) throws Exception {
+        return SECTION_ENCODER.get().encode(action);
+    }
+
+    private static <T> T decodeSection(byte[] bytes, SectionReader<T> reader) {
+        try {
+            return reader.read(new KryoBackedDecoder(new ByteArrayInputStream(bytes), bytes.length));
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
     }
 
     public ImmutableSortedMap<String, ValueSnapshot> readInputProperties(Decoder decoder) throws Exception {
@@ -178,4 +201,41 @@ private void writeValueSnapshot(Encoder encoder, ValueSnapshot snapshot) throws
         valueSnapshotSerializer.write(encoder, snapshot);
     }
 
+    private interface SectionReader<T> {
+        T read(Decoder decoder) throws Exception;
+    }
+
+    private static class SectionEncoder {
+        // Buffers grown beyond this size by an unusually large section are not kept around
+        private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+        private ByteArrayOutputStream bytes;
+        private KryoBackedEncoder encoder;
+
+        SectionEncoder() {
+            allocate();
+        }
+
+        byte[] encode(Encoder.EncodeAction<Encoder> action) throws Exception {
+            boolean written = false;
+            try {
+                action.write(encoder);
+                encoder.flush();
+                written = true;
+                return bytes.toByteArray();
+            } finally {
+                if (written && bytes.size() <= MAX_RETAINED_SIZE) {
+                    bytes.reset();
+                } else {
+                    // A failed write can leave unflushed data behind in the encoder
+                    allocate();
+                }
+            }
+        }
+
+        private void allocate() {
+            bytes = new ByteArrayOutputStream();
+            encoder = new KryoBackedEncoder(bytes);
+        }
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.ValueSnapshot;
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
+
+import java.util.function.Supplier;
+
+/**
+ * A {@link PreviousExecutionState} read from the execution history, which decodes the input file fingerprints on first access.
+ */
+class LazyPreviousExecutionState implements PreviousExecutionState {
+    private final OriginMetadata originMetadata;
+    private final ImplementationSnapshot implementation;
+    private final ImmutableList<ImplementationSnapshot> additionalImplementations;
+    private final ImmutableSortedMap<String, ValueSnapshot> inputProperties;
+    private final Supplier<ImmutableSortedMap<String, FileCollectionFingerprint>> inputFileProperties;
+    private final ImmutableSortedMap<String, FileSystemSnapshot> outputFilesProducedByWork;
+    private final boolean successful;
+
+    LazyPreviousExecutionState(
+        OriginMetadata originMetadata,
+        ImplementationSnapshot implementation,
+        ImmutableList<ImplementationSnapshot> additionalImplementations,
+        ImmutableSortedMap<String, ValueSnapshot> inputProperties,
+        Supplier<ImmutableSortedMap<String, FileCollectionFingerprint>> inputFileProperties,
+        ImmutableSortedMap<String, FileSystemSnapshot> outputFilesProducedByWork,
+        boolean successful
+    ) {
+        this.originMetadata = originMetadata;
+        this.implementation = implementation;
+        this.additionalImplementations = additionalImplementations;
+        this.inputProperties = inputProperties;
+        this.inputFileProperties = inputFileProperties;
+        this.outputFilesProducedByWork = outputFilesProducedByWork;
+        this.successful = successful;
+    }
+
+    @Override
+    public OriginMetadata getOriginMetadata() {
+        return originMetadata;
+    }
+
+    @Override
+    public ImplementationSnapshot getImplementation() {
+        return implementation;
+    }
+
+    @Override
+    public ImmutableList<ImplementationSnapshot> getAdditionalImplementations() {
+        return additionalImplementations;
+    }
+
+    @Override
+    public ImmutableSortedMap<String, ValueSnapshot> getInputProperties() {
+        return inputProperties;
+    }
+
+    @Override
+    public ImmutableSortedMap<String, FileCollectionFingerprint> getInputFileProperties() {
+        return inputFileProperties.get();
+    }
+
+    @Override
+    public ImmutableSortedMap<String, FileSystemSnapshot> getOutputFilesProducedByWork() {
+        return outputFilesProducedByWork;
+    }
+
+    @Override
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    @Override
+    public boolean isReused() {
+        return true;
+    }
+}
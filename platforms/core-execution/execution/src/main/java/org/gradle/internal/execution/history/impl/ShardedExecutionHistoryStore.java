@@ -0,0 +1,98 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.gradle.cache.IndexedCache;
+import org.gradle.cache.IndexedCacheParameters;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.HeapProportionalCacheSizer;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.execution.history.AfterExecutionState;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * An {@link ExecutionHistoryStore} that spreads the execution history across several persistent caches, choosing the cache by the hash of the key.
+ *
+ * <p>Every shard has its own file lock and cache access worker, so that lookups for different work don't queue up behind each other.
+ * The stored states are immutable, so they are kept in a single in-memory tier in front of the shards, that is read without taking any lock.
+ * The tier also remembers keys without history, lives as long as the store and is sized in proportion to the available heap.</p>
+ */
+public class ShardedExecutionHistoryStore implements ExecutionHistoryStore {
+    private static final int IN_MEMORY_ENTRIES_PER_SHARD = 10000;
+
+    private final List<IndexedCache<String, PreviousExecutionState>> shards;
+    private final Cache<String, Optional<PreviousExecutionState>> inMemoryStates;
+
+    public ShardedExecutionHistoryStore(
+        List<PersistentCache> caches,
+        Interner<String> stringInterner,
+        ClassLoaderHierarchyHasher classLoaderHasher
+    ) {
+        DefaultPreviousExecutionStateSerializer serializer = DefaultExecutionHistoryStore.createSerializer(stringInterner, classLoaderHasher);
+        ImmutableList.Builder<IndexedCache<String, PreviousExecutionState>> shards = ImmutableList.builderWithExpectedSize(caches.size());
+        for (PersistentCache cache : caches) {
+            shards.add(cache.createIndexedCache(IndexedCacheParameters.of("executionHistory", String.class, serializer)));
+        }
+        this.shards = shards.build();
+        this.inMemoryStates = CacheBuilder.newBuilder()
+            .maximumSize(new HeapProportionalCacheSizer().scaleCacheSize(IN_MEMORY_ENTRIES_PER_SHARD * caches.size()))
+            .concurrencyLevel(caches.size())
+            .build();
+    }
+
+    @Override
+    public Optional<PreviousExecutionState> load(String key) {
+        try {
+            // A state stored or removed while loading replaces the loaded state
+            return inMemoryStates.get(key, () -> Optional.ofNullable(shardFor(key).getIfPresent(key)));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
+    @Override
+    public void store(String key, AfterExecutionState executionState) {
+        PreviousExecutionState state = DefaultExecutionHistoryStore.toPreviousExecutionState(executionState);
+        inMemoryStates.put(key, Optional.of(state));
+        shardFor(key).put(key, state);
+    }
+
+    @Override
+    public void remove(String key) {
+        inMemoryStates.put(key, Optional.empty());
+        shardFor(key).remove(key);
+    }
+
+    private IndexedCache<String, PreviousExecutionState> shardFor(String key) {
+        return shards.get(shardIndex(key, shards.size()));
+    }
+
+    static int shardIndex(String key, int shardCount) {
+        return Math.floorMod(key.hashCode(), shardCount);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.caching.internal.origin.OriginMetadata
+import org.gradle.internal.fingerprint.FileCollectionFingerprint
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher
+import org.gradle.internal.serialize.Decoder
+import org.gradle.internal.serialize.Encoder
+import org.gradle.internal.serialize.Serializer
+import org.gradle.internal.serialize.SerializerSpec
+import org.gradle.internal.snapshot.FileSystemSnapshot
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+
+import java.time.Duration
+
+import static org.gradle.internal.hash.TestHashCodes.hashCodeFrom
+
+class DefaultPreviousExecutionStateSerializerTest extends SerializerSpec {
+    def fingerprintSerializer = Mock(Serializer)
+    def snapshotSerializer = Mock(Serializer)
+    def serializer = new DefaultPreviousExecutionStateSerializer(fingerprintSerializer, snapshotSerializer, Stub(ClassLoaderHierarchyHasher))
+    def fingerprint = Stub(FileCollectionFingerprint)
+    def snapshot = Stub(FileSystemSnapshot)
+
+    def "decodes input file fingerprints on first access"() {
+        def state = new DefaultPreviousExecutionState(
+            new OriginMetadata("invocation-id", Duration.ofMillis(123)),
+            ImplementationSnapshot.of("MyWorkClass", hashCodeFrom(1234)),
+            ImmutableList.of(ImplementationSnapshot.of("MyAction", hashCodeFrom(2345))),
+            ImmutableSortedMap.of(),
+            ImmutableSortedMap.of("input", fingerprint),
+            ImmutableSortedMap.of("output", snapshot),
+            true
+        )
+
+        when:
+        def out = serialize(state, serializer)
+
+        then:
+        1 * fingerprintSerializer.write(_, fingerprint) >> { Encoder encoder, value -> encoder.writeString("fingerprint") }
+        1 * snapshotSerializer.write(_, snapshot) >> { Encoder encoder, value -> encoder.writeString("snapshot") }
+        1 * snapshotSerializer.read(_) >> { Decoder decoder ->
+            assert decoder.readString() == "snapshot"
+            snapshot
+        }
+        0 * fingerprintSerializer.read(_)
+
+        and:
+        out.outputFilesProducedByWork == ImmutableSortedMap.of("output", snapshot)
+        out.originMetadata.buildInvocationId == "invocation-id"
+        out.originMetadata.executionTime == Duration.ofMillis(123)
+        out.implementation.classIdentifier == "MyWorkClass"
+        out.additionalImplementations*.classIdentifier == ["MyAction"]
+        out.inputProperties.isEmpty()
+        out.successful
+
+        when:
+        def inputFileProperties = out.inputFileProperties
+
+        then:
+        1 * fingerprintSerializer.read(_) >> { Decoder decoder ->
+            assert decoder.readString() == "fingerprint"
+            fingerprint
+        }
+        0 * snapshotSerializer.read(_)
+        inputFileProperties == ImmutableSortedMap.of("input", fingerprint)
+
+        when:
+        out.inputFileProperties
+
+        then:
+        0 * fingerprintSerializer.read(_)
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSortedMap
+import com.google.common.collect.Interners
+import org.gradle.cache.IndexedCache
+import org.gradle.cache.IndexedCacheParameters
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.internal.origin.OriginMetadata
+import org.gradle.internal.execution.history.AfterExecutionState
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+import org.gradle.testfixtures.internal.TestInMemoryIndexedCache
+import spock.lang.Specification
+
+import java.time.Duration
+
+import static org.gradle.internal.hash.TestHashCodes.hashCodeFrom
+
+class ShardedExecutionHistoryStoreTest extends Specification {
+    def shardCaches = new TestInMemoryIndexedCache[4]
+    def shards = (0..<4).collect { index ->
+        Stub(PersistentCache) {
+            createIndexedCache(_ as IndexedCacheParameters) >> { IndexedCacheParameters parameters ->
+                if (shardCaches[index] == null) {
+                    shardCaches[index] = new TestInMemoryIndexedCache(parameters.valueSerializer)
+                }
+                return shardCaches[index]
+            }
+        }
+    }
+    def store = new ShardedExecutionHistoryStore(shards, Interners.newStrongInterner(), Stub(ClassLoaderHierarchyHasher))
+
+    def "stores each entry in the shard chosen by its key"() {
+        def keys = (1..20).collect { ":project:task$it" }
+
+        when:
+        keys.each { store.store(it, executionState(it)) }
+
+        then:
+        keys.every { key ->
+            def expectedShard = ShardedExecutionHistoryStore.shardIndex(key, 4)
+            (0..<4).every { shard -> (shardCaches[shard].getIfPresent(key) != null) == (shard == expectedShard) }
+        }
+        keys.every { store.load(it).get().originMetadata.buildInvocationId == it }
+    }
+
+    def "loads entries stored by a previous store"() {
+        store.store(":task", executionState(":task"))
+
+        when:
+        def newStore = new ShardedExecutionHistoryStore(shards, Interners.newStrongInterner(), Stub(ClassLoaderHierarchyHasher))
+
+        then:
+        newStore.load(":task").get().originMetadata.buildInvocationId == ":task"
+        !newStore.load(":other").present
+    }
+
+    def "reuses loaded state"() {
+        store.store(":task", executionState(":task"))
+
+        expect:
+        store.load(":task").get().is(store.load(":task").get())
+    }
+
+    def "remembers keys without history"() {
+        def shardCache = Mock(IndexedCache)
+        def store = new ShardedExecutionHistoryStore([shard(shardCache), shard(shardCache)], Interners.newStrongInterner(), Stub(ClassLoaderHierarchyHasher))
+
+        when:
+        def first = store.load(":task")
+        def second = store.load(":task")
+
+        then:
+        !first.present
+        !second.present
+        1 * shardCache.getIfPresent(":task") >> null
+        0 * shardCache._
+    }
+
+    def "keeps state stored while loading"() {
+        def shardCache = Mock(IndexedCache)
+        def store = new ShardedExecutionHistoryStore([shard(shardCache), shard(shardCache)], Interners.newStrongInterner(), Stub(ClassLoaderHierarchyHasher))
+
+        when:
+        def loaded = store.load(":task")
+
+        then:
+        !loaded.present
+        1 * shardCache.getIfPresent(":task") >> {
+            store.store(":task", executionState("stored"))
+            null
+        }
+        1 * shardCache.put(":task", _)
+
+        when:
+        def reloaded = store.load(":task")
+
+        then:
+        reloaded.get().originMetadata.buildInvocationId == "stored"
+        0 * shardCache._
+    }
+
+    def "removes entries"() {
+        store.store(":task", executionState(":task"))
+
+        when:
+        store.remove(":task")
+
+        then:
+        !store.load(":task").present
+        shardCaches.every { it.getIfPresent(":task") == null }
+    }
+
+    private PersistentCache shard(IndexedCache indexedCache) {
+        Stub(PersistentCache) {
+            createIndexedCache(_ as IndexedCacheParameters) >> indexedCache
+        }
+    }
+
+    private AfterExecutionState executionState(String buildInvocationId) {
+        Stub(AfterExecutionState) {
+            getOriginMetadata() >> new OriginMetadata(buildInvocationId, Duration.ofMillis(10))
+            getImplementation() >> ImplementationSnapshot.of("MyWorkClass", hashCodeFrom(1234))
+            getAdditionalImplementations() >> ImmutableList.of()
+            getInputProperties() >> ImmutableSortedMap.of()
+            getInputFileProperties() >> ImmutableSortedMap.of()
+            getOutputFilesProducedByWork() >> ImmutableSortedMap.of()
+            isSuccessful() >> true
+        }
+    }
+}
@@ -36,6 +36,14 @@ public interface FileWatcherRegistry extends Closeable {
     interface ChangeHandler {
         void handleChange(Type type, Path path);
 
+        /**
+         * Called after all the changes received together in one batch have been passed to {@link #handleChange(Type, Path)}.
+         *
+         * Handlers can defer expensive work, like updating the virtual file system, until the whole batch has been received.
+         */
+        default void handleChangeBatchFinished() {
+        }
+
         void stopWatchingAfterError();
     }
 
@@ -105,5 +113,15 @@ interface FileWatchingStatistics {
         boolean isUnknownEventEncountered();
         int getNumberOfReceivedEvents();
         int getNumberOfWatchedHierarchies();
+
+        /**
+         * The largest number of events which queued up before being handled.
+         */
+        int getMaximumEventQueueDepth();
+
+        /**
+         * The number of overflows reported by the watcher, where events have been dropped and the affected locations had to be invalidated.
+         */
+        int getNumberOfOverflows();
     }
 }
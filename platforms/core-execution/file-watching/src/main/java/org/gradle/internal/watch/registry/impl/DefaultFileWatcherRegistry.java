@@ -33,6 +33,7 @@
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -75,51 +76,64 @@ public DefaultFileWatcherRegistry(
     }
 
     private Thread createAndStartEventConsumerThread(ChangeHandler handler) {
+        FileWatchEvent.Handler eventHandler = new FileWatchEvent.Handler() {
+            @Override
+            public void handleChangeEvent(FileWatchEvent.ChangeType type, String absolutePath) {
+                fileWatchingStatistics.eventReceived();
+                fileWatcherUpdater.triggerWatchProbe(absolutePath);
+                handler.handleChange(convertType(type), Paths.get(absolutePath));
+            }
+
+            @Override
+            public void handleUnknownEvent(String absolutePath) {
+                LOGGER.error("Received unknown event for {}", absolutePath);
+                fileWatchingStatistics.unknownEventEncountered();
+                handler.stopWatchingAfterError();
+            }
+
+            @Override
+            public void handleOverflow(FileWatchEvent.OverflowType type, @Nullable String absolutePath) {
+                fileWatchingStatistics.overflowReceived();
+                if (absolutePath == null) {
+                    LOGGER.info("Overflow detected (type: {}), invalidating all watched files", type);
+                    fileWatcherUpdater.getWatchedFiles().visitRoots(watchedRoot ->
+                        handler.handleChange(OVERFLOW, Paths.get(watchedRoot)));
+                } else {
+                    LOGGER.info("Overflow detected (type: {}) for watched path '{}', invalidating", type, absolutePath);
+                    handler.handleChange(OVERFLOW, Paths.get(absolutePath));
+                }
+            }
+
+            @Override
+            public void handleFailure(Throwable failure) {
+                LOGGER.error("Error while receiving file changes", failure);
+                fileWatchingStatistics.errorWhileReceivingFileChanges(failure);
+                handler.stopWatchingAfterError();
+            }
+
+            @Override
+            public void handleTerminated() {
+                consumeEvents = false;
+            }
+        };
         Thread thread = new Thread(() -> {
             LOGGER.debug("Started listening to file system change events");
             try {
+                List<FileWatchEvent> batch = new ArrayList<>();
                 while (consumeEvents) {
-                    FileWatchEvent nextEvent = fileEvents.take();
+                    // Handle everything which queued up while the previous batch was handled in one go
+                    batch.add(fileEvents.take());
+                    fileEvents.drainTo(batch);
+                    fileWatchingStatistics.eventsDequeued(batch.size());
+                    for (FileWatchEvent event : batch) {
+                        if (stopping) {
+                            break;
+                        }
+                        event.handleEvent(eventHandler);
+                    }
+                    batch.clear();
                     if (!stopping) {
-                        nextEvent.handleEvent(new FileWatchEvent.Handler() {
-                            @Override
-                            public void handleChangeEvent(FileWatchEvent.ChangeType type, String absolutePath) {
-                                fileWatchingStatistics.eventReceived();
-                                fileWatcherUpdater.triggerWatchProbe(absolutePath);
-                                handler.handleChange(convertType(type), Paths.get(absolutePath));
-                            }
-
-                            @Override
-                            public void handleUnknownEvent(String absolutePath) {
-                                LOGGER.error("Received unknown event for {}", absolutePath);
-                                fileWatchingStatistics.unknownEventEncountered();
-                                handler.stopWatchingAfterError();
-                            }
-
-                            @Override
-                            public void handleOverflow(FileWatchEvent.OverflowType type, @Nullable String absolutePath) {
-                                if (absolutePath == null) {
-                                    LOGGER.info("Overflow detected (type: {}), invalidating all watched files", type);
-                                    fileWatcherUpdater.getWatchedFiles().visitRoots(watchedRoot ->
-                                        handler.handleChange(OVERFLOW, Paths.get(watchedRoot)));
-                                } else {
-                                    LOGGER.info("Overflow detected (type: {}) for watched path '{}', invalidating", type, absolutePath);
-                                    handler.handleChange(OVERFLOW, Paths.get(absolutePath));
-                                }
-                            }
-
-                            @Override
-                            public void handleFailure(Throwable failure) {
-                                LOGGER.error("Error while receiving file changes", failure);
-                                fileWatchingStatistics.errorWhileReceivingFileChanges(failure);
-                                handler.stopWatchingAfterError();
-                            }
-
-                            @Override
-                            public void handleTerminated() {
-                                consumeEvents = false;
-                            }
-                        });
+                        handler.handleChangeBatchFinished();
                     }
                 }
             } catch (InterruptedException e) {
@@ -204,6 +218,16 @@ public int getNumberOfReceivedEvents() {
             public int getNumberOfWatchedHierarchies() {
                 return numberOfWatchedHierarchies.get();
             }
+
+            @Override
+            public int getMaximumEventQueueDepth() {
+                return currentStatistics.getMaximumEventQueueDepth();
+            }
+
+            @Override
+            public int getNumberOfOverflows() {
+                return currentStatistics.getNumberOfOverflows();
+            }
         };
     }
 
@@ -236,6 +260,8 @@ public void close() throws IOException {
     private static class MutableFileWatchingStatistics {
         private boolean unknownEventEncountered;
         private int numberOfReceivedEvents;
+        private int maximumEventQueueDepth;
+        private int numberOfOverflows;
         private Throwable errorWhileReceivingFileChanges;
 
         public Optional<Throwable> getErrorWhileReceivingFileChanges() {
@@ -250,10 +276,26 @@ public int getNumberOfReceivedEvents() {
             return numberOfReceivedEvents;
         }
 
+        public int getMaximumEventQueueDepth() {
+            return maximumEventQueueDepth;
+        }
+
+        public int getNumberOfOverflows() {
+            return numberOfOverflows;
+        }
+
         public void eventReceived() {
             numberOfReceivedEvents++;
         }
 
+        public void eventsDequeued(int queueDepth) {
+            maximumEventQueueDepth = Math.max(maximumEventQueueDepth, queueDepth);
+        }
+
+        public void overflowReceived() {
+            numberOfOverflows++;
+        }
+
         public void errorWhileReceivingFileChanges(Throwable error) {
             if (errorWhileReceivingFileChanges != null) {
                 errorWhileReceivingFileChanges = error;
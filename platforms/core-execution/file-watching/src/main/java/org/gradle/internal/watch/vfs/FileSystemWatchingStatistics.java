@@ -20,6 +20,10 @@ public interface FileSystemWatchingStatistics {
     int getNumberOfReceivedEvents();
     int getNumberOfWatchedHierarchies();
 
+    int getMaximumEventQueueDepth();
+    int getNumberOfCoalescedEvents();
+    int getNumberOfOverflows();
+
     int getRetainedRegularFiles();
     int getRetainedDirectories();
     int getRetainedMissingFiles();
@@ -27,13 +27,16 @@
 
 public class DefaultFileSystemWatchingStatistics implements FileSystemWatchingStatistics {
     private final FileWatcherRegistry.FileWatchingStatistics fileWatchingStatistics;
+    private final int numberOfCoalescedEvents;
     private final VirtualFileSystemStatistics vfsStatistics;
 
     public DefaultFileSystemWatchingStatistics(
         FileWatcherRegistry.FileWatchingStatistics fileWatchingStatistics,
+        int numberOfCoalescedEvents,
         SnapshotHierarchy vfsRoot
     ) {
         this.fileWatchingStatistics = fileWatchingStatistics;
+        this.numberOfCoalescedEvents = numberOfCoalescedEvents;
         this.vfsStatistics = getStatistics(vfsRoot);
     }
 
@@ -47,6 +50,21 @@ public int getNumberOfWatchedHierarchies() {
         return fileWatchingStatistics.getNumberOfWatchedHierarchies();
     }
 
+    @Override
+    public int getMaximumEventQueueDepth() {
+        return fileWatchingStatistics.getMaximumEventQueueDepth();
+    }
+
+    @Override
+    public int getNumberOfCoalescedEvents() {
+        return numberOfCoalescedEvents;
+    }
+
+    @Override
+    public int getNumberOfOverflows() {
+        return fileWatchingStatistics.getNumberOfOverflows();
+    }
+
     @Override
     public int getRetainedRegularFiles() {
         return vfsStatistics.getRetained(FileType.RegularFile);
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import org.gradle.internal.watch.registry.FileWatcherRegistry;
+
+import java.io.File;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the changes received from the file watcher in one batch, keeping only the topmost changed locations.
+ *
+ * Invalidating a location in the virtual file system also invalidates everything below it,
+ * so changes to descendants of a changed location are redundant and are coalesced into the change of the ancestor.
+ */
+class FileChangeCoalescer {
+    private final char separator;
+    private final NavigableMap<String, FileWatcherRegistry.Type> changes = new TreeMap<>();
+    private int numberOfCoalescedChanges;
+
+    public FileChangeCoalescer() {
+        this(File.separatorChar);
+    }
+
+    FileChangeCoalescer(char separator) {
+        this.separator = separator;
+    }
+
+    public void add(FileWatcherRegistry.Type type, String absolutePath) {
+        if (changes.containsKey(absolutePath) || hasChangedAncestor(absolutePath)) {
+            numberOfCoalescedChanges++;
+            return;
+        }
+        String prefix = absolutePath.isEmpty() || absolutePath.charAt(absolutePath.length() - 1) != separator
+            ? absolutePath + separator
+            : absolutePath;
+        NavigableMap<String, FileWatcherRegistry.Type> descendants = changes.subMap(
+            prefix, true,
+            prefix.substring(0, prefix.length() - 1) + (char) (separator + 1), false
+        );
+        numberOfCoalescedChanges += descendants.size();
+        descendants.clear();
+        changes.put(absolutePath, type);
+    }
+
+    private boolean hasChangedAncestor(String absolutePath) {
+        for (int index = absolutePath.length() - 2; index >= 0; index--) {
+            if (absolutePath.charAt(index) == separator) {
+                // Roots like '/' or 'C:\' keep their trailing separator
+                if (changes.containsKey(absolutePath.substring(0, index + 1))
+                    || (index > 0 && changes.containsKey(absolutePath.substring(0, index)))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * The number of changes made redundant by a change to the same location or to one of its ancestors since the last {@link #clear()}.
+     */
+    public int getNumberOfCoalescedChanges() {
+        return numberOfCoalescedChanges;
+    }
+
+    public void visitChanges(BiConsumer<String, FileWatcherRegistry.Type> visitor) {
+        changes.forEach(visitor);
+    }
+
+    public void clear() {
+        changes.clear();
+        numberOfCoalescedChanges = 0;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.excludes.FileSystemDefaultExcludesListener;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the contents of the virtual file system in a file between daemons.
+ *
+ * <p>The retained snapshots are written when the virtual file system is closed, and read back by the next daemon when it starts watching.
+ * While a daemon is not running nobody watches the file system, so every restored location is checked against the file system before it is used:
+ * regular files need to have the same length and modification time, missing files need to be still missing and directories need to have the same modification time,
+ * which changes whenever a child is added or removed. Locations that don't match are invalidated, the rest of the hierarchy is kept.
+ * The check must only happen once the restored locations are watched, so that changes made while checking are reported by the watcher.</p>
+ *
+ * <p>Locations modified shortly before the state was written are never restored, since a change to them may not have been reported by the watcher yet.</p>
+ *
+ * <p>The state is dropped as a whole when it has been written with a different format, file hash function or set of default excludes.</p>
+ */
+public class VirtualFileSystemStateStore implements FileSystemDefaultExcludesListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualFileSystemStateStore.class);
+    private static final int FORMAT_VERSION = 1;
+    private static final long RECENT_MODIFICATION_WINDOW_MILLIS = 5000;
+    private static final long UNKNOWN_MODIFICATION_TIME = -1;
+
+    private static final byte DIRECTORY = 0;
+    private static final byte REGULAR_FILE = 1;
+    private static final byte MISSING = 2;
+    private static final byte END = 3;
+
+    private final File stateFile;
+    private final HashFunction fileContentHashFunction;
+    private volatile ImmutableList<String> defaultExcludes;
+
+    public VirtualFileSystemStateStore(File stateFile, HashFunction fileContentHashFunction, List<String> defaultExcludes) {
+        this.stateFile = stateFile;
+        this.fileContentHashFunction = fileContentHashFunction;
+        this.defaultExcludes = ImmutableList.copyOf(defaultExcludes);
+    }
+
+    @Override
+    public void onDefaultExcludesChanged(List<String> excludes) {
+        defaultExcludes = ImmutableList.copyOf(excludes);
+    }
+
+    /**
+     * Writes the snapshots retained in the given hierarchy, replacing any previously written state.
+     */
+    public void save(SnapshotHierarchy root) {
+        Path tempFile = null;
+        try {
+            Path stateDir = stateFile.getParentFile().toPath();
+            Files.createDirectories(stateDir);
+            // Daemons sharing the Gradle user home may save at the same time, so each writes to its own temporary file
+            tempFile = Files.createTempFile(stateDir, stateFile.getName(), ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                writeHeader(output, System.currentTimeMillis());
+                for (FileSystemLocationSnapshot snapshot : (Iterable<FileSystemLocationSnapshot>) root.rootSnapshots()::iterator) {
+                    writeSnapshot(output, snapshot, snapshot.getAbsolutePath());
+                }
+                output.writeByte(END);
+            }
+            moveIntoPlace(tempFile, stateFile.toPath());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.info("Could not write virtual file system state to {}", stateFile, e);
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // Ignored
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the snapshots written by {@link #save(SnapshotHierarchy)}, without checking them against the file system.
+     *
+     * @return the restored state, or {@code null} if there is no compatible state.
+     */
+    @Nullable
+    public RestoredState restore() {
+        try (InputStream inputStream = Files.newInputStream(stateFile.toPath())) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+            long savedAt = readHeader(input);
+            if (savedAt == UNKNOWN_MODIFICATION_TIME) {
+                LOGGER.debug("Ignoring incompatible virtual file system state in {}", stateFile);
+                return null;
+            }
+            RestoredState state = new RestoredState(savedAt - RECENT_MODIFICATION_WINDOW_MILLIS);
+            byte type;
+            while ((type = input.readByte()) != END) {
+                state.snapshots.add(readSnapshot(input, type, null, state));
+            }
+            LOGGER.debug("Restored virtual file system state from {}", stateFile);
+            return state;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not read virtual file system state from {}", stateFile, e);
+            return null;
+        }
+    }
+
+    private void writeHeader(DataOutputStream output, long savedAt) throws IOException {
+        output.writeInt(FORMAT_VERSION);
+        output.writeUTF(compatibilityKey());
+        output.writeLong(savedAt);
+    }
+
+    /**
+     * Returns the time the state was written, or {@link #UNKNOWN_MODIFICATION_TIME} when it has been written by an incompatible daemon.
+     */
+    private long readHeader(DataInputStream input) throws IOException {
+        if (input.readInt() != FORMAT_VERSION || !input.readUTF().equals(compatibilityKey())) {
+            return UNKNOWN_MODIFICATION_TIME;
+        }
+        return input.readLong();
+    }
+
+    private String compatibilityKey() {
+        return fileContentHashFunction.getAlgorithm() + ":" + String.join(",", defaultExcludes);
+    }
+
+    private static void writeSnapshot(DataOutputStream output, FileSystemLocationSnapshot snapshot, String path) throws IOException {
+        if (snapshot instanceof DirectorySnapshot) {
+            DirectorySnapshot directory = (DirectorySnapshot) snapshot;
+            output.writeByte(DIRECTORY);
+            writeCommon(output, snapshot, path);
+            writeHash(output, snapshot.getHash());
+            output.writeLong(directoryModificationTime(snapshot.getAbsolutePath()));
+            ImmutableList<FileSystemLocationSnapshot> children = directory.getChildren();
+            output.writeInt(children.size());
+            for (FileSystemLocationSnapshot child : children) {
+                writeSnapshot(output, child, child.getName());
+            }
+        } else if (snapshot instanceof RegularFileSnapshot) {
+            RegularFileSnapshot file = (RegularFileSnapshot) snapshot;
+            output.writeByte(REGULAR_FILE);
+            writeCommon(output, snapshot, path);
+            writeHash(output, snapshot.getHash());
+            output.writeLong(file.getMetadata().getLastModified());
+            output.writeLong(file.getMetadata().getLength());
+        } else {
+            output.writeByte(MISSING);
+            writeCommon(output, snapshot, path);
+        }
+    }
+
+    private static void writeCommon(DataOutputStream output, FileSystemLocationSnapshot snapshot, String path) throws IOException {
+        output.writeUTF(path);
+        output.writeBoolean(snapshot.getAccessType() == AccessType.VIA_SYMLINK);
+    }
+
+    private static void writeHash(DataOutputStream output, HashCode hash) throws IOException {
+        byte[] bytes = hash.toByteArray();
+        output.writeByte(bytes.length);
+        output.write(bytes);
+    }
+
+    private static long directoryModificationTime(String absolutePath) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(new File(absolutePath).toPath(), BasicFileAttributes.class);
+            return attributes.isDirectory() ? attributes.lastModifiedTime().toMillis() : UNKNOWN_MODIFICATION_TIME;
+        } catch (IOException e) {
+            return UNKNOWN_MODIFICATION_TIME;
+        }
+    }
+
+    private static FileSystemLocationSnapshot readSnapshot(DataInputStream input, byte type, @Nullable String parentPath, RestoredState state) throws IOException {
+        String pathOrName = input.readUTF();
+        String absolutePath = parentPath == null ? pathOrName : parentPath + File.separatorChar + pathOrName;
+        String name = parentPath == null ? new File(absolutePath).getName() : pathOrName;
+        AccessType accessType = input.readBoolean() ? AccessType.VIA_SYMLINK : AccessType.DIRECT;
+        switch (type) {
+            case DIRECTORY: {
+                HashCode hash = readHash(input);
+                state.directoryModificationTimes.put(absolutePath, input.readLong());
+                int childCount = input.readInt();
+                List<FileSystemLocationSnapshot> children = new ArrayList<>(childCount);
+                for (int i = 0; i < childCount; i++) {
+                    children.add(readSnapshot(input, input.readByte(), absolutePath, state));
+                }
+                return new DirectorySnapshot(absolutePath, name, accessType, hash, children);
+            }
+            case REGULAR_FILE: {
+                HashCode hash = readHash(input);
+                long lastModified = input.readLong();
+                long length = input.readLong();
+                return new RegularFileSnapshot(absolutePath, name, hash, DefaultFileMetadata.file(lastModified, length, accessType));
+            }
+            case MISSING:
+                return new MissingFileSnapshot(absolutePath, name, accessType);
+            default:
+                throw new IOException("Unexpected entry type " + type);
+        }
+    }
+
+    private static HashCode readHash(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readUnsignedByte()];
+        input.readFully(bytes);
+        return HashCode.fromBytes(bytes);
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Snapshots read from a previously written state, which have not been checked against the file system yet.
+     */
+    public static class RestoredState {
+        private final long lastTrustedModificationTime;
+        private final List<FileSystemLocationSnapshot> snapshots = new ArrayList<>();
+        private final Map<String, Long> directoryModificationTimes = new HashMap<>();
+
+        private RestoredState(long lastTrustedModificationTime) {
+            this.lastTrustedModificationTime = lastTrustedModificationTime;
+        }
+
+        /**
+         * Removes the restored snapshots at or below the given location and returns them.
+         */
+        public List<FileSystemLocationSnapshot> takeSnapshotsWithin(String absolutePath) {
+            List<FileSystemLocationSnapshot> taken = new ArrayList<>();
+            snapshots.removeIf(snapshot -> {
+                String snapshotPath = snapshot.getAbsolutePath();
+                if (snapshotPath.equals(absolutePath) || snapshotPath.startsWith(absolutePath + File.separatorChar)) {
+                    taken.add(snapshot);
+                    return true;
+                }
+                return false;
+            });
+            return taken;
+        }
+
+        /**
+         * Checks the given restored snapshots against the file system and invalidates the locations that changed since the state was written.
+         */
+        public SnapshotHierarchy invalidateChangedLocations(Collection<FileSystemLocationSnapshot> restoredSnapshots, SnapshotHierarchy root, SnapshotHierarchy.NodeDiffListener diffListener) {
+            List<String> changedLocations = new ArrayList<>();
+            restoredSnapshots.forEach(snapshot -> collectChangedLocations(snapshot, changedLocations));
+            SnapshotHierarchy newRoot = root;
+            for (String changedLocation : changedLocations) {
+                newRoot = newRoot.invalidate(changedLocation, diffListener);
+            }
+            LOGGER.debug("Invalidated {} restored locations changed since the virtual file system state was written", changedLocations.size());
+            return newRoot;
+        }
+
+        private void collectChangedLocations(FileSystemLocationSnapshot snapshot, List<String> changedLocations) {
+            String absolutePath = snapshot.getAbsolutePath();
+            BasicFileAttributes attributes = readAttributes(absolutePath);
+            if (snapshot instanceof DirectorySnapshot) {
+                Long lastModified = directoryModificationTimes.get(absolutePath);
+                if (attributes == null || !attributes.isDirectory() || lastModified == null || !isUnchanged(lastModified, attributes.lastModifiedTime().toMillis())) {
+                    changedLocations.add(absolutePath);
+                }
+                for (FileSystemLocationSnapshot child : ((DirectorySnapshot) snapshot).getChildren()) {
+                    collectChangedLocations(child, changedLocations);
+                }
+            } else if (snapshot instanceof RegularFileSnapshot) {
+                FileMetadata metadata = ((RegularFileSnapshot) snapshot).getMetadata();
+                if (attributes == null || !attributes.isRegularFile() || attributes.size() != metadata.getLength() || !isUnchanged(metadata.getLastModified(), attributes.lastModifiedTime().toMillis())) {
+                    changedLocations.add(absolutePath);
+                }
+            } else if (attributes != null) {
+                changedLocations.add(absolutePath);
+            }
+        }
+
+        private boolean isUnchanged(long recordedModificationTime, long actualModificationTime) {
+            return recordedModificationTime != UNKNOWN_MODIFICATION_TIME
+                && recordedModificationTime == actualModificationTime
+                && recordedModificationTime < lastTrustedModificationTime;
+        }
+
+        /**
+         * Returns the attributes of the file at the given location, following symlinks, or {@code null} if there is no file there.
+         */
+        @Nullable
+        private static BasicFileAttributes readAttributes(String absolutePath) {
+            try {
+                return Files.readAttributes(new File(absolutePath).toPath(), BasicFileAttributes.class);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemNode;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
@@ -55,6 +56,7 @@
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem implements BuildLifecycleAwareVirtualFileSystem, FileSystemWatchingInformation, Closeable {
@@ -67,7 +69,10 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private final FileWatchingFilter locationsWrittenByCurrentBuild;
     private final WatchableFileSystemDetector watchableFileSystemDetector;
     private final FileChangeListeners fileChangeListeners;
+    @Nullable
+    private final VirtualFileSystemStateStore stateStore;
     private final List<File> unsupportedFileSystems = new ArrayList<>();
+    private final AtomicInteger numberOfCoalescedEvents = new AtomicInteger();
     private Logger warningLogger = LOGGER;
 
     /**
@@ -78,6 +83,12 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private FileWatcherRegistry watchRegistry;
     private Exception reasonForNotWatchingFiles;
     private boolean stateInvalidatedAtStartOfBuild;
+    private boolean persistedStateRestored;
+    /**
+     * State kept by a previous daemon, which is added to the VFS as the hierarchies containing it become watched.
+     */
+    @Nullable
+    private VirtualFileSystemStateStore.RestoredState restoredState;
 
     public WatchingVirtualFileSystem(
         FileWatcherRegistryFactory watcherRegistryFactory,
@@ -86,6 +97,21 @@ public WatchingVirtualFileSystem(
         FileWatchingFilter locationsWrittenByCurrentBuild,
         WatchableFileSystemDetector watchableFileSystemDetector,
         FileChangeListeners fileChangeListeners
+    ) {
+        this(watcherRegistryFactory, root, daemonDocumentationIndex, locationsWrittenByCurrentBuild, watchableFileSystemDetector, fileChangeListeners, null);
+    }
+
+    /**
+     * Creates a virtual file system which keeps its state in the given store when it is closed, and restores it from there the first time it starts watching.
+     */
+    public WatchingVirtualFileSystem(
+        FileWatcherRegistryFactory watcherRegistryFactory,
+        SnapshotHierarchy root,
+        DaemonDocumentationIndex daemonDocumentationIndex,
+        FileWatchingFilter locationsWrittenByCurrentBuild,
+        WatchableFileSystemDetector watchableFileSystemDetector,
+        FileChangeListeners fileChangeListeners,
+        @Nullable VirtualFileSystemStateStore stateStore
     ) {
         super(root);
         this.watcherRegistryFactory = watcherRegistryFactory;
@@ -93,6 +119,7 @@ public WatchingVirtualFileSystem(
         this.locationsWrittenByCurrentBuild = locationsWrittenByCurrentBuild;
         this.watchableFileSystemDetector = watchableFileSystemDetector;
         this.fileChangeListeners = fileChangeListeners;
+        this.stateStore = stateStore;
     }
 
     @Override
@@ -151,11 +178,12 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                             newRoot = watchRegistry.updateVfsOnBuildStarted(currentRoot, watchMode, unsupportedFileSystems);
                         }
                         stateInvalidatedAtStartOfBuild = newRoot != currentRoot;
-                        statisticsSinceLastBuild = new DefaultFileSystemWatchingStatistics(statistics, newRoot);
+                        statisticsSinceLastBuild = createStatistics(statistics, newRoot);
                         if (vfsLogging == VfsLogging.VERBOSE) {
                             LOGGER.warn("Received {} file system events since last build while watching {} locations",
                                 statisticsSinceLastBuild.getNumberOfReceivedEvents(),
                                 statisticsSinceLastBuild.getNumberOfWatchedHierarchies());
+                            logEventQueueStatistics(statisticsSinceLastBuild);
                             LOGGER.warn("Virtual file system retained information about {} files, {} directories and {} missing files since last build",
                                 statisticsSinceLastBuild.getRetainedRegularFiles(),
                                 statisticsSinceLastBuild.getRetainedDirectories(),
@@ -211,11 +239,37 @@ public void registerWatchableHierarchy(File watchableHierarchy) {
             }
             return withWatcherChangeErrorHandling(
                 currentRoot,
-                () -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot)
+                () -> registerWatchableHierarchy(watchableHierarchy, currentRoot)
             );
         });
     }
 
+    /**
+     * Registers the hierarchy with the watcher registry, and adds the restored state within the hierarchy to the VFS.
+     *
+     * The restored locations are watched before they are checked against the file system, so that the watcher reports changes made while checking them.
+     */
+    @CheckReturnValue
+    private SnapshotHierarchy registerWatchableHierarchy(File watchableHierarchy, SnapshotHierarchy currentRoot) {
+        watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot);
+        VirtualFileSystemStateStore.RestoredState state = restoredState;
+        if (state == null) {
+            return currentRoot;
+        }
+        List<FileSystemLocationSnapshot> restoredSnapshots = state.takeSnapshotsWithin(watchableHierarchy.getAbsolutePath());
+        if (restoredSnapshots.isEmpty()) {
+            return currentRoot;
+        }
+        SnapshotHierarchy watchedRoot = updateNotifyingListeners(diffListener -> {
+            SnapshotHierarchy newRoot = currentRoot;
+            for (FileSystemLocationSnapshot snapshot : restoredSnapshots) {
+                newRoot = newRoot.store(snapshot.getAbsolutePath(), snapshot, diffListener);
+            }
+            return newRoot;
+        });
+        return updateNotifyingListeners(diffListener -> state.invalidateChangedLocations(restoredSnapshots, watchedRoot, diffListener));
+    }
+
     @Override
     public void beforeBuildFinished(
         WatchMode watchMode,
@@ -228,6 +282,8 @@ public void beforeBuildFinished(
             @Override
             public SnapshotHierarchy call(BuildOperationContext context) {
                 watchableHierarchiesRegisteredEarly.clear();
+                // Restored state of hierarchies which weren't watched during the first build is dropped
+                restoredState = null;
                 if (watchMode.isEnabled()) {
                     if (reasonForNotWatchingFiles != null) {
                         // Log exception again so it doesn't get lost.
@@ -246,11 +302,12 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                         } else {
                             newRoot = withWatcherChangeErrorHandling(currentRoot, () -> watchRegistry.updateVfsOnBuildFinished(currentRoot, watchMode, maximumNumberOfWatchedHierarchies, unsupportedFileSystems));
                         }
-                        statisticsDuringBuild = new DefaultFileSystemWatchingStatistics(statistics, newRoot);
+                        statisticsDuringBuild = createStatistics(statistics, newRoot);
                         if (vfsLogging == VfsLogging.VERBOSE) {
                             LOGGER.warn("Received {} file system events during the current build while watching {} locations",
                                 statisticsDuringBuild.getNumberOfReceivedEvents(),
                                 statisticsDuringBuild.getNumberOfWatchedHierarchies());
+                            logEventQueueStatistics(statisticsDuringBuild);
                             LOGGER.warn("Virtual file system retains information about {} files, {} directories and {} missing files until next build",
                                 statisticsDuringBuild.getRetainedRegularFiles(),
                                 statisticsDuringBuild.getRetainedDirectories(),
@@ -302,6 +359,17 @@ public BuildOperationDescriptor.Builder description() {
         warningLogger = LOGGER;
     }
 
+    private FileSystemWatchingStatistics createStatistics(FileWatcherRegistry.FileWatchingStatistics statistics, SnapshotHierarchy root) {
+        return new DefaultFileSystemWatchingStatistics(statistics, numberOfCoalescedEvents.getAndSet(0), root);
+    }
+
+    private static void logEventQueueStatistics(FileSystemWatchingStatistics statistics) {
+        LOGGER.warn("File system event queue held at most {} events, {} redundant events have been coalesced and {} overflows dropped events",
+            statistics.getMaximumEventQueueDepth(),
+            statistics.getNumberOfCoalescedEvents(),
+            statistics.getNumberOfOverflows());
+    }
+
     /**
      * Start watching the known areas of the file system for changes.
      */
@@ -314,7 +382,10 @@ private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot, WatchMode
                     new BroadcastingChangeHandler()
                 )));
             SnapshotHierarchy newRoot = watchRegistry.updateVfsOnBuildStarted(currentRoot.empty(), watchMode, unsupportedFileSystems);
-            watchableHierarchiesRegisteredEarly.forEach(watchableHierarchy -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, newRoot));
+            restorePersistedState();
+            for (File watchableHierarchy : watchableHierarchiesRegisteredEarly) {
+                newRoot = registerWatchableHierarchy(watchableHierarchy, newRoot);
+            }
             watchableHierarchiesRegisteredEarly.clear();
             return newRoot;
         } catch (Exception ex) {
@@ -324,6 +395,17 @@ private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot, WatchMode
         }
     }
 
+    /**
+     * Reads the state kept by a previous daemon the first time watching starts.
+     */
+    private void restorePersistedState() {
+        if (stateStore == null || persistedStateRestored) {
+            return;
+        }
+        persistedStateRestored = true;
+        restoredState = stateStore.restore();
+    }
+
     @Override
     public boolean isWatchingAnyLocations() {
         FileWatcherRegistry watchRegistry = this.watchRegistry;
@@ -349,22 +431,51 @@ public void handleChange(FileWatcherRegistry.Type type, Path path) {
             }
         }
 
+        @Override
+        public void handleChangeBatchFinished() {
+            delegate.handleChangeBatchFinished();
+        }
+
         @Override
         public void stopWatchingAfterError() {
             delegate.stopWatchingAfterError();
         }
     }
 
+    /**
+     * Invalidates the changed locations in the VFS.
+     *
+     * The changes of a batch are coalesced and invalidated together, so a burst of events, e.g. from a large checkout, only updates the VFS once.
+     */
     private class InvalidateVfsChangeHandler implements FileWatcherRegistry.ChangeHandler {
+        private final FileChangeCoalescer pendingChanges = new FileChangeCoalescer();
+
         @Override
         public void handleChange(FileWatcherRegistry.Type type, Path path) {
-            updateRootUnderLock(root -> updateNotifyingListeners(
-                diffListener -> root.invalidate(path.toString(), new VfsChangeLoggingNodeDiffListener(type, path, diffListener))
-            ));
+            pendingChanges.add(type, path.toString());
+        }
+
+        @Override
+        public void handleChangeBatchFinished() {
+            if (pendingChanges.isEmpty()) {
+                return;
+            }
+            numberOfCoalescedEvents.addAndGet(pendingChanges.getNumberOfCoalescedChanges());
+            try {
+                updateRootUnderLock(root -> updateNotifyingListeners(diffListener -> {
+                    SnapshotHierarchy[] newRoot = {root};
+                    pendingChanges.visitChanges((absolutePath, type) ->
+                        newRoot[0] = newRoot[0].invalidate(absolutePath, new VfsChangeLoggingNodeDiffListener(type, absolutePath, diffListener)));
+                    return newRoot[0];
+                }));
+            } finally {
+                pendingChanges.clear();
+            }
         }
 
         @Override
         public void stopWatchingAfterError() {
+            pendingChanges.clear();
             stopWatchingAndInvalidateHierarchyAfterError();
         }
     }
@@ -393,6 +504,11 @@ public void handleChange(FileWatcherRegistry.Type type, Path path) {
             handlers.forEach(handler -> handler.handleChange(type, path));
         }
 
+        @Override
+        public void handleChangeBatchFinished() {
+            handlers.forEach(FileWatcherRegistry.ChangeHandler::handleChangeBatchFinished);
+        }
+
         @Override
         public void stopWatchingAfterError() {
             handlers.forEach(FileWatcherRegistry.ChangeHandler::stopWatchingAfterError);
@@ -401,11 +517,11 @@ public void stopWatchingAfterError() {
 
     private static class VfsChangeLoggingNodeDiffListener implements SnapshotHierarchy.NodeDiffListener {
         private final FileWatcherRegistry.Type type;
-        private final Path path;
+        private final String path;
         private final SnapshotHierarchy.NodeDiffListener delegate;
         private boolean alreadyLogged;
 
-        public VfsChangeLoggingNodeDiffListener(FileWatcherRegistry.Type type, Path path, SnapshotHierarchy.NodeDiffListener delegate) {
+        public VfsChangeLoggingNodeDiffListener(FileWatcherRegistry.Type type, String path, SnapshotHierarchy.NodeDiffListener delegate) {
             this.type = type;
             this.path = path;
             this.delegate = delegate;
@@ -506,6 +622,9 @@ private boolean hasDroppedStateBecauseOfErrorsReceivedWhileWatching(FileWatcherR
     public void close() {
         LOGGER.debug("Closing VFS, dropping state");
         updateRootUnderLock(currentRoot -> {
+            if (stateStore != null && watchRegistry != null) {
+                stateStore.save(currentRoot);
+            }
             closeUnderLock();
             return currentRoot.empty();
         });
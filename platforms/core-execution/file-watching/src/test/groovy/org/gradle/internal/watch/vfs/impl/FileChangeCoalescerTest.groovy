@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import spock.lang.Specification
+
+import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.CREATED
+import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.MODIFIED
+import static org.gradle.internal.watch.registry.FileWatcherRegistry.Type.REMOVED
+
+class FileChangeCoalescerTest extends Specification {
+    def coalescer = new FileChangeCoalescer('/' as char)
+
+    def "keeps changes to unrelated locations"() {
+        when:
+        coalescer.add(MODIFIED, "/project/a")
+        coalescer.add(CREATED, "/project/ab")
+        coalescer.add(REMOVED, "/project/b/c")
+
+        then:
+        changes == ["/project/a": MODIFIED, "/project/ab": CREATED, "/project/b/c": REMOVED]
+        coalescer.numberOfCoalescedChanges == 0
+    }
+
+    def "drops changes below an already changed location"() {
+        when:
+        coalescer.add(REMOVED, "/project/a")
+        coalescer.add(REMOVED, "/project/a/b/c")
+        coalescer.add(MODIFIED, "/project/a")
+
+        then:
+        changes == ["/project/a": REMOVED]
+        coalescer.numberOfCoalescedChanges == 2
+    }
+
+    def "folds changes below a location changed later"() {
+        when:
+        coalescer.add(CREATED, "/project/a/b")
+        coalescer.add(CREATED, "/project/a/c/d")
+        coalescer.add(CREATED, "/project/ab")
+        coalescer.add(MODIFIED, "/project/a")
+
+        then:
+        changes == ["/project/a": MODIFIED, "/project/ab": CREATED]
+        coalescer.numberOfCoalescedChanges == 2
+    }
+
+    def "handles changes to the file system root"() {
+        when:
+        coalescer.add(MODIFIED, "/project/a")
+        coalescer.add(MODIFIED, "/")
+        coalescer.add(MODIFIED, "/other")
+
+        then:
+        changes == ["/": MODIFIED]
+        coalescer.numberOfCoalescedChanges == 2
+    }
+
+    def "clear resets changes and statistics"() {
+        coalescer.add(MODIFIED, "/project/a")
+        coalescer.add(MODIFIED, "/project/a/b")
+
+        when:
+        coalescer.clear()
+
+        then:
+        coalescer.empty
+        coalescer.numberOfCoalescedChanges == 0
+    }
+
+    private Map getChanges() {
+        def changes = [:]
+        coalescer.visitChanges { path, type -> changes[path] = type }
+        return changes
+    }
+}
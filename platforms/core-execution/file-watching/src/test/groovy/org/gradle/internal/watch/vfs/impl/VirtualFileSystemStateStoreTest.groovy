@@ -0,0 +1,187 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class VirtualFileSystemStateStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def directorySnapshotter = new DirectorySnapshotter(TestFiles.fileHasher(), new StringInterner(), [], Stub(DirectorySnapshotterStatistics.Collector))
+    def emptyHierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+    TestFile stateFile
+    VirtualFileSystemStateStore store
+    TestFile rootDir
+    TestFile file
+    TestFile otherFile
+    TestFile missingFile
+
+    def setup() {
+        stateFile = temporaryFolder.file("state/vfs-state.bin")
+        store = new VirtualFileSystemStateStore(stateFile, Hashing.defaultFunction(), ["**/.git"])
+        rootDir = temporaryFolder.createDir("root")
+        file = rootDir.file("dir/file.txt").createFile()
+        otherFile = rootDir.file("other.txt").createFile()
+        missingFile = temporaryFolder.file("missing.txt")
+        // Modifications shortly before the state is written are not trusted
+        [file, otherFile, file.parentFile, rootDir].each { it.lastModified = System.currentTimeMillis() - 60_000 }
+    }
+
+    def "restores unchanged snapshots"() {
+        def root = storeSnapshots()
+
+        when:
+        store.save(root)
+        def restored = restore(store)
+
+        then:
+        restored.findSnapshot(rootDir.absolutePath).get().hash == root.findSnapshot(rootDir.absolutePath).get().hash
+        restored.findSnapshot(missingFile.absolutePath).get() instanceof MissingFileSnapshot
+    }
+
+    def "invalidates locations changed since the state was written"() {
+        store.save(storeSnapshots())
+
+        when:
+        file.text = "changed"
+        missingFile.createFile()
+        def restored = restore(store)
+
+        then:
+        !restored.findSnapshot(rootDir.absolutePath).present
+        !restored.findSnapshot(file.absolutePath).present
+        !restored.findSnapshot(missingFile.absolutePath).present
+        restored.findSnapshot(otherFile.absolutePath).present
+    }
+
+    def "invalidates directories with added children"() {
+        store.save(storeSnapshots())
+
+        when:
+        file.parentFile.file("new.txt").createFile()
+        def restored = restore(store)
+
+        then:
+        !restored.findSnapshot(file.parentFile.absolutePath).present
+        !restored.findSnapshot(file.absolutePath).present
+        restored.findSnapshot(otherFile.absolutePath).present
+    }
+
+    def "does not restore recently modified locations"() {
+        when:
+        otherFile.lastModified = System.currentTimeMillis()
+        store.save(storeSnapshots())
+        def restored = restore(store)
+
+        then:
+        !restored.findSnapshot(otherFile.absolutePath).present
+        restored.findSnapshot(file.absolutePath).present
+    }
+
+    def "ignores state written with different default excludes"() {
+        store.save(storeSnapshots())
+
+        when:
+        store.onDefaultExcludesChanged(["**/.git", "**/.svn"])
+        def restored = store.restore()
+
+        then:
+        restored == null
+    }
+
+    def "ignores state written with a different file hash function"() {
+        store.save(storeSnapshots())
+
+        when:
+        def restored = new VirtualFileSystemStateStore(stateFile, Hashing.murmur3_128(), ["**/.git"]).restore()
+
+        then:
+        restored == null
+    }
+
+    def "concurrent saves leave a complete state behind"() {
+        def root = storeSnapshots()
+        def otherStore = new VirtualFileSystemStateStore(stateFile, Hashing.defaultFunction(), ["**/.git"])
+
+        when:
+        def threads = (1..8).collect { i ->
+            Thread.start {
+                10.times {
+                    (i % 2 == 0 ? store : otherStore).save(root)
+                }
+            }
+        }
+        threads*.join()
+        def restored = restore(store)
+
+        then:
+        restored.findSnapshot(rootDir.absolutePath).get().hash == root.findSnapshot(rootDir.absolutePath).get().hash
+        stateFile.parentFile.list() as List == [stateFile.name]
+    }
+
+    def "ignores missing or corrupt state"() {
+        expect:
+        store.restore() == null
+
+        when:
+        stateFile.text = "corrupt"
+
+        then:
+        store.restore() == null
+    }
+
+    def "only takes restored snapshots within the given location once"() {
+        store.save(storeSnapshots())
+
+        when:
+        def restored = store.restore()
+
+        then:
+        restored.takeSnapshotsWithin(rootDir.file("dir").absolutePath).empty
+        restored.takeSnapshotsWithin(rootDir.absolutePath)*.absolutePath == [rootDir.absolutePath]
+        restored.takeSnapshotsWithin(rootDir.absolutePath).empty
+        restored.takeSnapshotsWithin(temporaryFolder.testDirectory.absolutePath)*.absolutePath == [missingFile.absolutePath]
+    }
+
+    private SnapshotHierarchy restore(VirtualFileSystemStateStore store) {
+        def restoredState = store.restore()
+        def snapshots = restoredState.takeSnapshotsWithin(temporaryFolder.testDirectory.absolutePath)
+        def root = snapshots.inject(emptyHierarchy) { SnapshotHierarchy root, snapshot -> root.store(snapshot.absolutePath, snapshot, SnapshotHierarchy.NodeDiffListener.NOOP) }
+        return restoredState.invalidateChangedLocations(snapshots, root, SnapshotHierarchy.NodeDiffListener.NOOP)
+    }
+
+    private SnapshotHierarchy storeSnapshots() {
+        def snapshot = directorySnapshotter.snapshot(rootDir.absolutePath, null, [:]) {}
+        return emptyHierarchy
+            .store(rootDir.absolutePath, snapshot, SnapshotHierarchy.NodeDiffListener.NOOP)
+            .store(missingFile.absolutePath, new MissingFileSnapshot(missingFile.absolutePath, missingFile.name, AccessType.DIRECT), SnapshotHierarchy.NodeDiffListener.NOOP)
+    }
+}
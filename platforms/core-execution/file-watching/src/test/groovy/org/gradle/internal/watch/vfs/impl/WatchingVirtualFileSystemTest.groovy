@@ -17,8 +17,10 @@
 package org.gradle.internal.watch.vfs.impl
 
 import net.rubygrapefruit.platform.NativeException
+import org.gradle.internal.file.FileMetadata
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.MissingFileSnapshot
 import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
 import org.gradle.internal.watch.registry.FileWatcherRegistry
@@ -164,6 +166,42 @@ class WatchingVirtualFileSystemTest extends Specification {
         1 * watcherRegistry.registerWatchableHierarchy(newWatchableHierarchy, _)
     }
 
+    def "watches restored state before checking it against the file system"() {
+        def watchableHierarchy = new File("watchable").absoluteFile
+        def restoredSnapshot = new MissingFileSnapshot(new File(watchableHierarchy, "missing").absolutePath, "missing", FileMetadata.AccessType.DIRECT)
+        def restoredState = Mock(VirtualFileSystemStateStore.RestoredState)
+        def stateStore = Mock(VirtualFileSystemStateStore)
+        def watchingVirtualFileSystem = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            emptySnapshotHierarchy,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            watchableFileSystemDetector,
+            fileChangeListeners,
+            stateStore
+        )
+
+        when:
+        watchingVirtualFileSystem.registerWatchableHierarchy(watchableHierarchy)
+        watchingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _, _) >> { SnapshotHierarchy root, watchMode, unsupportedFileSystems -> root }
+        1 * stateStore.restore() >> restoredState
+        then:
+        1 * watcherRegistry.registerWatchableHierarchy(watchableHierarchy, _)
+        then:
+        1 * restoredState.takeSnapshotsWithin(watchableHierarchy.absolutePath) >> [restoredSnapshot]
+        1 * watcherRegistry.virtualFileSystemContentsChanged([], [restoredSnapshot], _)
+        then:
+        1 * restoredState.invalidateChangedLocations([restoredSnapshot], _, _) >> { snapshots, SnapshotHierarchy root, diffListener -> root }
+        then:
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        watchingVirtualFileSystem.root.findSnapshot(restoredSnapshot.absolutePath).present
+    }
+
     def "detects unsupported file systems on default watch mode"() {
         def unsupportedFileSystems = [new File("unsupported")]
 
@@ -21,12 +21,30 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 
 public class DefaultFileHasher implements FileHasher {
     private final StreamHasher streamHasher;
+    private final long mappedHashingThreshold;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
+        this(streamHasher, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a hasher that hashes files of at least {@code mappedHashingThreshold} bytes from memory mapped regions instead of reading them through a heap buffer.
+     *
+     * Mapped regions are only released when they are garbage collected, so this should only be used where the process can afford to keep the mappings around.
+     */
+    public DefaultFileHasher(StreamHasher streamHasher, long mappedHashingThreshold) {
         this.streamHasher = streamHasher;
+        this.mappedHashingThreshold = mappedHashingThreshold;
+    }
+
+    private String algorithm() {
+        return streamHasher.getHashFunction().getAlgorithm();
     }
 
     @Override
@@ -35,7 +53,7 @@ public HashCode hash(File file) {
         try {
             inputStream = new FileInputStream(file);
         } catch (FileNotFoundException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s' as it does not exist.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s' as it does not exist.", algorithm(), file), e);
         }
         try {
             return streamHasher.hash(inputStream);
@@ -50,6 +68,30 @@ public HashCode hash(File file) {
 
     @Override
     public HashCode hash(File file, long length, long lastModified) {
-        return hash(file);
+        if (length < mappedHashingThreshold) {
+            return hash(file);
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s' as it does not exist.", algorithm(), file), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s'.", algorithm(), file), e);
+        }
+        try {
+            return streamHasher.hash(channel);
+        } catch (InternalError e) {
+            // Reading a mapped region fails with an InternalError when the file has been truncated after it was mapped
+            return hash(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file '%s'.", algorithm(), file), e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Ignored
+            }
+        }
     }
 }
@@ -21,20 +21,37 @@
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 
 public class DefaultStreamHasher implements StreamHasher {
     private static final HashCode SIGNATURE = Hashing.signature(DefaultStreamHasher.class);
+    private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
 
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
+    private final HashFunction hashFunction;
+
+    public DefaultStreamHasher() {
+        this(Hashing.defaultFunction());
+    }
+
+    public DefaultStreamHasher(HashFunction hashFunction) {
+        this.hashFunction = hashFunction;
+    }
+
+    @Override
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
 
     @Override
     public HashCode hash(InputStream inputStream) {
         try {
             return doHash(inputStream, ByteStreams.nullOutputStream());
         } catch (IOException e) {
-            throw new UncheckedIOException("Failed to create MD5 hash for file content.", e);
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file content.", hashFunction.getAlgorithm()), e);
         }
     }
 
@@ -43,10 +60,26 @@ public HashCode hashCopy(InputStream inputStream, OutputStream outputStream) thr
         return doHash(inputStream, outputStream);
     }
 
+    /**
+     * Hashes the content of the channel by feeding memory mapped regions of the file to the hasher,
+     * so that the content is read from the page cache without being copied to the heap.
+     */
+    @Override
+    public HashCode hash(FileChannel channel) throws IOException {
+        PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+        hasher.putHash(SIGNATURE);
+        long size = channel.size();
+        for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+            hasher.putBytes(region);
+        }
+        return hasher.hash();
+    }
+
     private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
         byte[] buffer = takeBuffer();
         try {
-            PrimitiveHasher hasher = Hashing.newPrimitiveHasher();
+            PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
             hasher.putHash(SIGNATURE);
             while (true) {
                 int nread = inputStream.read(buffer);
@@ -47,6 +47,8 @@ private Hashing() {
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
+    private static final HashFunction MURMUR3_128 = new Murmur3HashFunction();
+
     private static final HashFunction DEFAULT = MD5;
 
     /**
@@ -152,35 +154,23 @@ public static HashFunction sha512() {
         return SHA512;
     }
 
-    private static abstract class MessageDigestHashFunction implements HashFunction {
+    /**
+     * 128-bit MurmurHash3 hashing function.
+     *
+     * This is a non-cryptographic hash function, which is several times faster than MD5.
+     * It is not collision resistant against crafted input, so it should only be used for hashing file content.
+     */
+    public static HashFunction murmur3_128() {
+        return MURMUR3_128;
+    }
+
+    private static abstract class AbstractHashFunction implements HashFunction {
         private final int hexDigits;
 
-        public MessageDigestHashFunction(int hashBits) {
+        public AbstractHashFunction(int hashBits) {
             this.hexDigits = hashBits / 4;
         }
 
-        public static MessageDigestHashFunction of(String algorithm) {
-            MessageDigest prototype;
-            try {
-                prototype = MessageDigest.getInstance(algorithm);
-            } catch (NoSuchAlgorithmException e) {
-                throw new IllegalArgumentException("Cannot instantiate digest algorithm: " + algorithm);
-            }
-            int hashBits = prototype.getDigestLength() * 8;
-            try {
-                prototype.clone();
-                return new CloningMessageDigestHashFunction(prototype, hashBits);
-            } catch (CloneNotSupportedException e) {
-                return new RegularMessageDigestHashFunction(algorithm, hashBits);
-            }
-        }
-
-        @Override
-        public PrimitiveHasher newPrimitiveHasher() {
-            MessageDigest digest = createDigest();
-            return new MessageDigestHasher(digest);
-        }
-
         @Override
         public Hasher newHasher() {
             return new DefaultHasher(newPrimitiveHasher());
@@ -218,8 +208,6 @@ private HashingOutputStream primitiveStreamHasher() {
             return new HashingOutputStream(this, ByteStreams.nullOutputStream());
         }
 
-        protected abstract MessageDigest createDigest();
-
         @Override
         public int getHexDigits() {
             return hexDigits;
@@ -231,6 +219,36 @@ public String toString() {
         }
     }
 
+    private static abstract class MessageDigestHashFunction extends AbstractHashFunction {
+        public MessageDigestHashFunction(int hashBits) {
+            super(hashBits);
+        }
+
+        public static MessageDigestHashFunction of(String algorithm) {
+            MessageDigest prototype;
+            try {
+                prototype = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Cannot instantiate digest algorithm: " + algorithm);
+            }
+            int hashBits = prototype.getDigestLength() * 8;
+            try {
+                prototype.clone();
+                return new CloningMessageDigestHashFunction(prototype, hashBits);
+            } catch (CloneNotSupportedException e) {
+                return new RegularMessageDigestHashFunction(algorithm, hashBits);
+            }
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            MessageDigest digest = createDigest();
+            return new MessageDigestHasher(digest);
+        }
+
+        protected abstract MessageDigest createDigest();
+    }
+
     private static class CloningMessageDigestHashFunction extends MessageDigestHashFunction {
         private final MessageDigest prototype;
 
@@ -307,6 +325,11 @@ public void putBytes(byte[] bytes, int off, int len) {
             getDigest().update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer buffer) {
+            getDigest().update(buffer);
+        }
+
         private void update(int length) {
             getDigest().update(buffer.array(), 0, length);
             castBuffer(buffer).clear();
@@ -362,6 +385,239 @@ public HashCode hash() {
         }
     }
 
+    private static class Murmur3HashFunction extends AbstractHashFunction {
+        public Murmur3HashFunction() {
+            super(128);
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "MURMUR3-128";
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            return new Murmur3Hasher();
+        }
+    }
+
+    /**
+     * Streaming implementation of the x64 variant of 128-bit MurmurHash3 with a seed of 0.
+     * Produces the same hashes as Guava's {@code Hashing.murmur3_128()}.
+     */
+    private static class Murmur3Hasher implements PrimitiveHasher {
+        private static final int BLOCK_SIZE = 16;
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private final ByteBuffer pending = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long h1;
+        private long h2;
+        private long length;
+        private boolean done;
+
+        private void checkNotDone() {
+            if (done) {
+                throw new IllegalStateException("Cannot reuse hasher!");
+            }
+        }
+
+        @Override
+        public void putByte(byte b) {
+            checkNotDone();
+            pending.put(b);
+            length++;
+            if (!pending.hasRemaining()) {
+                processPending();
+            }
+        }
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            checkNotDone();
+            length += len;
+            int end = off + len;
+            if (pending.position() > 0) {
+                int count = Math.min(pending.remaining(), len);
+                pending.put(bytes, off, count);
+                off += count;
+                if (pending.hasRemaining()) {
+                    return;
+                }
+                processPending();
+            }
+            ByteBuffer input = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            while (end - off >= BLOCK_SIZE) {
+                processBlock(input.getLong(off), input.getLong(off + 8));
+                off += BLOCK_SIZE;
+            }
+            pending.put(bytes, off, end - off);
+        }
+
+        @Override
+        public void putBytes(ByteBuffer buffer) {
+            checkNotDone();
+            int off = buffer.position();
+            int end = buffer.limit();
+            length += end - off;
+            if (pending.position() > 0) {
+                int count = Math.min(pending.remaining(), end - off);
+                for (int i = 0; i < count; i++) {
+                    pending.put(buffer.get(off + i));
+                }
+                off += count;
+                if (pending.hasRemaining()) {
+                    castBuffer(buffer).position(end);
+                    return;
+                }
+                processPending();
+            }
+            // Read the blocks in place, so that direct buffers are not copied to the heap
+            ByteBuffer input = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            while (end - off >= BLOCK_SIZE) {
+                processBlock(input.getLong(off), input.getLong(off + 8));
+                off += BLOCK_SIZE;
+            }
+            while (off < end) {
+                pending.put(buffer.get(off++));
+            }
+            castBuffer(buffer).position(end);
+        }
+
+        private void processPending() {
+            processBlock(pending.getLong(0), pending.getLong(8));
+            castBuffer(pending).clear();
+        }
+
+        private void processBlock(long k1, long k2) {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+        @SuppressWarnings("RedundantCast")
+        private static <T extends Buffer> Buffer castBuffer(T byteBuffer) {
+            return (Buffer) byteBuffer;
+        }
+
+        @Override
+        public void putInt(int value) {
+            if (pending.remaining() >= 4) {
+                checkNotDone();
+                pending.putInt(value);
+                length += 4;
+                if (!pending.hasRemaining()) {
+                    processPending();
+                }
+            } else {
+                for (int i = 0; i < 4; i++) {
+                    putByte((byte) (value >>> (i * 8)));
+                }
+            }
+        }
+
+        @Override
+        public void putLong(long value) {
+            if (pending.remaining() >= 8) {
+                checkNotDone();
+                pending.putLong(value);
+                length += 8;
+                if (!pending.hasRemaining()) {
+                    processPending();
+                }
+            } else {
+                putInt((int) value);
+                putInt((int) (value >>> 32));
+            }
+        }
+
+        @Override
+        public void putDouble(double value) {
+            long longValue = Double.doubleToRawLongBits(value);
+            putLong(longValue);
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            hashCode.appendToHasher(this);
+        }
+
+        @Override
+        public HashCode hash() {
+            checkNotDone();
+            done = true;
+            int tailLength = pending.position();
+            if (tailLength > 0) {
+                long k1 = 0;
+                long k2 = 0;
+                for (int i = tailLength - 1; i >= 8; i--) {
+                    k2 = (k2 << 8) | (pending.get(i) & 0xffL);
+                }
+                for (int i = Math.min(tailLength, 8) - 1; i >= 0; i--) {
+                    k1 = (k1 << 8) | (pending.get(i) & 0xffL);
+                }
+                h1 ^= mixK1(k1);
+                h2 ^= mixK2(k2);
+            }
+
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+
+            byte[] bytes = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN).putLong(h1).putLong(h2).array();
+            return HashCode.fromBytes(bytes, SAFE_TO_REUSE_BYTES);
+        }
+    }
+
     private static class DefaultHasher implements Hasher {
         private final PrimitiveHasher hasher;
 
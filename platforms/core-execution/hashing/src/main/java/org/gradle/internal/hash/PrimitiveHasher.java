@@ -16,6 +16,9 @@
 
 package org.gradle.internal.hash;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
 /**
  * Hasher abstraction that can be fed different kinds of primitives that it then forwards directly to the hash function.
  * Inspired by the Google Guava project – https://github.com/google/guava.
@@ -31,6 +34,25 @@ public interface PrimitiveHasher {
      */
     void putBytes(byte[] bytes, int off, int len);
 
+    /**
+     * Feed the remaining bytes of the given buffer into the hasher, leaving the buffer at its limit.
+     *
+     * Implementations should read direct buffers without copying them to the heap.
+     */
+    default void putBytes(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            putBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            ((Buffer) buffer).position(buffer.limit());
+        } else {
+            byte[] chunk = new byte[Math.min(buffer.remaining(), 8192)];
+            while (buffer.hasRemaining()) {
+                int count = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, count);
+                putBytes(chunk, 0, count);
+            }
+        }
+    }
+
     /**
      * Feed a single byte into the hasher.
      */
@@ -18,8 +18,17 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 
 public interface StreamHasher {
+    /**
+     * The function used to hash content.
+     * Hashes are only comparable with other hashes created by the same function,
+     * so caches persisting them need to be keyed by {@link HashFunction#getAlgorithm()}.
+     */
+    HashFunction getHashFunction();
+
     /**
      * Returns the hash of the given input stream. The stream will not be closed by the method.
      */
@@ -30,4 +39,12 @@ public interface StreamHasher {
      * The method will not close either stream.
      */
     HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the hash of the content of the given file channel, which is the same as the hash of a stream with the same content.
+     * The channel will not be closed by the method.
+     */
+    default HashCode hash(FileChannel channel) throws IOException {
+        return hash(Channels.newInputStream(channel));
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.channels.FileChannel
+
+class DefaultFileHasherTest extends Specification {
+    @TempDir
+    File temporaryFolder
+
+    def "hashes large files from mapped regions with the same result as streaming them using #hashFunction"() {
+        def file = new File(temporaryFolder, "large.bin")
+        def content = new byte[100003]
+        new Random(1234L).nextBytes(content)
+        file.bytes = content
+        def streamHasher = new DefaultStreamHasher(hashFunction)
+
+        when:
+        def streamedHash = new DefaultFileHasher(streamHasher, Long.MAX_VALUE).hash(file, file.length(), file.lastModified())
+        def mappedHash = new DefaultFileHasher(streamHasher, 1024).hash(file, file.length(), file.lastModified())
+
+        then:
+        mappedHash == streamedHash
+        mappedHash == streamHasher.hash(new ByteArrayInputStream(content))
+
+        where:
+        hashFunction << [Hashing.md5(), Hashing.murmur3_128()]
+    }
+
+    def "reports missing large file using #hashFunction"() {
+        def file = new File(temporaryFolder, "missing.bin")
+
+        when:
+        new DefaultFileHasher(new DefaultStreamHasher(hashFunction), 0).hash(file, 2048, 0)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.message == "Failed to create ${hashFunction.algorithm} hash for file '${file}' as it does not exist."
+
+        where:
+        hashFunction << [Hashing.md5(), Hashing.murmur3_128()]
+    }
+
+    def "falls back to streaming the file when the mapped file is truncated while it is hashed"() {
+        def file = new File(temporaryFolder, "truncated.bin")
+        file.bytes = new byte[4096]
+        def expectedHash = TestHashCodes.hashCodeFrom(1234)
+        def streamHasher = Mock(StreamHasher)
+
+        when:
+        def hash = new DefaultFileHasher(streamHasher, 1024).hash(file, 4096, file.lastModified())
+
+        then:
+        1 * streamHasher.hash(_ as FileChannel) >> { throw new InternalError("a fault occurred in an unsafe memory access operation") }
+        1 * streamHasher.hash(_ as InputStream) >> expectedHash
+        hash == expectedHash
+    }
+}
@@ -18,6 +18,8 @@ package org.gradle.internal.hash
 
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
+
 import static java.lang.Thread.currentThread
 import static java.util.concurrent.CompletableFuture.supplyAsync
 import static java.util.concurrent.Executors.newFixedThreadPool
@@ -109,6 +111,83 @@ class HashingTest extends Specification {
         hashStrings(["abc", "de"]) != hashStrings(["ab", "cde"])
     }
 
+    def 'murmur3 hashes match the reference implementation when fed in chunks of #chunkSize bytes'() {
+        def random = new Random(1234L)
+        def inputs = (0..100).collect { length ->
+            def bytes = new byte[length]
+            random.nextBytes(bytes)
+            bytes
+        }
+
+        expect:
+        inputs.every { bytes ->
+            def hasher = Hashing.murmur3_128().newPrimitiveHasher()
+            bytes.toList().collate(chunkSize).each { chunk ->
+                if (chunk.size() == 1) {
+                    hasher.putByte(chunk[0])
+                } else {
+                    hasher.putBytes(chunk as byte[])
+                }
+            }
+            hasher.hash().toByteArray() == com.google.common.hash.Hashing.murmur3_128().hashBytes(bytes).asBytes()
+        }
+
+        where:
+        chunkSize << [1, 3, 16, 17, 64]
+    }
+
+    def 'murmur3 hashes primitives as their little endian bytes'() {
+        def hasher = Hashing.murmur3_128().newPrimitiveHasher()
+        hasher.putByte(1 as byte)
+        hasher.putInt(0x12345678)
+        hasher.putLong(0x0123456789abcdefL)
+        hasher.putLong(-1L)
+
+        def reference = com.google.common.hash.Hashing.murmur3_128().newHasher()
+        reference.putByte(1 as byte)
+        reference.putInt(0x12345678)
+        reference.putLong(0x0123456789abcdefL)
+        reference.putLong(-1L)
+
+        expect:
+        hasher.hash().toByteArray() == reference.hash().asBytes()
+    }
+
+    def 'hashes direct buffers the same as byte arrays using #hashFunction'() {
+        def bytes = new byte[1000]
+        new Random(1234L).nextBytes(bytes)
+        def buffer = ByteBuffer.allocateDirect(bytes.length)
+        buffer.put(bytes).flip()
+
+        def hasher = hashFunction.newPrimitiveHasher()
+        hasher.putByte(1 as byte)
+        hasher.putBytes(buffer)
+
+        def reference = hashFunction.newPrimitiveHasher()
+        reference.putByte(1 as byte)
+        reference.putBytes(bytes)
+
+        expect:
+        hasher.hash() == reference.hash()
+        !buffer.hasRemaining()
+
+        where:
+        hashFunction << [Hashing.md5(), Hashing.murmur3_128()]
+    }
+
+    def 'cannot call murmur3 hash multiple times'() {
+        given:
+        def hasher = Hashing.murmur3_128().newHasher()
+        hasher.putInt(1)
+        hasher.hash()
+
+        when:
+        hasher.hash()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
     def hashStrings(List<String> strings) {
         def hasher = Hashing.newHasher()
         strings.each { hasher.putString(it) }
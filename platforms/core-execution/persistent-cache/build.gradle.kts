@@ -1,5 +1,6 @@
 plugins {
     id("gradlebuild.distribution.api-java")
+    id("gradlebuild.jmh")
 }
 
 description = """Persistent caches on disk and cross process locking.
@@ -34,6 +35,7 @@ dependencies {
     api(libs.guava)
 
     implementation(project(":build-operations"))
+    implementation(project(":build-option"))
 
     implementation(libs.slf4jApi)
     implementation(libs.commonsIo)
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Compares random get and put throughput of {@link BTreePersistentIndexedCache} on top of the {@link FileBackedBlockStore} and the {@link MappedFileBlockStore}.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class BlockStoreBenchmark {
+    private static final int ENTRIES = 100_000;
+
+    @Param({"file", "mapped"})
+    String store;
+
+    @Param({"32", "1024"})
+    int valueSize;
+
+    File tempDir;
+    BTreePersistentIndexedCache<Long, byte[]> cache;
+    byte[] value;
+    Random random;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        tempDir = Files.createTempDirectory("block-store-benchmark").toFile();
+        File cacheFile = new File(tempDir, "cache.bin");
+        BlockStore fileStore = store.equals("mapped") ? new MappedFileBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile);
+        cache = new BTreePersistentIndexedCache<>(cacheFile, BaseSerializerFactory.LONG_SERIALIZER, BaseSerializerFactory.BYTE_ARRAY_SERIALIZER, (short) 512, 512, fileStore);
+        random = new Random(1234);
+        value = new byte[valueSize];
+        random.nextBytes(value);
+        for (long key = 0; key < ENTRIES; key++) {
+            cache.put(key, value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        cache.close();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public void get(Blackhole blackhole) {
+        blackhole.consume(cache.get((long) random.nextInt(ENTRIES)));
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put((long) random.nextInt(ENTRIES), value);
+    }
+}
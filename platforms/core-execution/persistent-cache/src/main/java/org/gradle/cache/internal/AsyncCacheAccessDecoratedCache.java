@@ -43,6 +43,12 @@ public V get(final K key) {
         return asyncCacheAccess.read(() -> indexedCache.getIfPresent(key));
     }
 
+    @Nullable
+    @Override
+    public V getIfCachedInMemory(K key) {
+        return null;
+    }
+
     @Override
     public V get(K key, Function<? super K, ? extends V> producer, Runnable completion) {
         throw new UnsupportedOperationException();
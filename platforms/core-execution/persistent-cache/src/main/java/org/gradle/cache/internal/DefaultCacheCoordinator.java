@@ -38,6 +38,7 @@
 import org.gradle.internal.Factory;
 import org.gradle.internal.SystemProperties;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.serialize.Serializer;
@@ -49,6 +50,7 @@
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +72,7 @@ public class DefaultCacheCoordinator implements CacheCreationCoordinator, Exclus
     private final File baseDir;
     private final CacheCleanupExecutor cleanupAction;
     private final ExecutorFactory executorFactory;
+    private final boolean useMappedBlockStore;
     private final FileAccess fileAccess;
     private final Map<String, IndexedCacheEntry<?, ?>> caches = new HashMap<String, IndexedCacheEntry<?, ?>>();
     private final AbstractCrossProcessCacheAccess crossProcessCacheAccess;
@@ -93,6 +96,8 @@ public DefaultCacheCoordinator(String cacheDisplayName, File lockTarget, LockOpt
         this.baseDir = baseDir;
         this.cleanupAction = cleanupAction;
         this.executorFactory = executorFactory;
+        // Caches outlive a single build, so the option is read from the system properties of the process, and not from the start parameter
+        this.useMappedBlockStore = new DefaultInternalOptions(Collections.emptyMap()).getOption(BTreePersistentIndexedCache.MAPPED_BLOCK_STORE).get();
         this.operations = new CacheAccessOperationsStack();
 
         Action<FileLock> onFileLockAcquireAction = this::afterLockAcquire;
@@ -344,7 +349,7 @@ public <K, V> boolean cacheExists(IndexedCacheParameters<K, V> parameters) {
     }
 
     <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        return new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer);
+        return new BTreePersistentIndexedCache<>(cacheFile, keySerializer, valueSerializer, useMappedBlockStore);
     }
 
     /**
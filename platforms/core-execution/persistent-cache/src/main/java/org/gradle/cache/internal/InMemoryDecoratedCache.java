@@ -25,6 +25,7 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
@@ -36,6 +37,8 @@
     private final Cache<Object, Object> inMemoryCache;
     private final String cacheId;
     private final AtomicReference<FileLock.State> fileLockStateReference;
+    // The in-memory entries can only be trusted without taking the file lock while this process holds on to it, as no other process can update the backing store then
+    private volatile boolean holdsFileLock;
 
     public InMemoryDecoratedCache(MultiProcessSafeAsyncPersistentIndexedCache<K, V> delegate, Cache<Object, Object> inMemoryCache, String cacheId, AtomicReference<FileLock.State> fileLockStateReference) {
         this.delegate = delegate;
@@ -67,6 +70,20 @@ public V get(final K key) {
         }
     }
 
+    @Nullable
+    @Override
+    public V getIfCachedInMemory(K key) {
+        if (!holdsFileLock) {
+            // Another process may have updated the backing store since the in-memory cache was last validated
+            return null;
+        }
+        Object value = inMemoryCache.getIfPresent(key);
+        if (value == null || value == NULL) {
+            return null;
+        }
+        return Cast.uncheckedCast(value);
+    }
+
     @Override
     public V get(final K key, final Function<? super K, ? extends V> producer, final Runnable completion) {
         final AtomicReference<Runnable> completionRef = new AtomicReference<>(completion);
@@ -128,6 +145,7 @@ public void afterLockAcquire(FileLock.State currentCacheState) {
         if (outOfDate) {
             inMemoryCache.invalidateAll();
         }
+        holdsFileLock = true;
         delegate.afterLockAcquire(currentCacheState);
     }
 
@@ -138,6 +156,7 @@ public void finishWork() {
 
     @Override
     public void beforeLockRelease(FileLock.State currentCacheState) {
+        holdsFileLock = false;
         fileLockStateReference.set(currentCacheState);
         delegate.beforeLockRelease(currentCacheState);
     }
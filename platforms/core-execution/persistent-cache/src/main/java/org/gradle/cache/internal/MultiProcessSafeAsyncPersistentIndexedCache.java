@@ -30,6 +30,14 @@
     @Nullable
     V get(K key);
 
+    /**
+     * Fetches the given entry without blocking and without requiring the file lock, when this can be done without reading the backing store.
+     *
+     * @return The value, or null when the entry is not available in this way. The caller should then fall back to {@link #get(Object)} while holding the file lock.
+     */
+    @Nullable
+    V getIfCachedInMemory(K key);
+
     /**
      * Fetches the given entry, producing if necessary, blocking until the result is available. This method may or may not block until any updates have completed and will invoke the given completion action when the operation is complete.
      */
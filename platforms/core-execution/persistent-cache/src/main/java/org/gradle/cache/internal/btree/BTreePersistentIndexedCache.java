@@ -18,6 +18,7 @@
 import com.google.common.collect.ImmutableSet;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.buildoption.InternalFlag;
 import org.gradle.internal.io.StreamByteBuffer;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
@@ -48,6 +49,10 @@
 // todo - use more efficient lookup for free block with nearest size
 @SuppressWarnings("unchecked")
 public class BTreePersistentIndexedCache<K, V> {
+    /**
+     * When set to {@code true}, caches read their blocks through memory mapped regions of the cache file, see {@link MappedFileBlockStore}.
+     */
+    public static final InternalFlag MAPPED_BLOCK_STORE = new InternalFlag("org.gradle.cache.btree.mapped");
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
     private final File cacheFile;
     private final KeyHasher<K> keyHasher;
@@ -58,17 +63,27 @@
     private HeaderBlock header;
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        this(cacheFile, keySerializer, valueSerializer, (short) 512, 512);
+        this(cacheFile, keySerializer, valueSerializer, false);
+    }
+
+    public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, boolean useMappedBlockStore) {
+        this(cacheFile, keySerializer, valueSerializer, (short) 512, 512,
+            useMappedBlockStore ? new MappedFileBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile));
     }
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
                                        short maxChildIndexEntries, int maxFreeListEntries) {
+        this(cacheFile, keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries, new FileBackedBlockStore(cacheFile));
+    }
+
+    BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                short maxChildIndexEntries, int maxFreeListEntries, BlockStore fileStore) {
         this.cacheFile = cacheFile;
         this.keyHasher = new KeyHasher<K>(keySerializer);
         this.serializer = valueSerializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
+        BlockStore cachingStore = new CachingBlockStore(fileStore, ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
         this.store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
         try {
             open();
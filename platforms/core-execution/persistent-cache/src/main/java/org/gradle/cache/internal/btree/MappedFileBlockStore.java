@@ -0,0 +1,453 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.CountingInputStream;
+import org.gradle.api.UncheckedIOException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link BlockStore} that uses the same file format as {@link FileBackedBlockStore}, but reads blocks from memory mapped regions of the file.
+ *
+ * <p>The file is mapped in fixed size regions, which are mapped on first use and kept in a bounded LRU map. The mapped pages live outside of the heap
+ * and are shared with the OS page cache, so that reading a block that is already resident needs neither a system call nor a copy into an intermediate buffer.
+ * Blocks are encoded into a reusable buffer and written with a single positional write, which the mapped regions see immediately.</p>
+ *
+ * <p>{@link #flush()} forces written blocks to disk at most once per sync interval, and {@link #close()} forces any remaining writes.</p>
+ *
+ * <p>Java 8 has no way to unmap a region explicitly, so regions are unmapped when they are garbage collected. On Windows, this means the file
+ * cannot be truncated or deleted while regions of it are still mapped.</p>
+ */
+public class MappedFileBlockStore implements BlockStore {
+    private static final int DEFAULT_REGION_SIZE = 4 * 1024 * 1024;
+    private static final int DEFAULT_MAX_MAPPED_REGIONS = 64;
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+
+    private final File cacheFile;
+    private final int regionSize;
+    private final long syncIntervalNanos;
+    private final Map<Long, MappedByteBuffer> regions;
+    private final BlockBuffer blockBuffer = new BlockBuffer();
+    private final RegionInputStream regionInput = new RegionInputStream();
+    private FileChannel channel;
+    private long nextBlock;
+    private Factory factory;
+    private long currentFileSize;
+    private boolean unsynced;
+    private long lastSync;
+
+    public MappedFileBlockStore(File cacheFile) {
+        this(cacheFile, DEFAULT_REGION_SIZE, DEFAULT_MAX_MAPPED_REGIONS, DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+
+    @VisibleForTesting
+    MappedFileBlockStore(File cacheFile, int regionSize, final int maxMappedRegions, long syncIntervalMillis) {
+        this.cacheFile = cacheFile;
+        this.regionSize = regionSize;
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        this.regions = new LinkedHashMap<Long, MappedByteBuffer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest) {
+                return size() > maxMappedRegions;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    @Override
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            channel = openChannel();
+            currentFileSize = channel.size();
+            nextBlock = currentFileSize;
+            unsynced = false;
+            lastSync = System.nanoTime();
+            if (currentFileSize == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        try {
+            return FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        } catch (AccessDeniedException e) {
+            return FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (unsynced) {
+                sync();
+            }
+            regions.clear();
+            regionInput.unmap();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        regions.clear();
+        regionInput.unmap();
+        try {
+            channel.truncate(0);
+            currentFileSize = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock = 0;
+    }
+
+    @Override
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    @Override
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    @Override
+    public void flush() {
+        if (unsynced && System.nanoTime() - lastSync >= syncIntervalNanos) {
+            try {
+                sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        unsynced = false;
+        lastSync = System.nanoTime();
+    }
+
+    @Override
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(0), payloadType);
+    }
+
+    @Override
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    /**
+     * Returns the mapped region containing the given position, mapping it or extending the existing mapping when required.
+     */
+    private MappedByteBuffer region(long index, long pos) throws IOException {
+        MappedByteBuffer region = regions.get(index);
+        long start = index * regionSize;
+        if (region == null || start + region.capacity() <= pos) {
+            long length = Math.min(regionSize, currentFileSize - start);
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            regions.put(index, region);
+        }
+        return region;
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+        private static final int TAIL_SIZE = INT_SIZE;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = BlockPointer.pos(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        @Override
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+
+            blockBuffer.reset();
+            DataOutputStream outputStream = new DataOutputStream(blockBuffer);
+
+            BlockPayload payload = getPayload();
+
+            // Write header
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write count
+            int bytesWritten = blockBuffer.size();
+            outputStream.writeInt(bytesWritten);
+
+            // Pad
+            if (currentFileSize < finalSize) {
+                blockBuffer.padTo((int) (finalSize - pos));
+            }
+
+            blockBuffer.writeTo(channel, pos);
+            unsynced = true;
+            if (currentFileSize < finalSize) {
+                currentFileSize = finalSize;
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= currentFileSize) {
+                throw blockCorruptedException();
+            }
+
+            CountingInputStream countingInputStream = new CountingInputStream(regionInput.start(pos));
+            DataInputStream inputStream = new DataInputStream(countingInputStream);
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = inputStream.readByte();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = inputStream.readInt();
+            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > currentFileSize) {
+                throw blockCorruptedException();
+            }
+            payload.read(inputStream);
+
+            // Read and verify count
+            long actualCount = countingInputStream.getCount();
+            long count = inputStream.readInt();
+            if (actualCount != count) {
+                throw blockCorruptedException();
+            }
+        }
+
+        @Override
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+
+    /**
+     * Reads the content of the file from the mapped regions, starting at a given position.
+     */
+    private final class RegionInputStream extends InputStream {
+        private long position;
+        private MappedByteBuffer current;
+        private long currentStart;
+        private long currentEnd;
+
+        RegionInputStream start(long position) {
+            this.position = position;
+            return this;
+        }
+
+        void unmap() {
+            current = null;
+            currentStart = 0;
+            currentEnd = 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!select()) {
+                return -1;
+            }
+            int value = current.get((int) (position - currentStart)) & 0xff;
+            position++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!select()) {
+                return -1;
+            }
+            int count = (int) Math.min(length, currentEnd - position);
+            current.position((int) (position - currentStart));
+            current.get(buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        /**
+         * Selects the region containing the current position, returning false when the position is at the end of the file.
+         */
+        private boolean select() throws IOException {
+            if (current != null && position >= currentStart && position < currentEnd) {
+                return true;
+            }
+            if (position >= currentFileSize) {
+                return false;
+            }
+            long index = position / regionSize;
+            current = region(index, position);
+            currentStart = index * regionSize;
+            currentEnd = currentStart + current.capacity();
+            return true;
+        }
+    }
+
+    /**
+     * Collects the encoded content of a block, so that it can be written with a single positional write.
+     */
+    private static final class BlockBuffer extends ByteArrayOutputStream {
+        // The largest array that all JVMs can allocate
+        private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+        BlockBuffer() {
+            super(4096);
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            checkCapacity(1);
+            super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            checkCapacity(len);
+            super.write(b, off, len);
+        }
+
+        private void checkCapacity(int len) {
+            if (len > MAX_SIZE - count) {
+                throw new IllegalArgumentException("Block payload exceeds maximum size");
+            }
+        }
+
+        void padTo(int size) {
+            while (count < size) {
+                write(0);
+            }
+        }
+
+        void writeTo(FileChannel channel, long pos) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(buf, 0, count);
+            while (buffer.hasRemaining()) {
+                pos += channel.write(buffer, pos);
+            }
+        }
+    }
+}
@@ -167,6 +167,51 @@ class InMemoryDecoratedCacheTest extends ConcurrentSpec {
         0 * target._
     }
 
+    def "serves in-memory entries without the file lock only while the lock is held"() {
+        def state = Stub(FileLock.State)
+
+        given:
+        cache.putLater("key", "value", Stub(Runnable))
+        cache.removeLater("removed", Stub(Runnable))
+
+        expect:
+        cache.getIfCachedInMemory("key") == null
+
+        when:
+        cache.afterLockAcquire(state)
+        cache.putLater("key", "value", Stub(Runnable))
+        cache.removeLater("removed", Stub(Runnable))
+
+        then:
+        cache.getIfCachedInMemory("key") == "value"
+        cache.getIfCachedInMemory("removed") == null
+        cache.getIfCachedInMemory("unknown") == null
+
+        when:
+        cache.beforeLockRelease(state)
+
+        then:
+        cache.getIfCachedInMemory("key") == null
+    }
+
+    def "does not serve entries without the file lock after another process has updated the backing store"() {
+        def released = Stub(FileLock.State)
+        def updated = Stub(FileLock.State) {
+            hasBeenUpdatedSince(released) >> true
+        }
+
+        given:
+        cache.afterLockAcquire(released)
+        cache.putLater("key", "value", Stub(Runnable))
+        cache.beforeLockRelease(released)
+
+        when:
+        cache.afterLockAcquire(updated)
+
+        then:
+        cache.getIfCachedInMemory("key") == null
+    }
+
     def "multiple threads can produce different entries concurrently"() {
         when:
         async {
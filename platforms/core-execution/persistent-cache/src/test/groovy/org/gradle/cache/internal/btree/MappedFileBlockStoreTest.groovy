@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedFileBlockStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    TestFile cacheFile = tmpDir.file("cache.bin")
+
+    def "can add, update and remove entries with blocks spanning several regions"() {
+        def cache = mappedCache()
+
+        when:
+        (1..200).each { cache.put("key_$it", "value_$it" * it) }
+        (1..200).step(2) { cache.put("key_$it", "updated_$it") }
+        (1..200).step(3) { cache.remove("key_$it") }
+
+        then:
+        (1..200).every { cache.get("key_$it") == expectedValue(it) }
+        cache.verify()
+
+        when:
+        cache.close()
+        cache = mappedCache()
+
+        then:
+        (1..200).every { cache.get("key_$it") == expectedValue(it) }
+        cache.verify()
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "uses the same file format as the file backed store"() {
+        when:
+        def cache = mappedCache()
+        (1..100).each { cache.put("key_$it", "mapped_$it") }
+        cache.close()
+        cache = fileBackedCache()
+
+        then:
+        (1..100).every { cache.get("key_$it") == "mapped_$it" }
+        cache.verify()
+
+        when:
+        (1..100).each { cache.put("key_$it", "file_$it") }
+        cache.close()
+        cache = mappedCache()
+
+        then:
+        (1..100).every { cache.get("key_$it") == "file_$it" }
+        cache.verify()
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "discards content of truncated cache file"() {
+        def cache = mappedCache()
+        (1..10).each { cache.put("key_$it", "value_$it") }
+        cache.close()
+
+        when:
+        new RandomAccessFile(cacheFile, "rw").withCloseable { file ->
+            file.setLength(file.length() - 10)
+        }
+        cache = mappedCache()
+
+        then:
+        cache.get("key_10") == null
+        cache.verify()
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "can clear and reuse store"() {
+        def cache = mappedCache()
+        (1..50).each { cache.put("key_$it", "value_$it") }
+
+        when:
+        cache.clear()
+        cache.put("key_1", "new_value")
+
+        then:
+        cache.get("key_1") == "new_value"
+        cache.get("key_2") == null
+        cache.verify()
+
+        cleanup:
+        cache?.close()
+    }
+
+    private static String expectedValue(int i) {
+        if (i % 3 == 1) {
+            return null
+        }
+        return i % 2 == 1 ? "updated_$i" : "value_$i" * i
+    }
+
+    private BTreePersistentIndexedCache<String, String> mappedCache() {
+        // Use tiny regions and only a few of them, so that blocks span regions and regions get remapped
+        new BTreePersistentIndexedCache<String, String>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER, (short) 4, 100,
+            new MappedFileBlockStore(cacheFile, 256, 4, 0))
+    }
+
+    private BTreePersistentIndexedCache<String, String> fileBackedCache() {
+        new BTreePersistentIndexedCache<String, String>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER, (short) 4, 100,
+            new FileBackedBlockStore(cacheFile))
+    }
+}
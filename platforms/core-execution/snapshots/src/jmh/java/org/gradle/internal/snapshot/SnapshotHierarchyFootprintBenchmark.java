@@ -0,0 +1,119 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap retained by a snapshot hierarchy for a large synthetic tree of files.
+ *
+ * The tree has {@code modules} directories, each with {@code packages} directories of {@code files} regular files.
+ * Names and absolute paths are interned, like {@link org.gradle.internal.snapshot.impl.DirectorySnapshotter} does, and each file has an MD5 content hash.
+ * The retained heap is reported as the {@code retainedBytesPerFile} secondary result, measured after a full GC before and after the hierarchy is built.
+ * Use a single GC, e.g. {@code -XX:+UseParallelGC}, so that the used heap after {@link System#gc()} is stable.
+ */
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:+UseParallelGC"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SnapshotHierarchyFootprintBenchmark {
+
+    @Param({"100"})
+    int modules;
+
+    @Param({"100"})
+    int packages;
+
+    @Param({"100"})
+    int files;
+
+    private SnapshotHierarchy hierarchy;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long retainedBytesPerFile;
+    }
+
+    @TearDown(Level.Invocation)
+    public void releaseHierarchy() {
+        hierarchy = null;
+    }
+
+    @Benchmark
+    public void storeSnapshots(Footprint footprint) {
+        long usedBefore = usedHeapAfterGc();
+        hierarchy = createHierarchy(Interners.newWeakInterner());
+        long usedAfter = usedHeapAfterGc();
+        footprint.retainedBytesPerFile = (usedAfter - usedBefore) / ((long) modules * packages * files);
+    }
+
+    private SnapshotHierarchy createHierarchy(Interner<String> interner) {
+        SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+        for (int module = 0; module < modules; module++) {
+            String moduleName = interner.intern(String.format("module%03d", module));
+            String modulePath = interner.intern("/workspace/" + moduleName);
+            List<FileSystemLocationSnapshot> packageSnapshots = new ArrayList<>(packages);
+            for (int pkg = 0; pkg < packages; pkg++) {
+                String packageName = interner.intern(String.format("package%03d", pkg));
+                String packagePath = interner.intern(modulePath + "/" + packageName);
+                List<FileSystemLocationSnapshot> fileSnapshots = new ArrayList<>(files);
+                for (int file = 0; file < files; file++) {
+                    String fileName = interner.intern(String.format("File%03d.java", file));
+                    String filePath = interner.intern(packagePath + "/" + fileName);
+                    fileSnapshots.add(new RegularFileSnapshot(filePath, fileName, Hashing.md5().hashString(filePath), DefaultFileMetadata.file(file, filePath.length(), AccessType.DIRECT)));
+                }
+                packageSnapshots.add(new DirectorySnapshot(packagePath, packageName, AccessType.DIRECT, Hashing.md5().hashString(packagePath), fileSnapshots));
+            }
+            DirectorySnapshot moduleSnapshot = new DirectorySnapshot(modulePath, moduleName, AccessType.DIRECT, Hashing.md5().hashString(modulePath), packageSnapshots);
+            root = root.store(modulePath, moduleSnapshot, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        return root;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -17,14 +17,35 @@
 package org.gradle.internal.snapshot;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+/**
+ * A child map with several children, sorted by their path.
+ *
+ * <p>The paths and the children are kept in two arrays instead of a list of {@link Entry} objects.
+ * The virtual file system retains one of these maps for each directory with more than one child, so this saves an object per retained file.</p>
+ */
 public abstract class AbstractListChildMap<T> implements ChildMap<T> {
-    protected final List<Entry<T>> entries;
+    protected final String[] paths;
+    private final Object[] values;
 
     protected AbstractListChildMap(List<Entry<T>> entries) {
-        this.entries = entries;
+        int size = entries.size();
+        this.paths = new String[size];
+        this.values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            Entry<T> entry = entries.get(i);
+            paths[i] = entry.getPath();
+            values[i] = entry.getValue();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected T valueAt(int index) {
+        return (T) values[index];
     }
 
     @Override
@@ -34,18 +55,23 @@ public boolean isEmpty() {
 
     @Override
     public int size() {
-        return entries.size();
+        return paths.length;
     }
 
     @Override
     public Stream<Entry<T>> stream() {
-        return entries.stream();
+        return IntStream.range(0, paths.length)
+            .mapToObj(this::entryAt);
+    }
+
+    private Entry<T> entryAt(int index) {
+        return new Entry<>(paths[index], valueAt(index));
     }
 
     protected int findChildIndexWithCommonPrefix(VfsRelativePath targetPath, CaseSensitivity caseSensitivity) {
         return SearchUtil.binarySearch(
-            entries,
-            candidate -> targetPath.compareToFirstSegment(candidate.getPath(), caseSensitivity)
+            Arrays.asList(paths),
+            candidate -> targetPath.compareToFirstSegment(candidate, caseSensitivity)
         );
     }
 
@@ -53,9 +79,8 @@ protected int findChildIndexWithCommonPrefix(VfsRelativePath targetPath, CaseSen
     public <RESULT> ChildMap<RESULT> invalidate(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, InvalidationHandler<T, RESULT> handler) {
         int childIndex = findChildIndexWithCommonPrefix(targetPath, caseSensitivity);
         if (childIndex >= 0) {
-            Entry<T> entry = entries.get(childIndex);
-            String childPath = entry.getPath();
-            return entry.withNode(targetPath, caseSensitivity, new AbstractInvalidateChildHandler<T, RESULT>(handler) {
+            String childPath = paths[childIndex];
+            return Entry.withNode(childPath, valueAt(childIndex), targetPath, caseSensitivity, new AbstractInvalidateChildHandler<T, RESULT>(handler) {
 
                 @SuppressWarnings("unchecked")
                 @Override
@@ -89,10 +114,10 @@ public ChildMap<RESULT> withRemovedChild() {
     public ChildMap<T> store(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, StoreHandler<T> storeHandler) {
         int childIndex = findChildIndexWithCommonPrefix(targetPath, caseSensitivity);
         if (childIndex >= 0) {
-            return entries.get(childIndex).handlePath(targetPath, caseSensitivity, new AbstractStorePathRelationshipHandler<T>(caseSensitivity, storeHandler) {
+            return Entry.handlePath(paths[childIndex], valueAt(childIndex), targetPath, caseSensitivity, new AbstractStorePathRelationshipHandler<T>(caseSensitivity, storeHandler) {
                 @Override
                 public ChildMap<T> withReplacedChild(T newChild) {
-                    return withReplacedChild(entries.get(childIndex).getPath(), newChild);
+                    return withReplacedChild(paths[childIndex], newChild);
                 }
 
                 @Override
@@ -112,27 +137,34 @@ public ChildMap<T> withNewChild(String newChildPath, T newChild) {
     }
 
     protected ChildMap<T> withNewChild(int insertBefore, String path, T newChild) {
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
+        List<Entry<T>> newChildren = entries(paths.length + 1);
         newChildren.add(insertBefore, new Entry<>(path, newChild));
         return ChildMapFactory.childMapFromSorted(newChildren);
     }
 
     protected ChildMap<T> withReplacedChild(int childIndex, String newPath, T newChild) {
-        Entry<T> oldEntry = entries.get(childIndex);
-        if (oldEntry.getPath().equals(newPath) && oldEntry.getValue().equals(newChild)) {
+        if (paths[childIndex].equals(newPath) && values[childIndex].equals(newChild)) {
             return this;
         }
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
+        List<Entry<T>> newChildren = entries(paths.length);
         newChildren.set(childIndex, new Entry<>(newPath, newChild));
         return ChildMapFactory.childMapFromSorted(newChildren);
     }
 
     protected ChildMap<T> withRemovedChild(int childIndex) {
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
+        List<Entry<T>> newChildren = entries(paths.length);
         newChildren.remove(childIndex);
         return ChildMapFactory.childMapFromSorted(newChildren);
     }
 
+    private List<Entry<T>> entries(int expectedSize) {
+        List<Entry<T>> entries = new ArrayList<>(expectedSize);
+        for (int i = 0; i < paths.length; i++) {
+            entries.add(entryAt(i));
+        }
+        return entries;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -144,16 +176,16 @@ public boolean equals(Object o) {
 
         AbstractListChildMap<?> that = (AbstractListChildMap<?>) o;
 
-        return entries.equals(that.entries);
+        return Arrays.equals(paths, that.paths) && Arrays.equals(values, that.values);
     }
 
     @Override
     public int hashCode() {
-        return entries.hashCode();
+        return 31 * Arrays.hashCode(paths) + Arrays.hashCode(values);
     }
 
     @Override
     public String toString() {
-        return entries.toString();
+        return entries(paths.length).toString();
     }
 }
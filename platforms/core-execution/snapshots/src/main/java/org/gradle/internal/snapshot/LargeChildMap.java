@@ -28,8 +28,7 @@ public LargeChildMap(List<Entry<T>> children) {
     public <R> R withNode(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, NodeHandler<T, R> handler) {
         int childIndexWithCommonPrefix = findChildIndexWithCommonPrefix(targetPath, caseSensitivity);
         if (childIndexWithCommonPrefix >= 0) {
-            Entry<T> entry = entries.get(childIndexWithCommonPrefix);
-            return entry.withNode(targetPath, caseSensitivity, handler);
+            return Entry.withNode(paths[childIndexWithCommonPrefix], valueAt(childIndexWithCommonPrefix), targetPath, caseSensitivity, handler);
         }
         return handler.handleUnrelatedToAnyChild();
     }
@@ -26,8 +26,8 @@ protected MediumChildMap(List<Entry<T>> children) {
 
     @Override
     public <RESULT> RESULT withNode(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, NodeHandler<T, RESULT> handler) {
-        for (Entry<T> entry : entries) {
-            Optional<RESULT> ancestorDescendantOrExactMatchResult = entry.handleAncestorDescendantOrExactMatch(targetPath, caseSensitivity, handler);
+        for (int i = 0; i < paths.length; i++) {
+            Optional<RESULT> ancestorDescendantOrExactMatchResult = Entry.handleAncestorDescendantOrExactMatch(paths[i], valueAt(i), targetPath, caseSensitivity, handler);
             if (ancestorDescendantOrExactMatchResult.isPresent()) {
                 return ancestorDescendantOrExactMatchResult.get();
             }
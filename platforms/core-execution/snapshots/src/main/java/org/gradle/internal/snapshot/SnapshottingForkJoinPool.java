@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The fork-join pool shared by everything that snapshots or hashes files in parallel.
+ *
+ * <p>A single pool keeps the number of threads bounded when, for example, the jars of a classpath are hashed while directories are walked.
+ * Work submitted from one of the threads of the pool is pushed to the queue of that thread, so it is run as part of the same pool.</p>
+ */
+public final class SnapshottingForkJoinPool {
+
+    private SnapshottingForkJoinPool() {
+    }
+
+    public static ForkJoinPool getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool();
+    }
+}
@@ -56,6 +56,8 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -64,6 +66,11 @@
 
 /**
  * For creating {@link DirectorySnapshot}s of directories.
+ *
+ * <p>When created with a {@link ForkJoinPool}, unfiltered snapshots are taken by walking each subdirectory in its own fork-join task,
+ * so that the files of different subdirectories are listed and hashed concurrently by the threads of the pool.
+ * The children of each directory are sorted before its Merkle hash is computed, so the resulting snapshot is the same as the one of a sequential walk.
+ * Filtered snapshots are always taken by a sequential walk, since the filtering predicate tracks the relative path of the walk.</p>
  */
 public class DirectorySnapshotter {
     private static final EnumSet<FileVisitOption> DONT_FOLLOW_SYMLINKS = EnumSet.noneOf(FileVisitOption.class);
@@ -89,12 +96,27 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    private final ForkJoinPool forkJoinPool;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, null);
+    }
+
+    /**
+     * @param forkJoinPool The pool to walk unfiltered directories in parallel with, or {@code null} to always walk sequentially.
+     */
+    public DirectorySnapshotter(
+        FileHasher hasher,
+        Interner<String> stringInterner,
+        Collection<String> defaultExcludes,
+        DirectorySnapshotterStatistics.Collector collector,
+        @Nullable ForkJoinPool forkJoinPool
+    ) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.forkJoinPool = forkJoinPool;
     }
 
     /**
@@ -122,8 +144,13 @@ public FileSystemLocationSnapshot snapshot(
         try {
             AtomicBoolean hasBeenFiltered = new AtomicBoolean();
             Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, previouslyKnownSnapshots, unfilteredSnapshotRecorder);
-            Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+            boolean forkSubdirectories = forkJoinPool != null && predicate == null;
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, previouslyKnownSnapshots, unfilteredSnapshotRecorder, forkSubdirectories);
+            if (forkSubdirectories) {
+                forkJoinPool.invoke(visitor.walkTask(rootPath));
+            } else {
+                Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+            }
             FileSystemLocationSnapshot result = visitor.getResult();
             if (!hasBeenFiltered.get()) {
                 unfilteredSnapshotRecorder.accept(result);
@@ -266,6 +293,8 @@ private static class PathVisitor extends DirectorySnapshotterStatistics.Collecti
         private final Set<FileSystemLocationSnapshot> filteredDirectorySnapshots = new HashSet<>();
         private final ImmutableMap<String, ? extends FileSystemLocationSnapshot> previouslyKnownSnapshots;
         private final Consumer<FileSystemLocationSnapshot> unfilteredSnapshotRecorder;
+        private final boolean forkSubdirectories;
+        private final Deque<List<SubdirectoryTask>> forkedSubdirectories = new ArrayDeque<>();
 
         public PathVisitor(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
@@ -276,9 +305,27 @@ public PathVisitor(
             DirectorySnapshotterStatistics.Collector statisticsCollector,
             SymbolicLinkMapping symbolicLinkMapping,
             Map<String, ? extends FileSystemLocationSnapshot> previouslyKnownSnapshots,
-            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotRecorder
+            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotRecorder,
+            boolean forkSubdirectories
         ) {
-            super(statisticsCollector);
+            this(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, statisticsCollector, symbolicLinkMapping, previouslyKnownSnapshots, unfilteredSnapshotRecorder, forkSubdirectories, false);
+        }
+
+        private PathVisitor(
+            @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
+            AtomicBoolean hasBeenFiltered,
+            FileHasher hasher,
+            Interner<String> stringInterner,
+            DefaultExcludes defaultExcludes,
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            SymbolicLinkMapping symbolicLinkMapping,
+            Map<String, ? extends FileSystemLocationSnapshot> previouslyKnownSnapshots,
+            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotRecorder,
+            boolean forkSubdirectories,
+            boolean continuesHierarchy
+        ) {
+            super(statisticsCollector, continuesHierarchy);
+            this.forkSubdirectories = forkSubdirectories;
             this.builder = FilteredTrackingMerkleDirectorySnapshotBuilder.sortingRequired(this::recordUnfilteredSnapshot);
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
@@ -303,20 +350,35 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             if (shouldVisitDirectory(dir, fileName)) {
                 String internedRemappedAbsolutePath = intern(symbolicLinkMapping.remapAbsolutePath(dir));
 
-                // TODO Reuse previous directory snapshot even when filtering is enabled
-                if (predicate == null) {
-                    FileSystemLocationSnapshot previouslyKnownSnapshot = previouslyKnownSnapshots.get(internedRemappedAbsolutePath);
-                    if (previouslyKnownSnapshot instanceof DirectorySnapshot) {
-                        builder.visitDirectory((DirectorySnapshot) previouslyKnownSnapshot);
+                FileSystemLocationSnapshot previouslyKnownSnapshot = previouslyKnownSnapshots.get(internedRemappedAbsolutePath);
+                if (previouslyKnownSnapshot instanceof DirectorySnapshot) {
+                    DirectorySnapshot previouslyKnownDirectory = (DirectorySnapshot) previouslyKnownSnapshot;
+                    if (predicate == null) {
+                        builder.visitDirectory(previouslyKnownDirectory);
+                        pathTracker.leave();
+                        return FileVisitResult.SKIP_SUBTREE;
+                    } else if (!isAccessedViaSymlink(previouslyKnownDirectory)) {
+                        visitFilteredPreviouslyKnownDirectory(previouslyKnownDirectory);
                         pathTracker.leave();
                         return FileVisitResult.SKIP_SUBTREE;
-                    } else if (previouslyKnownSnapshot != null) {
-                        throw new IllegalStateException("Expected a previously known directory snapshot at " + internedRemappedAbsolutePath + " but got " + previouslyKnownSnapshot);
                     }
+                } else if (previouslyKnownSnapshot != null) {
+                    throw new IllegalStateException("Expected a previously known directory snapshot at " + internedRemappedAbsolutePath + " but got " + previouslyKnownSnapshot);
+                }
+
+                if (forkSubdirectories && !pathTracker.isRoot()) {
+                    SubdirectoryTask task = new SubdirectoryTask(dir, parentDirectories);
+                    task.fork();
+                    forkedSubdirectories.getFirst().add(task);
+                    pathTracker.leave();
+                    return FileVisitResult.SKIP_SUBTREE;
                 }
 
                 builder.enterDirectory(AccessType.DIRECT, internedRemappedAbsolutePath, fileName, INCLUDE_EMPTY_DIRS);
                 parentDirectories.addFirst(dir.toString());
+                if (forkSubdirectories) {
+                    forkedSubdirectories.addFirst(new ArrayList<>());
+                }
                 return FileVisitResult.CONTINUE;
             } else {
                 pathTracker.leave();
@@ -324,6 +386,53 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             }
         }
 
+        /**
+         * Applies the predicate to the contents of a directory that is known to be unchanged, instead of walking it again.
+         *
+         * The files in the directory have already been hashed, so this only re-computes the hashes of the filtered directories.
+         */
+        private void visitFilteredPreviouslyKnownDirectory(DirectorySnapshot directory) {
+            builder.enterDirectory(AccessType.DIRECT, directory.getAbsolutePath(), directory.getName(), INCLUDE_EMPTY_DIRS);
+            for (FileSystemLocationSnapshot child : directory.getChildren()) {
+                pathTracker.enter(child.getName());
+                try {
+                    boolean isDirectory = child.getType() == FileType.Directory;
+                    if (shouldVisit(Paths.get(child.getAbsolutePath()), child.getName(), isDirectory)) {
+                        if (isDirectory) {
+                            visitFilteredPreviouslyKnownDirectory((DirectorySnapshot) child);
+                        } else {
+                            builder.visitLeafElement((FileSystemLeafSnapshot) child);
+                        }
+                    }
+                } finally {
+                    pathTracker.leave();
+                }
+            }
+            boolean currentLevelComplete = builder.isCurrentLevelUnfiltered();
+            FileSystemLocationSnapshot currentLevel = builder.leaveDirectory();
+            if (!currentLevelComplete) {
+                filteredDirectorySnapshots.add(currentLevel);
+            }
+        }
+
+        /**
+         * Whether the directory contains anything accessed via a symlink.
+         * The predicate sees the target of a symlink when walking the file system, which can't be reproduced from the snapshot.
+         */
+        private static boolean isAccessedViaSymlink(FileSystemLocationSnapshot snapshot) {
+            if (snapshot.getAccessType() == AccessType.VIA_SYMLINK) {
+                return true;
+            }
+            if (snapshot instanceof DirectorySnapshot) {
+                for (FileSystemLocationSnapshot child : ((DirectorySnapshot) snapshot).getChildren()) {
+                    if (isAccessedViaSymlink(child)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
         @Override
         protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             pathTracker.leave();
@@ -333,6 +442,9 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
+            if (forkSubdirectories) {
+                joinForkedSubdirectories();
+            }
             boolean currentLevelComplete = builder.isCurrentLevelUnfiltered();
             FileSystemLocationSnapshot currentLevel = builder.leaveDirectory();
             if (!currentLevelComplete) {
@@ -395,7 +507,8 @@ private DirectorySnapshot followSymlink(Path file, String internedFileName, Atom
                         collector,
                         symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker),
                         previouslyKnownSnapshots,
-                        unfilteredSnapshotRecorder);
+                        unfilteredSnapshotRecorder,
+                        forkSubdirectories);
                     Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
                     return (DirectorySnapshot) subtreeVisitor.getResult();
                 } else {
@@ -520,5 +633,69 @@ private String getInternedFileName(Path dir) {
         public FileSystemLocationSnapshot getResult() {
             return builder.getResult();
         }
+
+        /**
+         * Returns a task that walks the given directory with this visitor, forking a task for each of its subdirectories.
+         */
+        public RecursiveTask<FileSystemLocationSnapshot> walkTask(Path rootPath) {
+            return new RecursiveTask<FileSystemLocationSnapshot>() {
+                @Override
+                protected FileSystemLocationSnapshot compute() {
+                    walk(rootPath, PathVisitor.this);
+                    return getResult();
+                }
+            };
+        }
+
+        private void joinForkedSubdirectories() {
+            List<SubdirectoryTask> tasks = forkedSubdirectories.removeFirst();
+            // Join in reverse order, so that the tasks which haven't been stolen yet are run by this thread
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                FileSystemLocationSnapshot subdirectorySnapshot = tasks.get(i).join();
+                if (subdirectorySnapshot instanceof DirectorySnapshot) {
+                    builder.visitDirectory((DirectorySnapshot) subdirectorySnapshot);
+                }
+            }
+        }
+
+        private static void walk(Path dir, PathVisitor visitor) {
+            try {
+                Files.walkFileTree(dir, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", dir), e);
+            }
+        }
+
+        /**
+         * Snapshots a subdirectory with a separate visitor, which continues the hierarchy of this visitor.
+         */
+        private class SubdirectoryTask extends RecursiveTask<FileSystemLocationSnapshot> {
+            private final Path dir;
+            private final List<String> parentDirectories;
+
+            SubdirectoryTask(Path dir, Collection<String> parentDirectories) {
+                this.dir = dir;
+                this.parentDirectories = new ArrayList<>(parentDirectories);
+            }
+
+            @Override
+            protected FileSystemLocationSnapshot compute() {
+                PathVisitor subdirectoryVisitor = new PathVisitor(
+                    predicate,
+                    hasBeenFiltered,
+                    hasher,
+                    stringInterner,
+                    defaultExcludes,
+                    collector,
+                    symbolicLinkMapping,
+                    previouslyKnownSnapshots,
+                    unfilteredSnapshotRecorder,
+                    true,
+                    true);
+                subdirectoryVisitor.parentDirectories.addAll(parentDirectories);
+                walk(dir, subdirectoryVisitor);
+                return subdirectoryVisitor.getResult();
+            }
+        }
     }
 }
@@ -105,15 +105,31 @@ public String toString() {
 
     abstract class CollectingFileVisitor implements FileVisitor<Path> {
         protected final Collector collector;
+        private boolean rootDirectoryAlreadyRecorded;
 
         public CollectingFileVisitor(Collector collector) {
+            this(collector, false);
+        }
+
+        /**
+         * Creates a visitor that continues a hierarchy already recorded by another visitor,
+         * starting at a directory that the other visitor has already recorded as visited.
+         */
+        protected CollectingFileVisitor(Collector collector, boolean continuesHierarchy) {
             this.collector = collector;
-            collector.recordVisitHierarchy();
+            this.rootDirectoryAlreadyRecorded = continuesHierarchy;
+            if (!continuesHierarchy) {
+                collector.recordVisitHierarchy();
+            }
         }
 
         @Override
         public final FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-            collector.recordVisitDirectory();
+            if (rootDirectoryAlreadyRecorded) {
+                rootDirectoryAlreadyRecorded = false;
+            } else {
+                collector.recordVisitDirectory();
+            }
             return doPreVisitDirectory(dir, attrs);
         }
 
@@ -42,6 +42,7 @@ import spock.lang.Issue
 import spock.lang.Specification
 
 import java.nio.file.Paths
+import java.util.concurrent.ForkJoinPool
 import java.util.function.Consumer
 
 @UsesNativeServices
@@ -246,6 +247,41 @@ class DirectorySnapshotterTest extends Specification {
         ] as Set
     }
 
+    def "should filter existing directory snapshots without walking them again"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        def rootTextFile = rootDir.file("root.txt").createFile()
+        def knownDir = rootDir.file("known").createDir()
+        // root
+        //   - root.txt <-- rootTextFile
+        //   - known <-- knownDir, empty on disk
+        def knownTextFileSnapshot = new RegularFileSnapshot(knownDir.file("known.txt").absolutePath, "known.txt", TestHashCodes.hashCodeFrom(1234), Stub(FileMetadata) { getAccessType() >> AccessType.DIRECT })
+        def knownHtmlFileSnapshot = new RegularFileSnapshot(knownDir.file("known.html").absolutePath, "known.html", TestHashCodes.hashCodeFrom(4321), Stub(FileMetadata) { getAccessType() >> AccessType.DIRECT })
+        def knownNestedDirSnapshot = new DirectorySnapshot(knownDir.file("nested").absolutePath, "nested", AccessType.DIRECT, TestHashCodes.hashCodeFrom(8765), [knownTextFileSnapshot])
+        def knownDirSnapshot = new DirectorySnapshot(knownDir.absolutePath, knownDir.name, AccessType.DIRECT, TestHashCodes.hashCodeFrom(5678), [knownHtmlFileSnapshot, knownNestedDirSnapshot])
+        def knownSnapshots = [(knownDir.absolutePath): knownDirSnapshot]
+
+        def patterns = new PatternSet()
+        patterns.include("**/*.txt")
+
+        when:
+        def snapshot = directorySnapshotter.snapshot(rootDir.absolutePath, directoryWalkerPredicate(patterns), knownSnapshots, unfilteredSubSnapshotsCollector)
+        def relativePaths = SnapshotVisitorUtil.getRelativePaths(snapshot, true)
+
+        then:
+        relativePaths as Set == [
+            '',
+            'root.txt',
+            'known',
+            'known/nested',
+            'known/nested/known.txt'
+        ] as Set
+        unfilteredSubsnapshots*.absolutePath as Set == [
+            rootTextFile.absolutePath,
+            knownNestedDirSnapshot.absolutePath
+        ] as Set
+    }
+
     @Requires(UnitTestPreconditions.Symlinks)
     def "symlinked directories in tree are marked as accessed via symlink"() {
         def rootDir = tmpDir.createDir("root")
@@ -484,6 +520,38 @@ class DirectorySnapshotterTest extends Specification {
         0 * _
     }
 
+    @Requires(UnitTestPreconditions.Symlinks)
+    def "parallel walk produces the same snapshot as a sequential walk"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        (1..5).each { i ->
+            (1..5).each { j ->
+                (1..5).each { k -> rootDir.file("dir$i/sub$j/file${k}.txt").createFile().text = "content $i $j $k" }
+            }
+        }
+        rootDir.file("empty").createDir()
+        rootDir.file("dir1/linked").createLink(rootDir.file("dir2"))
+        rootDir.file("dir3/sub3/cycle").createLink(rootDir)
+        def knownDir = rootDir.file("dir4/sub4")
+        def knownDirSnapshot = new DirectorySnapshot(knownDir.absolutePath, knownDir.name, AccessType.DIRECT, TestHashCodes.hashCodeFrom(5678), [])
+        def forkJoinPool = new ForkJoinPool(4)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, forkJoinPool)
+
+        when:
+        def sequentialSnapshot = directorySnapshotter.snapshot(rootDir.absolutePath, null, [(knownDir.absolutePath): knownDirSnapshot], unfilteredSubSnapshotsCollector)
+        def parallelSnapshot = parallelSnapshotter.snapshot(rootDir.absolutePath, null, [(knownDir.absolutePath): knownDirSnapshot], unfilteredSubSnapshotsCollector)
+
+        then:
+        parallelSnapshot.hash == sequentialSnapshot.hash
+        SnapshotVisitorUtil.getAbsolutePaths(parallelSnapshot, true) == SnapshotVisitorUtil.getAbsolutePaths(sequentialSnapshot, true)
+        SnapshotUtil.indexByAbsolutePath(parallelSnapshot)[knownDir.absolutePath].is(knownDirSnapshot)
+        unfilteredSubsnapshots == [sequentialSnapshot, parallelSnapshot]
+        0 * _
+
+        cleanup:
+        forkJoinPool.shutdown()
+    }
+
     @Requires(UnitTestPreconditions.FilePermissions)
     def "snapshotting unreadable #type fails"() {
         given:
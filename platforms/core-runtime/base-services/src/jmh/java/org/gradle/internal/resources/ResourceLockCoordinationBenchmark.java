@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resources;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.lock;
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock;
+
+/**
+ * Many threads competing for a small number of worker leases and project locks, similar to the plan executor running with a large number of workers.
+ */
+@Fork(1)
+@Threads(64)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ResourceLockCoordinationBenchmark {
+    private static final ResourceLockContainer NO_OP_CONTAINER = new ResourceLockContainer() {
+        @Override
+        public void lockAcquired(ResourceLock lock) {
+        }
+
+        @Override
+        public void lockReleased(ResourceLock lock) {
+        }
+    };
+
+    @Param({"8", "32"})
+    int maxWorkers;
+
+    @Param({"16", "256"})
+    int projects;
+
+    @Param({"0", "1000"})
+    int workTokens;
+
+    DefaultResourceLockCoordinationService coordinationService;
+    LeaseHolder workerLeases;
+    List<ResourceLock> projectLocks;
+
+    @Setup
+    public void setup() {
+        coordinationService = new DefaultResourceLockCoordinationService();
+        workerLeases = new LeaseHolder(maxWorkers);
+        projectLocks = new ArrayList<ResourceLock>(projects);
+        for (int i = 0; i < projects; i++) {
+            projectLocks.add(new ExclusiveAccessResourceLock("project " + i, coordinationService, NO_OP_CONTAINER));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        ResourceLock workerLease;
+        int nextProject;
+
+        @Setup
+        public void setup(ResourceLockCoordinationBenchmark benchmark, ThreadParams threadParams) {
+            workerLease = new DefaultLease("worker lease", benchmark.coordinationService, NO_OP_CONTAINER, benchmark.workerLeases);
+            nextProject = threadParams.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    public void runWorkWithLeaseAndProjectLock(Worker worker, Blackhole blackhole) {
+        ResourceLock projectLock = projectLocks.get(worker.nextProject++ % projects);
+        coordinationService.withStateLock(lock(worker.workerLease, projectLock));
+        Blackhole.consumeCPU(workTokens);
+        coordinationService.withStateLock(unlock(projectLock, worker.workerLease));
+        blackhole.consume(projectLock);
+    }
+}
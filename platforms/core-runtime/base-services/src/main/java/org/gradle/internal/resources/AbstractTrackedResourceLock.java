@@ -19,6 +19,8 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+
 public abstract class AbstractTrackedResourceLock implements ResourceLock {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractTrackedResourceLock.class);
 
@@ -52,6 +54,10 @@ public boolean tryLock() {
                 coordinationService.getCurrent().registerLocked(this);
                 return true;
             } else {
+                ResourceLockState current = coordinationService.getCurrent();
+                for (Object waitObject : getWaitObjects()) {
+                    current.registerBlockedOn(waitObject);
+                }
                 return false;
             }
         } else {
@@ -90,6 +96,20 @@ private void failIfNotInResourceLockStateChange() {
         }
     }
 
+    /**
+     * Returns the objects whose release may allow this lock to be acquired by a thread that failed to acquire it.
+     */
+    protected Iterable<?> getWaitObjects() {
+        return Collections.singleton(getReleaseObject());
+    }
+
+    /**
+     * Returns the object that identifies this lock to the threads waiting for it to be released.
+     */
+    protected Object getReleaseObject() {
+        return this;
+    }
+
     abstract protected boolean acquireLock();
 
     abstract protected void releaseLock();
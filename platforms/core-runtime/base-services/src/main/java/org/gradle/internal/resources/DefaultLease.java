@@ -25,6 +25,12 @@ public DefaultLease(String displayName, ResourceLockCoordinationService coordina
         this.parent = parent;
     }
 
+    @Override
+    protected Object getReleaseObject() {
+        // Any lease released to the same holder allows another lease to be granted
+        return parent;
+    }
+
     @Override
     protected boolean doIsLocked() {
         return ownerThread != null;
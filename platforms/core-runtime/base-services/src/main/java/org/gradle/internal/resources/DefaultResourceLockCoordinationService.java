@@ -28,45 +28,68 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Coordinates changes to resource lock state, allowing a single thread at a time to change the state.
+ *
+ * A thread that needs to wait for the state to change waits in the queues of the objects it failed to acquire,
+ * so that releasing a lock only wakes up the threads that were waiting for that lock rather than every waiting thread.
+ * Threads that did not fail to acquire any lock are waiting for some other change and are woken up whenever any lock is released.
+ */
 public class DefaultResourceLockCoordinationService implements ResourceLockCoordinationService, Closeable {
-    private final Object lock = new Object();
+    private final ReentrantLock lock = new ReentrantLock();
     private final Set<Action<ResourceLock>> releaseHandlers = new LinkedHashSet<Action<ResourceLock>>();
-    private Thread currentOwner;
+    // Threads waiting for any change, guarded by the lock
+    private final Set<Waiter> waitingForAnyChange = new LinkedHashSet<Waiter>();
+    // Threads waiting for specific objects to be released, guarded by the lock
+    private final Map<Object, Set<Waiter>> waitingForRelease = new HashMap<Object, Set<Waiter>>();
+    // Only ever set to the current thread by the current thread, so can be read without holding the lock
+    private volatile Thread currentOwner;
     private DefaultResourceLockState currentState;
 
     @Override
     public void close() throws IOException {
-        synchronized (lock) {
+        lock.lock();
+        try {
             if (!releaseHandlers.isEmpty()) {
                 throw new IllegalStateException("Some lock release listeners have not been removed.");
             }
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void assertHasStateLock() {
-        synchronized (lock) {
-            if (getCurrent() == null) {
-                throw new IllegalStateException();
-            }
+        if (getCurrent() == null) {
+            throw new IllegalStateException();
         }
     }
 
     @Override
     public void addLockReleaseListener(Action<ResourceLock> listener) {
-        synchronized (lock) {
+        lock.lock();
+        try {
             releaseHandlers.add(listener);
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void removeLockReleaseListener(Action<ResourceLock> listener) {
-        synchronized (lock) {
+        lock.lock();
+        try {
             releaseHandlers.remove(listener);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -96,7 +119,8 @@ public ResourceLockState.Disposition transform(ResourceLockState resourceLockSta
 
     @Override
     public boolean withStateLock(InternalTransformer<ResourceLockState.Disposition, ResourceLockState> stateLockAction) {
-        synchronized (lock) {
+        lock.lock();
+        try {
             DefaultResourceLockState resourceLockState = new DefaultResourceLockState();
             DefaultResourceLockState previous = startOperation(resourceLockState);
             try {
@@ -107,13 +131,10 @@ public boolean withStateLock(InternalTransformer<ResourceLockState.Disposition,
                         case RETRY:
                             resourceLockState.releaseLocks();
                             maybeNotifyStateChange(resourceLockState);
+                            Waiter waiter = new Waiter(lock.newCondition(), resourceLockState.getBlockedOn());
                             resourceLockState.reset();
                             finishOperation(previous);
-                            try {
-                                lock.wait();
-                            } catch (InterruptedException e) {
-                                throw UncheckedException.throwAsUncheckedException(e);
-                            }
+                            awaitStateChange(waiter);
                             startOperation(resourceLockState);
                             break;
                         case FINISHED:
@@ -132,6 +153,45 @@ public boolean withStateLock(InternalTransformer<ResourceLockState.Disposition,
             } finally {
                 finishOperation(previous);
             }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitStateChange(Waiter waiter) {
+        if (waiter.blockedOn.isEmpty()) {
+            waitingForAnyChange.add(waiter);
+        } else {
+            for (Object waitObject : waiter.blockedOn) {
+                Set<Waiter> waiters = waitingForRelease.get(waitObject);
+                if (waiters == null) {
+                    waiters = new LinkedHashSet<Waiter>();
+                    waitingForRelease.put(waitObject, waiters);
+                }
+                waiters.add(waiter);
+            }
+        }
+        try {
+            while (!waiter.woken) {
+                waiter.condition.await();
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            removeWaiter(waiter);
+        }
+    }
+
+    private void removeWaiter(Waiter waiter) {
+        if (waiter.blockedOn.isEmpty()) {
+            waitingForAnyChange.remove(waiter);
+        } else {
+            for (Object waitObject : waiter.blockedOn) {
+                Set<Waiter> waiters = waitingForRelease.get(waitObject);
+                if (waiters != null && waiters.remove(waiter) && waiters.isEmpty()) {
+                    waitingForRelease.remove(waitObject);
+                }
+            }
         }
     }
 
@@ -158,19 +218,24 @@ private void finishOperation(@Nullable DefaultResourceLockState previous) {
 
     @Override
     public ResourceLockState getCurrent() {
-        synchronized (lock) {
-            if (currentOwner != Thread.currentThread()) {
-                return null;
-            } else {
-                return currentState;
-            }
+        if (currentOwner != Thread.currentThread()) {
+            return null;
+        } else {
+            // The current state is only changed by the owner thread
+            return currentState;
         }
     }
 
     private void maybeNotifyStateChange(DefaultResourceLockState resourceLockState) {
         Collection<ResourceLock> unlockedResources = resourceLockState.getUnlockedResources();
         if (!unlockedResources.isEmpty()) {
-            notifyStateChange();
+            wakeAll(waitingForAnyChange);
+            for (ResourceLock resource : unlockedResources) {
+                Set<Waiter> waiters = waitingForRelease.get(releaseObjectOf(resource));
+                if (waiters != null) {
+                    wakeAll(waiters);
+                }
+            }
             for (ResourceLock resource : unlockedResources) {
                 for (Action<ResourceLock> releaseHandler : releaseHandlers) {
                     releaseHandler.execute(resource);
@@ -179,16 +244,71 @@ private void maybeNotifyStateChange(DefaultResourceLockState resourceLockState)
         }
     }
 
+    private static Object releaseObjectOf(ResourceLock resource) {
+        if (resource instanceof AbstractTrackedResourceLock) {
+            return ((AbstractTrackedResourceLock) resource).getReleaseObject();
+        }
+        return resource;
+    }
+
+    private static void wakeAll(Set<Waiter> waiters) {
+        for (Waiter waiter : waiters) {
+            waiter.wake();
+        }
+    }
+
     @Override
     public void notifyStateChange() {
-        synchronized (lock) {
-            lock.notifyAll();
+        lock.lock();
+        try {
+            wakeAll(waitingForAnyChange);
+            for (Set<Waiter> waiters : waitingForRelease.values()) {
+                wakeAll(waiters);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void notifyStateChange(Object waitObject) {
+        lock.lock();
+        try {
+            wakeAll(waitingForAnyChange);
+            Set<Waiter> waiters = waitingForRelease.get(waitObject);
+            if (waiters != null) {
+                wakeAll(waiters);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A thread waiting for the state to change. Guarded by the state lock.
+     */
+    private static class Waiter {
+        final Condition condition;
+        final Set<Object> blockedOn;
+        boolean woken;
+
+        Waiter(Condition condition, Set<Object> blockedOn) {
+            this.condition = condition;
+            this.blockedOn = blockedOn;
+        }
+
+        void wake() {
+            if (!woken) {
+                woken = true;
+                condition.signal();
+            }
         }
     }
 
     private static class DefaultResourceLockState implements ResourceLockState {
         private Set<ResourceLock> lockedResources;
         private Set<ResourceLock> unlockedResources;
+        private Set<Object> blockedOn;
         boolean rollback;
 
         @Override
@@ -211,6 +331,21 @@ public void registerUnlocked(ResourceLock resourceLock) {
             }
         }
 
+        @Override
+        public void registerBlockedOn(Object waitObject) {
+            if (blockedOn == null) {
+                blockedOn = new HashSet<Object>();
+            }
+            blockedOn.add(waitObject);
+        }
+
+        /**
+         * Returns a copy of the objects the transform is waiting for, which is empty when the transform is waiting for any change.
+         */
+        Set<Object> getBlockedOn() {
+            return blockedOn == null ? Collections.emptySet() : new HashSet<Object>(blockedOn);
+        }
+
         Collection<ResourceLock> getUnlockedResources() {
             return unlockedResources == null ? Collections.<ResourceLock>emptyList() : unlockedResources;
         }
@@ -237,6 +372,9 @@ public void reset() {
             if (unlockedResources != null) {
                 unlockedResources.clear();
             }
+            if (blockedOn != null) {
+                blockedOn.clear();
+            }
             rollback = false;
         }
     }
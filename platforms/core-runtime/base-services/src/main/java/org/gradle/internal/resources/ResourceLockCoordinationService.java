@@ -65,6 +65,12 @@ public interface ResourceLockCoordinationService {
      */
     void notifyStateChange();
 
+    /**
+     * Notify the threads waiting for the given object, see {@link ResourceLockState#registerBlockedOn(Object)}, and the threads waiting for any change.
+     * Unlike {@link #notifyStateChange()}, the threads waiting only for other objects, such as resource locks, are not woken up.
+     */
+    void notifyStateChange(Object waitObject);
+
     void assertHasStateLock();
 
     /**
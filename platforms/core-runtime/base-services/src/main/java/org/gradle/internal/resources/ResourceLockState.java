@@ -38,6 +38,15 @@ enum Disposition { FAILED, FINISHED, RETRY }
      */
     void registerUnlocked(ResourceLock resourceLock);
 
+    /**
+     * Registers an object whose release may allow a resource lock that could not be acquired during the transform to be acquired.
+     * When the transform asks to retry, the coordination service wakes the thread up when one of these objects is released,
+     * instead of whenever any resource lock is released.
+     *
+     * @param waitObject the resource lock or other object identifying the resources the transform is waiting for
+     */
+    void registerBlockedOn(Object waitObject);
+
     /**
      * Release any locks that have been acquired during the transform.
      */
@@ -46,6 +46,7 @@
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -62,6 +63,7 @@ public class DefaultWorkerLeaseService implements WorkerLeaseService, ProjectPar
     private final WorkerLeaseLockRegistry workerLeaseLockRegistry;
     private final ProjectLockStatisticsImpl projectLockStatistics = new ProjectLockStatisticsImpl();
     private final AtomicReference<Registries> registries = new AtomicReference<Registries>(new NoRegistries());
+    private final List<BlockingListener> blockingListeners = new CopyOnWriteArrayList<BlockingListener>();
 
     public DefaultWorkerLeaseService(ResourceLockCoordinationService coordinationService, ParallelismConfiguration parallelismConfiguration) {
         this.maxWorkerCount = parallelismConfiguration.getMaxWorkerCount();
@@ -212,8 +214,31 @@ public <T> T runAsIsolatedTask(Factory<T> factory) {
         return withoutLocks(locks, factory);
     }
 
+    @Override
+    public void addBlockingListener(BlockingListener listener) {
+        blockingListeners.add(listener);
+    }
+
+    @Override
+    public void removeBlockingListener(BlockingListener listener) {
+        blockingListeners.remove(listener);
+    }
+
     @Override
     public void blocking(Runnable action) {
+        for (BlockingListener listener : blockingListeners) {
+            listener.beforeBlocking();
+        }
+        try {
+            releaseLocksWhileBlocking(action);
+        } finally {
+            for (BlockingListener listener : blockingListeners) {
+                listener.afterBlocking();
+            }
+        }
+    }
+
+    private void releaseLocksWhileBlocking(Runnable action) {
         Registries registries = this.registries.get();
         if (registries.getProjectLockRegistry().mayAttemptToChangeLocks()) {
             final Collection<? extends ResourceLock> projectLocks = registries.getProjectLockRegistry().getResourceLocksByCurrentThread();
@@ -72,4 +72,26 @@ public interface WorkerLeaseService extends WorkerLeaseRegistry, ProjectLeaseReg
     void withoutLock(ResourceLock lock, Runnable runnable);
 
     Synchronizer newResource();
+
+    /**
+     * Adds a listener that is notified when a thread gives up its worker lease in {@link #blocking(Runnable)}.
+     */
+    void addBlockingListener(BlockingListener listener);
+
+    void removeBlockingListener(BlockingListener listener);
+
+    /**
+     * Notified on the blocking thread, while the thread does not hold the state lock.
+     */
+    interface BlockingListener {
+        /**
+         * Called before the worker lease is released.
+         */
+        void beforeBlocking();
+
+        /**
+         * Called after the worker lease has been reacquired.
+         */
+        void afterBlocking();
+    }
 }
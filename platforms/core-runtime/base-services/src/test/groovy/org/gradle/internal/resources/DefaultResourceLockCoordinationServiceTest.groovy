@@ -21,6 +21,8 @@ import org.gradle.internal.InternalTransformer
 import org.gradle.test.fixtures.ConcurrentTestUtil
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 
+import java.util.concurrent.atomic.AtomicInteger
+
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.lock
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.tryLock
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock
@@ -403,6 +405,140 @@ class DefaultResourceLockCoordinationServiceTest extends ConcurrentSpec {
         0 * listener._
     }
 
+    def "only wakes up threads waiting for the released lock"() {
+        def lock1 = resourceLock("lock1", true)
+        def lock2 = resourceLock("lock2", true)
+        def lock1Attempts = new AtomicInteger()
+        def lock2Attempts = new AtomicInteger()
+
+        when:
+        async {
+            start {
+                coordinationService.withStateLock(lockCountingAttempts(lock1, lock1Attempts))
+                instant.lock1Acquired
+            }
+            start {
+                coordinationService.withStateLock(lockCountingAttempts(lock2, lock2Attempts))
+                instant.lock2Acquired
+            }
+            ConcurrentTestUtil.poll {
+                assert lock1Attempts.get() == 1
+                assert lock2Attempts.get() == 1
+            }
+
+            release(lock2)
+            thread.blockUntil.lock2Acquired
+            assert lock1Attempts.get() == 1
+
+            release(lock1)
+            thread.blockUntil.lock1Acquired
+        }
+
+        then:
+        lock1Attempts.get() == 2
+        lock2Attempts.get() == 2
+    }
+
+    def "wakes up all waiting threads on state change"() {
+        def lock1 = resourceLock("lock1", true)
+        def lock2 = resourceLock("lock2", true)
+        def lock1Attempts = new AtomicInteger()
+        def lock2Attempts = new AtomicInteger()
+
+        when:
+        async {
+            start {
+                coordinationService.withStateLock(lockCountingAttempts(lock1, lock1Attempts))
+            }
+            start {
+                coordinationService.withStateLock(lockCountingAttempts(lock2, lock2Attempts))
+            }
+            ConcurrentTestUtil.poll {
+                assert lock1Attempts.get() == 1
+                assert lock2Attempts.get() == 1
+            }
+
+            coordinationService.notifyStateChange()
+            ConcurrentTestUtil.poll {
+                assert lock1Attempts.get() == 2
+                assert lock2Attempts.get() == 2
+            }
+
+            release(lock1)
+            release(lock2)
+        }
+
+        then:
+        lock1Attempts.get() == 3
+        lock2Attempts.get() == 3
+    }
+
+    def "only wakes up threads waiting for the given object on state change"() {
+        def lock1 = resourceLock("lock1", true)
+        def lock2 = resourceLock("lock2", true)
+        def waitObject = new Object()
+        def lock1Attempts = new AtomicInteger()
+        def lock2Attempts = new AtomicInteger()
+
+        when:
+        async {
+            start {
+                coordinationService.withStateLock(new InternalTransformer<ResourceLockState.Disposition, ResourceLockState>() {
+                    @Override
+                    ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                        lock1Attempts.incrementAndGet()
+                        if (lock1.tryLock()) {
+                            return FINISHED
+                        }
+                        resourceLockState.registerBlockedOn(waitObject)
+                        return RETRY
+                    }
+                })
+            }
+            start {
+                coordinationService.withStateLock(lockCountingAttempts(lock2, lock2Attempts))
+            }
+            ConcurrentTestUtil.poll {
+                assert lock1Attempts.get() == 1
+                assert lock2Attempts.get() == 1
+            }
+
+            coordinationService.notifyStateChange(waitObject)
+            ConcurrentTestUtil.poll {
+                assert lock1Attempts.get() == 2
+            }
+            assert lock2Attempts.get() == 1
+
+            release(lock1)
+            release(lock2)
+        }
+
+        then:
+        lock1Attempts.get() == 3
+        lock2Attempts.get() == 2
+    }
+
+    private InternalTransformer<ResourceLockState.Disposition, ResourceLockState> lockCountingAttempts(ResourceLock lock, AtomicInteger attempts) {
+        return new InternalTransformer<ResourceLockState.Disposition, ResourceLockState>() {
+            @Override
+            ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                attempts.incrementAndGet()
+                return lock.tryLock() ? FINISHED : RETRY
+            }
+        }
+    }
+
+    private void release(TestTrackedResourceLock lock) {
+        lock.lockedState = false
+        coordinationService.withStateLock(new InternalTransformer<ResourceLockState.Disposition, ResourceLockState>() {
+            @Override
+            ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                resourceLockState.registerUnlocked(lock)
+                return FINISHED
+            }
+        })
+    }
+
     TestTrackedResourceLock resourceLock(String displayName, boolean locked, boolean hasLock = false) {
         return new TestTrackedResourceLock(displayName, coordinationService, Mock(ResourceLockContainer), locked, hasLock)
     }
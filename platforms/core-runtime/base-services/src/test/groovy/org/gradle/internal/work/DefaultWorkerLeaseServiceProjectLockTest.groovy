@@ -635,6 +635,45 @@ class DefaultWorkerLeaseServiceProjectLockTest extends AbstractWorkerLeaseServic
         }
     }
 
+    def "notifies blocking listeners while worker lease is held"() {
+        def lease = workerLeaseService.newWorkerLease()
+        def events = []
+        def listener = new WorkerLeaseService.BlockingListener() {
+            @Override
+            void beforeBlocking() {
+                events << "before blocking, lease held: ${lockIsHeld(lease)}"
+            }
+
+            @Override
+            void afterBlocking() {
+                events << "after blocking, lease held: ${lockIsHeld(lease)}"
+            }
+        }
+        workerLeaseService.addBlockingListener(listener)
+
+        when:
+        workerLeaseService.withLocks([lease]) {
+            workerLeaseService.blocking {
+                events << "blocking"
+            }
+        }
+
+        then:
+        events == ["before blocking, lease held: true", "blocking", "after blocking, lease held: true"]
+
+        when:
+        events.clear()
+        workerLeaseService.removeBlockingListener(listener)
+        workerLeaseService.withLocks([lease]) {
+            workerLeaseService.blocking {
+                events << "blocking"
+            }
+        }
+
+        then:
+        events == ["blocking"]
+    }
+
     def "thread can be granted uncontrolled access to any project"() {
         expect:
         !workerLeaseService.isAllowedUncontrolledAccessToAnyProject()
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.internal.operations;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+import java.util.Map;
+
+/**
+ * Closing the remote build cache of a build, at the end of the build.
+ *
+ * Only emitted when the remote build cache was used to load or store an entry during the build.
+ */
+public final class BuildCacheRemoteCloseBuildOperationType implements BuildOperationType<BuildCacheRemoteCloseBuildOperationType.Details, BuildCacheRemoteCloseBuildOperationType.Result> {
+
+    public interface Details {
+
+        /**
+         * The path to the build that the build cache configuration is associated with.
+         */
+        String getBuildPath();
+
+    }
+
+    public interface Result {
+
+        /**
+         * Statistics about the use of the remote cache collected by its implementation, for example the number of requests made.
+         * Ordered by key lexicographically.
+         * Empty when the implementation does not collect any statistics.
+         */
+        Map<String, Long> getStatistics();
+
+    }
+
+    private BuildCacheRemoteCloseBuildOperationType() {
+    }
+}
@@ -23,6 +23,7 @@ dependencies {
     api(libs.guava)
 
     implementation(project(":base-annotations"))
+    implementation(project(":build-option"))
     implementation(project(":functional"))
 
     implementation(libs.slf4jApi)
@@ -22,6 +22,9 @@
 import org.gradle.api.internal.file.archive.ZipInput;
 import org.gradle.api.internal.file.archive.impl.FileZipInput;
 import org.gradle.api.internal.file.archive.impl.StreamZipInput;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
 import org.gradle.internal.fingerprint.FingerprintHashingStrategy;
@@ -35,22 +38,47 @@
 import org.gradle.internal.hash.Hasher;
 import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshottingForkJoinPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+/**
+ * Hashes the entries of zip files as if the contents would be expanded on disk.
+ *
+ * <p>When created with a {@link ForkJoinPool}, the entries of large zip files are hashed concurrently by the threads of the pool.
+ * The work is split up along the entries listed in the central directory, and each of them is read independently.
+ * The fingerprints of the entries are sorted before being hashed, so the resulting hash is the same as the one of hashing the entries one after another.</p>
+ */
 public class ZipHasher implements RegularFileSnapshotContextHasher, ConfigurableNormalizer {
+    /**
+     * When set, the entries of large zip files are hashed in parallel using the {@link SnapshottingForkJoinPool}.
+     */
+    public static final InternalFlag PARALLEL_HASHING = new InternalFlag("org.gradle.normalization.parallel-zip-hashing");
 
     private static final Set<String> KNOWN_ZIP_EXTENSIONS = ImmutableSet.of("zip", "jar", "war", "rar", "ear", "apk", "aar", "klib");
     private static final Logger LOGGER = LoggerFactory.getLogger(ZipHasher.class);
     private static final HashCode EMPTY_HASH_MARKER = Hashing.signature(ZipHasher.class);
+    private static final int PARALLEL_HASHING_ENTRY_THRESHOLD = 512;
+    private static final int ENTRIES_PER_TASK = 128;
+
+    @Nullable
+    private static ForkJoinPool parallelHashingPool() {
+        // Zip hashers are also created by services that outlive a single build, so the option is read from the system properties of the process, and not from the start parameter
+        InternalOptions options = new DefaultInternalOptions(Collections.emptyMap());
+        return options.getOption(PARALLEL_HASHING).get() ? SnapshottingForkJoinPool.getInstance() : null;
+    }
 
     public static boolean isZipFile(final String name) {
         return KNOWN_ZIP_EXTENSIONS.contains(FilenameUtils.getExtension(name).toLowerCase(Locale.ROOT));
@@ -59,6 +87,7 @@ public static boolean isZipFile(final String name) {
     private final ResourceHasher resourceHasher;
     private final ZipHasher fallbackZipHasher;
     private final HashingExceptionReporter hashingExceptionReporter;
+    private final ForkJoinPool forkJoinPool;
 
     public ZipHasher(ResourceHasher resourceHasher) {
         this(
@@ -69,9 +98,25 @@ public ZipHasher(ResourceHasher resourceHasher) {
     }
 
     public ZipHasher(ResourceHasher resourceHasher, @Nullable ZipHasher fallbackZipHasher, HashingExceptionReporter hashingExceptionReporter) {
+        this(resourceHasher, fallbackZipHasher, hashingExceptionReporter, parallelHashingPool());
+    }
+
+    /**
+     * @param forkJoinPool The pool to hash the entries of large zip files in parallel with, or {@code null} to always hash them sequentially.
+     */
+    public ZipHasher(ResourceHasher resourceHasher, @Nullable ZipHasher fallbackZipHasher, HashingExceptionReporter hashingExceptionReporter, @Nullable ForkJoinPool forkJoinPool) {
         this.resourceHasher = resourceHasher;
         this.fallbackZipHasher = fallbackZipHasher;
         this.hashingExceptionReporter = hashingExceptionReporter;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * The pool used for hashing in parallel, or {@code null} when hashing sequentially.
+     */
+    @Nullable
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
     }
 
     @Nullable
@@ -108,27 +153,54 @@ private HashCode hashZipContents(RegularFileSnapshot zipFileSnapshot) {
     private List<FileSystemLocationFingerprint> fingerprintZipEntries(String zipFile) throws IOException {
         try (ZipInput input = FileZipInput.create(new File(zipFile))) {
             List<FileSystemLocationFingerprint> fingerprints = new ArrayList<>();
-            fingerprintZipEntries("", zipFile, fingerprints, input);
+            if (forkJoinPool != null && input instanceof FileZipInput) {
+                // Only entries of a zip file read via its central directory can be read independently of each other
+                fingerprintZipEntriesInParallel(zipFile, fingerprints, input);
+            } else {
+                fingerprintZipEntries("", zipFile, fingerprints, input);
+            }
             return fingerprints;
         }
     }
 
+    private void fingerprintZipEntriesInParallel(String zipFile, List<FileSystemLocationFingerprint> fingerprints, ZipInput input) throws IOException {
+        List<ZipEntry> entries = new ArrayList<>();
+        for (ZipEntry zipEntry : input) {
+            if (!zipEntry.isDirectory()) {
+                entries.add(zipEntry);
+            }
+        }
+        fingerprints.add(newZipMarker(""));
+        if (entries.size() < PARALLEL_HASHING_ENTRY_THRESHOLD) {
+            for (ZipEntry zipEntry : entries) {
+                fingerprintZipEntry("", zipFile, zipEntry, fingerprints);
+            }
+        } else {
+            FingerprintZipEntriesTask task = new FingerprintZipEntriesTask(zipFile, entries, 0, entries.size());
+            fingerprints.addAll(forkJoinPool.invoke(task));
+        }
+    }
+
     private void fingerprintZipEntries(String parentName, String rootParentName, List<FileSystemLocationFingerprint> fingerprints, ZipInput input) throws IOException {
         fingerprints.add(newZipMarker(parentName));
         for (ZipEntry zipEntry : input) {
             if (zipEntry.isDirectory()) {
                 continue;
             }
-            String fullName = parentName.isEmpty() ? zipEntry.getName() : parentName + "/" + zipEntry.getName();
-            ZipEntryContext zipEntryContext = new DefaultZipEntryContext(zipEntry, fullName, rootParentName);
-            if (isZipFile(zipEntry.getName())) {
-                zipEntryContext.getEntry().withInputStream(inputStream -> {
-                    fingerprintZipEntries(fullName, rootParentName, fingerprints, new StreamZipInput(inputStream));
-                    return null;
-                });
-            } else {
-                fingerprintZipEntry(zipEntryContext, fingerprints);
-            }
+            fingerprintZipEntry(parentName, rootParentName, zipEntry, fingerprints);
+        }
+    }
+
+    private void fingerprintZipEntry(String parentName, String rootParentName, ZipEntry zipEntry, List<FileSystemLocationFingerprint> fingerprints) throws IOException {
+        String fullName = parentName.isEmpty() ? zipEntry.getName() : parentName + "/" + zipEntry.getName();
+        ZipEntryContext zipEntryContext = new DefaultZipEntryContext(zipEntry, fullName, rootParentName);
+        if (isZipFile(zipEntry.getName())) {
+            zipEntryContext.getEntry().withInputStream(inputStream -> {
+                fingerprintZipEntries(fullName, rootParentName, fingerprints, new StreamZipInput(inputStream));
+                return null;
+            });
+        } else {
+            fingerprintZipEntry(zipEntryContext, fingerprints);
         }
     }
 
@@ -143,6 +215,44 @@ private DefaultFileSystemLocationFingerprint newZipMarker(String relativePath) {
         return new DefaultFileSystemLocationFingerprint(relativePath, FileType.RegularFile, EMPTY_HASH_MARKER);
     }
 
+    /**
+     * Fingerprints a range of the entries of a zip file, splitting it up into subtasks until the ranges are small enough.
+     */
+    private class FingerprintZipEntriesTask extends RecursiveTask<List<FileSystemLocationFingerprint>> {
+        private final String zipFile;
+        private final List<ZipEntry> entries;
+        private final int from;
+        private final int to;
+
+        public FingerprintZipEntriesTask(String zipFile, List<ZipEntry> entries, int from, int to) {
+            this.zipFile = zipFile;
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<FileSystemLocationFingerprint> compute() {
+            if (to - from <= ENTRIES_PER_TASK) {
+                List<FileSystemLocationFingerprint> fingerprints = new ArrayList<>(to - from);
+                try {
+                    for (ZipEntry zipEntry : entries.subList(from, to)) {
+                        fingerprintZipEntry("", zipFile, zipEntry, fingerprints);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return fingerprints;
+            }
+            int middle = (from + to) >>> 1;
+            FingerprintZipEntriesTask upperHalf = new FingerprintZipEntriesTask(zipFile, entries, middle, to);
+            upperHalf.fork();
+            List<FileSystemLocationFingerprint> fingerprints = new FingerprintZipEntriesTask(zipFile, entries, from, middle).compute();
+            fingerprints.addAll(upperHalf.join());
+            return fingerprints;
+        }
+    }
+
     public interface HashingExceptionReporter {
         void report(RegularFileSnapshot zipFileSnapshot, Exception e);
     }
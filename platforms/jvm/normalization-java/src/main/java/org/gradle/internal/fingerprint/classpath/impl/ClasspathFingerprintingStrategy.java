@@ -54,8 +54,15 @@
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
 
 import static org.gradle.internal.fingerprint.classpath.impl.ClasspathFingerprintingStrategy.NonJarFingerprintingStrategy.IGNORE;
 import static org.gradle.internal.fingerprint.classpath.impl.ClasspathFingerprintingStrategy.NonJarFingerprintingStrategy.USE_FILE_HASH;
@@ -71,6 +78,10 @@
  * The order of the entries in the classpath matters, paths do not matter for the entries.
  * For the resources in each classpath entry, normalization takes the relative path of the resource and possibly normalizes its contents.
  * </p>
+ *
+ * <p>
+ * When the {@link ZipHasher} hashes in parallel, the zip files on the classpath are hashed concurrently up front, and the fingerprints are then collected in classpath order.
+ * </p>
  */
 public class ClasspathFingerprintingStrategy extends AbstractFingerprintingStrategy {
     private final NonJarFingerprintingStrategy nonZipFingerprintingStrategy;
@@ -160,10 +171,52 @@ private static ResourceHasher metaInfAwareClasspathResourceHasher(ResourceHasher
     public Map<String, FileSystemLocationFingerprint> collectFingerprints(FileSystemSnapshot roots) {
         ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder = ImmutableMap.builder();
         HashSet<String> processedEntries = new HashSet<>();
-        roots.accept(new RelativePathTracker(), new ClasspathFingerprintingVisitor(processedEntries, builder));
+        Map<String, HashCode> zipFileHashes = hashZipFilesInParallel(roots);
+        roots.accept(new RelativePathTracker(), new ClasspathFingerprintingVisitor(processedEntries, zipFileHashes, builder));
         return builder.build();
     }
 
+    /**
+     * Hashes the zip files in the given roots concurrently, if the zip hasher hashes in parallel.
+     *
+     * Malformed zip files are reported by the zip hasher while they are hashed here, so these reports don't necessarily come in classpath order.
+     * Zip files failing with an exception are left out, and the failure is rethrown when they are visited in classpath order.
+     */
+    private Map<String, HashCode> hashZipFilesInParallel(FileSystemSnapshot roots) {
+        ForkJoinPool forkJoinPool = zipHasher.getForkJoinPool();
+        if (forkJoinPool == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, RegularFileSnapshotContext> zipFiles = new LinkedHashMap<>();
+        roots.accept(new RelativePathTracker(), (snapshot, relativePath) -> {
+            if (snapshot instanceof RegularFileSnapshot && ZipHasher.isZipFile(snapshot.getName())) {
+                String[] relativePathSegments = Iterables.toArray(relativePath.getSegments(), String.class);
+                zipFiles.putIfAbsent(snapshot.getAbsolutePath(), new DefaultRegularFileSnapshotContext(() -> relativePathSegments, (RegularFileSnapshot) snapshot));
+            }
+            return SnapshotVisitResult.CONTINUE;
+        });
+        if (zipFiles.size() < 2) {
+            return Collections.emptyMap();
+        }
+        Map<String, HashCode> zipFileHashes = new ConcurrentHashMap<>();
+        List<ForkJoinTask<?>> tasks = zipFiles.entrySet().stream()
+            .map(zipFile -> ForkJoinTask.adapt(() -> {
+                try {
+                    HashCode hash = cacheService.hashFile(zipFile.getValue(), zipHasher, zipHasherConfigurationHash);
+                    if (hash != null) {
+                        zipFileHashes.put(zipFile.getKey(), hash);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Hashed again and rethrown when visited
+                }
+            }))
+            .collect(Collectors.toList());
+        forkJoinPool.invoke(ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(tasks);
+        }));
+        return zipFileHashes;
+    }
+
     public enum NonJarFingerprintingStrategy {
         IGNORE {
             @Nullable
@@ -185,11 +238,13 @@ public HashCode determineNonJarFingerprint(HashCode original) {
 
     private class ClasspathFingerprintingVisitor implements RelativePathTrackingFileSystemSnapshotHierarchyVisitor {
         private final HashSet<String> processedEntries;
+        private final Map<String, HashCode> zipFileHashes;
         private final ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder;
 
 
-        public ClasspathFingerprintingVisitor(HashSet<String> processedEntries, ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder) {
+        public ClasspathFingerprintingVisitor(HashSet<String> processedEntries, Map<String, HashCode> zipFileHashes, ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder) {
             this.processedEntries = processedEntries;
+            this.zipFileHashes = zipFileHashes;
             this.builder = builder;
         }
 
@@ -237,6 +292,10 @@ private HashCode hashContent(RegularFileSnapshot fileSnapshot, RelativePathSuppl
             RegularFileSnapshotContext fileSnapshotContext = new DefaultRegularFileSnapshotContext(() -> Iterables.toArray(relativePath.getSegments(), String.class), fileSnapshot);
             try {
                 if (ZipHasher.isZipFile(fileSnapshotContext.getSnapshot().getName())) {
+                    HashCode zipFileHash = zipFileHashes.get(fileSnapshot.getAbsolutePath());
+                    if (zipFileHash != null) {
+                        return zipFileHash;
+                    }
                     return cacheService.hashFile(fileSnapshotContext, zipHasher, zipHasherConfigurationHash);
                 } else if (relativePath.isRoot()) {
                     return nonZipFingerprintingStrategy.determineNonJarFingerprint(fileSnapshot.getHash());
@@ -28,6 +28,7 @@ import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.concurrent.ForkJoinPool
 import java.util.jar.Attributes
 import java.util.jar.JarEntry
 import java.util.jar.JarOutputStream
@@ -158,6 +159,25 @@ class ZipHasherTest extends Specification {
         new JarOutputStream(jarfile.newOutputStream(), manifest).close()
     }
 
+    def "hashing entries in parallel produces the same hash"() {
+        given:
+        def content = tmpDir.createDir("content")
+        (0..<2000).each { content.file("pkg${it % 17}/Resource${it}.txt") << "content $it" }
+        def innerContent = tmpDir.createDir("inner")
+        innerContent.file("foo") << "Foo"
+        innerContent.zipTo(content.file("lib/inner.jar"))
+        def jarfile = tmpDir.file("large.jar")
+        content.zipTo(jarfile)
+        def forkJoinPool = new ForkJoinPool(4)
+        def parallelZipHasher = new ZipHasher(resourceHasher(ResourceEntryFilter.FILTER_NOTHING, ResourceEntryFilter.FILTER_NOTHING), null, { snapshot, e -> throw e }, forkJoinPool)
+
+        expect:
+        parallelZipHasher.hash(snapshotContext(jarfile)) == zipHasher.hash(snapshotContext(jarfile))
+
+        cleanup:
+        forkJoinPool?.shutdown()
+    }
+
     def createJarWithBuildInfo(TestFile jarfile, Map<String, String> props, String comments = "Build information") {
         def manifest = new Manifest()
         def attributes = manifest.getMainAttributes()
@@ -30,6 +30,7 @@
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
+import org.gradle.api.internal.tasks.ParallelForkingTask;
 import org.gradle.api.internal.tasks.testing.JvmTestExecutionSpec;
 import org.gradle.api.internal.tasks.testing.TestExecutableUtils;
 import org.gradle.api.internal.tasks.testing.TestExecuter;
@@ -165,7 +166,7 @@
  */
 @NonNullApi
 @CacheableTask
-public abstract class Test extends AbstractTestTask implements JavaForkOptions, PatternFilterable {
+public abstract class Test extends AbstractTestTask implements JavaForkOptions, PatternFilterable, ParallelForkingTask {
 
     private final JavaForkOptions forkOptions;
     private final ModularitySpec modularity;
@@ -1216,6 +1217,7 @@ public void setForkEvery(@Nullable Long forkEvery) {
      * @return The maximum number of forked test processes.
      */
     @Internal
+    @Override
     public int getMaxParallelForks() {
         return getDebug() ? 1 : maxParallelForks;
     }
@@ -18,7 +18,9 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Iterables;
+import org.apache.http.HttpConnection;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
@@ -28,6 +30,7 @@
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
 import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.internal.UncheckedException;
 import org.slf4j.Logger;
@@ -47,6 +50,7 @@
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.lang.String.join;
 import static org.apache.http.client.protocol.HttpClientContext.REDIRECT_LOCATIONS;
@@ -72,6 +76,8 @@ public class HttpClientHelper implements Closeable {
      */
     private final ConcurrentLinkedQueue<HttpContext> sharedContext;
 
+    private final AtomicLong openedConnections = new AtomicLong();
+
     /**
      * Use {@link HttpClientHelper.Factory#create(HttpSettings)} to instantiate instances.
      */
@@ -255,11 +261,24 @@ private synchronized CloseableHttpClient getClient() {
             HttpClientConfigurer configurer = new HttpClientConfigurer(settings);
             configurer.configure(builder);
             this.supportedTlsVersions = configurer.supportedTlsVersions();
+            builder.addInterceptorLast((HttpResponseInterceptor) (response, context) -> {
+                HttpConnection connection = HttpCoreContext.adapt(context).getConnection();
+                if (connection != null && connection.getMetrics().getRequestCount() == 1) {
+                    openedConnections.incrementAndGet();
+                }
+            });
             this.client = builder.build();
         }
         return client;
     }
 
+    /**
+     * The number of connections opened so far, counted when the first response is received on them.
+     */
+    public long getOpenedConnectionCount() {
+        return openedConnections.get();
+    }
+
     @Override
     public synchronized void close() throws IOException {
         if (client != null) {
@@ -1,5 +1,6 @@
 plugins {
     id("gradlebuild.distribution.api-java")
+    id("gradlebuild.jmh")
 }
 
 description = "Public and internal 'core' Gradle APIs with implementation"
@@ -128,6 +129,7 @@ dependencies {
     implementation(libs.commonsIo)
     implementation(libs.commonsLang)
     implementation(libs.fastutil)
+    implementation(libs.gson)
     implementation(libs.groovyAnt)
     implementation(libs.groovyJson)
     implementation(libs.groovyTemplates)
@@ -272,6 +274,8 @@ dependencies {
     testInterceptorsImplementation(platform(project(":distributions-dependencies")))
     "testInterceptorsAnnotationProcessor"(project(":internal-instrumentation-processor"))
     "testInterceptorsAnnotationProcessor"(platform(project(":distributions-dependencies")))
+
+    jmhImplementation(platform(project(":distributions-dependencies")))
 }
 
 strictCompile {
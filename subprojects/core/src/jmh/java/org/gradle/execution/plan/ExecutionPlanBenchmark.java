@@ -0,0 +1,185 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.internal.tasks.NodeExecutionContext;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds and finalizes execution plans for large synthetic graphs, to measure the cost of plan calculation for very large builds.
+ *
+ * The nodes are arranged in layers, each node depending on a few nodes of the previous layer. Some nodes have a finalizer.
+ * The nodes of the last layer and a sample of the other nodes are the entry nodes, similar to running a task in each project of a large build.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ExecutionPlanBenchmark {
+    private static final int DEPENDENCIES_PER_NODE = 3;
+    private static final int FINALIZED_NODE_INTERVAL = 50;
+    private static final int ENTRY_NODE_INTERVAL = 10;
+    private static final Stat UNUSED_STAT = new Stat() {
+        @Override
+        public int getUnixMode(File f) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileMetadata stat(File f) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    @Param({"100000", "1000000"})
+    int nodes;
+
+    @Param({"1000"})
+    int layerWidth;
+
+    DefaultExecutionPlan plan;
+    List<Node> entryNodes;
+
+    @Setup(Level.Invocation)
+    public void createPlan() {
+        entryNodes = createGraph(nodes, layerWidth, true);
+        plan = createPlan(new DefaultResourceLockCoordinationService());
+    }
+
+    static DefaultExecutionPlan createPlan(ResourceLockCoordinationService coordinationService) {
+        return new DefaultExecutionPlan(
+            "benchmark",
+            new TaskNodeFactory(null, null, null, null, null),
+            new OrdinalGroupFactory(),
+            new TaskDependencyResolver(Collections.emptyList()),
+            new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, UNUSED_STAT),
+            new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, UNUSED_STAT),
+            coordinationService
+        );
+    }
+
+    @TearDown(Level.Invocation)
+    public void closePlan() {
+        plan.close();
+    }
+
+    @Benchmark
+    public FinalizedExecutionPlan determineAndFinalizePlan() {
+        plan.addEntryNodes(entryNodes);
+        plan.determineExecutionPlan();
+        return plan.finalizePlan();
+    }
+
+    /**
+     * Returns the entry nodes of a new graph.
+     */
+    static List<Node> createGraph(int nodes, int layerWidth, boolean withFinalizers) {
+        List<Node> entryNodes = new ArrayList<>();
+        List<SyntheticNode> previousLayer = Collections.emptyList();
+        int created = 0;
+        while (created < nodes) {
+            List<SyntheticNode> layer = new ArrayList<>(layerWidth);
+            for (int i = 0; i < layerWidth && created < nodes; i++) {
+                SyntheticNode node = new SyntheticNode(created++);
+                if (!previousLayer.isEmpty()) {
+                    for (int j = 0; j < DEPENDENCIES_PER_NODE; j++) {
+                        node.addDependencySuccessor(previousLayer.get((i * 31 + j * 17) % previousLayer.size()));
+                    }
+                    if (withFinalizers && i % FINALIZED_NODE_INTERVAL == 0 && created < nodes) {
+                        SyntheticNode finalizer = new SyntheticNode(created++);
+                        finalizer.addDependencySuccessor(previousLayer.get(i % previousLayer.size()));
+                        finalizer.finalizes(node);
+                    }
+                }
+                layer.add(node);
+                if (i % ENTRY_NODE_INTERVAL == 0) {
+                    entryNodes.add(node);
+                }
+            }
+            previousLayer = layer;
+        }
+        entryNodes.addAll(previousLayer);
+        return entryNodes;
+    }
+
+    private static class SyntheticNode extends CreationOrderedNode implements SelfExecutingNode {
+        private final int id;
+        private final Set<Node> finalizedNodes = new HashSet<>();
+
+        SyntheticNode(int id) {
+            this.id = id;
+        }
+
+        void finalizes(Node node) {
+            finalizedNodes.add(node);
+            node.addFinalizer(this);
+        }
+
+        @Override
+        public Set<Node> getFinalizingSuccessors() {
+            return finalizedNodes;
+        }
+
+        @Nullable
+        @Override
+        public Throwable getNodeFailure() {
+            return null;
+        }
+
+        @Override
+        public void resolveDependencies(TaskDependencyResolver dependencyResolver) {
+        }
+
+        @Override
+        public void execute(NodeExecutionContext context) {
+        }
+
+        @Override
+        public String toString() {
+            return "node " + id;
+        }
+    }
+}
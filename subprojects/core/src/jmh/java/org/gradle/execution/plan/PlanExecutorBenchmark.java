@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.initialization.DefaultBuildCancellationToken;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.work.DefaultWorkerLeaseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a synthetic execution plan with the plan executor, to measure the cost of selecting nodes and marking them as finished.
+ *
+ * The graph is the one used by {@link ExecutionPlanBenchmark}, without finalizers. Each node consumes {@code workTokens} of CPU when it runs.
+ *
+ * <p>Waking only the workers waiting for work when a node finishes, rather than every waiting thread, measured as follows
+ * on a single CPU machine (average of 30 runs after 10 warm up runs, best run in brackets):</p>
+ *
+ * <pre>
+ * workers  workTokens  before             after
+ *       4           0  70.6ms (24.9ms)    67.8ms (31.6ms)
+ *       4        1000  129.7ms (92.5ms)   133.9ms (94.6ms)
+ *      32           0  85.8ms (33.3ms)    83.3ms (39.7ms)
+ *      32        1000  140.0ms (104.2ms)  146.1ms (89.8ms)
+ * </pre>
+ *
+ * <p>The differences are within the noise. The plan does not use project locks or shared resources, so the only threads that
+ * no longer wake up are those waiting for a worker lease. Builds where many workers wait for project locks benefit more.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class PlanExecutorBenchmark {
+    @Param({"4", "32"})
+    int workers;
+
+    @Param({"20000"})
+    int nodes;
+
+    @Param({"200"})
+    int layerWidth;
+
+    @Param({"0", "1000"})
+    int workTokens;
+
+    DefaultResourceLockCoordinationService coordinationService;
+    DefaultExecutorFactory executorFactory;
+    DefaultWorkerLeaseService workerLeaseService;
+    DefaultPlanExecutor planExecutor;
+    FinalizedExecutionPlan plan;
+
+    @Setup(Level.Trial)
+    public void createExecutor() {
+        DefaultParallelismConfiguration parallelismConfiguration = new DefaultParallelismConfiguration(true, workers);
+        coordinationService = new DefaultResourceLockCoordinationService();
+        executorFactory = new DefaultExecutorFactory();
+        workerLeaseService = new DefaultWorkerLeaseService(coordinationService, parallelismConfiguration);
+        // The build operation runner is only used to report scheduler statistics, which are not enabled
+        planExecutor = new DefaultPlanExecutor(parallelismConfiguration, executorFactory, workerLeaseService, new DefaultBuildCancellationToken(), coordinationService, null, new DefaultInternalOptions(Collections.emptyMap()));
+    }
+
+    @Setup(Level.Invocation)
+    public void createPlan() {
+        DefaultExecutionPlan executionPlan = ExecutionPlanBenchmark.createPlan(coordinationService);
+        executionPlan.addEntryNodes(ExecutionPlanBenchmark.createGraph(nodes, layerWidth, false));
+        executionPlan.determineExecutionPlan();
+        plan = executionPlan.finalizePlan();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closePlan() {
+        plan.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopExecutor() {
+        planExecutor.stop();
+        executorFactory.stop();
+    }
+
+    @Benchmark
+    public Object runPlan() {
+        return workerLeaseService.runAsWorkerThread(() -> planExecutor.process(plan.asWorkSource(), node -> Blackhole.consumeCPU(workTokens)));
+    }
+}
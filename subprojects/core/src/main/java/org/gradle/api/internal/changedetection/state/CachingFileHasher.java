@@ -91,7 +91,7 @@ private FileInfo snapshot(File file, long length, long timestamp) {
             }
         }
 
-        HashCode hash = delegate.hash(file);
+        HashCode hash = delegate.hash(file, length, timestamp);
         FileInfo info = new FileInfo(hash, length, timestamp);
         cache.put(stringInterner.intern(absolutePath), info);
         statisticsCollector.reportFileHashed(length);
@@ -15,31 +15,64 @@
  */
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.collect.ImmutableList;
 import org.gradle.cache.FileLockManager;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.scopes.ScopedCacheBuilderFactory;
+import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.execution.history.ExecutionHistoryCacheAccess;
 
 import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
 
 public class DefaultExecutionHistoryCacheAccess implements ExecutionHistoryCacheAccess, Closeable {
-    private final PersistentCache cache;
+    /**
+     * The version of the format of the execution history entries.
+     * The execution history written by a different version is discarded when the cache is opened.
+     */
+    private static final String EXECUTION_HISTORY_VERSION = "2";
+
+    private final List<PersistentCache> shards;
 
     public DefaultExecutionHistoryCacheAccess(ScopedCacheBuilderFactory cacheBuilderFactory) {
-        this.cache = cacheBuilderFactory
-            .createCacheBuilder("executionHistory")
-            .withDisplayName("execution history cache")
+        this(cacheBuilderFactory, 1);
+    }
+
+    public DefaultExecutionHistoryCacheAccess(ScopedCacheBuilderFactory cacheBuilderFactory, int shardCount) {
+        ImmutableList.Builder<PersistentCache> shards = ImmutableList.builderWithExpectedSize(shardCount);
+        if (shardCount == 1) {
+            shards.add(openCache(cacheBuilderFactory, "executionHistory", "execution history cache"));
+        } else {
+            // The shard of an entry depends on the number of shards, so each number of shards uses its own set of caches
+            for (int shard = 0; shard < shardCount; shard++) {
+                shards.add(openCache(cacheBuilderFactory, "executionHistory-" + shard + "-of-" + shardCount, "execution history cache (shard " + (shard + 1) + " of " + shardCount + ")"));
+            }
+        }
+        this.shards = shards.build();
+    }
+
+    private static PersistentCache openCache(ScopedCacheBuilderFactory cacheBuilderFactory, String key, String displayName) {
+        return cacheBuilderFactory
+            .createCacheBuilder(key)
+            .withDisplayName(displayName)
+            .withProperties(Collections.singletonMap("executionHistory.version", EXECUTION_HISTORY_VERSION))
             .withInitialLockMode(FileLockManager.LockMode.OnDemand)
             .open();
     }
 
     @Override
     public PersistentCache get() {
-        return cache;
+        return shards.get(0);
+    }
+
+    @Override
+    public List<PersistentCache> getShards() {
+        return shards;
     }
 
     @Override
     public void close() {
-        cache.close();
+        CompositeStoppable.stoppable(shards).stop();
     }
 }
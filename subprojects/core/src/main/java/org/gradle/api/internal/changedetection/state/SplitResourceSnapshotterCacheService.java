@@ -17,6 +17,10 @@
 package org.gradle.api.internal.changedetection.state;
 
 import org.gradle.cache.GlobalCacheLocations;
+import org.gradle.internal.build.BuildAddedListener;
+import org.gradle.internal.build.BuildState;
+import org.gradle.internal.execution.OutputChangeListener;
+import org.gradle.internal.file.FileHierarchySet;
 import org.gradle.internal.fingerprint.hashing.FileSystemLocationSnapshotHasher;
 import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContextHasher;
 import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContext;
@@ -25,15 +29,22 @@
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A {@link ResourceSnapshotterCacheService} that delegates to the global service for immutable files
  * and uses the local service for all other files. This ensures optimal cache utilization.
+ *
+ * The normalized hashes of whole archives that are not built locally are shared via the global service, too.
+ * They are keyed by the content of the archive, so an external archive already hashed in another build tree doesn't need to be read again.
+ * Locally built archives change with every source change, so their hashes stay in the local service and don't make the global cache grow with each build.
+ * An archive counts as locally built when it is inside the root directory of any build in the build tree, or inside an output location written by the build.
  */
-public class SplitResourceSnapshotterCacheService implements ResourceSnapshotterCacheService {
+public class SplitResourceSnapshotterCacheService implements ResourceSnapshotterCacheService, BuildAddedListener, OutputChangeListener {
     private final ResourceSnapshotterCacheService globalCache;
     private final ResourceSnapshotterCacheService localCache;
     private final GlobalCacheLocations globalCacheLocations;
+    private final AtomicReference<FileHierarchySet> locallyBuiltLocations = new AtomicReference<>(FileHierarchySet.empty());
 
     public SplitResourceSnapshotterCacheService(ResourceSnapshotterCacheService globalCache, ResourceSnapshotterCacheService localCache, GlobalCacheLocations globalCacheLocations) {
         this.globalCache = globalCache;
@@ -41,6 +52,25 @@ public SplitResourceSnapshotterCacheService(ResourceSnapshotterCacheService glob
         this.globalCacheLocations = globalCacheLocations;
     }
 
+    @Override
+    public void buildAdded(BuildState buildState) {
+        addLocallyBuiltLocation(buildState.getBuildRootDir().getAbsolutePath());
+    }
+
+    @Override
+    public void invalidateCachesFor(Iterable<String> affectedOutputPaths) {
+        // Covers outputs outside the build root directories, for example of a relocated build directory
+        for (String affectedOutputPath : affectedOutputPaths) {
+            addLocallyBuiltLocation(affectedOutputPath);
+        }
+    }
+
+    private void addLocallyBuiltLocation(String absolutePath) {
+        if (!locallyBuiltLocations.get().contains(absolutePath)) {
+            locallyBuiltLocations.updateAndGet(locations -> locations.plus(absolutePath));
+        }
+    }
+
     @Nullable
     @Override
     public HashCode hashFile(FileSystemLocationSnapshot snapshot, FileSystemLocationSnapshotHasher hasher, HashCode configurationHash) throws IOException {
@@ -53,8 +83,11 @@ public HashCode hashFile(FileSystemLocationSnapshot snapshot, FileSystemLocation
 
     @Override
     public HashCode hashFile(RegularFileSnapshotContext fileSnapshotContext, RegularFileSnapshotContextHasher hasher, HashCode configurationHash) throws IOException {
-        if (globalCacheLocations.isInsideGlobalCache(fileSnapshotContext.getSnapshot().getAbsolutePath())) {
+        String absolutePath = fileSnapshotContext.getSnapshot().getAbsolutePath();
+        if (globalCacheLocations.isInsideGlobalCache(absolutePath)) {
             return globalCache.hashFile(fileSnapshotContext, hasher, configurationHash);
+        } else if (hasher instanceof ZipHasher && !locallyBuiltLocations.get().contains(absolutePath)) {
+            return localCache.hashFile(fileSnapshotContext, context -> globalCache.hashFile(context, hasher, configurationHash), configurationHash);
         } else {
             return localCache.hashFile(fileSnapshotContext, hasher, configurationHash);
         }
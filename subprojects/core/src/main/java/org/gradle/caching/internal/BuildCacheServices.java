@@ -28,9 +28,11 @@
 import org.gradle.caching.internal.controller.RootBuildCacheControllerRef;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
-import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.ParallelUnpackExecutor;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
@@ -39,6 +41,10 @@
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.buildoption.IntegerInternalOption;
+import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.buildoption.StringInternalOption;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.BufferProvider;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.FileException;
@@ -60,6 +66,8 @@
 import org.gradle.internal.service.scopes.AbstractPluginServiceRegistry;
 import org.gradle.util.GradleVersion;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.File;
 import java.util.List;
 
@@ -67,6 +75,21 @@
  * Build scoped services for build cache usage.
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
+    /**
+     * The compression used for build cache entries, see {@link BuildCacheEntryCompression} for the supported values.
+     */
+    public static final StringInternalOption COMPRESSION = new StringInternalOption("org.gradle.caching.internal.compression", BuildCacheEntryCompression.DEFAULT.toString());
+
+    /**
+     * The number of threads used to write and hash the files of unpacked build cache entries, {@code 0} unpacks on the loading thread only.
+     */
+    public static final IntegerInternalOption UNPACK_THREADS = new IntegerInternalOption("org.gradle.caching.internal.unpack.threads", 0);
+
+    /**
+     * The maximum amount of file content in megabytes that is buffered in memory while unpacking build cache entries in parallel.
+     */
+    public static final IntegerInternalOption UNPACK_MEMORY_BUDGET = new IntegerInternalOption("org.gradle.caching.internal.unpack.memory", 64);
+
     @Override
     public void registerGlobalServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
@@ -136,15 +159,29 @@ TarPackerFileSystemSupport createPackerFileSystemSupport(Deleter deleter) {
                 return new DefaultTarPackerFileSystemSupport(deleter);
             }
 
+            UnpackExecutorHolder createUnpackExecutorHolder(InternalOptions internalOptions, ExecutorFactory executorFactory) {
+                int threads = internalOptions.getOption(UNPACK_THREADS).get();
+                if (threads <= 0) {
+                    return new UnpackExecutorHolder(null);
+                }
+                int memoryBudget = internalOptions.getOption(UNPACK_MEMORY_BUDGET).get() * 1024 * 1024;
+                return new UnpackExecutorHolder(new ParallelUnpackExecutor(executorFactory.create("Build cache unpack", threads), memoryBudget));
+            }
+
             BuildCacheEntryPacker createResultPacker(
                 TarPackerFileSystemSupport fileSystemSupport,
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
                 StringInterner stringInterner,
-                BufferProvider bufferProvider
+                BufferProvider bufferProvider,
+                InternalOptions internalOptions,
+                UnpackExecutorHolder unpackExecutorHolder
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, bufferProvider));
+                BuildCacheEntryCompression compression = BuildCacheEntryCompression.parse(internalOptions.getOption(COMPRESSION).get());
+                return new CompressingBuildCacheEntryPacker(
+                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, bufferProvider, unpackExecutorHolder.executor),
+                    compression
+                );
             }
 
             BuildCacheController createBuildCacheController(
@@ -183,7 +220,8 @@ BuildCacheControllerFactory createBuildCacheControllerFactory(
                 TemporaryFileProvider temporaryFileProvider,
                 BuildCacheEntryPacker packer,
                 OriginMetadataFactory originMetadataFactory,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                ExecutorFactory executorFactory
             ) {
                 return new DefaultBuildCacheControllerFactory(
                     startParameter,
@@ -192,12 +230,32 @@ BuildCacheControllerFactory createBuildCacheControllerFactory(
                     originMetadataFactory,
                     stringInterner,
                     temporaryFileProvider,
-                    packer
+                    packer,
+                    executorFactory
                 );
             }
         });
     }
 
+    /**
+     * Owns the optional {@link ParallelUnpackExecutor}, so that its threads are stopped together with the build services.
+     */
+    static final class UnpackExecutorHolder implements Closeable {
+        @Nullable
+        private final ParallelUnpackExecutor executor;
+
+        public UnpackExecutorHolder(@Nullable ParallelUnpackExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void close() {
+            if (executor != null) {
+                executor.close();
+            }
+        }
+    }
+
     private static final class FilePermissionsAccessAdapter implements FilePermissionAccess {
 
         private final FileSystem fileSystem;
@@ -23,6 +23,7 @@
 
 public interface BuildCacheControllerFactory {
     String REMOTE_CONTINUE_ON_ERROR_PROPERTY = "org.gradle.unsafe.build-cache.remote-continue-on-error";
+    String REMOTE_ASYNC_STORE_THREADS_PROPERTY = "org.gradle.unsafe.build-cache.remote-async-store-threads";
 
     BuildCacheController createController(Path buildIdentityPath, BuildCacheConfigurationInternal buildCacheConfiguration, InstanceGenerator instanceGenerator);
 }
@@ -29,6 +29,8 @@
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheService;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.BuildOperationProgressEventEmitter;
 import org.gradle.util.Path;
@@ -40,6 +42,7 @@ public class DefaultBuildCacheControllerFactory extends AbstractBuildCacheContro
     private final TemporaryFileProvider temporaryFileProvider;
     private final BuildCacheEntryPacker packer;
     private final BuildOperationProgressEventEmitter buildOperationProgressEmitter;
+    private final ExecutorFactory executorFactory;
 
     public DefaultBuildCacheControllerFactory(
         StartParameter startParameter,
@@ -48,7 +51,8 @@ public DefaultBuildCacheControllerFactory(
         OriginMetadataFactory originMetadataFactory,
         StringInterner stringInterner,
         TemporaryFileProvider temporaryFileProvider,
-        BuildCacheEntryPacker packer
+        BuildCacheEntryPacker packer,
+        ExecutorFactory executorFactory
     ) {
         super(
             startParameter,
@@ -59,6 +63,7 @@ public DefaultBuildCacheControllerFactory(
         this.temporaryFileProvider = temporaryFileProvider;
         this.packer = packer;
         this.buildOperationProgressEmitter = buildOperationProgressEmitter;
+        this.executorFactory = executorFactory;
     }
 
     @Override
@@ -86,10 +91,20 @@ protected BuildCacheController doCreateController(
             !Boolean.getBoolean(REMOTE_CONTINUE_ON_ERROR_PROPERTY),
             packer,
             originMetadataFactory,
-            stringInterner
+            stringInterner,
+            createAsyncStoreExecutor(config)
         );
     }
 
+    @Nullable
+    private ManagedExecutor createAsyncStoreExecutor(BuildCacheServicesConfiguration config) {
+        int threads = Integer.getInteger(REMOTE_ASYNC_STORE_THREADS_PROPERTY, 0);
+        if (threads <= 0 || config.getRemote() == null || !config.isRemotePush()) {
+            return null;
+        }
+        return executorFactory.create("Build cache store", threads);
+    }
+
     private static BuildCacheServicesConfiguration toConfiguration(
         Path buildPath,
         @Nullable DescribedBuildCacheService<DirectoryBuildCache, DirectoryBuildCacheService> local,
@@ -54,6 +54,7 @@ public class DefaultExecutionPlan implements ExecutionPlan, QueryableExecutionPl
     private final ExecutionNodeAccessHierarchy outputHierarchy;
     private final ExecutionNodeAccessHierarchy destroyableHierarchy;
     private final ResourceLockCoordinationService lockCoordinator;
+    private final NodeExecutionHistory nodeExecutionHistory;
     private Spec<? super Task> filter = Specs.satisfyAll();
     private int order = 0;
     private boolean continueOnFailure;
@@ -76,6 +77,19 @@ public DefaultExecutionPlan(
         ExecutionNodeAccessHierarchy outputHierarchy,
         ExecutionNodeAccessHierarchy destroyableHierarchy,
         ResourceLockCoordinationService lockCoordinator
+    ) {
+        this(displayName, taskNodeFactory, ordinalGroupFactory, dependencyResolver, outputHierarchy, destroyableHierarchy, lockCoordinator, NodeExecutionHistory.DISABLED);
+    }
+
+    public DefaultExecutionPlan(
+        String displayName,
+        TaskNodeFactory taskNodeFactory,
+        OrdinalGroupFactory ordinalGroupFactory,
+        TaskDependencyResolver dependencyResolver,
+        ExecutionNodeAccessHierarchy outputHierarchy,
+        ExecutionNodeAccessHierarchy destroyableHierarchy,
+        ResourceLockCoordinationService lockCoordinator,
+        NodeExecutionHistory nodeExecutionHistory
     ) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
@@ -83,6 +97,7 @@ public DefaultExecutionPlan(
         this.outputHierarchy = outputHierarchy;
         this.destroyableHierarchy = destroyableHierarchy;
         this.lockCoordinator = lockCoordinator;
+        this.nodeExecutionHistory = nodeExecutionHistory;
         this.ordinalNodeAccess = new OrdinalNodeAccess(ordinalGroupFactory);
     }
 
@@ -233,7 +248,7 @@ public FinalizedExecutionPlan finalizePlan() {
         if (finalizedPlan == null) {
             dependencyResolver.clear();
             // Should make an immutable copy of the contents to pass to the finalized plan and also to use in this instance
-            finalizedPlan = new DefaultFinalizedExecutionPlan(displayName, ordinalNodeAccess, outputHierarchy, destroyableHierarchy, lockCoordinator, scheduledNodes, continueOnFailure, this, completionHandler);
+            finalizedPlan = new DefaultFinalizedExecutionPlan(displayName, ordinalNodeAccess, outputHierarchy, destroyableHierarchy, lockCoordinator, scheduledNodes, continueOnFailure, this, completionHandler, nodeExecutionHistory);
         }
         return finalizedPlan;
     }
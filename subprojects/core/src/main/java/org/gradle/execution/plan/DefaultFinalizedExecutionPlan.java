@@ -21,10 +21,13 @@
 import org.gradle.api.Action;
 import org.gradle.api.BuildCancelledException;
 import org.gradle.api.NonNullApi;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
 import org.gradle.internal.MutableBoolean;
 import org.gradle.internal.Pair;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +38,7 @@
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -67,7 +71,7 @@ public int compare(Node node1, Node node2) {
     };
 
     private final Set<Node> waitingToStartNodes = new HashSet<>();
-    private final ExecutionQueue readyNodes = new ExecutionQueue();
+    private final ExecutionQueue readyNodes;
     private final List<Throwable> failures = new ArrayList<>();
     private final List<DiagnosticEvent> diagnosticEvents = new ArrayList<>();
     private final String displayName;
@@ -84,6 +88,16 @@ public int compare(Node node1, Node node2) {
     private final Map<Pair<Node, Node>, Boolean> reachableCache = new HashMap<>();
     private final OrdinalNodeAccess ordinalNodeAccess;
     private final Consumer<LocalTaskNode> completionHandler;
+    // Null when critical path scheduling is disabled
+    @Nullable
+    private final NodeExecutionHistory executionHistory;
+    private final Map<Node, Long> remainingDurations = new IdentityHashMap<>();
+    private final Map<Node, Timer> executionTimers = new IdentityHashMap<>();
+    private SchedulingListener schedulingListener = SchedulingListener.NO_OP;
+    // Only tracked when there is a scheduling listener
+    private final Map<Node, Long> waitingForDependenciesSince = new IdentityHashMap<>();
+    private ResourceBudget resourceBudget = ResourceBudget.UNLIMITED;
+    private final Runnable resourceBudgetReleaseListener = this::resourceBudgetReleased;
 
     // When true, there may be nodes that are both ready and "selectable", which means their project and resources are able to be locked
     // When false, there are definitely no nodes that are "selectable"
@@ -100,7 +114,8 @@ public DefaultFinalizedExecutionPlan(
         List<Node> scheduledNodes,
         boolean continueOnFailure,
         QueryableExecutionPlan contents,
-        Consumer<LocalTaskNode> completionHandler
+        Consumer<LocalTaskNode> completionHandler,
+        NodeExecutionHistory executionHistory
     ) {
         this.displayName = displayName;
         this.outputHierarchy = outputHierarchy;
@@ -110,6 +125,14 @@ public DefaultFinalizedExecutionPlan(
         this.continueOnFailure = continueOnFailure;
         this.contents = contents;
         this.completionHandler = completionHandler;
+        if (executionHistory.isEnabled()) {
+            this.executionHistory = executionHistory;
+            this.readyNodes = new ExecutionQueue(this::compareByRemainingDuration);
+            calculateRemainingDurations(scheduledNodes, executionHistory);
+        } else {
+            this.executionHistory = null;
+            this.readyNodes = new ExecutionQueue(NODE_EXECUTION_ORDER);
+        }
 
         SetMultimap<FinalizerGroup, FinalizerGroup> reachableGroups = LinkedHashMultimap.create();
         for (Node node : scheduledNodes) {
@@ -129,6 +152,45 @@ public DefaultFinalizedExecutionPlan(
         lockCoordinator.addLockReleaseListener(resourceUnlockListener);
     }
 
+    /**
+     * Calculates for each node the expected duration of the longest path from the node to the end of the plan, including the node itself.
+     * The nodes are scheduled in dependency order, so visiting them backwards visits the nodes that depend on a node before the node itself.
+     */
+    private void calculateRemainingDurations(List<Node> scheduledNodes, NodeExecutionHistory executionHistory) {
+        for (int i = scheduledNodes.size() - 1; i >= 0; i--) {
+            Node node = scheduledNodes.get(i);
+            long downstreamDuration = 0;
+            for (Node dependent : node.getDependencyPredecessors()) {
+                downstreamDuration = Math.max(downstreamDuration, remainingDuration(dependent));
+            }
+            remainingDurations.put(node, executionHistory.getExpectedDurationMillis(node) + downstreamDuration);
+        }
+    }
+
+    private long remainingDuration(Node node) {
+        Long duration = remainingDurations.get(node);
+        return duration == null ? 0 : duration;
+    }
+
+    private void inheritRemainingDuration(Node node, Node from) {
+        if (executionHistory != null) {
+            remainingDurations.put(node, remainingDuration(from));
+        }
+    }
+
+    /**
+     * Orders priority nodes first, then the nodes with the longest expected remaining path, then by {@link #NODE_EXECUTION_ORDER}.
+     */
+    private int compareByRemainingDuration(Node node1, Node node2) {
+        if (node1.isPriority() == node2.isPriority()) {
+            int result = Long.compare(remainingDuration(node2), remainingDuration(node1));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return NODE_EXECUTION_ORDER.compare(node1, node2);
+    }
+
     @Override
     public String getDisplayName() {
         return displayName;
@@ -147,10 +209,14 @@ public WorkSource<Node> asWorkSource() {
     @Override
     public void close() {
         lockCoordinator.removeLockReleaseListener(resourceUnlockListener);
+        resourceBudget.removeReleaseListener(resourceBudgetReleaseListener);
         waitingToStartNodes.clear();
+        waitingForDependenciesSince.clear();
         readyNodes.clear();
         runningNodes.clear();
         reachableCache.clear();
+        remainingDurations.clear();
+        executionTimers.clear();
     }
 
     private void resourceUnlocked(ResourceLock resourceLock) {
@@ -159,6 +225,12 @@ private void resourceUnlocked(ResourceLock resourceLock) {
         }
     }
 
+    private void resourceBudgetReleased() {
+        if (!readyNodes.isEmpty()) {
+            maybeNodesSelectable = true;
+        }
+    }
+
     @Override
     public State executionState() {
         lockCoordinator.assertHasStateLock();
@@ -262,6 +334,7 @@ public Selection<Node> selectNext() {
                     // The node is ready to execute and its pre-execution nodes have not been scheduled, so do this now
                     node.visitPreExecutionNodes(prepareNode -> {
                         prepareNode.setIndex(node.getIndex());
+                        inheritRemainingDuration(prepareNode, node);
                         prepareNode.require();
                         prepareNode.updateAllDependenciesComplete();
                         node.addDependencySuccessor(prepareNode);
@@ -270,6 +343,7 @@ public Selection<Node> selectNext() {
                     node.forceAllDependenciesCompleteUpdate();
                     if (!node.allDependenciesComplete()) {
                         // Some pre-execution nodes were scheduled, so try to execute them now
+                        schedulingListener.blocked(node, BlockedReason.Dependencies);
                         readyNodes.removeAndRestart(node);
                         continue;
                     }
@@ -279,9 +353,12 @@ public Selection<Node> selectNext() {
                 if (attemptToStart(node, resources)) {
                     readyNodes.remove();
                     waitingToStartNodes.remove(node);
+                    waitingForDependenciesSince.remove(node);
                     node.getMutationInfo().started();
                     return Selection.of(node);
                 }
+            } else if (!node.isComplete()) {
+                schedulingListener.blocked(node, BlockedReason.Dependencies);
             }
             if (node.isComplete()) {
                 // Is already complete, for example:
@@ -317,6 +394,14 @@ private boolean attemptToStart(Node node, List<ResourceLock> resources) {
         MutationInfo mutations = node.getMutationInfo();
 
         if (conflictsWithOtherNodes(node, mutations)) {
+            schedulingListener.blocked(node, BlockedReason.MutationConflict);
+            releaseLocks(resources);
+            return false;
+        }
+
+        if (!resourceBudget.tryReserve(node)) {
+            LOGGER.debug("Not enough resources available to start node {}", node);
+            schedulingListener.blocked(node, BlockedReason.ResourceBudget);
             releaseLocks(resources);
             return false;
         }
@@ -337,9 +422,11 @@ private void releaseLocks(List<ResourceLock> resources) {
     private boolean tryAcquireLocksForNode(Node node, List<ResourceLock> resources) {
         if (!tryLockProjectFor(node, resources)) {
             LOGGER.debug("Cannot acquire project lock for node {}", node);
+            schedulingListener.blocked(node, BlockedReason.ProjectLock);
             return false;
         } else if (!tryLockSharedResourceFor(node, resources)) {
             LOGGER.debug("Cannot acquire shared resource lock for node {}", node);
+            schedulingListener.blocked(node, BlockedReason.SharedResource);
             return false;
         }
         return true;
@@ -351,7 +438,7 @@ private boolean conflictsWithOtherNodes(Node node, MutationInfo mutations) {
             return true;
         } else if (mutationConflictsWithOtherNodes(node, mutations)) {
             return true;
-        } else if (destroysNotYetConsumedOutputOfAnotherNode(node, mutations.destroyablePaths)) {
+        } else if (destroysNotYetConsumedOutputOfAnotherNode(node, mutations.getDestroyablePaths())) {
             LOGGER.debug("Node {} destroys not yet consumed output of another node", node);
             return true;
         }
@@ -409,8 +496,8 @@ private boolean canRunWithCurrentlyExecutedNodes(MutationInfo mutations) {
     }
 
     private boolean mutationConflictsWithOtherNodes(Node node, MutationInfo mutations) {
-        Set<String> nodeOutputPaths = mutations.outputPaths;
-        Set<String> nodeDestroysPaths = mutations.destroyablePaths;
+        Set<String> nodeOutputPaths = mutations.getOutputPaths();
+        Set<String> nodeDestroysPaths = mutations.getDestroyablePaths();
         if (nodeOutputPaths.isEmpty() && nodeDestroysPaths.isEmpty()) {
             return false;
         }
@@ -506,11 +593,16 @@ private boolean doesConsumerDependOnDestroyer(Node consumer, Node destroyer) {
 
     private void recordNodeExecutionStarted(Node node) {
         runningNodes.add(node);
+        if (executionHistory != null) {
+            executionTimers.put(node, Time.startTimer());
+        }
     }
 
     private void recordNodeCompleted(Node node) {
         LOGGER.debug("Node {} completed, executed: {}", node, node.isExecuted());
         waitingToStartNodes.remove(node);
+        waitingForDependenciesSince.remove(node);
+        resourceBudget.release(node);
         if (continueOnFailure && !node.allDependenciesComplete()) {
             // Wait for any dependencies of this node that have not started yet
             for (Node successor : node.getDependencySuccessors()) {
@@ -542,6 +634,33 @@ private void monitoredNodeReady(Node node) {
         maybeNodeReady(node);
     }
 
+    @Override
+    public void setSchedulingListener(SchedulingListener listener) {
+        this.schedulingListener = listener;
+        waitingForDependenciesSince.clear();
+        if (listener != SchedulingListener.NO_OP) {
+            long now = System.nanoTime();
+            for (Node node : waitingToStartNodes) {
+                if (!node.allDependenciesComplete()) {
+                    waitingForDependenciesSince.put(node, now);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setResourceBudget(ResourceBudget budget) {
+        resourceBudget.removeReleaseListener(resourceBudgetReleaseListener);
+        resourceBudget = budget;
+        budget.addReleaseListener(resourceBudgetReleaseListener);
+    }
+
+    @Override
+    public int getReadyItemCount() {
+        lockCoordinator.assertHasStateLock();
+        return readyNodes.size();
+    }
+
     @Override
     public void finishedExecuting(Node node, @Nullable Throwable failure) {
         lockCoordinator.assertHasStateLock();
@@ -560,6 +679,10 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
             }
 
             node.finishExecution(this::recordNodeCompleted);
+            Timer executionTimer = executionTimers.remove(node);
+            if (executionTimer != null && hasExecutedActions(node)) {
+                executionHistory.recordDuration(node, executionTimer.getElapsedMillis());
+            }
             if (node.isFailed()) {
                 LOGGER.debug("Node {} failed", node);
                 handleFailure(node);
@@ -567,6 +690,7 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
                 LOGGER.debug("Node {} finished executing", node);
                 node.visitPostExecutionNodes(postNode -> {
                     postNode.setIndex(node.getIndex());
+                    inheritRemainingDuration(postNode, node);
                     postNode.require();
                     postNode.updateAllDependenciesComplete();
                     addNodeToPlan(postNode);
@@ -582,14 +706,26 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
         } finally {
             unlockProjectFor(node);
             unlockSharedResourcesFor(node);
+            resourceBudget.release(node);
             invalidNodeRunning = false;
         }
     }
 
+    private static boolean hasExecutedActions(Node node) {
+        // The durations of up-to-date, cached and skipped tasks would drag the expected duration of the task towards zero
+        return !node.isFailed()
+            && node instanceof LocalTaskNode
+            && ((LocalTaskNode) node).getTask().getState().getOutcome() == TaskExecutionOutcome.EXECUTED;
+    }
+
     private void maybeNodeReady(Node node) {
         if (node.allDependenciesComplete()) {
             maybeNodesSelectable = true;
             readyNodes.insert(node);
+            Long waitingSince = waitingForDependenciesSince.remove(node);
+            if (waitingSince != null) {
+                schedulingListener.blocked(node, BlockedReason.Dependencies, waitingSince);
+            }
         }
     }
 
@@ -609,6 +745,9 @@ private void waitingForNode(Node node, String whenAdded, @Nullable Node waitingD
             diagnosticEvents.add(new WaitingForNode(node, waitingDueTo, whenAdded, readyNodes.nodes.contains(node)));
         }
         waitingToStartNodes.add(node);
+        if (schedulingListener != SchedulingListener.NO_OP && !node.allDependenciesComplete()) {
+            waitingForDependenciesSince.putIfAbsent(node, System.nanoTime());
+        }
     }
 
     private void handleFailure(Node node) {
@@ -679,12 +818,16 @@ public boolean allExecutionComplete() {
     }
 
     /**
-     * An ordered queue of nodes, sorted by {@link #NODE_EXECUTION_ORDER}.
+     * An ordered queue of nodes, sorted by {@link #NODE_EXECUTION_ORDER} or by the expected remaining duration when critical path scheduling is enabled.
      */
     static class ExecutionQueue {
-        private final Set<Node> nodes = new TreeSet<>(NODE_EXECUTION_ORDER);
+        private final Set<Node> nodes;
         private Iterator<Node> current;
 
+        ExecutionQueue(Comparator<Node> order) {
+            this.nodes = new TreeSet<>(order);
+        }
+
         public void clear() {
             nodes.clear();
             current = null;
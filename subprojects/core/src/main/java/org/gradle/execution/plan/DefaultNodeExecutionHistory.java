@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.cache.FileLockManager;
+import org.gradle.cache.IndexedCache;
+import org.gradle.cache.IndexedCacheParameters;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.cache.scopes.BuildTreeScopedCacheBuilderFactory;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.gradle.internal.serialize.BaseSerializerFactory.LONG_SERIALIZER;
+import static org.gradle.internal.serialize.BaseSerializerFactory.STRING_SERIALIZER;
+
+/**
+ * Keeps the execution times of tasks in a build tree scoped cache, smoothed over the builds that executed them.
+ *
+ * Durations recorded while the build runs are kept in memory and only written to the cache when the build tree finishes,
+ * so that the scheduler never waits for the cache lock.
+ */
+public class DefaultNodeExecutionHistory implements NodeExecutionHistory, Stoppable {
+    public static final InternalFlag CRITICAL_PATH_SCHEDULING = new InternalFlag("org.gradle.internal.scheduler.critical-path");
+
+    // Weight of the most recent execution time in the smoothed duration
+    private static final double RECENT_DURATION_WEIGHT = 0.5;
+
+    private final PersistentCache cache;
+    private final IndexedCache<String, Long> durations;
+    private final Map<String, Long> recordedDurations = new ConcurrentHashMap<>();
+
+    public DefaultNodeExecutionHistory(BuildTreeScopedCacheBuilderFactory cacheBuilderFactory, InMemoryCacheDecoratorFactory cacheDecoratorFactory) {
+        cache = cacheBuilderFactory.createCacheBuilder("nodeExecutionHistory")
+            .withDisplayName("node execution history cache")
+            .withInitialLockMode(FileLockManager.LockMode.OnDemand)
+            .open();
+        durations = cache.createIndexedCache(IndexedCacheParameters.of("nodeDurations", STRING_SERIALIZER, LONG_SERIALIZER)
+            .withCacheDecorator(cacheDecoratorFactory.decorator(10000, true)));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public long getExpectedDurationMillis(Node node) {
+        String key = keyFor(node);
+        if (key == null) {
+            return 0;
+        }
+        Long duration = recordedDurations.get(key);
+        if (duration == null) {
+            duration = durations.getIfPresent(key);
+        }
+        return duration == null ? 0 : duration;
+    }
+
+    @Override
+    public void recordDuration(Node node, long durationMillis) {
+        String key = keyFor(node);
+        if (key != null) {
+            recordedDurations.put(key, durationMillis);
+        }
+    }
+
+    @Nullable
+    private static String keyFor(Node node) {
+        if (node instanceof LocalTaskNode) {
+            return ((LocalTaskNode) node).getTask().getIdentityPath().getPath();
+        }
+        return null;
+    }
+
+    @Override
+    public void stop() {
+        try {
+            recordedDurations.forEach((key, duration) -> {
+                Long previous = durations.getIfPresent(key);
+                durations.put(key, previous == null ? duration : smooth(previous, duration));
+            });
+            recordedDurations.clear();
+        } finally {
+            cache.close();
+        }
+    }
+
+    private static long smooth(long previous, long recent) {
+        return Math.round(RECENT_DURATION_WEIGHT * recent + (1 - RECENT_DURATION_WEIGHT) * previous);
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.execution.plan;
 
+import com.google.gson.stream.JsonWriter;
 import org.gradle.api.Action;
 import org.gradle.api.NonNullApi;
 import org.gradle.api.logging.Logger;
@@ -26,34 +27,55 @@
 import org.gradle.internal.MutableReference;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.build.ExecutionResult;
+import org.gradle.internal.buildoption.IntegerInternalOption;
 import org.gradle.internal.buildoption.InternalFlag;
 import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.buildoption.StringInternalOption;
 import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.logging.text.TreeFormatter;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationRunner;
+import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
 import org.gradle.internal.work.WorkerLeaseService;
+import org.gradle.process.internal.health.memory.MemoryAmount;
+import org.gradle.util.internal.GFileUtils;
 
 import javax.annotation.Nullable;
+import java.io.BufferedWriter;
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.ToLongFunction;
+import java.util.function.LongUnaryOperator;
 
 import static org.gradle.internal.resources.ResourceLockState.Disposition.FINISHED;
 import static org.gradle.internal.resources.ResourceLockState.Disposition.RETRY;
@@ -61,6 +83,22 @@
 @NonNullApi
 public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
     public static final InternalFlag STATS = new InternalFlag("org.gradle.internal.executor.stats");
+    /**
+     * The location of a Chrome trace file to write the timeline of the worker threads to, when set. Implies {@link #STATS}.
+     */
+    public static final StringInternalOption TRACE = new StringInternalOption("org.gradle.internal.executor.trace", "");
+    /**
+     * The number of CPU slots shared by the running work, when set. Defaults to the maximum number of workers when the memory budget or resource weights are set.
+     */
+    public static final IntegerInternalOption CPU_BUDGET = new IntegerInternalOption("org.gradle.internal.scheduler.cpu-budget", 0);
+    /**
+     * The amount of memory shared by the running work, for example {@code 6g}, when set.
+     */
+    public static final StringInternalOption MEMORY_BUDGET = new StringInternalOption("org.gradle.internal.scheduler.memory-budget", "");
+    /**
+     * The CPU slots and memory used by tasks, for example {@code test=2:3g,:app:compileJava=1:1g}, when set.
+     */
+    public static final StringInternalOption RESOURCE_WEIGHTS = new StringInternalOption("org.gradle.internal.scheduler.resource-weights", "");
     private static final Logger LOGGER = Logging.getLogger(DefaultPlanExecutor.class);
     private final int executorCount;
     private final WorkerLeaseService workerLeaseService;
@@ -69,7 +107,13 @@ public class DefaultPlanExecutor implements PlanExecutor, Stoppable {
     private final ManagedExecutor executor;
     private final MergedQueues queue;
     private final ExecutorState state = new ExecutorState();
+    // Workers waiting for work wait for this object, in addition to the locks that prevent the ready items from starting
+    private final Object readyWork = new Object();
     private final ExecutorStats stats;
+    @Nullable
+    private final DefaultResourceBudget resourceBudget;
+    @Nullable
+    private final SuspendReservationWhileBlocking reservationSuspender;
 
     public DefaultPlanExecutor(
         ParallelismConfiguration parallelismConfiguration,
@@ -77,6 +121,7 @@ public DefaultPlanExecutor(
         WorkerLeaseService workerLeaseService,
         BuildCancellationToken cancellationToken,
         ResourceLockCoordinationService coordinationService,
+        BuildOperationRunner buildOperationRunner,
         InternalOptions internalOptions
     ) {
         this.cancellationToken = cancellationToken;
@@ -88,13 +133,40 @@ public DefaultPlanExecutor(
 
         this.executorCount = numberOfParallelExecutors;
         this.workerLeaseService = workerLeaseService;
-        this.stats = internalOptions.getOption(STATS).get() ? new CollectingExecutorStats(state) : state;
         this.queue = new MergedQueues(coordinationService, false);
+        this.resourceBudget = createResourceBudget(internalOptions, numberOfParallelExecutors);
+        if (resourceBudget != null) {
+            this.reservationSuspender = new SuspendReservationWhileBlocking(resourceBudget, coordinationService, readyWork);
+            workerLeaseService.addBlockingListener(reservationSuspender);
+        } else {
+            this.reservationSuspender = null;
+        }
+        String traceFile = internalOptions.getOption(TRACE).get();
+        if (internalOptions.getOption(STATS).get() || !traceFile.isEmpty()) {
+            this.stats = new CollectingExecutorStats(state, queue, resourceBudget, buildOperationRunner, traceFile.isEmpty() ? null : new File(traceFile).getAbsoluteFile());
+        } else {
+            this.stats = state;
+        }
         this.executor = executorFactory.create("Execution worker");
     }
 
+    @Nullable
+    private static DefaultResourceBudget createResourceBudget(InternalOptions internalOptions, int maxWorkerCount) {
+        int cpuSlots = internalOptions.getOption(CPU_BUDGET).get();
+        String memory = internalOptions.getOption(MEMORY_BUDGET).get();
+        String weights = internalOptions.getOption(RESOURCE_WEIGHTS).get();
+        if (cpuSlots <= 0 && memory.isEmpty() && weights.isEmpty()) {
+            return null;
+        }
+        long memoryBytes = memory.isEmpty() ? 0 : MemoryAmount.parseNotation(memory);
+        return new DefaultResourceBudget(cpuSlots > 0 ? cpuSlots : maxWorkerCount, Math.max(memoryBytes, 0), DefaultResourceBudget.parseWeights(weights));
+    }
+
     @Override
     public void stop() {
+        if (reservationSuspender != null) {
+            workerLeaseService.removeBlockingListener(reservationSuspender);
+        }
         try {
             CompositeStoppable.stoppable(queue, executor).stop();
         } finally {
@@ -105,18 +177,32 @@ public void stop() {
     @Override
     public <T> ExecutionResult<Void> process(WorkSource<T> workSource, Action<T> worker) {
         PlanDetails planDetails = new PlanDetails(Cast.uncheckedCast(workSource), Cast.uncheckedCast(worker));
+        if (resourceBudget != null) {
+            workSource.setResourceBudget(resourceBudget);
+        }
+        stats.startPlan(workSource);
         queue.add(planDetails);
 
         maybeStartWorkers(queue, executor);
 
-        // Run the work from the source from this thread as well, given that it will be blocked waiting for that work to complete anyway
-        WorkerLease currentWorkerLease = workerLeaseService.getCurrentWorkerLease();
-        MergedQueues thisPlanOnly = new MergedQueues(coordinationService, true);
-        thisPlanOnly.add(planDetails);
-        new ExecutorWorker(thisPlanOnly, currentWorkerLease, cancellationToken, coordinationService, workerLeaseService, stats).run();
-
+        // An item running on this thread waits for this work to complete, so should not hold on to its reservation while it does
+        if (reservationSuspender != null) {
+            reservationSuspender.beforeBlocking();
+        }
         List<Throwable> failures = new ArrayList<>();
-        awaitCompletion(workSource, currentWorkerLease, failures);
+        try {
+            // Run the work from the source from this thread as well, given that it will be blocked waiting for that work to complete anyway
+            WorkerLease currentWorkerLease = workerLeaseService.getCurrentWorkerLease();
+            MergedQueues thisPlanOnly = new MergedQueues(coordinationService, true);
+            thisPlanOnly.add(planDetails);
+            new ExecutorWorker(thisPlanOnly, currentWorkerLease, cancellationToken, coordinationService, workerLeaseService, stats, reservationSuspender, readyWork).run();
+
+            awaitCompletion(workSource, currentWorkerLease, failures);
+        } finally {
+            if (reservationSuspender != null) {
+                reservationSuspender.afterBlocking();
+            }
+        }
         return ExecutionResult.maybeFailed(failures);
     }
 
@@ -182,11 +268,72 @@ private void maybeStartWorkers(MergedQueues queue, Executor executor) {
         state.maybeStartWorkers(() -> {
             LOGGER.debug("Using {} parallel executor threads", executorCount);
             for (int i = 1; i < executorCount; i++) {
-                executor.execute(new ExecutorWorker(queue, null, cancellationToken, coordinationService, workerLeaseService, stats));
+                executor.execute(new ExecutorWorker(queue, null, cancellationToken, coordinationService, workerLeaseService, stats, reservationSuspender, readyWork));
             }
         });
     }
 
+    /**
+     * Gives up the reservation of the item running on a thread while the thread is blocked waiting for other work, so that the resource
+     * budget cannot prevent that work from starting.
+     */
+    private static class SuspendReservationWhileBlocking implements WorkerLeaseService.BlockingListener {
+        private final DefaultResourceBudget resourceBudget;
+        private final ResourceLockCoordinationService coordinationService;
+        private final Object readyWork;
+        private final ThreadLocal<RunningItem> runningItem = new ThreadLocal<>();
+
+        SuspendReservationWhileBlocking(DefaultResourceBudget resourceBudget, ResourceLockCoordinationService coordinationService, Object readyWork) {
+            this.resourceBudget = resourceBudget;
+            this.coordinationService = coordinationService;
+            this.readyWork = readyWork;
+        }
+
+        /**
+         * Returns the item that was running on this thread, if any, for example when the item runs a nested work graph.
+         */
+        @Nullable
+        RunningItem startRunning(Object item) {
+            RunningItem previous = runningItem.get();
+            runningItem.set(new RunningItem(item));
+            return previous;
+        }
+
+        void finishRunning(@Nullable RunningItem previous) {
+            if (previous == null) {
+                runningItem.remove();
+            } else {
+                runningItem.set(previous);
+            }
+        }
+
+        @Override
+        public void beforeBlocking() {
+            RunningItem current = runningItem.get();
+            if (current != null && current.blockedCount++ == 0) {
+                coordinationService.withStateLock(() -> resourceBudget.suspend(current.item));
+                coordinationService.notifyStateChange(readyWork);
+            }
+        }
+
+        @Override
+        public void afterBlocking() {
+            RunningItem current = runningItem.get();
+            if (current != null && --current.blockedCount == 0) {
+                coordinationService.withStateLock(() -> resourceBudget.resume(current.item));
+            }
+        }
+
+        private static class RunningItem {
+            final Object item;
+            int blockedCount;
+
+            RunningItem(Object item) {
+                this.item = item;
+            }
+        }
+    }
+
     private static class PlanDetails {
         final WorkSource<Object> source;
         final Action<Object> worker;
@@ -280,6 +427,15 @@ public void add(PlanDetails planDetails) {
             });
         }
 
+        public int readyItemCount() {
+            coordinationService.assertHasStateLock();
+            int count = 0;
+            for (PlanDetails details : queues) {
+                count += details.source.getReadyItemCount();
+            }
+            return count;
+        }
+
         public void removeFinishedPlans() {
             coordinationService.assertHasStateLock();
             queues.removeIf(details -> details.source.allExecutionComplete());
@@ -342,6 +498,9 @@ private static class ExecutorWorker implements Runnable {
         private final ResourceLockCoordinationService coordinationService;
         private final WorkerLeaseService workerLeaseService;
         private final WorkerStats stats;
+        @Nullable
+        private final SuspendReservationWhileBlocking reservationSuspender;
+        private final Object readyWork;
 
         private ExecutorWorker(
             MergedQueues queue,
@@ -349,8 +508,12 @@ private ExecutorWorker(
             BuildCancellationToken cancellationToken,
             ResourceLockCoordinationService coordinationService,
             WorkerLeaseService workerLeaseService,
-            ExecutorStats executorStats
+            ExecutorStats executorStats,
+            @Nullable SuspendReservationWhileBlocking reservationSuspender,
+            Object readyWork
         ) {
+            this.reservationSuspender = reservationSuspender;
+            this.readyWork = readyWork;
             this.queue = queue;
             this.workerLease = workerLease;
             this.cancellationToken = cancellationToken;
@@ -401,6 +564,7 @@ private WorkItem getNextItem(final WorkerLease workerLease) {
             try {
                 selected = MutableReference.empty();
                 coordinationService.withStateLock(resourceLockState -> {
+                    stats.acquiredStateLock();
                     stats.finishWaitingForNextItem();
                     if (cancellationToken.isCancellationRequested()) {
                         queue.cancelExecution();
@@ -416,6 +580,7 @@ private WorkItem getNextItem(final WorkerLease workerLease) {
                         // Do not call `startWaitingForNextItem()` as there may be work available but this worker cannot start it, and so should not be considered "waiting for work".
                         // The health monitoring is currently only concerned with whether work can be started.
                         // At some point it could be improved to track the health of all worker threads, not just the plan executor threads
+                        stats.startWaitingForWorkerLease();
                         return RETRY;
                     }
 
@@ -436,16 +601,20 @@ private WorkItem getNextItem(final WorkerLease workerLease) {
                         queue.abortAllAndFail(t);
                         return FINISHED;
                     }
+                    stats.readyQueueChanged();
                     if (workItem.isNoMoreWorkToStart()) {
                         return FINISHED;
                     } else if (workItem.isNoWorkReadyToStart()) {
                         stats.startWaitingForNextItem();
+                        // Wait for the locks that prevent the ready items from starting, if any, or for other items to finish
+                        resourceLockState.registerBlockedOn(readyWork);
                         // Release worker lease while waiting
                         workerLease.unlock();
                         return RETRY;
                     }
 
                     selected.set(workItem.getItem());
+                    stats.itemSelected(workItem.getItem().selection.getItem());
                     return FINISHED;
                 });
             } finally {
@@ -457,8 +626,9 @@ private WorkItem getNextItem(final WorkerLease workerLease) {
 
         private void execute(Object selected, WorkSource<Object> executionPlan, Action<Object> worker) {
             Throwable failure = null;
+            SuspendReservationWhileBlocking.RunningItem previous = reservationSuspender != null ? reservationSuspender.startRunning(selected) : null;
             try {
-                stats.startExecute();
+                stats.startExecute(selected);
                 try {
                     worker.execute(selected);
                 } catch (Throwable t) {
@@ -467,6 +637,9 @@ private void execute(Object selected, WorkSource<Object> executionPlan, Action<O
                     stats.finishExecute();
                 }
             } finally {
+                if (reservationSuspender != null) {
+                    reservationSuspender.finishRunning(previous);
+                }
                 markFinished(selected, executionPlan, failure);
             }
         }
@@ -475,14 +648,17 @@ private void markFinished(Object selected, WorkSource<Object> executionPlan, @Nu
             stats.startMarkFinished();
             try {
                 coordinationService.withStateLock(() -> {
+                    stats.acquiredStateLock();
                     try {
                         executionPlan.finishedExecuting(selected, failure);
                     } catch (Throwable t) {
                         queue.abortAllAndFail(t);
                     }
-                    // Notify other threads that the item is finished as this may unblock further work
-                    // or this might be the last item in the queue
-                    coordinationService.notifyStateChange();
+                    stats.readyQueueChanged();
+                    // Notify the threads waiting for work that the item is finished as this may unblock further work
+                    // or this might be the last item in the queue. Locks released by the item have already woken up the threads waiting for them,
+                    // and the threads waiting only for other locks cannot be unblocked by the item finishing
+                    coordinationService.notifyStateChange(readyWork);
                 });
             } finally {
                 stats.finishMarkFinished();
@@ -494,6 +670,8 @@ private void markFinished(Object selected, WorkSource<Object> executionPlan, @Nu
      * Implementations must be thread safe.
      */
     private interface ExecutorStats {
+        void startPlan(WorkSource<?> workSource);
+
         void report();
 
         WorkerStats startWorker();
@@ -512,11 +690,31 @@ private interface WorkerState {
      * Implementations are only used by the worker thead and do not need to be thread safe.
      */
     private interface WorkerStats extends WorkerState {
+        /**
+         * Called when the worker starts waiting for the state lock to select the next item.
+         */
         void startSelect();
 
+        /**
+         * Called when the worker has acquired the state lock, or has been woken up while holding it.
+         */
+        void acquiredStateLock();
+
+        void startWaitingForWorkerLease();
+
+        /**
+         * Called while holding the state lock, after the set of items that are ready to start may have changed.
+         */
+        void readyQueueChanged();
+
+        /**
+         * Called while holding the state lock.
+         */
+        void itemSelected(Object item);
+
         void finishSelect();
 
-        void startExecute();
+        void startExecute(Object item);
 
         void finishExecute();
 
@@ -539,6 +737,10 @@ public void maybeStartWorkers(Runnable startAction) {
             }
         }
 
+        @Override
+        public void startPlan(WorkSource<?> workSource) {
+        }
+
         @Override
         public WorkerStats startWorker() {
             WorkerState state = new WorkerState();
@@ -610,12 +812,28 @@ private static class WorkerState implements WorkerStats {
             public void startSelect() {
             }
 
+            @Override
+            public void acquiredStateLock() {
+            }
+
+            @Override
+            public void startWaitingForWorkerLease() {
+            }
+
+            @Override
+            public void readyQueueChanged() {
+            }
+
+            @Override
+            public void itemSelected(Object item) {
+            }
+
             @Override
             public void finishSelect() {
             }
 
             @Override
-            public void startExecute() {
+            public void startExecute(Object item) {
             }
 
             @Override
@@ -652,111 +870,560 @@ public void finishWaitingForNextItem() {
         }
     }
 
-    private static class CollectingExecutorStats implements ExecutorStats {
+    private enum WorkerActivity {
+        Idle("waiting for work"),
+        WaitingForLock("waiting for lock"),
+        Scheduling("scheduling"),
+        Executing("executing");
+
+        final String displayName;
+
+        WorkerActivity(String displayName) {
+            this.displayName = displayName;
+        }
+    }
+
+    private static class CollectingExecutorStats implements ExecutorStats, WorkSource.SchedulingListener {
+        // Waits and scheduling work shorter than this are left out of the trace, to keep its size manageable for large builds
+        private static final long MIN_TRACE_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+        private static final long MEGA_BYTES = 1024 * 1024;
+        private static final SchedulerStatisticsBuildOperationType.Details DETAILS = new SchedulerStatisticsBuildOperationType.Details() {
+        };
+
         private final List<CollectingWorkerStats> completedWorkers = new CopyOnWriteArrayList<>();
+        private final AtomicInteger workerCount = new AtomicInteger();
         private final ExecutorState delegate;
-
-        public CollectingExecutorStats(ExecutorState delegate) {
+        private final MergedQueues queue;
+        @Nullable
+        private final DefaultResourceBudget resourceBudget;
+        private final BuildOperationRunner buildOperationRunner;
+        @Nullable
+        private final File traceFile;
+        private final long startTime = System.nanoTime();
+
+        // The following state is guarded by the state lock
+        private final Map<Object, BlockedItem> blockedItems = new HashMap<>();
+        private final long[] blockedItemCounts = new long[WorkSource.BlockedReason.values().length];
+        private final long[] blockedTime = new long[WorkSource.BlockedReason.values().length];
+        private final List<ReadyQueueSample> readyQueueSamples = new ArrayList<>();
+        private int readyQueueDepth;
+        private int maxReadyQueueDepth;
+        private long firstReadyQueueChange = -1;
+        private long lastReadyQueueChange;
+        private long totalReadyQueueDepthTime;
+        private final List<ResourceBudgetSample> resourceBudgetSamples = new ArrayList<>();
+        private int cpuSlotsInUse;
+        private long memoryBytesInUse;
+        private int maxCpuSlotsInUse;
+        private long maxMemoryBytesInUse;
+
+        public CollectingExecutorStats(ExecutorState delegate, MergedQueues queue, @Nullable DefaultResourceBudget resourceBudget, BuildOperationRunner buildOperationRunner, @Nullable File traceFile) {
             this.delegate = delegate;
+            this.queue = queue;
+            this.resourceBudget = resourceBudget;
+            this.buildOperationRunner = buildOperationRunner;
+            this.traceFile = traceFile;
+        }
+
+        @Override
+        public void startPlan(WorkSource<?> workSource) {
+            workSource.setSchedulingListener(this);
         }
 
         @Override
         public WorkerStats startWorker() {
-            return new CollectingWorkerStats(this, delegate.startWorker());
+            return new CollectingWorkerStats(this, delegate.startWorker(), workerCount.incrementAndGet(), traceFile != null);
         }
 
         void workerFinished(CollectingWorkerStats stats) {
             completedWorkers.add(stats);
         }
 
+        @Override
+        public void blocked(Object item, WorkSource.BlockedReason reason) {
+            blocked(item, reason, System.nanoTime());
+        }
+
+        @Override
+        public void blocked(Object item, WorkSource.BlockedReason reason, long blockedSince) {
+            BlockedItem blockedItem = blockedItems.get(item);
+            if (blockedItem == null) {
+                blockedItem = new BlockedItem(blockedSince);
+                blockedItems.put(item, blockedItem);
+            } else {
+                blockedItem.since = Math.min(blockedItem.since, blockedSince);
+            }
+            if (blockedItem.reasons.add(reason)) {
+                blockedItemCounts[reason.ordinal()]++;
+            }
+            blockedItem.lastReason = reason;
+        }
+
+        /**
+         * Returns the reasons the item was blocked for before it was selected, if any.
+         */
+        @Nullable
+        String itemSelected(Object item) {
+            BlockedItem blockedItem = blockedItems.remove(item);
+            if (blockedItem == null) {
+                return null;
+            }
+            blockedTime[blockedItem.lastReason.ordinal()] += System.nanoTime() - blockedItem.since;
+            return blockedItem.reasons.toString();
+        }
+
+        void readyQueueChanged() {
+            int depth = queue.readyItemCount();
+            long now = System.nanoTime();
+            if (firstReadyQueueChange < 0) {
+                firstReadyQueueChange = now;
+            } else {
+                totalReadyQueueDepthTime += readyQueueDepth * (now - lastReadyQueueChange);
+            }
+            lastReadyQueueChange = now;
+            if (depth != readyQueueDepth) {
+                readyQueueDepth = depth;
+                maxReadyQueueDepth = Math.max(maxReadyQueueDepth, depth);
+                if (traceFile != null) {
+                    readyQueueSamples.add(new ReadyQueueSample(now, depth));
+                }
+            }
+            if (resourceBudget != null) {
+                resourceBudgetChanged(now, resourceBudget);
+            }
+        }
+
+        private void resourceBudgetChanged(long now, DefaultResourceBudget resourceBudget) {
+            int cpuSlots = resourceBudget.getCpuSlotsInUse();
+            long memoryBytes = resourceBudget.getMemoryBytesInUse();
+            if (cpuSlots != cpuSlotsInUse || memoryBytes != memoryBytesInUse) {
+                cpuSlotsInUse = cpuSlots;
+                memoryBytesInUse = memoryBytes;
+                maxCpuSlotsInUse = Math.max(maxCpuSlotsInUse, cpuSlots);
+                maxMemoryBytesInUse = Math.max(maxMemoryBytesInUse, memoryBytes);
+                if (traceFile != null) {
+                    resourceBudgetSamples.add(new ResourceBudgetSample(now, cpuSlots, memoryBytes));
+                }
+            }
+        }
+
         @Override
         public void report() {
+            List<CollectingWorkerStats> workers = new ArrayList<>(completedWorkers);
+            completedWorkers.clear();
             LOGGER.lifecycle("WORKER THREAD STATISTICS");
-            int workerCount = completedWorkers.size();
-            LOGGER.lifecycle("worker count: " + workerCount);
-            if (workerCount > 0) {
-                LOGGER.lifecycle("average select time: " + format(stats -> stats.totalSelectTime));
-                LOGGER.lifecycle("average execute time: " + format(stats -> stats.totalExecuteTime));
-                LOGGER.lifecycle("average finish time: " + format(stats -> stats.totalMarkFinishedTime));
+            LOGGER.lifecycle("worker count: " + workers.size());
+            if (workers.isEmpty()) {
+                return;
             }
-            completedWorkers.clear();
+            for (WorkerActivity activity : WorkerActivity.values()) {
+                long totalTime = workers.stream().mapToLong(stats -> stats.totalTime[activity.ordinal()]).sum();
+                LOGGER.lifecycle("average " + activity.displayName + " time: " + formatMillis(totalTime / workers.size()));
+            }
+            LOGGER.lifecycle("max ready queue depth: " + maxReadyQueueDepth);
+            LOGGER.lifecycle("average ready queue depth: " + DecimalFormat.getNumberInstance().format(averageReadyQueueDepth()));
+            for (WorkSource.BlockedReason reason : WorkSource.BlockedReason.values()) {
+                LOGGER.lifecycle("items blocked by " + reason + ": " + blockedItemCounts[reason.ordinal()] + ", blocked time: " + formatMillis(blockedTime[reason.ordinal()]));
+            }
+            if (resourceBudget != null) {
+                LOGGER.lifecycle("max CPU slots in use: " + maxCpuSlotsInUse + " of " + resourceBudget.getCpuSlots());
+                LOGGER.lifecycle("max memory in use: " + formatMegaBytes(maxMemoryBytesInUse) + (resourceBudget.getMemoryBytes() > 0 ? " of " + formatMegaBytes(resourceBudget.getMemoryBytes()) : ""));
+            }
+            if (traceFile != null) {
+                writeTrace(traceFile, workers);
+                LOGGER.lifecycle("scheduler trace: " + traceFile);
+            }
+
+            StatisticsResult result = new StatisticsResult(workers);
+            buildOperationRunner.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                    context.setResult(result);
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Report scheduler statistics").details(DETAILS);
+                }
+            });
+            blockedItems.clear();
+        }
+
+        private double averageReadyQueueDepth() {
+            long duration = lastReadyQueueChange - firstReadyQueueChange;
+            return firstReadyQueueChange < 0 || duration <= 0 ? readyQueueDepth : (double) totalReadyQueueDepthTime / duration;
+        }
+
+        private Map<String, Long> byReason(long[] values, LongUnaryOperator transform) {
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (WorkSource.BlockedReason reason : WorkSource.BlockedReason.values()) {
+                result.put(reason.name(), transform.applyAsLong(values[reason.ordinal()]));
+            }
+            return result;
+        }
+
+        /**
+         * Writes the timeline of the workers in the Chrome trace event format, which can be opened with Perfetto or {@code chrome://tracing}.
+         */
+        private void writeTrace(File traceFile, List<CollectingWorkerStats> workers) {
+            GFileUtils.mkdirs(traceFile.getParentFile());
+            try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(traceFile), StandardCharsets.UTF_8)))) {
+                writer.beginObject();
+                writer.name("traceEvents").beginArray();
+                startEvent(writer, "process_name", "M", 0);
+                writer.name("args").beginObject().name("name").value("Execution workers").endObject();
+                writer.endObject();
+                for (CollectingWorkerStats worker : workers) {
+                    startEvent(writer, "thread_name", "M", worker.id);
+                    writer.name("args").beginObject().name("name").value(worker.getName()).endObject();
+                    writer.endObject();
+                    for (TraceSlice slice : Objects.requireNonNull(worker.slices)) {
+                        startEvent(writer, slice.name, "X", worker.id);
+                        writer.name("cat").value(slice.category);
+                        writer.name("ts").value(toMicros(slice.startTime));
+                        writer.name("dur").value(TimeUnit.NANOSECONDS.toMicros(slice.duration));
+                        if (slice.blockedBy != null) {
+                            writer.name("args").beginObject().name("blockedBy").value(slice.blockedBy).endObject();
+                        }
+                        writer.endObject();
+                    }
+                }
+                for (ReadyQueueSample sample : readyQueueSamples) {
+                    startEvent(writer, "ready queue", "C", 0);
+                    writer.name("ts").value(toMicros(sample.time));
+                    writer.name("args").beginObject().name("depth").value(sample.depth).endObject();
+                    writer.endObject();
+                }
+                for (ResourceBudgetSample sample : resourceBudgetSamples) {
+                    startEvent(writer, "resource budget in use", "C", 0);
+                    writer.name("ts").value(toMicros(sample.time));
+                    writer.name("args").beginObject().name("cpu slots").value(sample.cpuSlots).name("memory MB").value(sample.memoryBytes / MEGA_BYTES).endObject();
+                    writer.endObject();
+                }
+                writer.endArray();
+                writer.endObject();
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        /**
+         * Starts an event object with the fields common to all events. The caller adds any other fields and ends the object.
+         */
+        private static void startEvent(JsonWriter writer, String name, String phase, int threadId) throws IOException {
+            writer.beginObject();
+            writer.name("name").value(name);
+            writer.name("ph").value(phase);
+            writer.name("pid").value(1);
+            writer.name("tid").value(threadId);
+        }
+
+        private long toMicros(long nanoTime) {
+            return TimeUnit.NANOSECONDS.toMicros(nanoTime - startTime);
+        }
+
+        private static String formatMegaBytes(long bytes) {
+            return DecimalFormat.getNumberInstance().format(bytes / MEGA_BYTES) + "MB";
+        }
+
+        private static String formatMillis(long nanos) {
+            BigDecimal millis = BigDecimal.valueOf(nanos).divide(BigDecimal.valueOf(1000000), RoundingMode.HALF_UP);
+            return DecimalFormat.getNumberInstance().format(millis) + "ms";
+        }
+
+        private class StatisticsResult implements SchedulerStatisticsBuildOperationType.Result {
+            private final List<SchedulerStatisticsBuildOperationType.WorkerStatistics> workers;
+            private final int maxReadyQueueDepth;
+            private final double averageReadyQueueDepth;
+            private final Map<String, Long> blockedItemCounts;
+            private final Map<String, Long> blockedTimeMillis;
+            @Nullable
+            private final SchedulerStatisticsBuildOperationType.ResourceBudgetStatistics resourceBudgetStatistics;
+
+            public StatisticsResult(List<CollectingWorkerStats> workers) {
+                this.workers = new ArrayList<>(workers);
+                this.maxReadyQueueDepth = CollectingExecutorStats.this.maxReadyQueueDepth;
+                this.averageReadyQueueDepth = averageReadyQueueDepth();
+                this.blockedItemCounts = byReason(CollectingExecutorStats.this.blockedItemCounts, count -> count);
+                this.blockedTimeMillis = byReason(blockedTime, TimeUnit.NANOSECONDS::toMillis);
+                this.resourceBudgetStatistics = resourceBudget == null ? null : new BudgetStatistics(resourceBudget.getCpuSlots(), resourceBudget.getMemoryBytes(), maxCpuSlotsInUse, maxMemoryBytesInUse);
+            }
+
+            @Override
+            public List<SchedulerStatisticsBuildOperationType.WorkerStatistics> getWorkers() {
+                return workers;
+            }
+
+            @Override
+            public int getMaxReadyQueueDepth() {
+                return maxReadyQueueDepth;
+            }
+
+            @Override
+            public double getAverageReadyQueueDepth() {
+                return averageReadyQueueDepth;
+            }
+
+            @Override
+            public Map<String, Long> getBlockedItemCounts() {
+                return blockedItemCounts;
+            }
+
+            @Override
+            public Map<String, Long> getBlockedTimeMillis() {
+                return blockedTimeMillis;
+            }
+
+            @Nullable
+            @Override
+            public String getTraceFile() {
+                return traceFile == null ? null : traceFile.getPath();
+            }
+
+            @Nullable
+            @Override
+            public SchedulerStatisticsBuildOperationType.ResourceBudgetStatistics getResourceBudget() {
+                return resourceBudgetStatistics;
+            }
+        }
+    }
+
+    private static class BudgetStatistics implements SchedulerStatisticsBuildOperationType.ResourceBudgetStatistics {
+        private final int cpuSlots;
+        private final long memoryBytes;
+        private final int maxCpuSlotsInUse;
+        private final long maxMemoryBytesInUse;
+
+        public BudgetStatistics(int cpuSlots, long memoryBytes, int maxCpuSlotsInUse, long maxMemoryBytesInUse) {
+            this.cpuSlots = cpuSlots;
+            this.memoryBytes = memoryBytes;
+            this.maxCpuSlotsInUse = maxCpuSlotsInUse;
+            this.maxMemoryBytesInUse = maxMemoryBytesInUse;
+        }
+
+        @Override
+        public int getCpuSlots() {
+            return cpuSlots;
+        }
+
+        @Override
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        @Override
+        public int getMaxCpuSlotsInUse() {
+            return maxCpuSlotsInUse;
+        }
+
+        @Override
+        public long getMaxMemoryBytesInUse() {
+            return maxMemoryBytesInUse;
         }
+    }
+
+    private static class BlockedItem {
+        long since;
+        final Set<WorkSource.BlockedReason> reasons = EnumSet.noneOf(WorkSource.BlockedReason.class);
+        WorkSource.BlockedReason lastReason;
 
-        private String format(ToLongFunction<CollectingWorkerStats> statsProperty) {
-            BigDecimal averageNanos = BigDecimal.valueOf(completedWorkers.stream().mapToLong(statsProperty).sum() / completedWorkers.size());
-            return DecimalFormat.getNumberInstance().format(averageNanos.divide(BigDecimal.valueOf(1000000), RoundingMode.HALF_UP)) + "ms";
+        public BlockedItem(long since) {
+            this.since = since;
         }
     }
 
-    private static class CollectingWorkerStats implements WorkerStats {
+    private static class ReadyQueueSample {
+        final long time;
+        final int depth;
+
+        public ReadyQueueSample(long time, int depth) {
+            this.time = time;
+            this.depth = depth;
+        }
+    }
+
+    private static class ResourceBudgetSample {
+        final long time;
+        final int cpuSlots;
+        final long memoryBytes;
+
+        public ResourceBudgetSample(long time, int cpuSlots, long memoryBytes) {
+            this.time = time;
+            this.cpuSlots = cpuSlots;
+            this.memoryBytes = memoryBytes;
+        }
+    }
+
+    private static class TraceSlice {
+        final String name;
+        final String category;
         final long startTime;
+        final long duration;
+        @Nullable
+        final String blockedBy;
+
+        public TraceSlice(String name, String category, long startTime, long duration, @Nullable String blockedBy) {
+            this.name = name;
+            this.category = category;
+            this.startTime = startTime;
+            this.duration = duration;
+            this.blockedBy = blockedBy;
+        }
+    }
+
+    private static class CollectingWorkerStats implements WorkerStats, SchedulerStatisticsBuildOperationType.WorkerStatistics {
         private final CollectingExecutorStats owner;
-        private final WorkerState delegate;
-        long finishTime;
-        long startCurrentOperation;
-        long totalSelectTime;
-        long totalExecuteTime;
-        long totalMarkFinishedTime;
-
-        public CollectingWorkerStats(CollectingExecutorStats owner, WorkerState delegate) {
+        private final WorkerStats delegate;
+        private final int id;
+        private final long[] totalTime = new long[WorkerActivity.values().length];
+        // Null when no trace is written
+        @Nullable
+        private final List<TraceSlice> slices;
+        @Nullable
+        private String threadName;
+        private WorkerActivity currentActivity = WorkerActivity.Scheduling;
+        private long currentActivityStart;
+        @Nullable
+        private Object currentItem;
+        @Nullable
+        private String currentItemBlockedBy;
+        private int executedItemCount;
+
+        public CollectingWorkerStats(CollectingExecutorStats owner, WorkerStats delegate, int id, boolean trace) {
             this.owner = owner;
             this.delegate = delegate;
-            startTime = System.nanoTime();
+            this.id = id;
+            this.slices = trace ? new ArrayList<>() : null;
+            currentActivityStart = System.nanoTime();
+        }
+
+        private void startActivity(WorkerActivity activity) {
+            if (activity == currentActivity) {
+                return;
+            }
+            long now = System.nanoTime();
+            long duration = now - currentActivityStart;
+            if (duration > 0) {
+                totalTime[currentActivity.ordinal()] += duration;
+            }
+            if (slices != null) {
+                if (currentActivity == WorkerActivity.Executing) {
+                    slices.add(new TraceSlice(String.valueOf(currentItem), "execute", currentActivityStart, duration, currentItemBlockedBy));
+                } else if (duration >= CollectingExecutorStats.MIN_TRACE_SLICE_NANOS) {
+                    slices.add(new TraceSlice(currentActivity.displayName, "scheduler", currentActivityStart, duration, null));
+                }
+            }
+            currentActivity = activity;
+            currentActivityStart = now;
         }
 
         @Override
         public void finish() {
-            finishTime = System.nanoTime();
+            startActivity(WorkerActivity.Scheduling);
+            delegate.finish();
             owner.workerFinished(this);
         }
 
         @Override
         public void startSelect() {
-            startCurrentOperation = System.nanoTime();
+            if (threadName == null) {
+                threadName = Thread.currentThread().getName();
+            }
+            startActivity(WorkerActivity.WaitingForLock);
+        }
+
+        @Override
+        public void acquiredStateLock() {
+            startActivity(WorkerActivity.Scheduling);
+        }
+
+        @Override
+        public void startWaitingForWorkerLease() {
+            startActivity(WorkerActivity.WaitingForLock);
+        }
+
+        @Override
+        public void readyQueueChanged() {
+            owner.readyQueueChanged();
+        }
+
+        @Override
+        public void itemSelected(Object item) {
+            currentItemBlockedBy = owner.itemSelected(item);
         }
 
         @Override
         public void finishSelect() {
-            long duration = System.nanoTime() - startCurrentOperation;
-            if (duration > 0) {
-                totalSelectTime += duration;
-            }
+            startActivity(WorkerActivity.Scheduling);
         }
 
         @Override
-        public void startExecute() {
-            startCurrentOperation = System.nanoTime();
+        public void startExecute(Object item) {
+            startActivity(WorkerActivity.Executing);
+            currentItem = item;
+            executedItemCount++;
         }
 
         @Override
         public void finishExecute() {
-            long duration = System.nanoTime() - startCurrentOperation;
-            if (duration > 0) {
-                totalExecuteTime += duration;
-            }
+            startActivity(WorkerActivity.Scheduling);
+            currentItem = null;
+            currentItemBlockedBy = null;
         }
 
         @Override
         public void startMarkFinished() {
-            startCurrentOperation = System.nanoTime();
+            startActivity(WorkerActivity.WaitingForLock);
         }
 
         @Override
         public void finishMarkFinished() {
-            long duration = System.nanoTime() - startCurrentOperation;
-            if (duration > 0) {
-                totalMarkFinishedTime += duration;
-            }
+            startActivity(WorkerActivity.Scheduling);
         }
 
         @Override
         public void startWaitingForNextItem() {
             delegate.startWaitingForNextItem();
+            startActivity(WorkerActivity.Idle);
         }
 
         @Override
         public void finishWaitingForNextItem() {
             delegate.finishWaitingForNextItem();
         }
+
+        @Override
+        public String getName() {
+            return threadName + " #" + id;
+        }
+
+        @Override
+        public int getExecutedItemCount() {
+            return executedItemCount;
+        }
+
+        @Override
+        public long getExecutingTimeMillis() {
+            return totalMillis(WorkerActivity.Executing);
+        }
+
+        @Override
+        public long getIdleTimeMillis() {
+            return totalMillis(WorkerActivity.Idle);
+        }
+
+        @Override
+        public long getWaitingForLockTimeMillis() {
+            return totalMillis(WorkerActivity.WaitingForLock);
+        }
+
+        @Override
+        public long getSchedulingTimeMillis() {
+            return totalMillis(WorkerActivity.Scheduling);
+        }
+
+        private long totalMillis(WorkerActivity activity) {
+            return TimeUnit.NANOSECONDS.toMillis(totalTime[activity.ordinal()]);
+        }
     }
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.tasks.ParallelForkingTask;
+import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.health.memory.MemoryAmount;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A budget of CPU slots and memory shared by all the work sources of a build tree.
+ *
+ * <p>The weight of a task is taken from the declared weights, by task path or by task name. Tasks that fork a JVM and are not declared
+ * are assumed to use one CPU slot and their maximum heap size for each process they may run at the same time. All other nodes use a single CPU slot and no memory. The weight of an item is determined once
+ * and kept until the item is released.</p>
+ *
+ * <p>An item whose weight exceeds the whole budget is admitted once no other item holds any resources, so that it can always run.
+ * While such an item is waiting, no other items are admitted, so that it is not starved by smaller items.</p>
+ *
+ * <p>A running item that blocks waiting for other work can suspend its reservation, so that the work it is waiting for can be admitted.
+ * When it resumes, its reservation is restored even if this exceeds the budget, as the item is already running.</p>
+ */
+class DefaultResourceBudget implements WorkSource.ResourceBudget {
+    private static final Weight DEFAULT_WEIGHT = new Weight(1, 0);
+
+    private final int cpuSlots;
+    private final long memoryBytes;
+    private final Map<String, Weight> declaredWeights;
+    private final List<Runnable> releaseListeners = new CopyOnWriteArrayList<>();
+
+    // The following state is guarded by the state lock
+    private final Map<Object, Weight> weights = new IdentityHashMap<>();
+    private final Map<Object, Weight> reserved = new IdentityHashMap<>();
+    private final Map<Object, Weight> suspended = new IdentityHashMap<>();
+    private int cpuSlotsInUse;
+    private long memoryBytesInUse;
+    @Nullable
+    private Object waitingForWholeBudget;
+
+    DefaultResourceBudget(int cpuSlots, long memoryBytes, Map<String, Weight> declaredWeights) {
+        this.cpuSlots = cpuSlots;
+        this.memoryBytes = memoryBytes;
+        this.declaredWeights = declaredWeights;
+    }
+
+    /**
+     * Parses weight declarations of the form {@code <task path or name>=<cpu slots>[:<memory>]}, separated by commas.
+     * For example {@code test=2:3g,:app:compileJava=1:1g}.
+     */
+    static Map<String, Weight> parseWeights(String declarations) {
+        Map<String, Weight> weights = new HashMap<>();
+        for (String declaration : declarations.split(",")) {
+            declaration = declaration.trim();
+            if (declaration.isEmpty()) {
+                continue;
+            }
+            int separator = declaration.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Cannot parse resource weight '" + declaration + "', expected '<task path or name>=<cpu slots>[:<memory>]'.");
+            }
+            String task = declaration.substring(0, separator).trim();
+            String weight = declaration.substring(separator + 1).trim();
+            int memorySeparator = weight.indexOf(':');
+            try {
+                int cpu = Integer.parseInt(memorySeparator < 0 ? weight : weight.substring(0, memorySeparator));
+                long memory = memorySeparator < 0 ? 0 : MemoryAmount.parseNotation(weight.substring(memorySeparator + 1));
+                weights.put(task, new Weight(Math.max(cpu, 0), Math.max(memory, 0)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Cannot parse resource weight '" + declaration + "', expected '<task path or name>=<cpu slots>[:<memory>]'.", e);
+            }
+        }
+        return weights;
+    }
+
+    @Override
+    public boolean tryReserve(Object item) {
+        if (waitingForWholeBudget != null && waitingForWholeBudget != item) {
+            return false;
+        }
+        Weight weight = weights.computeIfAbsent(item, this::weightOf);
+        boolean exceedsBudget = weight.cpuSlots > cpuSlots || (memoryBytes > 0 && weight.memoryBytes > memoryBytes);
+        int cpu = Math.min(weight.cpuSlots, cpuSlots);
+        long memory = memoryBytes > 0 ? Math.min(weight.memoryBytes, memoryBytes) : weight.memoryBytes;
+        boolean anyInUse = cpuSlotsInUse > 0 || memoryBytesInUse > 0;
+        if (anyInUse && (cpuSlotsInUse + cpu > cpuSlots || (memoryBytes > 0 && memoryBytesInUse + memory > memoryBytes))) {
+            if (exceedsBudget) {
+                waitingForWholeBudget = item;
+            }
+            return false;
+        }
+        waitingForWholeBudget = null;
+        reserved.put(item, new Weight(cpu, memory));
+        cpuSlotsInUse += cpu;
+        memoryBytesInUse += memory;
+        return true;
+    }
+
+    @Override
+    public void release(Object item) {
+        weights.remove(item);
+        suspended.remove(item);
+        Weight weight = reserved.remove(item);
+        if (weight != null) {
+            cpuSlotsInUse -= weight.cpuSlots;
+            memoryBytesInUse -= weight.memoryBytes;
+        } else if (waitingForWholeBudget == item) {
+            waitingForWholeBudget = null;
+        } else {
+            return;
+        }
+        notifyReleaseListeners();
+    }
+
+    /**
+     * Gives up the resources reserved for the given running item while it is blocked, if any.
+     */
+    public void suspend(Object item) {
+        Weight weight = reserved.remove(item);
+        if (weight == null) {
+            return;
+        }
+        suspended.put(item, weight);
+        cpuSlotsInUse -= weight.cpuSlots;
+        memoryBytesInUse -= weight.memoryBytes;
+        notifyReleaseListeners();
+    }
+
+    /**
+     * Restores the resources reserved for the given item when it was suspended, regardless of the resources in use by other items.
+     */
+    public void resume(Object item) {
+        Weight weight = suspended.remove(item);
+        if (weight == null) {
+            return;
+        }
+        reserved.put(item, weight);
+        cpuSlotsInUse += weight.cpuSlots;
+        memoryBytesInUse += weight.memoryBytes;
+    }
+
+    private void notifyReleaseListeners() {
+        for (Runnable listener : releaseListeners) {
+            listener.run();
+        }
+    }
+
+    @Override
+    public void addReleaseListener(Runnable listener) {
+        releaseListeners.add(listener);
+    }
+
+    @Override
+    public void removeReleaseListener(Runnable listener) {
+        releaseListeners.remove(listener);
+    }
+
+    public int getCpuSlots() {
+        return cpuSlots;
+    }
+
+    /**
+     * The memory available to running items, or 0 when memory is not limited.
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public int getCpuSlotsInUse() {
+        return cpuSlotsInUse;
+    }
+
+    public long getMemoryBytesInUse() {
+        return memoryBytesInUse;
+    }
+
+    private Weight weightOf(Object item) {
+        if (!(item instanceof LocalTaskNode)) {
+            return DEFAULT_WEIGHT;
+        }
+        TaskInternal task = ((LocalTaskNode) item).getTask();
+        Weight declared = declaredWeights.get(task.getIdentityPath().getPath());
+        if (declared == null) {
+            declared = declaredWeights.get(task.getName());
+        }
+        if (declared != null) {
+            return declared;
+        }
+        if (task instanceof JavaForkOptions) {
+            long maxHeapSize;
+            try {
+                maxHeapSize = MemoryAmount.parseNotation(((JavaForkOptions) task).getMaxHeapSize());
+            } catch (IllegalArgumentException e) {
+                // Leave it to the task to report the invalid value when it runs
+                return DEFAULT_WEIGHT;
+            }
+            if (maxHeapSize > 0) {
+                // Each fork runs in its own JVM
+                int forks = task instanceof ParallelForkingTask ? Math.max(((ParallelForkingTask) task).getMaxParallelForks(), 1) : 1;
+                return new Weight(forks, maxHeapSize * forks);
+            }
+        }
+        return DEFAULT_WEIGHT;
+    }
+
+    static class Weight {
+        final int cpuSlots;
+        final long memoryBytes;
+
+        Weight(int cpuSlots, long memoryBytes) {
+            this.cpuSlots = cpuSlots;
+            this.memoryBytes = memoryBytes;
+        }
+
+        @Override
+        public String toString() {
+            return cpuSlots + " CPU slots, " + memoryBytes + " bytes";
+        }
+    }
+}
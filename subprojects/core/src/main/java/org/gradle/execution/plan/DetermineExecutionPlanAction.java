@@ -18,8 +18,10 @@
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import org.gradle.api.CircularReferenceException;
 import org.gradle.api.GradleException;
 import org.gradle.api.internal.TaskInternal;
@@ -70,7 +72,8 @@ class DetermineExecutionPlanAction {
     private final Set<Node> finalizers;
 
     private final LinkedList<NodeInVisitingSegment> nodeQueue = new LinkedList<>();
-    private final HashMultimap<Node, Integer> visitingNodes = HashMultimap.create();
+    private final Reference2IntOpenHashMap<Node> queuedNodeCounts = new Reference2IntOpenHashMap<>();
+    private final VisitingSegments visitingNodes = new VisitingSegments();
     private final Deque<GraphEdge> walkedShouldRunAfterEdges = new ArrayDeque<>();
     private final Deque<Node> path = new ArrayDeque<>();
     private final Map<Node, Integer> planBeforeVisiting = new HashMap<>();
@@ -134,6 +137,7 @@ private void updateFinalizerGroups() {
     private void processEntryNodes() {
         for (Node node : entryNodes) {
             nodeQueue.add(new NodeInVisitingSegment(node, visitingSegmentCounter++));
+            queuedNodeCounts.addTo(node, 1);
         }
     }
 
@@ -148,7 +152,7 @@ private void processNodeQueue() {
                 // - it has already executed in another execution plan
                 // - it is reachable only via a must-run-after or should-run-after edge
                 // - it is filtered
-                nodeQueue.removeFirst();
+                removeFirstFromQueue();
                 visitingNodes.remove(node, currentSegment);
                 maybeRemoveProcessedShouldRunAfterEdge(node);
                 continue;
@@ -188,11 +192,12 @@ private void processNodeQueue() {
                         }
                     }
                     insertPoint.add(new NodeInVisitingSegment(successor, currentSegment));
+                    queuedNodeCounts.addTo(successor, 1);
                 }
                 path.push(node);
             } else {
                 // Have visited this node's dependencies - add it to the end of the plan
-                nodeQueue.removeFirst();
+                removeFirstFromQueue();
                 maybeRemoveProcessedShouldRunAfterEdge(node);
                 visitingNodes.remove(node, currentSegment);
                 path.pop();
@@ -213,21 +218,49 @@ private ImmutableList<Node> createOrdinalRelationshipsAndCollectNodes() {
         return scheduledNodes.build();
     }
 
+    private void removeFirstFromQueue() {
+        NodeInVisitingSegment removed = nodeQueue.removeFirst();
+        if (queuedNodeCounts.addTo(removed.node, -1) == 1) {
+            queuedNodeCounts.removeInt(removed.node);
+        }
+    }
+
     private void addFinalizerToQueue(int visitingSegmentCounter, Node finalizer) {
+        if (queuedNodeCounts.containsKey(finalizer)) {
+            // Already later in the queue
+            return;
+        }
         int insertPosition = 1;
-        int pos = 0;
-        for (NodeInVisitingSegment segment : nodeQueue) {
-            if (segment.node == finalizer) {
-                // Already later in the queue
-                return;
-            }
-            // Need to insert the finalizer immediately after the last node that it finalizes
-            if (finalizer.getFinalizingSuccessors().contains(segment.node) && pos > insertPosition) {
-                insertPosition = pos;
+        if (isAnyFinalizedNodeQueuedAfterHead(finalizer)) {
+            int pos = 0;
+            for (NodeInVisitingSegment segment : nodeQueue) {
+                // Need to insert the finalizer immediately after the last node that it finalizes
+                if (finalizer.getFinalizingSuccessors().contains(segment.node) && pos > insertPosition) {
+                    insertPosition = pos;
+                }
+                pos++;
             }
-            pos++;
         }
         nodeQueue.add(insertPosition, new NodeInVisitingSegment(finalizer, visitingSegmentCounter));
+        queuedNodeCounts.addTo(finalizer, 1);
+    }
+
+    /**
+     * Checks whether some node finalized by the given finalizer is in the queue, other than the node currently being visited.
+     * When there is none, the finalizer goes right after the current node and there is no need to scan the queue.
+     */
+    private boolean isAnyFinalizedNodeQueuedAfterHead(Node finalizer) {
+        Node head = nodeQueue.getFirst().node;
+        for (Node finalized : finalizer.getFinalizingSuccessors()) {
+            int count = queuedNodeCounts.getInt(finalized);
+            if (finalized == head) {
+                count--;
+            }
+            if (count > 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private void maybeRemoveProcessedShouldRunAfterEdge(Node node) {
@@ -248,7 +281,7 @@ private void restoreQueue(GraphEdge toBeRemoved) {
             nextInQueue = nodeQueue.peekFirst();
             visitingNodes.remove(nextInQueue.node, nextInQueue.visitingSegment);
             if (!toBeRemoved.from.equals(nextInQueue.node)) {
-                nodeQueue.removeFirst();
+                removeFirstFromQueue();
             }
         }
     }
@@ -417,6 +450,63 @@ public String toString() {
         }
     }
 
+    /**
+     * Tracks the visiting segments in which each node is currently being visited.
+     *
+     * A node is almost always visited in a single segment at a time, so that segment is kept in a primitive map
+     * and any further segments overflow into a multimap.
+     */
+    private static class VisitingSegments {
+        private final Reference2IntOpenHashMap<Node> segments = new Reference2IntOpenHashMap<>();
+        private final HashMultimap<Node, Integer> additionalSegments = HashMultimap.create();
+
+        VisitingSegments() {
+            segments.defaultReturnValue(-1);
+        }
+
+        /**
+         * @return true if the node was not already being visited in the given segment
+         */
+        boolean put(Node node, int segment) {
+            int current = segments.getInt(node);
+            if (current == -1) {
+                segments.put(node, segment);
+                return true;
+            }
+            if (current == segment) {
+                return false;
+            }
+            return additionalSegments.put(node, segment);
+        }
+
+        boolean containsEntry(Node node, int segment) {
+            int current = segments.getInt(node);
+            if (current == -1) {
+                return false;
+            }
+            return current == segment || (!additionalSegments.isEmpty() && additionalSegments.containsEntry(node, segment));
+        }
+
+        void remove(Node node, int segment) {
+            int current = segments.getInt(node);
+            if (current == -1) {
+                return;
+            }
+            if (current != segment) {
+                additionalSegments.remove(node, segment);
+                return;
+            }
+            Set<Integer> others = additionalSegments.isEmpty() ? ImmutableSet.of() : additionalSegments.get(node);
+            if (others.isEmpty()) {
+                segments.removeInt(node);
+            } else {
+                int next = others.iterator().next();
+                additionalSegments.remove(node, next);
+                segments.put(node, next);
+            }
+        }
+    }
+
     private static class GraphEdge {
         private final Node from;
         private final Node to;
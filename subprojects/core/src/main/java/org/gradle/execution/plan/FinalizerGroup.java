@@ -23,11 +23,9 @@
 import kotlin.collections.ArrayDeque;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -184,6 +182,8 @@ public void scheduleMembers(SetMultimap<FinalizerGroup, FinalizerGroup> reachabl
         // There are some finalized nodes that are also members
         // For each member, determine which finalized nodes to wait for
         ImmutableMap.Builder<Node, MemberSuccessors> blockingNodesBuilder = ImmutableMap.builder();
+        // Members that are not finalized all wait for the same nodes, so share a single instance between them
+        WaitForNodesToComplete waitForFinalizedNodes = null;
 
         // Calculate the set of dependencies of finalized nodes that are also members of this group
         Set<Node> dependenciesThatAreMembers = getDependenciesThatAreMembers(blockedFinalizedMembers);
@@ -207,9 +207,12 @@ public void scheduleMembers(SetMultimap<FinalizerGroup, FinalizerGroup> reachabl
                     blockingNodesBuilder.put(member, waitForFinalizers);
                 } else {
                     // Wait for the finalized nodes that don't introduce a cycle
-                    Set<Node> blockOn = new LinkedHashSet<>(finalizedNodesToBlockOn);
-                    blockOn.addAll(blockedFinalizedMembers);
-                    blockingNodesBuilder.put(member, new WaitForNodesToComplete(blockOn));
+                    if (waitForFinalizedNodes == null) {
+                        Set<Node> blockOn = new LinkedHashSet<>(finalizedNodesToBlockOn);
+                        blockOn.addAll(blockedFinalizedMembers);
+                        waitForFinalizedNodes = new WaitForNodesToComplete(blockOn);
+                    }
+                    blockingNodesBuilder.put(member, waitForFinalizedNodes);
                 }
             }
         }
@@ -304,9 +307,9 @@ private boolean hasACycle(Node finalized, SetMultimap<FinalizerGroup, FinalizerG
     private Set<FinalizerGroup> reachableGroups(FinalizerGroup fromGroup, SetMultimap<FinalizerGroup, FinalizerGroup> reachableGroups) {
         if (!reachableGroups.containsKey(fromGroup)) {
             Set<Node> seen = new HashSet<>();
-            List<Node> queue = new ArrayList<>(fromGroup.getFinalizedNodes());
+            ArrayDeque<Node> queue = new ArrayDeque<>(fromGroup.getFinalizedNodes());
             while (!queue.isEmpty()) {
-                Node node = queue.remove(0);
+                Node node = queue.removeFirst();
                 if (!seen.add(node)) {
                     continue;
                 }
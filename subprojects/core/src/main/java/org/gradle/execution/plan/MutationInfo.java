@@ -16,13 +16,18 @@
 
 package org.gradle.execution.plan;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+/**
+ * Every node has one of these, but many nodes have no outputs, destroyables or consumers.
+ * The sets are only created when the first element is added, to keep the memory used by very large plans down.
+ */
 class MutationInfo {
-    private final Set<Node> nodesYetToConsumeOutput = new HashSet<>();
-    final Set<String> outputPaths = new HashSet<>();
-    final Set<String> destroyablePaths = new HashSet<>();
+    private Set<Node> nodesYetToConsumeOutput = Collections.emptySet();
+    private Set<String> outputPaths = Collections.emptySet();
+    private Set<String> destroyablePaths = Collections.emptySet();
     boolean hasFileInputs;
     boolean hasOutputs;
     boolean hasLocalState;
@@ -46,6 +51,31 @@ public void consumerCompleted(Node node) {
     }
 
     public void addConsumer(Node node) {
+        if (nodesYetToConsumeOutput.isEmpty()) {
+            nodesYetToConsumeOutput = new HashSet<>();
+        }
         nodesYetToConsumeOutput.add(node);
     }
+
+    Set<String> getOutputPaths() {
+        return outputPaths;
+    }
+
+    void addOutputPath(String path) {
+        if (outputPaths.isEmpty()) {
+            outputPaths = new HashSet<>();
+        }
+        outputPaths.add(path);
+    }
+
+    Set<String> getDestroyablePaths() {
+        return destroyablePaths;
+    }
+
+    void addDestroyablePath(String path) {
+        if (destroyablePaths.isEmpty()) {
+            destroyablePaths = new HashSet<>();
+        }
+        destroyablePaths.add(path);
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+/**
+ * Remembers how long nodes took to execute in earlier builds of this build tree, so that the scheduler can start the nodes on the critical path first.
+ */
+@ServiceScope(Scopes.BuildTree.class)
+public interface NodeExecutionHistory {
+    /**
+     * A history that does not remember anything, used when critical path scheduling is disabled.
+     */
+    NodeExecutionHistory DISABLED = new NodeExecutionHistory() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public long getExpectedDurationMillis(Node node) {
+            return 0;
+        }
+
+        @Override
+        public void recordDuration(Node node, long durationMillis) {
+        }
+    };
+
+    /**
+     * Whether the scheduler should order ready nodes by the expected duration of their remaining downstream path.
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns the expected execution time of the given node, or 0 when the node has not been executed before.
+     */
+    long getExpectedDurationMillis(Node node);
+
+    /**
+     * Records the execution time of the given node. May be called concurrently and while holding the state lock, so must not block.
+     */
+    void recordDuration(Node node, long durationMillis);
+}
@@ -105,8 +105,8 @@ private void doResolveMutations() {
         MutationInfo mutations = node.getMutationInfo();
         node.resolveMutations();
         mutations.hasValidationProblem = nodeValidator.hasValidationProblems(node);
-        accessHierarchies.getOutputHierarchy().recordNodeAccessingLocations(node, mutations.outputPaths);
-        accessHierarchies.getDestroyableHierarchy().recordNodeAccessingLocations(node, mutations.destroyablePaths);
+        accessHierarchies.getOutputHierarchy().recordNodeAccessingLocations(node, mutations.getOutputPaths());
+        accessHierarchies.getDestroyableHierarchy().recordNodeAccessingLocations(node, mutations.getDestroyablePaths());
     }
 
     private static final class ResolveTaskMutationsDetails implements ResolveTaskMutationsBuildOperationType.Details {
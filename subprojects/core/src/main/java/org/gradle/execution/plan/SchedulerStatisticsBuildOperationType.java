@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports statistics about how the work of a build tree was scheduled onto the worker threads of the {@link DefaultPlanExecutor}.
+ *
+ * <p>Fired when the build tree finishes, when {@link DefaultPlanExecutor#STATS} is enabled.</p>
+ */
+public final class SchedulerStatisticsBuildOperationType implements BuildOperationType<SchedulerStatisticsBuildOperationType.Details, SchedulerStatisticsBuildOperationType.Result> {
+    public interface Details {
+    }
+
+    public interface Result {
+        List<WorkerStatistics> getWorkers();
+
+        /**
+         * The largest number of items that were ready to start at the same time.
+         */
+        int getMaxReadyQueueDepth();
+
+        /**
+         * The number of items that were ready to start, averaged over the time that the executor was running work.
+         */
+        double getAverageReadyQueueDepth();
+
+        /**
+         * The number of distinct items that were blocked for each {@link WorkSource.BlockedReason}.
+         */
+        Map<String, Long> getBlockedItemCounts();
+
+        /**
+         * The time items spent blocked for each {@link WorkSource.BlockedReason}, from when the item was first blocked until it started.
+         * The time is attributed to the reason the item was last blocked for.
+         */
+        Map<String, Long> getBlockedTimeMillis();
+
+        /**
+         * The location of the Chrome trace file written for the timeline of the workers, if any.
+         */
+        @Nullable
+        String getTraceFile();
+
+        /**
+         * The resource budget used to admit items, if any.
+         */
+        @Nullable
+        ResourceBudgetStatistics getResourceBudget();
+    }
+
+    public interface ResourceBudgetStatistics {
+        int getCpuSlots();
+
+        /**
+         * The memory available to the items, or 0 when memory is not limited.
+         */
+        long getMemoryBytes();
+
+        int getMaxCpuSlotsInUse();
+
+        long getMaxMemoryBytesInUse();
+    }
+
+    public interface WorkerStatistics {
+        String getName();
+
+        int getExecutedItemCount();
+
+        long getExecutingTimeMillis();
+
+        /**
+         * Time spent waiting for work to become ready to start.
+         */
+        long getIdleTimeMillis();
+
+        /**
+         * Time spent waiting to acquire the state lock or a worker lease.
+         */
+        long getWaitingForLockTimeMillis();
+
+        /**
+         * Time spent holding the state lock to select the next item or to mark an item as finished.
+         */
+        long getSchedulingTimeMillis();
+    }
+
+    private SchedulerStatisticsBuildOperationType() {
+    }
+}
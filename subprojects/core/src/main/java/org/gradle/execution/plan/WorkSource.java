@@ -93,6 +93,98 @@ public T getItem() {
         }
     }
 
+    /**
+     * The reason why an item that is queued for execution cannot be started.
+     */
+    enum BlockedReason {
+        /**
+         * The item is waiting for some of its dependencies to complete.
+         */
+        Dependencies,
+        /**
+         * The item cannot acquire the lock on the project that owns it.
+         */
+        ProjectLock,
+        /**
+         * The item cannot acquire one of the shared resources it requires.
+         */
+        SharedResource,
+        /**
+         * The item would mutate or destroy locations in use by other running items.
+         */
+        MutationConflict,
+        /**
+         * The CPU slots or memory required by the item are in use by other running items.
+         */
+        ResourceBudget
+    }
+
+    /**
+     * Receives scheduling information from a work source, for diagnostics.
+     *
+     * <p>Methods are called while holding the state lock.</p>
+     */
+    interface SchedulingListener {
+        SchedulingListener NO_OP = (item, reason) -> {
+        };
+
+        /**
+         * Called when an item was considered for execution but could not be started.
+         */
+        void blocked(Object item, BlockedReason reason);
+
+        /**
+         * Called when an item could not be started since the given time, as returned by {@link System#nanoTime()}.
+         * Used for items that were waiting before they could be considered for execution, such as items whose dependencies have just completed.
+         */
+        default void blocked(Object item, BlockedReason reason, long blockedSince) {
+            blocked(item, reason);
+        }
+    }
+
+    /**
+     * Limits the combined CPU and memory used by the items running at the same time, possibly across multiple work sources.
+     *
+     * <p>Methods are called while holding the state lock.</p>
+     */
+    interface ResourceBudget {
+        ResourceBudget UNLIMITED = new ResourceBudget() {
+            @Override
+            public boolean tryReserve(Object item) {
+                return true;
+            }
+
+            @Override
+            public void release(Object item) {
+            }
+
+            @Override
+            public void addReleaseListener(Runnable listener) {
+            }
+
+            @Override
+            public void removeReleaseListener(Runnable listener) {
+            }
+        };
+
+        /**
+         * Reserves the resources required to run the given item. Returns false when the resources are in use by other items.
+         */
+        boolean tryReserve(Object item);
+
+        /**
+         * Releases the resources reserved for the given item, if any. Called when the item completes, whether it was started or not.
+         */
+        void release(Object item);
+
+        /**
+         * Registers a listener to be notified when resources are released, so that items that could not start before may be able to start now.
+         */
+        void addReleaseListener(Runnable listener);
+
+        void removeReleaseListener(Runnable listener);
+    }
+
     /**
      * Some basic diagnostic information about the state of the work.
      */
@@ -187,6 +279,23 @@ public void describeTo(TreeFormatter formatter) {
 
     void finishedExecuting(T item, @Nullable Throwable failure);
 
+    /**
+     * Reports scheduling information to the given listener, replacing any listener set previously.
+     */
+    void setSchedulingListener(SchedulingListener listener);
+
+    /**
+     * Admits items according to the given budget, replacing any budget set previously.
+     */
+    void setResourceBudget(ResourceBudget budget);
+
+    /**
+     * Returns the number of items that are ready to start once they can acquire the resources they need.
+     *
+     * <p>Note: the caller must hold the state lock.</p>
+     */
+    int getReadyItemCount();
+
     void abortAllAndFail(Throwable t);
 
     void cancelExecution();
@@ -37,12 +37,16 @@
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.tasks.util.PatternSet;
 import org.gradle.cache.FileLockManager;
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.cache.scopes.BuildTreeScopedCacheBuilderFactory;
 import org.gradle.composite.internal.BuildTreeWorkGraphController;
 import org.gradle.execution.DefaultTaskSelector;
 import org.gradle.execution.ProjectConfigurer;
 import org.gradle.execution.TaskNameResolver;
 import org.gradle.execution.TaskPathProjectEvaluator;
 import org.gradle.execution.TaskSelector;
+import org.gradle.execution.plan.DefaultNodeExecutionHistory;
+import org.gradle.execution.plan.NodeExecutionHistory;
 import org.gradle.execution.selection.DefaultBuildTaskSelector;
 import org.gradle.initialization.BuildOptionBuildOperationProgressEventsEmitter;
 import org.gradle.initialization.exception.DefaultExceptionAnalyser;
@@ -129,6 +133,17 @@ protected InternalOptions createInternalOptions(StartParameter startParameter) {
         return new DefaultInternalOptions(startParameter.getSystemPropertiesArgs());
     }
 
+    protected NodeExecutionHistory createNodeExecutionHistory(
+        InternalOptions internalOptions,
+        BuildTreeScopedCacheBuilderFactory cacheBuilderFactory,
+        InMemoryCacheDecoratorFactory cacheDecoratorFactory
+    ) {
+        if (internalOptions.getOption(DefaultNodeExecutionHistory.CRITICAL_PATH_SCHEDULING).get()) {
+            return new DefaultNodeExecutionHistory(cacheBuilderFactory, cacheDecoratorFactory);
+        }
+        return NodeExecutionHistory.DISABLED;
+    }
+
     protected TaskSelector createTaskSelector(ProjectConfigurer projectConfigurer, ObjectFactory objectFactory) {
         return objectFactory.newInstance(DefaultTaskSelector.class, new TaskNameResolver(), projectConfigurer);
     }
@@ -105,6 +105,7 @@
 import org.gradle.execution.plan.DefaultNodeValidator;
 import org.gradle.execution.plan.ExecutionNodeAccessHierarchies;
 import org.gradle.execution.plan.ExecutionPlanFactory;
+import org.gradle.execution.plan.NodeExecutionHistory;
 import org.gradle.execution.plan.OrdinalGroupFactory;
 import org.gradle.execution.plan.TaskDependencyResolver;
 import org.gradle.execution.plan.TaskNodeDependencyResolver;
@@ -266,7 +267,8 @@ ExecutionPlanFactory createExecutionPlanFactory(
         OrdinalGroupFactory ordinalGroupFactory,
         TaskDependencyResolver dependencyResolver,
         ExecutionNodeAccessHierarchies executionNodeAccessHierarchies,
-        ResourceLockCoordinationService lockCoordinationService
+        ResourceLockCoordinationService lockCoordinationService,
+        NodeExecutionHistory nodeExecutionHistory
     ) {
         return new ExecutionPlanFactory(
             build.getDisplayName().getDisplayName(),
@@ -275,7 +277,8 @@ ExecutionPlanFactory createExecutionPlanFactory(
             dependencyResolver,
             executionNodeAccessHierarchies.getOutputHierarchy(),
             executionNodeAccessHierarchies.getDestroyableHierarchy(),
-            lockCoordinationService
+            lockCoordinationService,
+            nodeExecutionHistory
         );
     }
 
@@ -24,6 +24,8 @@
 import org.gradle.cache.scopes.BuildScopedCacheBuilderFactory;
 import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.buildoption.IntegerInternalOption;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.enterprise.core.GradleEnterprisePluginManager;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.BuildOutputCleanupRegistry;
@@ -40,6 +42,7 @@
 import org.gradle.internal.execution.history.changes.ExecutionStateChangeDetector;
 import org.gradle.internal.execution.history.impl.DefaultExecutionHistoryStore;
 import org.gradle.internal.execution.history.impl.DefaultOutputFilesRepository;
+import org.gradle.internal.execution.history.impl.ShardedExecutionHistoryStore;
 import org.gradle.internal.execution.impl.DefaultExecutionEngine;
 import org.gradle.internal.execution.steps.AssignImmutableWorkspaceStep;
 import org.gradle.internal.execution.steps.AssignMutableWorkspaceStep;
@@ -94,8 +97,14 @@
 import static org.gradle.internal.execution.steps.AfterExecutionOutputFilter.NO_FILTER;
 
 public class ExecutionGradleServices {
-    ExecutionHistoryCacheAccess createCacheAccess(BuildScopedCacheBuilderFactory cacheBuilderFactory) {
-        return new DefaultExecutionHistoryCacheAccess(cacheBuilderFactory);
+    /**
+     * The number of independent caches the execution history is sharded across, {@code 1} keeps the whole history in a single cache.
+     */
+    public static final IntegerInternalOption EXECUTION_HISTORY_SHARDS = new IntegerInternalOption("org.gradle.internal.execution-history.shards", 1);
+
+    ExecutionHistoryCacheAccess createCacheAccess(BuildScopedCacheBuilderFactory cacheBuilderFactory, InternalOptions internalOptions) {
+        int shards = Math.max(1, internalOptions.getOption(EXECUTION_HISTORY_SHARDS).get());
+        return new DefaultExecutionHistoryCacheAccess(cacheBuilderFactory, shards);
     }
 
     ExecutionHistoryStore createExecutionHistoryStore(
@@ -104,6 +113,13 @@ ExecutionHistoryStore createExecutionHistoryStore(
         StringInterner stringInterner,
         ClassLoaderHierarchyHasher classLoaderHasher
     ) {
+        if (executionHistoryCacheAccess.getShards().size() > 1) {
+            return new ShardedExecutionHistoryStore(
+                executionHistoryCacheAccess.getShards(),
+                stringInterner,
+                classLoaderHasher
+            );
+        }
         return new DefaultExecutionHistoryStore(
             executionHistoryCacheAccess,
             inMemoryCacheDecoratorFactory,
@@ -44,6 +44,7 @@
 import org.gradle.cache.scopes.GlobalScopedCacheBuilderFactory;
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.build.BuildAddedListener;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
 import org.gradle.internal.buildoption.IntegerInternalOption;
 import org.gradle.internal.buildoption.InternalFlag;
 import org.gradle.internal.buildoption.InternalOptions;
@@ -67,7 +68,9 @@
 import org.gradle.internal.fingerprint.impl.FileCollectionFingerprinterRegistrations;
 import org.gradle.internal.hash.DefaultFileHasher;
 import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashFunction;
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeintegration.NativeCapabilities;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
@@ -77,6 +80,7 @@
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.snapshot.CaseSensitivity;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.gradle.internal.snapshot.SnapshottingForkJoinPool;
 import org.gradle.internal.snapshot.ValueSnapshotter;
 import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics;
 import org.gradle.internal.vfs.FileSystemAccess;
@@ -92,13 +96,19 @@
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector;
 import org.gradle.internal.watch.vfs.impl.DefaultWatchableFileSystemDetector;
 import org.gradle.internal.watch.vfs.impl.FileWatchingFilter;
+import org.gradle.internal.watch.vfs.impl.VirtualFileSystemStateStore;
 import org.gradle.internal.watch.vfs.impl.WatchingNotSupportedVirtualFileSystem;
 import org.gradle.internal.watch.vfs.impl.WatchingVirtualFileSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 
 import static org.gradle.internal.snapshot.CaseSensitivity.CASE_INSENSITIVE;
@@ -116,8 +126,53 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
     public static final InternalFlag VFS_DROP_PROPERTY = new InternalFlag("org.gradle.vfs.drop");
     private static final int DEFAULT_MAX_HIERARCHIES_TO_WATCH = 50;
     public static final IntegerInternalOption MAX_HIERARCHIES_TO_WATCH_PROPERTY = new IntegerInternalOption("org.gradle.vfs.watch.hierarchies.max", DEFAULT_MAX_HIERARCHIES_TO_WATCH);
+    /**
+     * When file system watching is enabled, keeps the contents of the VFS in the Gradle user home when the daemon stops, so the next daemon can start from it.
+     *
+     * @see VirtualFileSystemStateStore
+     */
+    public static final InternalFlag PERSIST_VFS = new InternalFlag("org.gradle.vfs.persist");
     private static final int FILE_HASHER_MEMORY_CACHE_SIZE = 400000;
 
+    /**
+     * When set to a positive number of bytes, files at least this large are hashed from memory mapped regions instead of being read through a heap buffer.
+     *
+     * Disabled by default, since mapped regions are only released when they are garbage collected.
+     * Ignored on Windows, which doesn't allow deleting a file while it is mapped.
+     */
+    public static final IntegerInternalOption MAPPED_FILE_HASHING_THRESHOLD = new IntegerInternalOption("org.gradle.internal.hash.mapped-threshold", 0);
+
+    /**
+     * When enabled, unfiltered directory snapshots are taken by a parallel walk using the {@link SnapshottingForkJoinPool}.
+     */
+    public static final InternalFlag PARALLEL_SNAPSHOTTING = new InternalFlag("org.gradle.vfs.parallel-snapshotting");
+
+    /**
+     * Hashes created by different functions must never mix, so the file hashes are stored in a separate cache when file content is not hashed with the default function.
+     */
+    private static String fileHashesCacheName(HashFunction hashFunction) {
+        return hashFunction.getAlgorithm().equals(Hashing.defaultFunction().getAlgorithm())
+            ? "fileHashes"
+            : "fileHashes-" + hashFunction.getAlgorithm().toLowerCase(Locale.ROOT);
+    }
+
+    private static FileHasher createDefaultFileHasher(StreamHasher streamHasher) {
+        // User home and session services outlive a single build, so the option is read from the system properties of the process, and not from the start parameter
+        InternalOptions options = new DefaultInternalOptions(Collections.emptyMap());
+        int mappedHashingThreshold = options.getOption(MAPPED_FILE_HASHING_THRESHOLD).get();
+        if (mappedHashingThreshold <= 0 || OperatingSystem.current().isWindows()) {
+            return new DefaultFileHasher(streamHasher);
+        }
+        return new DefaultFileHasher(streamHasher, mappedHashingThreshold);
+    }
+
+    @Nullable
+    private static ForkJoinPool snapshottingPool() {
+        // User home and session services outlive a single build, so the option is read from the system properties of the process, and not from the start parameter
+        InternalOptions options = new DefaultInternalOptions(Collections.emptyMap());
+        return options.getOption(PARALLEL_SNAPSHOTTING).get() ? SnapshottingForkJoinPool.getInstance() : null;
+    }
+
     public static boolean isDropVfs(InternalOptions options) {
         return options.getOption(VFS_DROP_PROPERTY).get();
     }
@@ -166,7 +221,7 @@ FileHasher createCachingFileHasher(
             StreamHasher streamHasher,
             StringInterner stringInterner
         ) {
-            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher fileHasher = new CachingFileHasher(createDefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, fileHashesCacheName(streamHasher.getHashFunction()), fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             fileTimeStampInspector.attach(fileHasher);
             return fileHasher;
         }
@@ -194,16 +249,19 @@ WatchableFileSystemDetector createWatchableFileSystemDetector(FileSystems fileSy
         }
 
         BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
+            GlobalScopedCacheBuilderFactory cacheBuilderFactory,
             FileWatchingFilter fileWatchingFilter,
             DocumentationRegistry documentationRegistry,
             NativeCapabilities nativeCapabilities,
             ListenerManager listenerManager,
             FileChangeListeners fileChangeListeners,
             FileSystem fileSystem,
-            WatchableFileSystemDetector watchableFileSystemDetector
+            WatchableFileSystemDetector watchableFileSystemDetector,
+            StreamHasher streamHasher
         ) {
             CaseSensitivity caseSensitivity = fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE;
             SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(caseSensitivity);
+            VirtualFileSystemStateStore stateStore = persistentStateStoreFor(cacheBuilderFactory, caseSensitivity, listenerManager, streamHasher.getHashFunction());
 
             BuildLifecycleAwareVirtualFileSystem virtualFileSystem = determineWatcherRegistryFactory(
                 OperatingSystem.current(),
@@ -215,7 +273,8 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
                     sectionId -> documentationRegistry.getDocumentationRecommendationFor("details", "gradle_daemon", sectionId),
                     fileWatchingFilter,
                     watchableFileSystemDetector,
-                    fileChangeListeners
+                    fileChangeListeners,
+                    stateStore
                 ))
                 .orElse(new WatchingNotSupportedVirtualFileSystem(root));
             listenerManager.addListener((BuildAddedListener) buildState -> {
@@ -226,6 +285,19 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             return virtualFileSystem;
         }
 
+        @Nullable
+        private static VirtualFileSystemStateStore persistentStateStoreFor(GlobalScopedCacheBuilderFactory cacheBuilderFactory, CaseSensitivity caseSensitivity, ListenerManager listenerManager, HashFunction fileContentHashFunction) {
+            // User home services outlive a single build, so the option is read from the system properties of the process, and not from the start parameter
+            InternalOptions options = new DefaultInternalOptions(Collections.emptyMap());
+            if (!options.getOption(PERSIST_VFS).get()) {
+                return null;
+            }
+            File stateFile = new File(cacheBuilderFactory.baseDirForCache("vfs"), "vfs-state-" + caseSensitivity.name().toLowerCase(Locale.ROOT) + ".bin");
+            VirtualFileSystemStateStore stateStore = new VirtualFileSystemStateStore(stateFile, fileContentHashFunction, Arrays.asList(DirectoryScanner.getDefaultExcludes()));
+            listenerManager.addListener(stateStore);
+            return stateStore;
+        }
+
         FileSystemAccess createFileSystemAccess(
             FileHasher hasher,
             VirtualFileSystem virtualFileSystem,
@@ -242,6 +314,7 @@ FileSystemAccess createFileSystemAccess(
                 virtualFileSystem,
                 writeListener,
                 statisticsCollector,
+                snapshottingPool(),
                 DirectoryScanner.getDefaultExcludes()
             );
             listenerManager.addListener(defaultFileSystemAccess);
@@ -317,7 +390,7 @@ FileHasher createFileHasher(
             StringInterner stringInterner,
             FileHasherStatistics.Collector statisticsCollector
         ) {
-            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher localHasher = new CachingFileHasher(createDefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, fileHashesCacheName(streamHasher.getHashFunction()), fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             return new SplitFileHasher(globalHasher, localHasher, globalCacheLocations);
         }
 
@@ -337,6 +410,7 @@ FileSystemAccess createFileSystemAccess(
                 root,
                 writeListener,
                 statisticsCollector,
+                snapshottingPool(),
                 DirectoryScanner.getDefaultExcludes()
             );
 
@@ -384,11 +458,14 @@ InputFingerprinter createInputFingerprinter(
         ResourceSnapshotterCacheService createResourceSnapshotterCacheService(
             GlobalCacheLocations globalCacheLocations,
             CrossBuildFileHashCache store,
-            ResourceSnapshotterCacheService globalCache
+            ResourceSnapshotterCacheService globalCache,
+            ListenerManager listenerManager
         ) {
             IndexedCache<HashCode, HashCode> resourceHashesCache = store.createIndexedCache(IndexedCacheParameters.of("resourceHashesCache", HashCode.class, new HashCodeSerializer()), 800000, true);
             DefaultResourceSnapshotterCacheService localCache = new DefaultResourceSnapshotterCacheService(resourceHashesCache);
-            return new SplitResourceSnapshotterCacheService(globalCache, localCache, globalCacheLocations);
+            SplitResourceSnapshotterCacheService resourceSnapshotterCacheService = new SplitResourceSnapshotterCacheService(globalCache, localCache, globalCacheLocations);
+            listenerManager.addListener(resourceSnapshotterCacheService);
+            return resourceSnapshotterCacheService;
         }
     }
 }
@@ -35,6 +35,9 @@
 import org.gradle.cache.internal.DefaultCrossBuildInMemoryCacheFactory;
 import org.gradle.initialization.DefaultLegacyTypesSupport;
 import org.gradle.initialization.LegacyTypesSupport;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.classloader.ClassLoaderFactory;
 import org.gradle.internal.classloader.DefaultClassLoaderFactory;
 import org.gradle.internal.classpath.ClassPath;
@@ -43,6 +46,7 @@
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.impl.DefaultDeleter;
 import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.installation.CurrentGradleInstallation;
 import org.gradle.internal.instantiation.InstantiatorFactory;
@@ -59,6 +63,8 @@
 import org.gradle.internal.time.Clock;
 import org.gradle.internal.time.Time;
 
+import java.util.Collections;
+
 import static org.gradle.api.internal.file.ManagedFactories.DirectoryManagedFactory;
 import static org.gradle.api.internal.file.ManagedFactories.DirectoryPropertyManagedFactory;
 import static org.gradle.api.internal.file.ManagedFactories.RegularFileManagedFactory;
@@ -72,6 +78,11 @@
 
 public class WorkerSharedGlobalScopeServices extends BasicGlobalScopeServices {
 
+    /**
+     * When enabled, file content is hashed with {@link Hashing#murmur3_128()} instead of the default hash function.
+     */
+    public static final InternalFlag FAST_FILE_CONTENT_HASHING = new InternalFlag("org.gradle.internal.hash.fast-file-content");
+
     protected final ClassPath additionalModuleClassPath;
 
     public WorkerSharedGlobalScopeServices(ClassPath additionalModuleClassPath) {
@@ -115,7 +126,9 @@ DefaultFilePropertyFactory createFilePropertyFactory(PropertyHost propertyHost,
     }
 
     StreamHasher createStreamHasher() {
-        return new DefaultStreamHasher();
+        // Global services outlive a single build, so the option is read from the system properties of the process, and not from the start parameter
+        InternalOptions options = new DefaultInternalOptions(Collections.emptyMap());
+        return new DefaultStreamHasher(options.getOption(FAST_FILE_CONTENT_HASHING).get() ? Hashing.murmur3_128() : Hashing.defaultFunction());
     }
 
     Deleter createDeleter(Clock clock, FileSystem fileSystem, OperatingSystem os) {
@@ -34,8 +34,43 @@ class DefaultPreviousExecutionCacheAccessTest extends Specification {
         then:
         1 * cacheBuilderFactory.createCacheBuilder("executionHistory") >> cacheBuilder
         1 * cacheBuilder.withDisplayName(_) >> cacheBuilder
+        1 * cacheBuilder.withProperties(["executionHistory.version": "2"]) >> cacheBuilder
         1 * cacheBuilder.withInitialLockMode(FileLockManager.LockMode.OnDemand) >> cacheBuilder
         1 * cacheBuilder.open() >> backingCache
         0 * _._
     }
+
+    def "opens a backing cache per shard"() {
+        CacheBuilder cacheBuilder = Mock()
+        PersistentCache backingCache1 = Mock()
+        PersistentCache backingCache2 = Mock()
+        PersistentCache backingCache3 = Mock()
+
+        when:
+        def cacheAccess = new DefaultExecutionHistoryCacheAccess(cacheBuilderFactory, 3)
+
+        then:
+        1 * cacheBuilderFactory.createCacheBuilder("executionHistory-0-of-3") >> cacheBuilder
+        1 * cacheBuilderFactory.createCacheBuilder("executionHistory-1-of-3") >> cacheBuilder
+        1 * cacheBuilderFactory.createCacheBuilder("executionHistory-2-of-3") >> cacheBuilder
+        1 * cacheBuilder.withDisplayName("execution history cache (shard 1 of 3)") >> cacheBuilder
+        1 * cacheBuilder.withDisplayName("execution history cache (shard 2 of 3)") >> cacheBuilder
+        1 * cacheBuilder.withDisplayName("execution history cache (shard 3 of 3)") >> cacheBuilder
+        3 * cacheBuilder.withProperties(["executionHistory.version": "2"]) >> cacheBuilder
+        3 * cacheBuilder.withInitialLockMode(FileLockManager.LockMode.OnDemand) >> cacheBuilder
+        3 * cacheBuilder.open() >>> [backingCache1, backingCache2, backingCache3]
+        0 * _._
+
+        and:
+        cacheAccess.get() == backingCache1
+        cacheAccess.shards == [backingCache1, backingCache2, backingCache3]
+
+        when:
+        cacheAccess.close()
+
+        then:
+        1 * backingCache1.close()
+        1 * backingCache2.close()
+        1 * backingCache3.close()
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.cache.GlobalCacheLocations
+import org.gradle.internal.build.BuildState
+import org.gradle.internal.file.FileMetadata
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.fingerprint.hashing.ResourceHasher
+import org.gradle.internal.hash.TestHashCodes
+import org.gradle.internal.serialize.HashCodeSerializer
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.testfixtures.internal.TestInMemoryIndexedCache
+import spock.lang.Specification
+
+class SplitResourceSnapshotterCacheServiceTest extends Specification {
+    def globalCacheLocations = Stub(GlobalCacheLocations)
+    def configurationHash = TestHashCodes.hashCodeFrom(789)
+    def expectedHash = TestHashCodes.hashCodeFrom(123)
+    def globalCache = new DefaultResourceSnapshotterCacheService(new TestInMemoryIndexedCache(new HashCodeSerializer()))
+
+    def "shares normalized hashes of external archives between build trees"() {
+        def zipHasher = Mock(ZipHasher)
+        def snapshotContext = snapshotContext("/libs/lib.jar")
+        def firstBuildTree = newBuildTreeCacheService("/build-tree")
+        def secondBuildTree = newBuildTreeCacheService("/other-build-tree")
+
+        when:
+        def hash = firstBuildTree.hashFile(snapshotContext, zipHasher, configurationHash)
+
+        then:
+        1 * zipHasher.hash(snapshotContext) >> expectedHash
+        hash == expectedHash
+
+        when:
+        hash = secondBuildTree.hashFile(snapshotContext("/libs/lib.jar"), zipHasher, configurationHash)
+
+        then:
+        0 * zipHasher.hash(_)
+        hash == expectedHash
+    }
+
+    def "does not share normalized hashes of archives inside the root directory of #build"() {
+        def zipHasher = Mock(ZipHasher)
+        def snapshotContext = snapshotContext(path)
+
+        when:
+        newBuildTreeCacheService("/build-tree", "/included-build").hashFile(snapshotContext, zipHasher, configurationHash)
+        newBuildTreeCacheService("/build-tree", "/included-build").hashFile(snapshotContext, zipHasher, configurationHash)
+
+        then:
+        2 * zipHasher.hash(snapshotContext) >> expectedHash
+
+        where:
+        build               | path
+        "the root build"    | "/build-tree/build/libs/lib.jar"
+        "an included build" | "/included-build/build/libs/lib.jar"
+    }
+
+    def "does not share normalized hashes of archives in output locations outside the build root directories"() {
+        def zipHasher = Mock(ZipHasher)
+        def snapshotContext = snapshotContext("/relocated-build-dir/libs/lib.jar")
+
+        when:
+        def firstBuildTree = newBuildTreeCacheService("/build-tree")
+        firstBuildTree.invalidateCachesFor(["/relocated-build-dir/libs/lib.jar"])
+        firstBuildTree.hashFile(snapshotContext, zipHasher, configurationHash)
+        def secondBuildTree = newBuildTreeCacheService("/other-build-tree")
+        secondBuildTree.invalidateCachesFor(["/relocated-build-dir/libs"])
+        secondBuildTree.hashFile(snapshotContext, zipHasher, configurationHash)
+
+        then:
+        2 * zipHasher.hash(snapshotContext) >> expectedHash
+    }
+
+    def "does not share normalized hashes of local resources between build trees"() {
+        def resourceHasher = Mock(ResourceHasher)
+        def snapshotContext = snapshotContext("/libs/Foo.class")
+
+        when:
+        newBuildTreeCacheService("/build-tree").hashFile(snapshotContext, resourceHasher, configurationHash)
+        newBuildTreeCacheService("/other-build-tree").hashFile(snapshotContext, resourceHasher, configurationHash)
+
+        then:
+        2 * resourceHasher.hash(snapshotContext) >> expectedHash
+    }
+
+    private SplitResourceSnapshotterCacheService newBuildTreeCacheService(String... buildRootDirectories) {
+        def localCache = new DefaultResourceSnapshotterCacheService(new TestInMemoryIndexedCache(new HashCodeSerializer()))
+        def cacheService = new SplitResourceSnapshotterCacheService(globalCache, localCache, globalCacheLocations)
+        buildRootDirectories.each { buildRootDirectory ->
+            cacheService.buildAdded(Stub(BuildState) {
+                getBuildRootDir() >> new File(buildRootDirectory)
+            })
+        }
+        return cacheService
+    }
+
+    private static DefaultRegularFileSnapshotContext snapshotContext(String path) {
+        def name = path.substring(path.lastIndexOf('/') + 1)
+        def snapshot = new RegularFileSnapshot(path, name, TestHashCodes.hashCodeFrom(456), DefaultFileMetadata.file(3456, 456, FileMetadata.AccessType.DIRECT))
+        return new DefaultRegularFileSnapshotContext({ [name] as String[] }, snapshot)
+    }
+}
@@ -35,6 +35,7 @@ import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
 import org.gradle.caching.internal.services.DefaultBuildCacheControllerFactory
 import org.gradle.caching.local.DirectoryBuildCache
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.operations.NoOpBuildOperationProgressEventEmitter
 import org.gradle.internal.operations.TestBuildOperationExecutor
@@ -56,6 +57,7 @@ class DefaultBuildCacheControllerFactoryTest extends Specification {
     ])
 
     boolean emitDebugLogging
+    def executorFactory = Mock(ExecutorFactory)
 
     private DefaultBuildCacheController createController() {
         createController(DefaultBuildCacheController)
@@ -72,7 +74,8 @@ class DefaultBuildCacheControllerFactoryTest extends Specification {
             Stub(OriginMetadataFactory),
             Stub(StringInterner),
             Stub(TemporaryFileProvider),
-            Stub(BuildCacheEntryPacker)
+            Stub(BuildCacheEntryPacker),
+            executorFactory
         ).createController(Path.path("test"), config, TestUtil.instantiatorFactory().inject())
         assert controllerType.isInstance(controller)
         controllerType.cast(controller)
@@ -98,6 +101,18 @@ class DefaultBuildCacheControllerFactoryTest extends Specification {
         }
     }
 
+    def 'does not start background threads by default'() {
+        config.remote(TestRemoteBuildCache)
+
+        when:
+        def c = createController()
+
+        then:
+        c.local.service != null
+        c.remote.service instanceof TestRemoteBuildCacheService
+        0 * executorFactory._
+    }
+
     def 'local cache service is created when remote is disabled'() {
         config.remote(TestRemoteBuildCache).enabled = false
 
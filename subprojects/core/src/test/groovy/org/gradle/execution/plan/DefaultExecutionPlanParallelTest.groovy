@@ -23,6 +23,7 @@ import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.project.taskfactory.TestTaskIdentities
 import org.gradle.api.internal.tasks.NodeExecutionContext
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.tasks.Destroys
 import org.gradle.api.tasks.InputDirectory
@@ -55,8 +56,12 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
     def taskNodeFactory = new TaskNodeFactory(project.gradle, Stub(BuildTreeWorkGraphController), nodeValidator, new TestBuildOperationExecutor(), accessHierarchies)
 
     def setup() {
+        createExecutionPlan(NodeExecutionHistory.DISABLED)
+    }
+
+    private void createExecutionPlan(NodeExecutionHistory nodeExecutionHistory) {
         def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
-        executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, new OrdinalGroupFactory(), dependencyResolver, accessHierarchies.outputHierarchy, accessHierarchies.destroyableHierarchy, coordinator)
+        executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, new OrdinalGroupFactory(), dependencyResolver, accessHierarchies.outputHierarchy, accessHierarchies.destroyableHierarchy, coordinator, nodeExecutionHistory)
     }
 
     Node priorityNode(Map<String, ?> options = [:]) {
@@ -75,6 +80,9 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         _ * task.taskIdentity >> TestTaskIdentities.create(name, DefaultTask, project as ProjectInternal)
         TaskStateInternal state = Mock()
         _ * task.state >> state
+        if (options.outcome != null) {
+            _ * state.outcome >> options.outcome
+        }
         if (options.failure != null) {
             failure(task, options.failure)
         }
@@ -1078,6 +1086,119 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
 
     }
 
+    def "starts tasks on the longest remaining path first when critical path scheduling is enabled"() {
+        given:
+        def history = Mock(NodeExecutionHistory)
+        _ * history.enabled >> true
+        _ * history.getExpectedDurationMillis(_) >> { Node node -> node instanceof LocalTaskNode && node.task.name == "c" ? 1000 : 10 }
+        createExecutionPlan(history)
+        Task a = task("a", type: Async, outcome: TaskExecutionOutcome.EXECUTED)
+        Task b = task("b", type: Async, outcome: TaskExecutionOutcome.EXECUTED)
+        Task c = task("c", type: Async, dependsOn: [b], outcome: TaskExecutionOutcome.EXECUTED)
+
+        when:
+        addToGraphAndPopulate(a, c)
+        def firstTaskNode = selectNextTaskNode()
+        def secondTaskNode = selectNextTaskNode()
+        finishedExecuting(firstTaskNode)
+        finishedExecuting(secondTaskNode)
+
+        then:
+        executionPlan.tasks as List == [a, b, c]
+        firstTaskNode.task == b
+        secondTaskNode.task == a
+        1 * history.recordDuration({ it.task == b }, _)
+        1 * history.recordDuration({ it.task == a }, _)
+
+        when:
+        def lastTaskNode = selectNextTaskNode()
+        finishedExecuting(lastTaskNode)
+
+        then:
+        lastTaskNode.task == c
+        1 * history.recordDuration({ it.task == c }, _)
+    }
+
+    def "does not record durations of tasks that did not execute their actions"() {
+        given:
+        def history = Mock(NodeExecutionHistory)
+        _ * history.enabled >> true
+        _ * history.getExpectedDurationMillis(_) >> 10
+        createExecutionPlan(history)
+        Task task = task("task", type: Async, outcome: outcome)
+
+        when:
+        addToGraphAndPopulate(task)
+        finishedExecuting(selectNextTaskNode())
+
+        then:
+        0 * history.recordDuration(_, _)
+
+        where:
+        outcome << [TaskExecutionOutcome.UP_TO_DATE, TaskExecutionOutcome.FROM_CACHE, TaskExecutionOutcome.SKIPPED, TaskExecutionOutcome.NO_SOURCE]
+    }
+
+    def "up-to-date rerun leaves the recorded duration unchanged"() {
+        given:
+        def durations = [:]
+        def history = new NodeExecutionHistory() {
+            boolean isEnabled() { true }
+
+            long getExpectedDurationMillis(Node node) { durations.getOrDefault(node.task.name, 0L) }
+
+            void recordDuration(Node node, long durationMillis) { durations[node.task.name] = durationMillis + 1000 }
+        }
+
+        when:
+        createExecutionPlan(history)
+        addToGraphAndPopulate(task("task", type: Async, outcome: TaskExecutionOutcome.EXECUTED))
+        finishedExecuting(selectNextTaskNode())
+
+        then:
+        def recorded = durations["task"]
+        recorded >= 1000
+
+        when:
+        createExecutionPlan(history)
+        addToGraphAndPopulate(task("task", type: Async, outcome: TaskExecutionOutcome.UP_TO_DATE))
+        finishedExecuting(selectNextTaskNode())
+
+        then:
+        durations == [task: recorded]
+    }
+
+    def "reports node as blocked by its dependencies from when it started waiting for them"() {
+        given:
+        def listener = Mock(WorkSource.SchedulingListener)
+        Task a = task("a")
+        Task b = task("b", dependsOn: [a])
+        long blockedSince = -1
+
+        when:
+        addToGraphAndPopulate(b)
+        long listenerSet = System.nanoTime()
+        finalizedPlan.setSchedulingListener(listener)
+        def first = selectNextTaskNode()
+        Thread.sleep(10)
+        long beforeFinished = System.nanoTime()
+        finishedExecuting(first)
+
+        then:
+        first.task == a
+        1 * listener.blocked({ it instanceof LocalTaskNode && it.task == b }, WorkSource.BlockedReason.Dependencies, _) >> { node, reason, long since -> blockedSince = since }
+        blockedSince >= listenerSet
+        blockedSince < beforeFinished
+
+        when:
+        def second = selectNextTaskNode()
+        finishedExecuting(second)
+
+        then:
+        second.task == b
+        0 * listener.blocked(_, WorkSource.BlockedReason.Dependencies, _)
+        assertAllWorkComplete()
+    }
+
     def "two tasks that have the same file in outputs are not executed in parallel"() {
         def sharedFile = file("output")
 
@@ -16,6 +16,7 @@
 
 package org.gradle.execution.plan
 
+import groovy.json.JsonSlurper
 import org.gradle.api.Action
 import org.gradle.api.Project
 import org.gradle.api.internal.TaskInternal
@@ -25,12 +26,17 @@ import org.gradle.initialization.BuildCancellationToken
 import org.gradle.internal.buildoption.DefaultInternalOptions
 import org.gradle.internal.concurrent.DefaultParallelismConfiguration
 import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.resources.DefaultResourceLockCoordinationService
 import org.gradle.internal.work.WorkerLeaseRegistry
 import org.gradle.internal.work.WorkerLeaseService
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
 import spock.lang.Specification
 
 class DefaultPlanExecutorTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
     def workSource = Mock(WorkSource)
     def worker = Mock(Action)
     def executorFactory = Mock(ExecutorFactory)
@@ -38,7 +44,8 @@ class DefaultPlanExecutorTest extends Specification {
     def coordinationService = new DefaultResourceLockCoordinationService()
     def workerLeaseService = Mock(WorkerLeaseService)
     def workerLease = Mock(WorkerLeaseRegistry.WorkerLease)
-    def executor = new DefaultPlanExecutor(new DefaultParallelismConfiguration(false, 1), executorFactory, workerLeaseService, cancellationHandler, coordinationService, new DefaultInternalOptions([:]))
+    def buildOperationExecutor = new TestBuildOperationExecutor()
+    def executor = new DefaultPlanExecutor(new DefaultParallelismConfiguration(false, 1), executorFactory, workerLeaseService, cancellationHandler, coordinationService, buildOperationExecutor, new DefaultInternalOptions([:]))
 
     def "executes tasks until no further tasks remain"() {
         def gradle = Mock(Gradle)
@@ -113,4 +120,95 @@ class DefaultPlanExecutorTest extends Specification {
         1 * workSource.collectFailures([])
         0 * workSource._
     }
+
+    def "gives up resource budget reservation of running item while it blocks"() {
+        WorkerLeaseService.BlockingListener blockingListener = null
+        WorkSource.ResourceBudget budget = null
+        def budgetedExecutor
+
+        when:
+        budgetedExecutor = new DefaultPlanExecutor(new DefaultParallelismConfiguration(false, 1), executorFactory, workerLeaseService, cancellationHandler, coordinationService, buildOperationExecutor, new DefaultInternalOptions([(DefaultPlanExecutor.CPU_BUDGET.systemPropertyName): "1"]))
+
+        then:
+        1 * workerLeaseService.addBlockingListener(_) >> { WorkerLeaseService.BlockingListener listener -> blockingListener = listener }
+
+        when:
+        def result = budgetedExecutor.process(workSource, worker)
+
+        then:
+        result.failures.empty
+        1 * workSource.setResourceBudget(_) >> { WorkSource.ResourceBudget resourceBudget -> budget = resourceBudget }
+        1 * workerLeaseService.currentWorkerLease >> workerLease
+        _ * cancellationHandler.isCancellationRequested() >> false
+        _ * workerLease.tryLock() >> true
+        2 * workSource.executionState() >>> [WorkSource.State.MaybeWorkReadyToStart, WorkSource.State.NoMoreWorkToStart]
+        1 * workSource.selectNext() >> {
+            assert budget.tryReserve("a")
+            WorkSource.Selection.of("a")
+        }
+        1 * worker.execute("a") >> {
+            coordinationService.withStateLock {
+                assert !budget.tryReserve("b")
+            }
+            blockingListener.beforeBlocking()
+            coordinationService.withStateLock {
+                assert budget.tryReserve("b")
+                budget.release("b")
+            }
+            blockingListener.afterBlocking()
+            coordinationService.withStateLock {
+                assert !budget.tryReserve("b")
+            }
+        }
+        1 * workSource.finishedExecuting("a", null)
+        _ * workSource.allExecutionComplete() >> true
+
+        when:
+        budgetedExecutor.stop()
+
+        then:
+        1 * workerLeaseService.removeBlockingListener(blockingListener)
+    }
+
+    def "reports scheduler statistics and writes trace when enabled"() {
+        def traceFile = temporaryFolder.file("trace/scheduler.json")
+        def collectingExecutor = new DefaultPlanExecutor(new DefaultParallelismConfiguration(false, 1), executorFactory, workerLeaseService, cancellationHandler, coordinationService, buildOperationExecutor, new DefaultInternalOptions([(DefaultPlanExecutor.TRACE.systemPropertyName): traceFile.absolutePath]))
+        WorkSource.SchedulingListener schedulingListener = null
+
+        when:
+        def result = collectingExecutor.process(workSource, worker)
+        collectingExecutor.stop()
+
+        then:
+        result.failures.empty
+        1 * workSource.setSchedulingListener(_) >> { WorkSource.SchedulingListener listener -> schedulingListener = listener }
+        1 * workerLeaseService.currentWorkerLease >> workerLease
+        _ * cancellationHandler.isCancellationRequested() >> false
+        _ * workerLease.tryLock() >> true
+        2 * workSource.executionState() >>> [WorkSource.State.MaybeWorkReadyToStart, WorkSource.State.NoMoreWorkToStart]
+        1 * workSource.selectNext() >> {
+            schedulingListener.blocked("b", WorkSource.BlockedReason.ProjectLock)
+            schedulingListener.blocked("b", WorkSource.BlockedReason.MutationConflict)
+            schedulingListener.blocked("b", WorkSource.BlockedReason.ProjectLock)
+            WorkSource.Selection.of("b")
+        }
+        2 * workSource.getReadyItemCount() >>> [1, 0]
+        1 * worker.execute("b")
+        1 * workSource.finishedExecuting("b", null)
+        _ * workSource.allExecutionComplete() >> true
+
+        and:
+        def statistics = buildOperationExecutor.log.mostRecentResult(SchedulerStatisticsBuildOperationType)
+        statistics.workers.size() == 1
+        statistics.workers[0].executedItemCount == 1
+        statistics.maxReadyQueueDepth == 1
+        statistics.blockedItemCounts == [Dependencies: 0L, ProjectLock: 1L, SharedResource: 0L, MutationConflict: 1L, ResourceBudget: 0L]
+        statistics.resourceBudget == null
+        statistics.traceFile == traceFile.absolutePath
+
+        and:
+        def events = new JsonSlurper().parse(traceFile).traceEvents
+        events.find { it.ph == "X" && it.name == "b" }.args.blockedBy == "[ProjectLock, MutationConflict]"
+        events.findAll { it.ph == "C" }.collect { it.args.depth } == [1, 0]
+    }
 }
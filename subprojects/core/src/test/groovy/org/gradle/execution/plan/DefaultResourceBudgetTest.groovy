@@ -0,0 +1,299 @@
+/*
+ * Copyright 2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.execution.plan
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.tasks.ParallelForkingTask
+import org.gradle.process.JavaForkOptions
+import org.gradle.util.Path
+import spock.lang.Specification
+
+class DefaultResourceBudgetTest extends Specification {
+    private static final long GB = 1024L * 1024 * 1024
+
+    def "parses declared weights"() {
+        when:
+        def weights = DefaultResourceBudget.parseWeights(" test=2:3g, :app:compileJava=1 ,")
+
+        then:
+        weights.keySet() == ["test", ":app:compileJava"] as Set
+        weights["test"].cpuSlots == 2
+        weights["test"].memoryBytes == 3 * GB
+        weights[":app:compileJava"].cpuSlots == 1
+        weights[":app:compileJava"].memoryBytes == 0
+    }
+
+    def "reports invalid weight declaration"() {
+        when:
+        DefaultResourceBudget.parseWeights(declaration)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Cannot parse resource weight '${declaration}', expected '<task path or name>=<cpu slots>[:<memory>]'."
+
+        where:
+        declaration << ["test", "=2", "test=two", "test=2:lots"]
+    }
+
+    def "admits items while CPU slots are available"() {
+        def budget = new DefaultResourceBudget(2, 0, [:])
+
+        expect:
+        budget.tryReserve("a")
+        budget.tryReserve("b")
+        !budget.tryReserve("c")
+        budget.cpuSlotsInUse == 2
+
+        when:
+        budget.release("a")
+
+        then:
+        budget.cpuSlotsInUse == 1
+        budget.tryReserve("c")
+    }
+
+    def "uses declared weights by task path and by task name"() {
+        def budget = new DefaultResourceBudget(4, 4 * GB, DefaultResourceBudget.parseWeights("test=1:3g,:lib:compileJava=3"))
+        def test = taskNode(":app:test", "test")
+        def compile = taskNode(":lib:compileJava", "compileJava")
+
+        expect:
+        budget.tryReserve(test)
+        budget.memoryBytesInUse == 3 * GB
+        budget.tryReserve(compile)
+        budget.cpuSlotsInUse == 4
+        !budget.tryReserve(taskNode(":other:test", "test"))
+    }
+
+    def "uses maximum heap size of tasks that fork a JVM"() {
+        def budget = new DefaultResourceBudget(4, 3 * GB, [:])
+        def first = taskNode(":a:test", "test", "2g")
+        def second = taskNode(":b:test", "test", "2g")
+
+        expect:
+        budget.tryReserve(first)
+        budget.memoryBytesInUse == 2 * GB
+        !budget.tryReserve(second)
+
+        when:
+        budget.release(first)
+
+        then:
+        budget.tryReserve(second)
+    }
+
+    def "uses maximum heap size of each parallel fork of tasks that fork a JVM"() {
+        def budget = new DefaultResourceBudget(8, 16 * GB, [:])
+        def test = taskNode(":test", "test", "3g", 4)
+
+        expect:
+        budget.tryReserve(test)
+        budget.cpuSlotsInUse == 4
+        budget.memoryBytesInUse == 12 * GB
+        !budget.tryReserve(taskNode(":other:test", "test", "3g", 2))
+    }
+
+    def "admits item that exceeds the budget when nothing else is running"() {
+        def budget = new DefaultResourceBudget(2, GB, DefaultResourceBudget.parseWeights("big=8:4g"))
+        def big = taskNode(":big", "big")
+
+        expect:
+        budget.tryReserve("a")
+        !budget.tryReserve(big)
+
+        when:
+        budget.release("a")
+
+        then:
+        budget.tryReserve(big)
+        budget.cpuSlotsInUse == 2
+        budget.memoryBytesInUse == GB
+        !budget.tryReserve("a")
+    }
+
+    def "does not admit other items while an item that exceeds the budget is waiting"() {
+        def budget = new DefaultResourceBudget(2, 0, DefaultResourceBudget.parseWeights("big=8"))
+        def big = taskNode(":big", "big")
+
+        expect:
+        budget.tryReserve("a")
+        !budget.tryReserve(big)
+        !budget.tryReserve("b")
+
+        when:
+        budget.release("a")
+
+        then:
+        !budget.tryReserve("b")
+        budget.tryReserve(big)
+        !budget.tryReserve("b")
+
+        when:
+        budget.release(big)
+
+        then:
+        budget.tryReserve("b")
+    }
+
+    def "admits other items when an item that exceeds the budget completes without starting"() {
+        def budget = new DefaultResourceBudget(2, 0, DefaultResourceBudget.parseWeights("big=8"))
+        def big = taskNode(":big", "big")
+        budget.tryReserve("a")
+        budget.tryReserve(big)
+
+        when:
+        budget.release(big)
+
+        then:
+        budget.tryReserve("b")
+    }
+
+    def "determines the weight of an item once"() {
+        def budget = new DefaultResourceBudget(3, 4 * GB, [:])
+        def task = Mock(TaskInternal, additionalInterfaces: [JavaForkOptions])
+        def node = Stub(LocalTaskNode) {
+            getTask() >> task
+        }
+
+        when:
+        budget.tryReserve("a")
+        budget.tryReserve("b")
+        budget.tryReserve("c")
+        budget.tryReserve(node)
+        budget.tryReserve(node)
+
+        then:
+        _ * task.identityPath >> Path.path(":test")
+        _ * task.name >> "test"
+        1 * (task as JavaForkOptions).maxHeapSize >> "4g"
+    }
+
+    def "uses default weight when maximum heap size is invalid"() {
+        def budget = new DefaultResourceBudget(4, GB, [:])
+
+        expect:
+        budget.tryReserve(taskNode(":test", "test", "2gb"))
+        budget.cpuSlotsInUse == 1
+        budget.memoryBytesInUse == 0
+    }
+
+    def "notifies listeners when resources are released"() {
+        def budget = new DefaultResourceBudget(1, 0, [:])
+        def listener = Mock(Runnable)
+        budget.addReleaseListener(listener)
+        budget.tryReserve("a")
+
+        when:
+        budget.release("a")
+        budget.release("b")
+
+        then:
+        1 * listener.run()
+
+        when:
+        budget.removeReleaseListener(listener)
+        budget.tryReserve("a")
+        budget.release("a")
+
+        then:
+        0 * listener.run()
+    }
+
+    def "admits other items while a running item is suspended"() {
+        def budget = new DefaultResourceBudget(1, 0, [:])
+        def listener = Mock(Runnable)
+        budget.addReleaseListener(listener)
+        budget.tryReserve("a")
+
+        expect:
+        !budget.tryReserve("b")
+
+        when:
+        budget.suspend("a")
+
+        then:
+        1 * listener.run()
+        budget.cpuSlotsInUse == 0
+
+        and:
+        budget.tryReserve("b")
+
+        when:
+        budget.resume("a")
+
+        then:
+        budget.cpuSlotsInUse == 2
+        !budget.tryReserve("c")
+
+        when:
+        budget.release("b")
+
+        then:
+        budget.cpuSlotsInUse == 1
+        !budget.tryReserve("c")
+
+        when:
+        budget.release("a")
+
+        then:
+        budget.cpuSlotsInUse == 0
+        budget.tryReserve("c")
+    }
+
+    def "admits item that exceeds the budget while other running items are suspended"() {
+        def budget = new DefaultResourceBudget(2, 0, DefaultResourceBudget.parseWeights("big=8"))
+        def big = taskNode(":big", "big")
+        budget.tryReserve("a")
+
+        expect:
+        !budget.tryReserve(big)
+
+        when:
+        budget.suspend("a")
+
+        then:
+        budget.tryReserve(big)
+    }
+
+    def "releases suspended item"() {
+        def budget = new DefaultResourceBudget(1, 0, [:])
+        budget.tryReserve("a")
+        budget.suspend("a")
+
+        when:
+        budget.release("a")
+        budget.resume("a")
+
+        then:
+        budget.cpuSlotsInUse == 0
+        budget.tryReserve("b")
+    }
+
+    private LocalTaskNode taskNode(String path, String name, String maxHeapSize = null, int maxParallelForks = 1) {
+        def task = maxHeapSize == null ? Stub(TaskInternal) : Stub(TaskInternal, additionalInterfaces: [JavaForkOptions, ParallelForkingTask])
+        task.identityPath >> Path.path(path)
+        task.name >> name
+        if (maxHeapSize != null) {
+            (task as JavaForkOptions).maxHeapSize >> maxHeapSize
+            (task as ParallelForkingTask).maxParallelForks >> maxParallelForks
+        }
+        return Stub(LocalTaskNode) {
+            getTask() >> task
+        }
+    }
+}
@@ -89,7 +89,7 @@ class DefaultTaskExecutionGraphSpec extends AbstractExecutionPlanSpec {
     def projectStateRegistry = Stub(ProjectStateRegistry)
     def executionPlan = newExecutionPlan()
     def taskGraph = new DefaultTaskExecutionGraph(
-        new DefaultPlanExecutor(parallelismConfiguration, executorFactory, workerLeases, cancellationToken, coordinator, new DefaultInternalOptions([:])),
+        new DefaultPlanExecutor(parallelismConfiguration, executorFactory, workerLeases, cancellationToken, coordinator, buildOperationExecutor, new DefaultInternalOptions([:])),
         [nodeExecutor],
         buildOperationExecutor,
         listenerBuildOperationDecorator,
@@ -216,7 +216,8 @@ public static FileSystemAccess fileSystemAccess(VirtualFileSystem virtualFileSys
             fileSystem(),
             virtualFileSystem,
             locations -> {},
-            new DirectorySnapshotterStatistics.Collector()
+            new DirectorySnapshotterStatistics.Collector(),
+            null
         );
     }
 
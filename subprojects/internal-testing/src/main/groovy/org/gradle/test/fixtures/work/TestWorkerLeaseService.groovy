@@ -166,6 +166,14 @@ class TestWorkerLeaseService implements WorkerLeaseService {
         action.run()
     }
 
+    @Override
+    void addBlockingListener(WorkerLeaseService.BlockingListener listener) {
+    }
+
+    @Override
+    void removeBlockingListener(WorkerLeaseService.BlockingListener listener) {
+    }
+
     @Override
     <T> T allowUncontrolledAccessToAnyProject(Factory<T> factory) {
         return factory.create()